@@ -0,0 +1,185 @@
+/*******************************************************************************
+ * (c) Copyright 2017 Hewlett Packard Enterprise Development LP Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *******************************************************************************/
+package com.hp.hpl.loom.adapter.docker.benchmarks;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.hp.hpl.loom.adapter.docker.distributed.ContainerFormat;
+import com.hp.hpl.loom.adapter.docker.items.ContainerItemAttributes;
+import com.spotify.docker.client.messages.Container;
+
+/***
+ * Cost of ContainerItemUpdater.createItemAttributes, per container: the former implementation
+ * (names concatenated one by one, status lower-cased twice, host found by walking the relationships
+ * declared on the container) against the current one (ContainerFormat and the container index of
+ * the HostManager). The collector is left out, thus the host lookups resolve to host UIDs.
+ *
+ * <p>
+ * Each operation builds the attributes of the next container of the list, so that the larger lists
+ * show the cost of the lookups once the indices no longer fit in the caches. Run with "-prof gc" to
+ * compare gc.alloc.rate.norm, the bytes allocated per container.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ContainerAttributesBenchmark {
+    private static final String DESCRIPTION = "Represents a docker container";
+    private static final int ID_TRUNCATE_END = 6;
+
+    /***
+     * Containers over all the hosts.
+     */
+    @Param({"1000", "10000", "100000"})
+    private int count;
+
+    private List<Container> containers;
+    private int next = 0;
+
+    // logical id of the container -> relationships declared by the HostItemUpdater
+    private Map<String, HashMap<String, String>> declaredRelations;
+
+    // host UID -> host, stands for HostManager.locateHostByUID
+    private Map<String, String> hosts;
+
+    // container id -> host, stands for HostManager.locateHostByContainerId
+    private Map<String, String> containerIndex;
+
+    /***
+     * Builds the containers, Fixtures.CONTAINERS_PER_HOST on each host, and the relationships
+     * declared on them.
+     */
+    @Setup
+    public void setUp() {
+        containers = Fixtures.containers(count);
+        declaredRelations = new HashMap<String, HashMap<String, String>>();
+        hosts = new HashMap<String, String>();
+        containerIndex = new ConcurrentHashMap<String, String>();
+
+        for (int i = 0; i < count; i++) {
+            String hostUid = "tcp://host-" + i / Fixtures.CONTAINERS_PER_HOST + ":2375";
+            String containerId = Fixtures.containerId(i);
+            HashMap<String, String> relations = new HashMap<String, String>();
+
+            relations.put("host:runs:container", hostUid);
+            relations.put("image:instantiates:container", Fixtures.imageId(i));
+
+            declaredRelations.put(logicalId(containerId), relations);
+            hosts.put(hostUid, hostUid);
+            containerIndex.put(containerId, hostUid);
+        }
+    }
+
+    /***
+     * @param blackhole consumes the attributes
+     */
+    @Benchmark
+    public void legacy(final Blackhole blackhole) {
+        Container container = nextContainer();
+        ContainerItemAttributes attributes = new ContainerItemAttributes();
+
+        attributes.setContainerId(container.id());
+        if ((container.names() != null) && (!container.names().isEmpty())) {
+            attributes.setLabel(container.names().toString());
+        }
+        attributes.setCommand(container.command());
+        attributes.setCreationdate(container.created());
+
+        if ((container.names() != null) && (container.names().size() != 0)) {
+            String completeName = "{";
+
+            for (String name : container.names()) {
+                completeName = completeName.concat("[" + name + "]");
+            }
+            completeName = completeName.concat("}");
+            attributes.setName(completeName);
+        } else {
+            attributes.setName("");
+        }
+
+        attributes.setStatus(container.status());
+        attributes.setOverallStatus(container.status().toLowerCase().contains("up") ? "Up" : "Stopped");
+        attributes.setBaseImageRepositoryName(container.image());
+        attributes.setItemId(container.id());
+        attributes.setItemDescription(DESCRIPTION);
+        attributes.setItemName(attributes.getContainerId().substring(0, ID_TRUNCATE_END));
+
+        String associatedHost = new String("");
+        for (Map.Entry<String, String> entry : declaredRelations.get(logicalId(container.id())).entrySet()) {
+            if (entry.getKey().contains("runs")) {
+                associatedHost = entry.getValue();
+            }
+        }
+
+        blackhole.consume(hosts.get(associatedHost));
+        blackhole.consume(attributes.getOverallStatus().toLowerCase().equals("up"));
+        blackhole.consume(attributes);
+    }
+
+    /***
+     * @param blackhole consumes the attributes
+     */
+    @Benchmark
+    public void current(final Blackhole blackhole) {
+        Container container = nextContainer();
+        ContainerItemAttributes attributes = new ContainerItemAttributes();
+        List<String> names = container.names();
+
+        attributes.setContainerId(container.id());
+        if ((names != null) && (!names.isEmpty())) {
+            attributes.setLabel(ContainerFormat.label(names));
+        }
+        attributes.setCommand(container.command());
+        attributes.setCreationdate(container.created());
+        attributes.setName(ContainerFormat.name(names));
+        attributes.setStatus(container.status());
+        attributes.setOverallStatus(ContainerFormat.overallStatus(container.status()));
+        attributes.setBaseImageRepositoryName(container.image());
+        attributes.setItemId(container.id());
+        attributes.setItemDescription(DESCRIPTION);
+        attributes.setItemName(attributes.getContainerId().substring(0, ID_TRUNCATE_END));
+
+        blackhole.consume(containerIndex.get(container.id()));
+        blackhole.consume(ContainerFormat.isUp(container.status()));
+        blackhole.consume(attributes);
+    }
+
+    private Container nextContainer() {
+        Container container = containers.get(next);
+
+        next = (next + 1) % containers.size();
+
+        return container;
+    }
+
+    private static String logicalId(final String containerId) {
+        return "/providers/docker/container/" + containerId;
+    }
+}
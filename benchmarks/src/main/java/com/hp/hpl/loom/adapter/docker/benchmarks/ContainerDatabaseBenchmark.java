@@ -0,0 +1,105 @@
+/*******************************************************************************
+ * (c) Copyright 2017 Hewlett Packard Enterprise Development LP Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *******************************************************************************/
+package com.hp.hpl.loom.adapter.docker.benchmarks;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.hp.hpl.loom.adapter.docker.distributed.realworld.HostSnapshot;
+import com.spotify.docker.client.messages.Container;
+import com.spotify.docker.client.messages.ContainerInfo;
+
+/***
+ * The work of Host.refreshContainerDatabase once the daemon answered: finding the containers to
+ * inspect and building the new snapshot. The daemon calls are left out, the inspections of the
+ * outdated containers are ready beforehand. The host runs every container, as with a single large
+ * daemon; one container out of CHANGED_EVERY changed state since the previous listing.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ContainerDatabaseBenchmark {
+    private static final int CHANGED_EVERY = 100;
+
+    /***
+     * Containers on the host.
+     */
+    @Param({"1000", "10000", "100000"})
+    private int containers;
+
+    private HostSnapshot previous;
+    private List<Container> unchangedListing;
+    private List<Container> changedListing;
+    private Map<String, ContainerInfo> daemonInspections;
+
+    /***
+     * Builds the previous snapshot, with every container inspected, and the two listings.
+     */
+    @Setup
+    public void setUp() {
+        Map<String, ContainerInfo> inspections = Fixtures.inspections(containers);
+
+        unchangedListing = Fixtures.containers(containers);
+        changedListing = new ArrayList<Container>(unchangedListing);
+        daemonInspections = new HashMap<String, ContainerInfo>();
+
+        for (int i = 0; i < containers; i += CHANGED_EVERY) {
+            changedListing.set(i, Fixtures.container(i, !Fixtures.isStopped(i)));
+            daemonInspections.put(Fixtures.containerId(i), inspections.get(Fixtures.containerId(i)));
+        }
+
+        previous = HostSnapshot.empty("tcp://host:2375").withContainers(unchangedListing, inspections);
+    }
+
+    /***
+     * @return the snapshot after a listing without changes
+     */
+    @Benchmark
+    public HostSnapshot unchanged() {
+        return refresh(unchangedListing);
+    }
+
+    /***
+     * @return the snapshot after a listing where some containers changed state
+     */
+    @Benchmark
+    public HostSnapshot changed() {
+        return refresh(changedListing);
+    }
+
+    private HostSnapshot refresh(final List<Container> listing) {
+        Map<String, ContainerInfo> newInspections = new HashMap<String, ContainerInfo>();
+
+        for (String containerId : previous.getOutdatedInspections(listing)) {
+            newInspections.put(containerId, daemonInspections.get(containerId));
+        }
+
+        return previous.withContainers(listing, newInspections);
+    }
+}
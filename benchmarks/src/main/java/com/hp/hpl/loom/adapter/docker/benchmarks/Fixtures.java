@@ -0,0 +1,270 @@
+/*******************************************************************************
+ * (c) Copyright 2017 Hewlett Packard Enterprise Development LP Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *******************************************************************************/
+package com.hp.hpl.loom.adapter.docker.benchmarks;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.hp.hpl.loom.adapter.docker.distributed.realworld.HostSnapshot;
+import com.hp.hpl.loom.adapter.docker.realworld.Registry;
+import com.spotify.docker.client.ObjectMapperProvider;
+import com.spotify.docker.client.messages.Container;
+import com.spotify.docker.client.messages.ContainerInfo;
+import com.spotify.docker.client.messages.Image;
+
+/***
+ * Synthetic docker resources for the benchmarks. The docker-client messages can only be built from
+ * their JSON form, as the daemon sends them, thus the fixtures are built the same way. Fixtures are
+ * deterministic: the same index always gives the same resource.
+ */
+public final class Fixtures {
+    private static final ObjectMapper MAPPER = ObjectMapperProvider.objectMapper();
+
+    /***
+     * Containers run by each host.
+     */
+    public static final int CONTAINERS_PER_HOST = 100;
+
+    /***
+     * Containers instantiating each image.
+     */
+    public static final int CONTAINERS_PER_IMAGE = 10;
+
+    /***
+     * Private registries; each image is held by two of them.
+     */
+    public static final int REGISTRIES = 10;
+
+    // one container out of this many is stopped
+    private static final int STOPPED_EVERY = 4;
+    private static final long CREATED = 1500000000L;
+    private static final int HOST_PORT_BASE = 32768;
+    private static final long IMAGE_SIZE = 128L * 1024 * 1024;
+
+    private Fixtures() {}
+
+    /***
+     * @param index container index
+     * @return 64 hex digits container id
+     */
+    public static String containerId(final int index) {
+        return String.format("%064x", index);
+    }
+
+    /***
+     * @param index image index
+     * @return image id, as reported by docker
+     */
+    public static String imageId(final int index) {
+        return "sha256:" + String.format("%064x", Integer.MAX_VALUE - index);
+    }
+
+    /***
+     * @param count number of containers
+     * @return containers with one or two names; one out of STOPPED_EVERY is stopped
+     */
+    public static List<Container> containers(final int count) {
+        List<Container> containers = new ArrayList<Container>(count);
+
+        for (int i = 0; i < count; i++) {
+            containers.add(container(i));
+        }
+
+        return containers;
+    }
+
+    /***
+     * @param index container index
+     * @return the container of the given index
+     */
+    public static Container container(final int index) {
+        return container(index, isStopped(index));
+    }
+
+    /***
+     * @param index container index
+     * @return true if the container of the given index is stopped
+     */
+    public static boolean isStopped(final int index) {
+        return index % STOPPED_EVERY == 0;
+    }
+
+    /***
+     * @param index container index
+     * @param stopped whether the container is stopped
+     * @return the container of the given index, in the given state
+     */
+    public static Container container(final int index, final boolean stopped) {
+        ObjectNode json = MAPPER.createObjectNode();
+        ArrayNode names = json.putArray("Names");
+
+        names.add("/service-" + index);
+        if (index % 2 == 0) {
+            names.add("/proxy-" + index + "/service-" + index);
+        }
+
+        json.put("Id", containerId(index));
+        json.put("Image", "repository/service-" + index / CONTAINERS_PER_IMAGE + ":latest");
+        json.put("ImageID", imageId(index / CONTAINERS_PER_IMAGE));
+        json.put("Command", "/bin/sh -c 'exec service --port 8080'");
+        json.put("Created", CREATED + index);
+        json.put("State", stopped ? "exited" : "running");
+        json.put("Status", stopped ? "Exited (0) 2 hours ago" : "Up 3 days");
+
+        return MAPPER.convertValue(json, Container.class);
+    }
+
+    /***
+     * @param index container index
+     * @return the inspection of the container of the given index: one published port and one volume
+     */
+    public static ContainerInfo inspection(final int index) {
+        ObjectNode json = MAPPER.createObjectNode();
+
+        json.put("Id", containerId(index));
+        json.put("Created", "2017-07-14T10:00:00.000000000Z");
+        json.put("Path", "/bin/sh");
+        json.putArray("Args").add("-c").add("exec service --port 8080");
+        json.putObject("Config");
+        json.put("Image", imageId(index / CONTAINERS_PER_IMAGE));
+        json.put("Name", "/service-" + index);
+        json.put("ResolvConfPath", "");
+        json.put("HostnamePath", "");
+        json.put("HostsPath", "");
+        json.put("Driver", "overlay2");
+        json.put("ProcessLabel", "");
+        json.put("MountLabel", "");
+        json.put("AppArmorProfile", "");
+        json.put("LogPath", "");
+        json.put("RestartCount", 0);
+
+        ObjectNode state = json.putObject("State");
+        boolean stopped = isStopped(index);
+        state.put("Running", !stopped);
+        state.put("Paused", false);
+        state.put("Pid", stopped ? 0 : index + 1);
+        state.put("ExitCode", 0);
+        state.put("StartedAt", "2017-07-14T10:00:00.000000000Z");
+        state.put("FinishedAt", "0001-01-01T00:00:00Z");
+
+        ObjectNode binding = json.putObject("NetworkSettings").putObject("Ports").putArray("8080/tcp").addObject();
+        binding.put("HostIp", "0.0.0.0");
+        binding.put("HostPort", Integer.toString(HOST_PORT_BASE + index % CONTAINERS_PER_HOST));
+
+        ObjectNode mount = json.putArray("Mounts").addObject();
+        mount.put("Source", "/var/lib/docker/volumes/data-" + index + "/_data");
+        mount.put("Destination", "/data");
+        mount.put("Mode", "");
+        mount.put("RW", true);
+
+        return MAPPER.convertValue(json, ContainerInfo.class);
+    }
+
+    /***
+     * @param count number of containers
+     * @return inspections of the first count containers, indexed by container id
+     */
+    public static Map<String, ContainerInfo> inspections(final int count) {
+        Map<String, ContainerInfo> inspections = new HashMap<String, ContainerInfo>();
+
+        for (int i = 0; i < count; i++) {
+            inspections.put(containerId(i), inspection(i));
+        }
+
+        return inspections;
+    }
+
+    /***
+     * @param index image index
+     * @return the image of the given index
+     */
+    public static Image image(final int index) {
+        ObjectNode json = MAPPER.createObjectNode();
+
+        json.put("Id", imageId(index));
+        json.put("Created", Long.toString(CREATED + index));
+        json.put("ParentId", "");
+        json.putArray("RepoTags").add("repository/service-" + index + ":latest");
+        json.put("Size", IMAGE_SIZE);
+        json.put("VirtualSize", IMAGE_SIZE);
+
+        return MAPPER.convertValue(json, Image.class);
+    }
+
+    /***
+     * @param count number of images
+     * @return the first count images
+     */
+    public static List<Image> images(final int count) {
+        List<Image> images = new ArrayList<Image>(count);
+
+        for (int i = 0; i < count; i++) {
+            images.add(image(i));
+        }
+
+        return images;
+    }
+
+    /***
+     * @param images images to spread over the registries
+     * @return REGISTRIES registries, each image held by two of them
+     */
+    public static Map<Registry, List<Image>> registries(final List<Image> images) {
+        Map<Registry, List<Image>> registries = new LinkedHashMap<Registry, List<Image>>();
+        List<List<Image>> held = new ArrayList<List<Image>>();
+
+        for (int i = 0; i < REGISTRIES; i++) {
+            held.add(new ArrayList<Image>());
+            registries.put(new Registry("registry-" + i, "registry-" + i, "5000"), held.get(i));
+        }
+
+        for (int i = 0; i < images.size(); i++) {
+            held.get(i % REGISTRIES).add(images.get(i));
+            held.get((i + 1) % REGISTRIES).add(images.get(i));
+        }
+
+        return registries;
+    }
+
+    /***
+     * @param count total number of containers
+     * @return one inspected snapshot per CONTAINERS_PER_HOST containers, with the images of its
+     *         containers
+     */
+    public static List<HostSnapshot> snapshots(final int count) {
+        List<HostSnapshot> snapshots = new ArrayList<HostSnapshot>();
+
+        for (int first = 0; first < count; first += CONTAINERS_PER_HOST) {
+            List<Container> containers = new ArrayList<Container>();
+            List<Image> images = new ArrayList<Image>();
+            Map<String, ContainerInfo> inspections = new HashMap<String, ContainerInfo>();
+
+            for (int i = first; i < Math.min(first + CONTAINERS_PER_HOST, count); i++) {
+                containers.add(container(i));
+                inspections.put(containerId(i), inspection(i));
+                if (i % CONTAINERS_PER_IMAGE == 0) {
+                    images.add(image(i / CONTAINERS_PER_IMAGE));
+                }
+            }
+
+            snapshots.add(HostSnapshot.empty("tcp://host-" + first / CONTAINERS_PER_HOST + ":2375").withImages(images)
+                    .withContainers(containers, inspections));
+        }
+
+        return snapshots;
+    }
+}
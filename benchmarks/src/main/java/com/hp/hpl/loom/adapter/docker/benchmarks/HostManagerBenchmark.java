@@ -0,0 +1,93 @@
+/*******************************************************************************
+ * (c) Copyright 2017 Hewlett Packard Enterprise Development LP Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *******************************************************************************/
+package com.hp.hpl.loom.adapter.docker.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.hp.hpl.loom.adapter.docker.distributed.realworld.HostManager;
+import com.hp.hpl.loom.adapter.docker.distributed.realworld.HostSnapshot;
+import com.hp.hpl.loom.adapter.docker.distributed.realworld.Volume;
+import com.hp.hpl.loom.adapter.docker.realworld.ContainerPort;
+import com.spotify.docker.client.messages.Container;
+import com.spotify.docker.client.messages.Image;
+
+/***
+ * HostManager.getAllContainers, getAllImages, getAllPorts and getAllVolumes, which the updaters
+ * call on every cycle, over hosts of Fixtures.CONTAINERS_PER_HOST inspected containers each.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class HostManagerBenchmark {
+    /***
+     * Containers over all the hosts.
+     */
+    @Param({"1000", "10000", "100000"})
+    private int containers;
+
+    private List<HostSnapshot> snapshots;
+
+    /***
+     * Builds the host snapshots.
+     */
+    @Setup
+    public void setUp() {
+        snapshots = Fixtures.snapshots(containers);
+    }
+
+    /***
+     * @return containers of all hosts
+     */
+    @Benchmark
+    public List<Container> getAllContainers() {
+        return HostManager.collectContainers(snapshots);
+    }
+
+    /***
+     * @return images of all hosts
+     */
+    @Benchmark
+    public List<Image> getAllImages() {
+        return HostManager.collectImages(snapshots);
+    }
+
+    /***
+     * @return ports of all hosts
+     */
+    @Benchmark
+    public List<ContainerPort> getAllPorts() {
+        return HostManager.collectPorts(snapshots);
+    }
+
+    /***
+     * @return volumes of all hosts
+     */
+    @Benchmark
+    public List<Volume> getAllVolumes() {
+        return HostManager.collectVolumes(snapshots);
+    }
+}
@@ -0,0 +1,79 @@
+/*******************************************************************************
+ * (c) Copyright 2017 Hewlett Packard Enterprise Development LP Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *******************************************************************************/
+package com.hp.hpl.loom.adapter.docker.benchmarks;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.hp.hpl.loom.adapter.docker.distributed.ImageItemUpdater;
+import com.hp.hpl.loom.adapter.docker.distributed.RegistryItemUpdater;
+import com.hp.hpl.loom.adapter.docker.realworld.Registry;
+import com.spotify.docker.client.messages.Image;
+
+/***
+ * Resource gathering of the ImageItemUpdater (merge of the daemon and registry images) and of the
+ * RegistryItemUpdater (registries holding each image). The daemons hold every image, the registries
+ * the first half of them, each one twice.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ImageAndRegistryBenchmark {
+    /***
+     * Distinct images.
+     */
+    @Param({"1000", "10000", "100000"})
+    private int images;
+
+    private List<Image> daemonImages;
+    private Map<Registry, List<Image>> imagesOnEachRegistry;
+
+    /***
+     * Builds the images and spreads them over the registries.
+     */
+    @Setup
+    public void setUp() {
+        daemonImages = Fixtures.images(images);
+        imagesOnEachRegistry = Fixtures.registries(daemonImages.subList(0, images / 2));
+    }
+
+    /***
+     * @return every available image, see ImageItemUpdater.gatherResources
+     */
+    @Benchmark
+    public List<Image> mergeImages() {
+        return ImageItemUpdater.mergeImages(daemonImages, imagesOnEachRegistry.values());
+    }
+
+    /***
+     * @return registries holding each image, see RegistryItemUpdater.gatherResources
+     */
+    @Benchmark
+    public Map<String, List<Registry>> indexRegistriesByImage() {
+        return RegistryItemUpdater.indexRegistriesByImage(imagesOnEachRegistry);
+    }
+}
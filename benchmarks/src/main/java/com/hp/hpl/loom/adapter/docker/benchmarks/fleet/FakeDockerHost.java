@@ -0,0 +1,917 @@
+/*******************************************************************************
+ * (c) Copyright 2017 Hewlett Packard Enterprise Development LP Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *******************************************************************************/
+package com.hp.hpl.loom.adapter.docker.benchmarks.fleet;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/***
+ * In-process stand-in for a docker daemon and its cAdvisor, for load tests. It implements the part
+ * of the Engine API the adapter uses (/info, /containers/json, /containers/{id}/json, container
+ * create/start/stop/restart/remove, /images/json, /images/create and /events) and the cAdvisor
+ * /api/v2.0/summary and /api/v2.0/machine endpoints, each one on its own loopback port.
+ *
+ * <p>
+ * The content is synthetic: containers named service-N, one image per
+ * FakeHostSettings.containersPerImage containers, one published port and one volume per container,
+ * and a running cAdvisor container if enabled. Latency, failures and churn follow the given
+ * FakeHostSettings.
+ */
+public class FakeDockerHost {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final Pattern API_VERSION = Pattern.compile("^/v[0-9.]+(/.*)$");
+    private static final Pattern CONTAINER = Pattern.compile("^/containers/([^/]+)(/[a-z]+)?$");
+
+    private static final int HTTP_OK = 200;
+    private static final int HTTP_CREATED = 201;
+    private static final int HTTP_NO_CONTENT = 204;
+    private static final int HTTP_NOT_FOUND = 404;
+    private static final int HTTP_SERVER_ERROR = 500;
+
+    private static final int BACKLOG = 128;
+    private static final long CHURN_PERIOD_MS = 100;
+    private static final long EVENT_POLL_MS = 500;
+    private static final int CONTAINER_PORT = 8080;
+    private static final int HOST_PORT_BASE = 32768;
+    private static final int CORES = 8;
+    private static final long CPU_FREQUENCY_KHZ = 2600000L;
+    private static final long MEMORY_CAPACITY = 32L * 1024 * 1024 * 1024;
+    private static final long FS_CAPACITY = 512L * 1024 * 1024 * 1024;
+    private static final long CONTAINER_MEMORY = 256L * 1024 * 1024;
+    private static final int CHURN_OPERATIONS = 3;
+    private static final String CADVISOR_IMAGE = "google/cadvisor:v0.26.1";
+
+    private final int index;
+    private final FakeHostSettings settings;
+    private final Random random;
+    private final long bootTime = System.currentTimeMillis();
+
+    private final Map<String, FakeContainer> containers = new ConcurrentHashMap<String, FakeContainer>();
+    private final Map<String, String> images = new ConcurrentHashMap<String, String>();
+    private final AtomicInteger nextContainer = new AtomicInteger();
+
+    private final List<BlockingQueue<ObjectNode>> eventSubscribers = new CopyOnWriteArrayList<BlockingQueue<ObjectNode>>();
+
+    private HttpServer engine;
+    private HttpServer cAdvisor;
+    private volatile boolean running = false;
+    private double churnBudget = 0;
+
+    /***
+     * State of a container of the fake daemon.
+     */
+    private static final class FakeContainer {
+        private final String id;
+        private final String name;
+        private final String image;
+        private final String imageId;
+        private final long created;
+        private final int hostPort;
+        private volatile boolean up;
+        private volatile long startedAt;
+
+        private FakeContainer(final String id, final String name, final String image, final String imageId,
+                final int hostPort, final boolean up) {
+            this.id = id;
+            this.name = name;
+            this.image = image;
+            this.imageId = imageId;
+            this.created = System.currentTimeMillis() / TimeUnit.SECONDS.toMillis(1);
+            this.hostPort = hostPort;
+            this.up = up;
+            this.startedAt = created;
+        }
+    }
+
+    /***
+     * @param index index of the host in its fleet, makes ids unique across hosts
+     * @param settings behaviour of the host
+     */
+    public FakeDockerHost(final int index, final FakeHostSettings settings) {
+        this.index = index;
+        this.settings = settings;
+        this.random = new Random(index);
+
+        for (int i = 0; i < settings.getContainers(); i++) {
+            addContainer(i, random.nextDouble() < settings.getRunningRatio());
+        }
+
+        if (settings.isCAdvisor()) {
+            String imageId = imageId(CADVISOR_IMAGE);
+
+            images.put(imageId, CADVISOR_IMAGE);
+            containers.put(containerId(Integer.MAX_VALUE),
+                    new FakeContainer(containerId(Integer.MAX_VALUE), "cadvisor", CADVISOR_IMAGE, imageId, 0, true));
+        }
+    }
+
+    /***
+     * Starts answering on two ephemeral loopback ports.
+     *
+     * @param executor runs the request handlers, may be shared by the hosts of a fleet
+     * @param churn schedules the churn, may be shared by the hosts of a fleet
+     * @throws IOException if a port cannot be bound
+     */
+    public void start(final ExecutorService executor, final ScheduledExecutorService churn) throws IOException {
+        running = true;
+
+        engine = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), BACKLOG);
+        engine.createContext("/", this::handleEngine);
+        engine.setExecutor(executor);
+        engine.start();
+
+        cAdvisor = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), BACKLOG);
+        cAdvisor.createContext("/", this::handleCAdvisor);
+        cAdvisor.setExecutor(executor);
+        cAdvisor.start();
+
+        if (settings.getChurnPerSecond() > 0) {
+            churn.scheduleAtFixedRate(this::churn, CHURN_PERIOD_MS, CHURN_PERIOD_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /***
+     * Stops answering and closes the event streams.
+     */
+    public void stop() {
+        running = false;
+
+        if (engine != null) {
+            engine.stop(0);
+        }
+        if (cAdvisor != null) {
+            cAdvisor.stop(0);
+        }
+    }
+
+    /***
+     * @return the definition of this host, as found on the hosts.json file
+     */
+    public ObjectNode getHostDefinition() {
+        ObjectNode definition = MAPPER.createObjectNode();
+
+        definition.put("address", engine.getAddress().getAddress().getHostAddress());
+        definition.put("port", Integer.toString(engine.getAddress().getPort()));
+        definition.put("tlsRequired", "false");
+        definition.put("cAdvisorPort", Integer.toString(cAdvisor.getAddress().getPort()));
+
+        return definition;
+    }
+
+    /***
+     * @return containers on the host, including stopped ones and the cAdvisor
+     */
+    public int getContainerCount() {
+        return containers.size();
+    }
+
+    private String containerId(final int containerIndex) {
+        return String.format("%016x%048x", index, containerIndex);
+    }
+
+    private static String imageId(final String image) {
+        return "sha256:" + String.format("%064x", image.hashCode() & Integer.MAX_VALUE);
+    }
+
+    private FakeContainer addContainer(final int containerIndex, final boolean up) {
+        String image = "repository/service-" + containerIndex / settings.getContainersPerImage() + ":latest";
+        String imageId = imageId(image);
+        FakeContainer container = new FakeContainer(containerId(containerIndex), "service-" + containerIndex, image,
+                imageId, HOST_PORT_BASE + containerIndex % (Short.MAX_VALUE - HOST_PORT_BASE), up);
+
+        images.put(imageId, image);
+        containers.put(container.id, container);
+        nextContainer.set(Math.max(nextContainer.get(), containerIndex + 1));
+
+        return container;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+    // Engine API
+
+    private void handleEngine(final HttpExchange exchange) throws IOException {
+        try {
+            String path = exchange.getRequestURI().getPath();
+            Matcher versioned = API_VERSION.matcher(path);
+
+            if (versioned.matches()) {
+                path = versioned.group(1);
+            }
+
+            if ("/events".equals(path)) {
+                streamEvents(exchange);
+                return;
+            }
+
+            if (!delayOrFail(exchange)) {
+                return;
+            }
+
+            routeEngine(exchange, exchange.getRequestMethod(), path, query(exchange));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void routeEngine(final HttpExchange exchange, final String method, final String path,
+            final Map<String, String> query) throws IOException {
+        Matcher container = CONTAINER.matcher(path);
+
+        if ("/_ping".equals(path)) {
+            sendText(exchange, HTTP_OK, "OK");
+        } else if ("/info".equals(path)) {
+            sendJson(exchange, HTTP_OK, info());
+        } else if ("/containers/json".equals(path)) {
+            sendJson(exchange, HTTP_OK, listContainers(query));
+        } else if ("/containers/create".equals(path) && "POST".equals(method)) {
+            sendJson(exchange, HTTP_CREATED, createContainer(exchange, query));
+        } else if ("/images/json".equals(path)) {
+            sendJson(exchange, HTTP_OK, listImages());
+        } else if ("/images/create".equals(path) && "POST".equals(method)) {
+            pullImage(exchange, query);
+        } else if (container.matches()) {
+            FakeContainer target = findContainer(container.group(1));
+            String operation = container.group(2) == null ? "" : container.group(2);
+
+            if (target == null) {
+                sendJson(exchange, HTTP_NOT_FOUND, message("No such container: " + container.group(1)));
+            } else if ("/json".equals(operation)) {
+                sendJson(exchange, HTTP_OK, inspect(target));
+            } else if ("/stats".equals(operation)) {
+                sendJson(exchange, HTTP_OK, stats(target));
+            } else if ("DELETE".equals(method) && operation.isEmpty()) {
+                removeContainer(target);
+                sendEmpty(exchange, HTTP_NO_CONTENT);
+            } else if ("POST".equals(method)) {
+                operate(target, operation.substring(1));
+                sendEmpty(exchange, HTTP_NO_CONTENT);
+            } else {
+                sendJson(exchange, HTTP_NOT_FOUND, message("page not found"));
+            }
+        } else {
+            sendJson(exchange, HTTP_NOT_FOUND, message("page not found"));
+        }
+    }
+
+    private ObjectNode info() {
+        ObjectNode info = MAPPER.createObjectNode();
+        long up = containers.values().stream().filter((container) -> container.up).count();
+
+        info.put("ID", "FAKE:" + index);
+        info.put("Containers", containers.size());
+        info.put("ContainersRunning", up);
+        info.put("ContainersStopped", containers.size() - up);
+        info.put("Images", images.size());
+        info.put("Driver", "overlay2");
+        info.putArray("DriverStatus");
+        info.put("DockerRootDir", "/var/lib/docker");
+        info.put("SystemTime", "2017-07-14T10:00:00.000000000Z");
+        info.put("Debug", false);
+        info.put("NFd", containers.size());
+        info.put("NGoroutines", containers.size());
+        info.put("NEventsListener", eventSubscribers.size());
+        info.put("KernelVersion", "4.4.0-fake");
+        info.put("OperatingSystem", "Ubuntu 16.04.2 LTS");
+        info.put("IndexServerAddress", "https://index.docker.io/v1/");
+        info.put("InitPath", "");
+        info.put("InitSha1", "");
+        info.put("ExecutionDriver", "");
+        info.put("IPv4Forwarding", true);
+        info.put("MemoryLimit", true);
+        info.put("SwapLimit", true);
+        info.put("NCPU", CORES);
+        info.put("MemTotal", MEMORY_CAPACITY);
+        info.put("Name", "fake-host-" + index);
+        info.putArray("Labels");
+        info.put("ServerVersion", "17.06.0-ce");
+        info.putObject("RegistryConfig").putArray("InsecureRegistryCIDRs");
+
+        return info;
+    }
+
+    private ArrayNode listContainers(final Map<String, String> query) throws IOException {
+        boolean all = "1".equals(query.get("all")) || "true".equals(query.get("all"));
+        List<String> idFilters = new ArrayList<String>();
+
+        if (query.containsKey("filters")) {
+            JsonNode ids = MAPPER.readTree(query.get("filters")).get("id");
+
+            if (ids != null) {
+                ids.forEach((id) -> idFilters.add(id.asText()));
+            }
+        }
+
+        ArrayNode list = MAPPER.createArrayNode();
+
+        for (FakeContainer container : containers.values()) {
+            if ((all || container.up) && matchesAny(container.id, idFilters)) {
+                list.add(listed(container));
+            }
+        }
+
+        return list;
+    }
+
+    private static boolean matchesAny(final String id, final List<String> prefixes) {
+        if (prefixes.isEmpty()) {
+            return true;
+        }
+
+        return prefixes.stream().anyMatch(id::startsWith);
+    }
+
+    private ObjectNode listed(final FakeContainer container) {
+        ObjectNode json = MAPPER.createObjectNode();
+
+        json.put("Id", container.id);
+        json.putArray("Names").add("/" + container.name);
+        json.put("Image", container.image);
+        json.put("ImageID", container.imageId);
+        json.put("Command", "/bin/sh -c 'exec service'");
+        json.put("Created", container.created);
+        json.put("State", container.up ? "running" : "exited");
+        json.put("Status", container.up ? "Up " + uptime(container) : "Exited (0) 5 minutes ago");
+        json.putObject("Labels");
+
+        ArrayNode ports = json.putArray("Ports");
+        if (container.hostPort > 0) {
+            ObjectNode port = ports.addObject();
+            port.put("PrivatePort", CONTAINER_PORT);
+            port.put("Type", "tcp");
+            if (container.up) {
+                port.put("IP", "0.0.0.0");
+                port.put("PublicPort", container.hostPort);
+            }
+            addMount(json.putArray("Mounts"), container);
+        }
+
+        return json;
+    }
+
+    private static String uptime(final FakeContainer container) {
+        long seconds = System.currentTimeMillis() / TimeUnit.SECONDS.toMillis(1) - container.startedAt;
+
+        return seconds < TimeUnit.MINUTES.toSeconds(1) ? seconds + " seconds"
+                : TimeUnit.SECONDS.toMinutes(seconds) + " minutes";
+    }
+
+    private static void addMount(final ArrayNode mounts, final FakeContainer container) {
+        ObjectNode mount = mounts.addObject();
+
+        mount.put("Type", "volume");
+        mount.put("Name", "data-" + container.name);
+        mount.put("Source", "/var/lib/docker/volumes/data-" + container.name + "/_data");
+        mount.put("Destination", "/data");
+        mount.put("Driver", "local");
+        mount.put("Mode", "");
+        mount.put("RW", true);
+        mount.put("Propagation", "");
+    }
+
+    private ObjectNode inspect(final FakeContainer container) {
+        ObjectNode json = MAPPER.createObjectNode();
+
+        json.put("Id", container.id);
+        json.put("Created", "2017-07-14T10:00:00.000000000Z");
+        json.put("Path", "/bin/sh");
+        json.putArray("Args").add("-c").add("exec service");
+        json.putObject("Config").put("Image", container.image);
+        json.putObject("HostConfig").putArray("Links");
+        json.put("Image", container.imageId);
+        json.put("Name", "/" + container.name);
+        json.put("ResolvConfPath", "");
+        json.put("HostnamePath", "");
+        json.put("HostsPath", "");
+        json.put("Driver", "overlay2");
+        json.put("ProcessLabel", "");
+        json.put("MountLabel", "");
+        json.put("AppArmorProfile", "");
+        json.put("LogPath", "");
+        json.put("RestartCount", 0);
+
+        ObjectNode state = json.putObject("State");
+        state.put("Status", container.up ? "running" : "exited");
+        state.put("Running", container.up);
+        state.put("Paused", false);
+        state.put("Restarting", false);
+        state.put("Pid", container.up ? Math.abs(container.id.hashCode()) : 0);
+        state.put("ExitCode", 0);
+        state.put("StartedAt", "2017-07-14T10:00:00.000000000Z");
+        state.put("FinishedAt", "0001-01-01T00:00:00Z");
+
+        ObjectNode ports = json.putObject("NetworkSettings").putObject("Ports");
+        ArrayNode mounts = json.putArray("Mounts");
+        if (container.hostPort > 0) {
+            // as docker, bindings only show while the container runs
+            if (container.up) {
+                ObjectNode binding = ports.putArray(CONTAINER_PORT + "/tcp").addObject();
+                binding.put("HostIp", "0.0.0.0");
+                binding.put("HostPort", Integer.toString(container.hostPort));
+            }
+            addMount(mounts, container);
+        }
+
+        return json;
+    }
+
+    /***
+     * A one-shot docker stats sample (stream=false): cumulated CPU time in nanoseconds, as exposed
+     * to Prometheus, and memory usage. Every field is present, as the client rejects missing ones.
+     */
+    private ObjectNode stats(final FakeContainer container) {
+        long now = System.currentTimeMillis();
+        double share = (container.id.hashCode() & Integer.MAX_VALUE) % CORES / (double) CORES;
+        long running = container.up ? now - TimeUnit.SECONDS.toMillis(container.startedAt) : 0;
+        long cpuNanos = (long) (TimeUnit.MILLISECONDS.toNanos(running) * share);
+        ObjectNode json = MAPPER.createObjectNode();
+
+        json.put("read", Instant.ofEpochMilli(now).toString());
+
+        ObjectNode memory = json.putObject("memory_stats");
+        ObjectNode memoryDetails = memory.putObject("stats");
+        for (String field : new String[] {"active_anon", "active_file", "cache", "hierarchical_memory_limit",
+            "inactive_anon", "inactive_file", "mapped_file", "pgfault", "pgmajfault", "pgpgin", "pgpgout", "rss",
+            "rss_huge", "unevictable", "writeback"}) {
+            memoryDetails.put(field, 0);
+            memoryDetails.put("total_" + field, 0);
+        }
+        memory.put("max_usage", container.up ? CONTAINER_MEMORY : 0);
+        memory.put("usage", container.up ? CONTAINER_MEMORY : 0);
+        memory.put("failcnt", 0);
+        memory.put("limit", MEMORY_CAPACITY);
+
+        ObjectNode blockIo = json.putObject("blkio_stats");
+        for (String field : new String[] {"io_service_bytes_recursive", "io_serviced_recursive",
+            "io_queue_recursive", "io_service_time_recursive", "io_wait_time_recursive", "io_merged_recursive",
+            "io_time_recursive", "sectors_recursive"}) {
+            blockIo.putArray(field);
+        }
+
+        addCpuStats(json.putObject("cpu_stats"), cpuNanos, now);
+        addCpuStats(json.putObject("precpu_stats"), cpuNanos, now);
+
+        return json;
+    }
+
+    private static void addCpuStats(final ObjectNode cpuStats, final long cpuNanos, final long now) {
+        ObjectNode cpuUsage = cpuStats.putObject("cpu_usage");
+        cpuUsage.put("total_usage", cpuNanos);
+        ArrayNode perCpu = cpuUsage.putArray("percpu_usage");
+        for (int core = 0; core < CORES; core++) {
+            perCpu.add(cpuNanos / CORES);
+        }
+        cpuUsage.put("usage_in_kernelmode", cpuNanos / 2);
+        cpuUsage.put("usage_in_usermode", cpuNanos - cpuNanos / 2);
+
+        cpuStats.put("system_cpu_usage", TimeUnit.MILLISECONDS.toNanos(now) * CORES);
+
+        ObjectNode throttling = cpuStats.putObject("throttling_data");
+        throttling.put("periods", 0);
+        throttling.put("throttled_periods", 0);
+        throttling.put("throttled_time", 0);
+    }
+
+    private ObjectNode createContainer(final HttpExchange exchange, final Map<String, String> query)
+            throws IOException {
+        JsonNode body = MAPPER.readTree(exchange.getRequestBody());
+        FakeContainer container = addContainer(nextContainer.getAndIncrement(), false);
+
+        if (body != null && body.hasNonNull("Image")) {
+            images.putIfAbsent(imageId(body.get("Image").asText()), body.get("Image").asText());
+        }
+
+        publish("container", "create", container.id);
+
+        ObjectNode creation = MAPPER.createObjectNode();
+        creation.put("Id", container.id);
+        creation.putNull("Warnings");
+
+        return creation;
+    }
+
+    private FakeContainer findContainer(final String idOrName) {
+        FakeContainer container = containers.get(idOrName);
+
+        if (container != null) {
+            return container;
+        }
+
+        for (FakeContainer candidate : containers.values()) {
+            if (candidate.id.startsWith(idOrName) || candidate.name.equals(idOrName.replaceFirst("^/", ""))) {
+                return candidate;
+            }
+        }
+
+        return null;
+    }
+
+    private void operate(final FakeContainer container, final String operation) {
+        switch (operation) {
+            case "start":
+                setUp(container, true);
+                break;
+            case "stop":
+            case "kill":
+                setUp(container, false);
+                break;
+            case "restart":
+                setUp(container, false);
+                setUp(container, true);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void setUp(final FakeContainer container, final boolean up) {
+        if (container.up == up) {
+            return;
+        }
+
+        container.up = up;
+        if (up) {
+            container.startedAt = System.currentTimeMillis() / TimeUnit.SECONDS.toMillis(1);
+        }
+
+        publish("container", up ? "start" : "die", container.id);
+    }
+
+    private void removeContainer(final FakeContainer container) {
+        containers.remove(container.id);
+        publish("container", "destroy", container.id);
+    }
+
+    private ArrayNode listImages() {
+        ArrayNode list = MAPPER.createArrayNode();
+
+        images.forEach((id, tag) -> {
+            ObjectNode image = list.addObject();
+
+            image.put("Id", id);
+            image.put("ParentId", "");
+            image.putArray("RepoTags").add(tag);
+            image.putArray("RepoDigests");
+            image.put("Created", Long.toString(System.currentTimeMillis() / TimeUnit.SECONDS.toMillis(1)));
+            image.put("Size", CONTAINER_MEMORY);
+            image.put("VirtualSize", CONTAINER_MEMORY);
+            image.putObject("Labels");
+        });
+
+        return list;
+    }
+
+    private void pullImage(final HttpExchange exchange, final Map<String, String> query) throws IOException {
+        String tag = query.containsKey("tag") ? query.get("tag") : "latest";
+        String image = query.get("fromImage") + ":" + tag;
+
+        images.put(imageId(image), image);
+        publish("image", "pull", image);
+
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(HTTP_OK, 0);
+
+        try (OutputStream body = exchange.getResponseBody()) {
+            ObjectNode progress = MAPPER.createObjectNode();
+
+            progress.put("status", "Pulling from " + query.get("fromImage"));
+            progress.put("id", tag);
+            body.write(MAPPER.writeValueAsBytes(progress));
+            body.write('\n');
+
+            progress = MAPPER.createObjectNode();
+            progress.put("status", "Status: Downloaded newer image for " + image);
+            body.write(MAPPER.writeValueAsBytes(progress));
+            body.write('\n');
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+    // Events and churn
+
+    private void streamEvents(final HttpExchange exchange) throws IOException {
+        BlockingQueue<ObjectNode> queue = new LinkedBlockingQueue<ObjectNode>();
+
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(HTTP_OK, 0);
+        eventSubscribers.add(queue);
+
+        try (OutputStream body = exchange.getResponseBody()) {
+            body.flush();
+
+            while (running) {
+                ObjectNode event = queue.poll(EVENT_POLL_MS, TimeUnit.MILLISECONDS);
+
+                if (event != null) {
+                    body.write(MAPPER.writeValueAsBytes(event));
+                    body.write('\n');
+                    body.flush();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            eventSubscribers.remove(queue);
+        }
+    }
+
+    private void publish(final String type, final String action, final String actorId) {
+        long now = System.currentTimeMillis();
+        ObjectNode event = MAPPER.createObjectNode();
+
+        event.put("Type", type);
+        event.put("Action", action);
+        event.put("status", action);
+        event.put("id", actorId);
+        event.putObject("Actor").put("ID", actorId).putObject("Attributes");
+        event.put("time", TimeUnit.MILLISECONDS.toSeconds(now));
+        event.put("timeNano", TimeUnit.MILLISECONDS.toNanos(now));
+
+        eventSubscribers.forEach((queue) -> queue.offer(event));
+    }
+
+    private synchronized void churn() {
+        churnBudget += settings.getChurnPerSecond() * CHURN_PERIOD_MS / TimeUnit.SECONDS.toMillis(1);
+
+        while (churnBudget >= 1) {
+            churnBudget--;
+
+            List<FakeContainer> candidates = new ArrayList<FakeContainer>(containers.values());
+            candidates.removeIf((container) -> container.hostPort == 0);
+
+            if (candidates.isEmpty()) {
+                return;
+            }
+
+            FakeContainer target = candidates.get(random.nextInt(candidates.size()));
+
+            switch (random.nextInt(CHURN_OPERATIONS)) {
+                case 0:
+                    setUp(target, !target.up);
+                    break;
+                case 1:
+                    setUp(target, false);
+                    setUp(target, true);
+                    break;
+                default:
+                    // replaced by a new container of the same image
+                    removeContainer(target);
+                    FakeContainer replacement = addContainer(nextContainer.getAndIncrement(), false);
+                    publish("container", "create", replacement.id);
+                    setUp(replacement, true);
+                    break;
+            }
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+    // cAdvisor
+
+    private void handleCAdvisor(final HttpExchange exchange) throws IOException {
+        try {
+            if (!delayOrFail(exchange)) {
+                return;
+            }
+
+            String path = exchange.getRequestURI().getPath();
+
+            if (!settings.isCAdvisor()) {
+                sendJson(exchange, HTTP_NOT_FOUND, message("cAdvisor disabled"));
+            } else if (path.startsWith("/api/v2.0/machine")) {
+                sendJson(exchange, HTTP_OK, machine());
+            } else if (path.startsWith("/api/v2.0/summary/docker")) {
+                ObjectNode summary = MAPPER.createObjectNode();
+
+                summary.set("/docker", usage(CORES / 2, MEMORY_CAPACITY / 2));
+                containers.values().stream().filter((container) -> container.up).forEach(
+                        (container) -> summary.set("/docker/" + container.id, usage(1, CONTAINER_MEMORY)));
+
+                sendJson(exchange, HTTP_OK, summary);
+            } else if (path.startsWith("/api/v2.0/summary")) {
+                ObjectNode summary = MAPPER.createObjectNode();
+
+                summary.set("/", usage(CORES, MEMORY_CAPACITY));
+
+                sendJson(exchange, HTTP_OK, summary);
+            } else if (path.equals("/metrics")) {
+                sendText(exchange, HTTP_OK, exposition());
+            } else {
+                sendJson(exchange, HTTP_NOT_FOUND, message("page not found"));
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /***
+     * A cAdvisor Prometheus exposition: CPU time and memory of the machine (one CPU series per core)
+     * and of the running containers (a single cpu="total" series), among network and file system
+     * series the adapter has to skip.
+     */
+    private String exposition() {
+        long now = System.currentTimeMillis();
+        double uptime = (now - bootTime) / (double) TimeUnit.SECONDS.toMillis(1);
+        StringBuilder out = new StringBuilder();
+
+        out.append("# HELP container_cpu_usage_seconds_total Cumulative cpu time consumed in seconds.\n");
+        out.append("# TYPE container_cpu_usage_seconds_total counter\n");
+        for (int core = 0; core < CORES; core++) {
+            out.append(String.format(Locale.ROOT,
+                    "container_cpu_usage_seconds_total{cpu=\"cpu%02d\",id=\"/\"} %e\n", core, uptime / 2));
+        }
+        containers.values().stream().filter((container) -> container.up).forEach((container) -> {
+            double share = (container.id.hashCode() & Integer.MAX_VALUE) % CORES / (double) CORES;
+            double running = now / (double) TimeUnit.SECONDS.toMillis(1) - container.startedAt;
+
+            out.append(String.format(Locale.ROOT,
+                    "container_cpu_usage_seconds_total{cpu=\"total\",id=\"/docker/%s\",image=\"%s\",name=\"%s\"} %e\n",
+                    container.id, container.image, container.name, running * share));
+        });
+
+        out.append("# TYPE container_memory_usage_bytes gauge\n");
+        out.append("container_memory_usage_bytes{id=\"/\"} ").append(MEMORY_CAPACITY / 2).append('\n');
+        out.append("container_memory_usage_bytes{id=\"/system.slice/docker.service\"} ").append(CONTAINER_MEMORY)
+                .append('\n');
+        containers.values().stream().filter((container) -> container.up).forEach((container) -> {
+            out.append("container_memory_usage_bytes{id=\"/docker/").append(container.id).append("\",name=\"")
+                    .append(container.name).append("\"} ").append(CONTAINER_MEMORY).append('\n');
+            out.append("container_network_receive_bytes_total{id=\"/docker/").append(container.id)
+                    .append("\",interface=\"eth0\"} ").append(container.created).append('\n');
+        });
+
+        return out.toString();
+    }
+
+    private ObjectNode machine() {
+        ObjectNode machine = MAPPER.createObjectNode();
+
+        machine.put("num_cores", CORES);
+        machine.put("cpu_frequency_khz", CPU_FREQUENCY_KHZ);
+        machine.put("memory_capacity", MEMORY_CAPACITY);
+        machine.put("machine_id", "fake-" + index);
+        machine.put("system_uuid", "fake-" + index);
+        machine.put("docker_version", "17.06.0-ce");
+        machine.put("kernel_version", "4.4.0-fake");
+
+        ObjectNode filesystem = machine.putArray("filesystems").addObject();
+        filesystem.put("device", "/dev/sda1");
+        filesystem.put("capacity", FS_CAPACITY);
+        filesystem.put("type", "vfs");
+
+        return machine;
+    }
+
+    /***
+     * A cAdvisor usage summary: latest, minute, hour and day usage of CPU (millicores) and memory
+     * (bytes), with random values up to the given maxima.
+     */
+    private static ObjectNode usage(final int cores, final long memory) {
+        ThreadLocalRandom values = ThreadLocalRandom.current();
+        long millicores = TimeUnit.SECONDS.toMillis(cores);
+        ObjectNode usage = MAPPER.createObjectNode();
+
+        usage.put("timestamp", "2017-07-14T10:00:00.000000000Z");
+
+        ObjectNode latest = usage.putObject("latest_usage");
+        latest.put("cpu", values.nextLong(millicores + 1));
+        latest.put("memory", values.nextLong(memory + 1));
+
+        for (String window : new String[] {"minute_usage", "hour_usage", "day_usage"}) {
+            ObjectNode derived = usage.putObject(window);
+
+            derived.put("percent_complete", 100);
+            derived.set("cpu", percentiles(values, millicores));
+            derived.set("memory", percentiles(values, memory));
+        }
+
+        return usage;
+    }
+
+    private static ObjectNode percentiles(final ThreadLocalRandom values, final long maximum) {
+        long max = values.nextLong(maximum + 1);
+        ObjectNode percentiles = MAPPER.createObjectNode();
+
+        percentiles.put("present", true);
+        percentiles.put("mean", max / 2);
+        percentiles.put("max", max);
+        percentiles.put("fifty", max / 2);
+        percentiles.put("ninety", max - max / 10);
+        percentiles.put("ninetyfive", max - max / 20);
+
+        return percentiles;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+    // HTTP helpers
+
+    /***
+     * Waits for the configured latency, then fails the request with the configured probability.
+     *
+     * @return false if the request was failed
+     */
+    private boolean delayOrFail(final HttpExchange exchange) throws IOException {
+        ThreadLocalRandom values = ThreadLocalRandom.current();
+        long delay = settings.getLatencyMillis();
+
+        if (settings.getLatencyJitterMillis() > 0) {
+            delay += (long) (-settings.getLatencyJitterMillis() * Math.log(1 - values.nextDouble()));
+        }
+
+        if (delay > 0) {
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        if (values.nextDouble() < settings.getErrorRate()) {
+            sendJson(exchange, HTTP_SERVER_ERROR, message("injected failure"));
+            return false;
+        }
+
+        return true;
+    }
+
+    private static Map<String, String> query(final HttpExchange exchange) throws UnsupportedEncodingException {
+        Map<String, String> query = new HashMap<String, String>();
+        String raw = exchange.getRequestURI().getRawQuery();
+
+        if (raw != null) {
+            for (String parameter : raw.split("&")) {
+                int separator = parameter.indexOf('=');
+
+                if (separator > 0) {
+                    query.put(URLDecoder.decode(parameter.substring(0, separator), "UTF-8"),
+                            URLDecoder.decode(parameter.substring(separator + 1), "UTF-8"));
+                }
+            }
+        }
+
+        return query;
+    }
+
+    private static ObjectNode message(final String message) {
+        return MAPPER.createObjectNode().put("message", message);
+    }
+
+    private static void sendJson(final HttpExchange exchange, final int status, final JsonNode json)
+            throws IOException {
+        byte[] body = MAPPER.writeValueAsBytes(json);
+
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, body.length);
+        exchange.getResponseBody().write(body);
+    }
+
+    private static void sendText(final HttpExchange exchange, final int status, final String text)
+            throws IOException {
+        byte[] body = text.getBytes(StandardCharsets.UTF_8);
+
+        exchange.getResponseHeaders().set("Content-Type", "text/plain");
+        exchange.sendResponseHeaders(status, body.length);
+        exchange.getResponseBody().write(body);
+    }
+
+    private static void sendEmpty(final HttpExchange exchange, final int status) throws IOException {
+        exchange.sendResponseHeaders(status, -1);
+    }
+}
@@ -0,0 +1,85 @@
+/*******************************************************************************
+ * (c) Copyright 2017 Hewlett Packard Enterprise Development LP Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *******************************************************************************/
+package com.hp.hpl.loom.adapter.docker.benchmarks.fleet;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/***
+ * A set of FakeDockerHosts sharing the same settings, and the host file describing them.
+ *
+ * <p>
+ * The hosts share one thread pool, unbounded since the event streams and the injected latency keep
+ * their threads busy.
+ */
+public class FakeFleet implements Fleet {
+    private final List<FakeDockerHost> hosts = new ArrayList<FakeDockerHost>();
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final ScheduledExecutorService churn = Executors.newSingleThreadScheduledExecutor();
+
+    /***
+     * Starts the hosts.
+     *
+     * @param size number of hosts
+     * @param settings behaviour of every host
+     * @throws IOException if a port cannot be bound
+     */
+    public FakeFleet(final int size, final FakeHostSettings settings) throws IOException {
+        for (int i = 0; i < size; i++) {
+            FakeDockerHost host = new FakeDockerHost(i, settings);
+
+            host.start(executor, churn);
+            hosts.add(host);
+        }
+    }
+
+    /***
+     * @return the hosts of the fleet
+     */
+    public List<FakeDockerHost> getHosts() {
+        return hosts;
+    }
+
+    @Override
+    public int size() {
+        return hosts.size();
+    }
+
+    @Override
+    public void writeHostFile(final File hostFile) throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        ObjectNode root = mapper.createObjectNode();
+        ArrayNode definitions = root.putArray("Hosts");
+
+        for (FakeDockerHost host : hosts) {
+            definitions.add(host.getHostDefinition());
+        }
+        root.putArray("PrivateRegistries");
+
+        mapper.writerWithDefaultPrettyPrinter().writeValue(hostFile, root);
+    }
+
+    @Override
+    public void close() {
+        churn.shutdownNow();
+        hosts.forEach(FakeDockerHost::stop);
+        executor.shutdownNow();
+    }
+}
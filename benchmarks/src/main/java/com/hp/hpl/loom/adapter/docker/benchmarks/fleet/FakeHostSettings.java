@@ -0,0 +1,147 @@
+/*******************************************************************************
+ * (c) Copyright 2017 Hewlett Packard Enterprise Development LP Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *******************************************************************************/
+package com.hp.hpl.loom.adapter.docker.benchmarks.fleet;
+
+/***
+ * Behaviour of a FakeDockerHost.
+ *
+ * <p>
+ * The latency of every answer is latencyMillis plus an exponentially distributed delay of mean
+ * latencyJitterMillis, which gives the long tail of a loaded daemon. A request fails with a 500
+ * with probability errorRate. Churn operations (a container stopped, started, or replaced by a new
+ * one) happen at churnPerSecond on average, and are published on the event stream.
+ */
+public class FakeHostSettings {
+    private static final int DEFAULT_CONTAINERS = 100;
+    private static final int DEFAULT_CONTAINERS_PER_IMAGE = 10;
+
+    private int containers = DEFAULT_CONTAINERS;
+    private int containersPerImage = DEFAULT_CONTAINERS_PER_IMAGE;
+    private double runningRatio = 0.75;
+    private long latencyMillis = 0;
+    private long latencyJitterMillis = 0;
+    private double errorRate = 0;
+    private double churnPerSecond = 0;
+    private boolean cAdvisor = true;
+
+    /***
+     * @return containers created on start, besides the cAdvisor container
+     */
+    public int getContainers() {
+        return containers;
+    }
+
+    /***
+     * @param containers containers created on start, besides the cAdvisor container
+     */
+    public void setContainers(final int containers) {
+        this.containers = containers;
+    }
+
+    /***
+     * @return containers instantiating each image
+     */
+    public int getContainersPerImage() {
+        return containersPerImage;
+    }
+
+    /***
+     * @param containersPerImage containers instantiating each image
+     */
+    public void setContainersPerImage(final int containersPerImage) {
+        this.containersPerImage = containersPerImage;
+    }
+
+    /***
+     * @return ratio of the containers running on start
+     */
+    public double getRunningRatio() {
+        return runningRatio;
+    }
+
+    /***
+     * @param runningRatio ratio of the containers running on start
+     */
+    public void setRunningRatio(final double runningRatio) {
+        this.runningRatio = runningRatio;
+    }
+
+    /***
+     * @return minimum latency of every answer, in milliseconds
+     */
+    public long getLatencyMillis() {
+        return latencyMillis;
+    }
+
+    /***
+     * @param latencyMillis minimum latency of every answer, in milliseconds
+     */
+    public void setLatencyMillis(final long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+    }
+
+    /***
+     * @return mean of the exponential delay added to the minimum latency, in milliseconds
+     */
+    public long getLatencyJitterMillis() {
+        return latencyJitterMillis;
+    }
+
+    /***
+     * @param latencyJitterMillis mean of the exponential delay added to the minimum latency, in
+     *        milliseconds
+     */
+    public void setLatencyJitterMillis(final long latencyJitterMillis) {
+        this.latencyJitterMillis = latencyJitterMillis;
+    }
+
+    /***
+     * @return probability of a request to fail, between 0 and 1
+     */
+    public double getErrorRate() {
+        return errorRate;
+    }
+
+    /***
+     * @param errorRate probability of a request to fail, between 0 and 1
+     */
+    public void setErrorRate(final double errorRate) {
+        this.errorRate = errorRate;
+    }
+
+    /***
+     * @return churn operations per second
+     */
+    public double getChurnPerSecond() {
+        return churnPerSecond;
+    }
+
+    /***
+     * @param churnPerSecond churn operations per second
+     */
+    public void setChurnPerSecond(final double churnPerSecond) {
+        this.churnPerSecond = churnPerSecond;
+    }
+
+    /***
+     * @return true if the host runs a cAdvisor
+     */
+    public boolean isCAdvisor() {
+        return cAdvisor;
+    }
+
+    /***
+     * @param cAdvisor true if the host runs a cAdvisor
+     */
+    public void setCAdvisor(final boolean cAdvisor) {
+        this.cAdvisor = cAdvisor;
+    }
+}
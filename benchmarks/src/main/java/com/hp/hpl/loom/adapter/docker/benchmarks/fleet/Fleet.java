@@ -0,0 +1,39 @@
+/*******************************************************************************
+ * (c) Copyright 2017 Hewlett Packard Enterprise Development LP Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *******************************************************************************/
+package com.hp.hpl.loom.adapter.docker.benchmarks.fleet;
+
+import java.io.File;
+import java.io.IOException;
+
+/***
+ * Local stand-ins for a set of docker hosts, the HostManager reaching them through the host file
+ * they describe.
+ */
+public interface Fleet extends AutoCloseable {
+    /***
+     * @return number of hosts
+     */
+    int size();
+
+    /***
+     * Writes the host file of the fleet, in the format read by the HostManager.
+     *
+     * @param hostFile file to write
+     * @throws IOException if the file cannot be written
+     */
+    void writeHostFile(File hostFile) throws IOException;
+
+    /***
+     * Stops every host.
+     */
+    @Override
+    void close();
+}
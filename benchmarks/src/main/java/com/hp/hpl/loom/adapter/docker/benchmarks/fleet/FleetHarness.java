@@ -0,0 +1,160 @@
+/*******************************************************************************
+ * (c) Copyright 2017 Hewlett Packard Enterprise Development LP Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *******************************************************************************/
+package com.hp.hpl.loom.adapter.docker.benchmarks.fleet;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.hp.hpl.loom.adapter.docker.benchmarks.replay.ReplayFleet;
+import com.hp.hpl.loom.adapter.docker.benchmarks.replay.TrafficArchive;
+import com.hp.hpl.loom.adapter.docker.distributed.realworld.Host;
+import com.hp.hpl.loom.adapter.docker.distributed.realworld.HostManager;
+
+/***
+ * Load test of the HostManager against a FakeFleet, or a ReplayFleet: measures the initialisation of
+ * the hosts, then the duration of consecutive refreshes.
+ *
+ * <p>
+ * The HostManager runs without adapter, its properties are taken from the system properties; any
+ * -Dkey=value given to the JVM (e.g. -DrefreshThreads=32 or -DeventMode=true) is thus applied. The
+ * options are given as --name=value:
+ *
+ * <pre>
+ * --hosts=200 --containers=100 --latency=5 --jitter=20 --errors=0.01 --churn=0.5 --cycles=20
+ * --cadvisor=true --timeout=300
+ * </pre>
+ *
+ * latency and jitter are in milliseconds, churn is in operations per second and per host, timeout
+ * is the maximal time in seconds given to the initialisation. To replay the traffic recorded by a
+ * TrafficRecorder instead, the hosts and their content coming from the archive:
+ *
+ * <pre>
+ * --replay=traffic.gz --timeScale=1 --cycles=20
+ * </pre>
+ *
+ * timeScale multiplies the recorded latencies: 1 for the original timing, 0 to answer at once.
+ */
+public final class FleetHarness {
+    private static final long POLL_MS = 50;
+    private static final int PERCENT = 100;
+    private static final int P95 = 95;
+
+    private FleetHarness() {}
+
+    /***
+     * @param args options, see the class documentation
+     * @throws Exception if the fleet cannot start
+     */
+    @SuppressWarnings("checkstyle:uncommentedmain")
+    public static void main(final String[] args) throws Exception {
+        Map<String, String> options = parse(args);
+        int cycles = Integer.parseInt(options.getOrDefault("cycles", "20"));
+        long timeout = TimeUnit.SECONDS.toNanos(Long.parseLong(options.getOrDefault("timeout", "300")));
+
+        FakeHostSettings settings = new FakeHostSettings();
+        settings.setContainers(Integer.parseInt(options.getOrDefault("containers", "100")));
+        settings.setLatencyMillis(Long.parseLong(options.getOrDefault("latency", "0")));
+        settings.setLatencyJitterMillis(Long.parseLong(options.getOrDefault("jitter", "0")));
+        settings.setErrorRate(Double.parseDouble(options.getOrDefault("errors", "0")));
+        settings.setChurnPerSecond(Double.parseDouble(options.getOrDefault("churn", "0")));
+        settings.setCAdvisor(Boolean.parseBoolean(options.getOrDefault("cadvisor", "true")));
+
+        int exitCode = 0;
+
+        try (Fleet fleet = options.containsKey("replay")
+                ? new ReplayFleet(TrafficArchive.read(new File(options.get("replay"))),
+                        Double.parseDouble(options.getOrDefault("timeScale", "1")))
+                : new FakeFleet(Integer.parseInt(options.getOrDefault("hosts", "200")), settings)) {
+            int hostCount = fleet.size();
+            File hostFile = File.createTempFile("hosts", ".json");
+            hostFile.deleteOnExit();
+            fleet.writeHostFile(hostFile);
+
+            System.setProperty("hostFile", hostFile.getAbsolutePath());
+            System.setProperty("waitAllHostInitializations", "true");
+            setDefault("minRefreshInterval", "0");
+            setDefault("watchHostFile", "false");
+
+            System.out.println("Fleet of " + hostCount + " hosts, host file " + hostFile);
+
+            long start = System.nanoTime();
+            HostManager hostManager = HostManager.getInstance(null);
+
+            while (hostManager.getHostList().size() < hostCount && System.nanoTime() - start < timeout) {
+                Thread.sleep(POLL_MS);
+            }
+
+            long initialisation = System.nanoTime() - start;
+            int initialised = hostManager.getHostList().size();
+            long withCAdvisor = hostManager.getHostList().stream().filter(Host::hasCAdvisorRunning).count();
+
+            System.out.printf("Initialisation: %d/%d hosts in %d ms, %d with cAdvisor%n", initialised, hostCount,
+                    TimeUnit.NANOSECONDS.toMillis(initialisation), withCAdvisor);
+
+            if (initialised < hostCount) {
+                exitCode = 1;
+            }
+
+            long[] durations = new long[cycles];
+
+            for (int i = 0; i < cycles; i++) {
+                long cycleStart = System.nanoTime();
+
+                hostManager.refreshHostsInformation();
+                durations[i] = System.nanoTime() - cycleStart;
+
+                long stale = hostManager.getHostList().stream().filter(Host::isStale).count();
+
+                System.out.printf("Refresh %d: %d ms, %d stale hosts%n", i + 1,
+                        TimeUnit.NANOSECONDS.toMillis(durations[i]), stale);
+            }
+
+            if (cycles > 0) {
+                Arrays.sort(durations);
+                System.out.printf("Refresh: min %d ms, median %d ms, p95 %d ms, max %d ms%n", millis(durations[0]),
+                        millis(durations[cycles / 2]), millis(durations[(cycles * P95 + PERCENT - 1) / PERCENT - 1]),
+                        millis(durations[cycles - 1]));
+            }
+        }
+
+        // The HostManager pools are not daemon threads.
+        System.exit(exitCode);
+    }
+
+    private static long millis(final long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    private static void setDefault(final String key, final String value) {
+        if (System.getProperty(key) == null) {
+            System.setProperty(key, value);
+        }
+    }
+
+    private static Map<String, String> parse(final String[] args) {
+        Map<String, String> options = new HashMap<String, String>();
+
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+
+            if (!arg.startsWith("--") || separator < 0) {
+                throw new IllegalArgumentException("Expected --name=value, got '" + arg + "'");
+            }
+
+            options.put(arg.substring(2, separator), arg.substring(separator + 1));
+        }
+
+        return options;
+    }
+}
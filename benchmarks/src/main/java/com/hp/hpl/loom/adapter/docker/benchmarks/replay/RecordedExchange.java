@@ -0,0 +1,113 @@
+/*******************************************************************************
+ * (c) Copyright 2017 Hewlett Packard Enterprise Development LP Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *******************************************************************************/
+package com.hp.hpl.loom.adapter.docker.benchmarks.replay;
+
+/***
+ * A request of the adapter to a docker daemon or a cAdvisor, and the response it got.
+ */
+public final class RecordedExchange {
+    /***
+     * Channel of the requests to the docker daemon.
+     */
+    public static final byte ENGINE = 0;
+
+    /***
+     * Channel of the requests to the cAdvisor.
+     */
+    public static final byte CADVISOR = 1;
+
+    private final int hostIndex;
+    private final byte channel;
+    private final String method;
+    private final String uri;
+    private final int status;
+    private final String contentType;
+    private final byte[] body;
+    private final long latencyMicros;
+
+    /***
+     * @param hostIndex index of the host on the recorded host file
+     * @param channel ENGINE or CADVISOR
+     * @param method HTTP method
+     * @param uri path and query of the request, as sent
+     * @param status status of the response
+     * @param contentType content type of the response, empty if none
+     * @param body body of the response
+     * @param latencyMicros time between the request and the end of the response
+     */
+    public RecordedExchange(final int hostIndex, final byte channel, final String method, final String uri,
+            final int status, final String contentType, final byte[] body, final long latencyMicros) {
+        this.hostIndex = hostIndex;
+        this.channel = channel;
+        this.method = method;
+        this.uri = uri;
+        this.status = status;
+        this.contentType = contentType;
+        this.body = body;
+        this.latencyMicros = latencyMicros;
+    }
+
+    /***
+     * @return index of the host on the recorded host file
+     */
+    public int getHostIndex() {
+        return hostIndex;
+    }
+
+    /***
+     * @return ENGINE or CADVISOR
+     */
+    public byte getChannel() {
+        return channel;
+    }
+
+    /***
+     * @return HTTP method
+     */
+    public String getMethod() {
+        return method;
+    }
+
+    /***
+     * @return path and query of the request, as sent
+     */
+    public String getUri() {
+        return uri;
+    }
+
+    /***
+     * @return status of the response
+     */
+    public int getStatus() {
+        return status;
+    }
+
+    /***
+     * @return content type of the response, empty if none
+     */
+    public String getContentType() {
+        return contentType;
+    }
+
+    /***
+     * @return body of the response, shared with the identical responses of the archive
+     */
+    public byte[] getBody() {
+        return body;
+    }
+
+    /***
+     * @return time between the request and the end of the response
+     */
+    public long getLatencyMicros() {
+        return latencyMicros;
+    }
+}
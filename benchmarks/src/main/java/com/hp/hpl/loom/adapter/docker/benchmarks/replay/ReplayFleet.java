@@ -0,0 +1,81 @@
+/*******************************************************************************
+ * (c) Copyright 2017 Hewlett Packard Enterprise Development LP Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *******************************************************************************/
+package com.hp.hpl.loom.adapter.docker.benchmarks.replay;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.hp.hpl.loom.adapter.docker.benchmarks.fleet.Fleet;
+
+/***
+ * Replays a TrafficArchive: one ReplayHost per recorded host.
+ */
+public class ReplayFleet implements Fleet {
+    private final List<ReplayHost> hosts = new ArrayList<ReplayHost>();
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    /***
+     * Starts the hosts.
+     *
+     * @param archive recorded traffic
+     * @param timeScale factor applied to the recorded latencies, 1 for the original timing
+     * @throws IOException if a port cannot be bound
+     */
+    public ReplayFleet(final TrafficArchive archive, final double timeScale) throws IOException {
+        List<List<RecordedExchange>> exchangesByHost = new ArrayList<List<RecordedExchange>>();
+
+        for (int i = 0; i < archive.getHosts().size(); i++) {
+            exchangesByHost.add(new ArrayList<RecordedExchange>());
+        }
+        for (RecordedExchange exchange : archive.getExchanges()) {
+            exchangesByHost.get(exchange.getHostIndex()).add(exchange);
+        }
+
+        for (int i = 0; i < archive.getHosts().size(); i++) {
+            ReplayHost host = new ReplayHost(archive.getHosts().get(i), exchangesByHost.get(i), timeScale);
+
+            host.start(executor);
+            hosts.add(host);
+        }
+    }
+
+    @Override
+    public int size() {
+        return hosts.size();
+    }
+
+    @Override
+    public void writeHostFile(final File hostFile) throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        ObjectNode root = mapper.createObjectNode();
+        ArrayNode definitions = root.putArray("Hosts");
+
+        for (ReplayHost host : hosts) {
+            definitions.add(host.getHostDefinition());
+        }
+        root.putArray("PrivateRegistries");
+
+        mapper.writerWithDefaultPrettyPrinter().writeValue(hostFile, root);
+    }
+
+    @Override
+    public void close() {
+        hosts.forEach(ReplayHost::stop);
+        executor.shutdownNow();
+    }
+}
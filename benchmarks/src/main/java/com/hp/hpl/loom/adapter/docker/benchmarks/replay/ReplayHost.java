@@ -0,0 +1,210 @@
+/*******************************************************************************
+ * (c) Copyright 2017 Hewlett Packard Enterprise Development LP Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *******************************************************************************/
+package com.hp.hpl.loom.adapter.docker.benchmarks.replay;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/***
+ * Answers the requests of the adapter with the responses recorded for one host, on two loopback
+ * ports: one for the docker daemon, one for the cAdvisor.
+ *
+ * <p>
+ * A request gets the next recorded response of the same method and URI, or of the same method and
+ * path when the query differs (e.g. container ids in the filters); after the last one, the
+ * responses start over, so that the replay can last longer than the recording. Each response is
+ * delayed by its recorded latency times the time scale: 1 for the original timing, 0 to answer at
+ * once. The event stream is not recorded, it stays open and silent.
+ */
+public class ReplayHost {
+    private static final int HTTP_OK = 200;
+    private static final int HTTP_NO_CONTENT = 204;
+    private static final int HTTP_NOT_MODIFIED = 304;
+    private static final int HTTP_NOT_FOUND = 404;
+    private static final int BACKLOG = 128;
+    private static final long EVENT_POLL_MS = 500;
+
+    private final JsonNode definition;
+    private final double timeScale;
+
+    // channel, method and URI -> responses, then channel, method and path -> responses
+    private final Map<String, Responses> byUri = new HashMap<String, Responses>();
+    private final Map<String, Responses> byPath = new HashMap<String, Responses>();
+
+    private HttpServer engine;
+    private HttpServer cAdvisor;
+    private volatile boolean running = false;
+
+    /***
+     * Recorded responses to the same request, served in turn.
+     */
+    private static final class Responses {
+        private final List<RecordedExchange> exchanges = new ArrayList<RecordedExchange>();
+        private final AtomicInteger next = new AtomicInteger();
+
+        private RecordedExchange next() {
+            return exchanges.get(Math.floorMod(next.getAndIncrement(), exchanges.size()));
+        }
+    }
+
+    /***
+     * @param definition definition of the recorded host, from the recorded host file
+     * @param exchanges exchanges recorded for the host, in order
+     * @param timeScale factor applied to the recorded latencies
+     */
+    public ReplayHost(final JsonNode definition, final List<RecordedExchange> exchanges, final double timeScale) {
+        this.definition = definition;
+        this.timeScale = timeScale;
+
+        for (RecordedExchange exchange : exchanges) {
+            String request = exchange.getChannel() + " " + exchange.getMethod() + " ";
+
+            byUri.computeIfAbsent(request + exchange.getUri(), (key) -> new Responses()).exchanges.add(exchange);
+            byPath.computeIfAbsent(request + pathOf(exchange.getUri()), (key) -> new Responses()).exchanges
+                    .add(exchange);
+        }
+    }
+
+    /***
+     * Starts answering on two ephemeral loopback ports.
+     *
+     * @param executor runs the request handlers, may be shared by the hosts of a fleet
+     * @throws IOException if a port cannot be bound
+     */
+    public void start(final ExecutorService executor) throws IOException {
+        running = true;
+
+        engine = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), BACKLOG);
+        engine.createContext("/", (exchange) -> replay(exchange, RecordedExchange.ENGINE));
+        engine.setExecutor(executor);
+        engine.start();
+
+        cAdvisor = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), BACKLOG);
+        cAdvisor.createContext("/", (exchange) -> replay(exchange, RecordedExchange.CADVISOR));
+        cAdvisor.setExecutor(executor);
+        cAdvisor.start();
+    }
+
+    /***
+     * Stops answering and closes the event streams.
+     */
+    public void stop() {
+        running = false;
+
+        if (engine != null) {
+            engine.stop(0);
+        }
+        if (cAdvisor != null) {
+            cAdvisor.stop(0);
+        }
+    }
+
+    /***
+     * @return the recorded definition of the host, pointing to this replay
+     */
+    public ObjectNode getHostDefinition() {
+        ObjectNode replayed = definition.deepCopy();
+
+        replayed.put("address", engine.getAddress().getAddress().getHostAddress());
+        replayed.put("port", Integer.toString(engine.getAddress().getPort()));
+        replayed.put("tlsRequired", "false");
+        replayed.put("cAdvisorPort", Integer.toString(cAdvisor.getAddress().getPort()));
+
+        return replayed;
+    }
+
+    private void replay(final HttpExchange exchange, final byte channel) throws IOException {
+        try {
+            String uri = exchange.getRequestURI().toString();
+            String request = channel + " " + exchange.getRequestMethod() + " ";
+
+            if (channel == RecordedExchange.ENGINE && pathOf(uri).endsWith("/events")) {
+                holdEventStream(exchange);
+                return;
+            }
+
+            Responses responses = byUri.get(request + uri);
+
+            if (responses == null) {
+                responses = byPath.get(request + pathOf(uri));
+            }
+
+            if (responses == null) {
+                byte[] body = "{\"message\":\"not recorded\"}".getBytes(StandardCharsets.UTF_8);
+
+                exchange.getResponseHeaders().set("Content-Type", "application/json");
+                exchange.sendResponseHeaders(HTTP_NOT_FOUND, body.length);
+                exchange.getResponseBody().write(body);
+                return;
+            }
+
+            RecordedExchange recorded = responses.next();
+            long delayMicros = (long) (recorded.getLatencyMicros() * timeScale);
+
+            if (delayMicros > 0) {
+                try {
+                    TimeUnit.MICROSECONDS.sleep(delayMicros);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            if (!recorded.getContentType().isEmpty()) {
+                exchange.getResponseHeaders().set("Content-Type", recorded.getContentType());
+            }
+
+            if (recorded.getStatus() == HTTP_NO_CONTENT || recorded.getStatus() == HTTP_NOT_MODIFIED) {
+                exchange.sendResponseHeaders(recorded.getStatus(), -1);
+            } else {
+                exchange.sendResponseHeaders(recorded.getStatus(), recorded.getBody().length);
+                exchange.getResponseBody().write(recorded.getBody());
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void holdEventStream(final HttpExchange exchange) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(HTTP_OK, 0);
+
+        try (OutputStream body = exchange.getResponseBody()) {
+            body.flush();
+
+            while (running) {
+                Thread.sleep(EVENT_POLL_MS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static String pathOf(final String uri) {
+        int query = uri.indexOf('?');
+
+        return query < 0 ? uri : uri.substring(0, query);
+    }
+}
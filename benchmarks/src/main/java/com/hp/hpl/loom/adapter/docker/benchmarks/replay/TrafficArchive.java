@@ -0,0 +1,193 @@
+/*******************************************************************************
+ * (c) Copyright 2017 Hewlett Packard Enterprise Development LP Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *******************************************************************************/
+package com.hp.hpl.loom.adapter.docker.benchmarks.replay;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/***
+ * Recorded traffic of the adapter: the definitions of the recorded hosts, then their exchanges in
+ * the order they completed.
+ *
+ * <p>
+ * The archive is a gzip stream of a header (magic, version, host definitions as JSON) followed by
+ * one record per exchange. A response body is stored once: the following identical bodies (e.g.
+ * the inspection of a container that did not change, asked again at each refresh) only store the
+ * index of the first one, which gzip alone cannot do once the payloads outgrow its 32KB window.
+ */
+public final class TrafficArchive {
+    private static final int MAGIC = 0x4c545241;
+    private static final int VERSION = 1;
+    private static final int NEW_BODY = -1;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final List<JsonNode> hosts;
+    private final List<RecordedExchange> exchanges;
+
+    private TrafficArchive(final List<JsonNode> hosts, final List<RecordedExchange> exchanges) {
+        this.hosts = Collections.unmodifiableList(hosts);
+        this.exchanges = Collections.unmodifiableList(exchanges);
+    }
+
+    /***
+     * @return definitions of the recorded hosts, as found on the recorded host file
+     */
+    public List<JsonNode> getHosts() {
+        return hosts;
+    }
+
+    /***
+     * @return exchanges, in the order they completed
+     */
+    public List<RecordedExchange> getExchanges() {
+        return exchanges;
+    }
+
+    /***
+     * Loads an archive in memory.
+     *
+     * @param file archive written by a Writer
+     * @return the archive
+     * @throws IOException if the file cannot be read or is not an archive
+     */
+    public static TrafficArchive read(final File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new GZIPInputStream(new FileInputStream(file), BUFFER_SIZE)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("'" + file + "' is not a traffic archive of version " + VERSION);
+            }
+
+            List<JsonNode> hosts = new ArrayList<JsonNode>();
+            int hostCount = in.readInt();
+
+            for (int i = 0; i < hostCount; i++) {
+                hosts.add(MAPPER.readTree(in.readUTF()));
+            }
+
+            List<RecordedExchange> exchanges = new ArrayList<RecordedExchange>();
+            List<byte[]> bodies = new ArrayList<byte[]>();
+
+            while (true) {
+                int hostIndex;
+
+                try {
+                    hostIndex = in.readInt();
+                } catch (EOFException e) {
+                    // Archive closed by the writer, or truncated between two records.
+                    break;
+                }
+
+                byte channel = in.readByte();
+                String method = in.readUTF();
+                String uri = in.readUTF();
+                int status = in.readShort();
+                String contentType = in.readUTF();
+                long latencyMicros = in.readLong();
+                int bodyIndex = in.readInt();
+                byte[] body;
+
+                if (bodyIndex == NEW_BODY) {
+                    body = new byte[in.readInt()];
+                    in.readFully(body);
+                    bodies.add(body);
+                } else {
+                    body = bodies.get(bodyIndex);
+                }
+
+                exchanges.add(new RecordedExchange(hostIndex, channel, method, uri, status, contentType, body,
+                        latencyMicros));
+            }
+
+            return new TrafficArchive(hosts, exchanges);
+        }
+    }
+
+    /***
+     * Appends exchanges to a new archive. Safe for concurrent use.
+     */
+    public static final class Writer implements Closeable {
+        private final DataOutputStream out;
+        private final Map<ByteBuffer, Integer> bodies = new HashMap<ByteBuffer, Integer>();
+
+        /***
+         * Creates the archive and writes its header.
+         *
+         * @param file archive to create
+         * @param hosts definitions of the recorded hosts
+         * @throws IOException if the file cannot be written
+         */
+        public Writer(final File file, final List<JsonNode> hosts) throws IOException {
+            out = new DataOutputStream(
+                    new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(file), BUFFER_SIZE)));
+
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(hosts.size());
+            for (JsonNode host : hosts) {
+                out.writeUTF(MAPPER.writeValueAsString(host));
+            }
+        }
+
+        /***
+         * Appends an exchange.
+         *
+         * @param exchange exchange to append
+         * @throws IOException if the file cannot be written
+         */
+        public synchronized void write(final RecordedExchange exchange) throws IOException {
+            out.writeInt(exchange.getHostIndex());
+            out.writeByte(exchange.getChannel());
+            out.writeUTF(exchange.getMethod());
+            out.writeUTF(exchange.getUri());
+            out.writeShort(exchange.getStatus());
+            out.writeUTF(exchange.getContentType());
+            out.writeLong(exchange.getLatencyMicros());
+
+            ByteBuffer body = ByteBuffer.wrap(exchange.getBody());
+            Integer bodyIndex = bodies.get(body);
+
+            if (bodyIndex == null) {
+                bodies.put(body, bodies.size());
+                out.writeInt(NEW_BODY);
+                out.writeInt(exchange.getBody().length);
+                out.write(exchange.getBody());
+            } else {
+                out.writeInt(bodyIndex);
+            }
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,282 @@
+/*******************************************************************************
+ * (c) Copyright 2017 Hewlett Packard Enterprise Development LP Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *******************************************************************************/
+package com.hp.hpl.loom.adapter.docker.benchmarks.replay;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/***
+ * Records the traffic between the adapter and real docker daemons and cAdvisors into a
+ * TrafficArchive, for a later replay by a ReplayFleet.
+ *
+ * <p>
+ * The recorder stands between both: it reads the host file of the adapter, starts a forwarding
+ * proxy for the daemon and for the cAdvisor of each host, and writes a new host file pointing to
+ * them. Loom (or the FleetHarness) then runs on the new host file as long as the recording should
+ * last. Hosts requiring TLS are left out, the recorder cannot present their client certificates.
+ * The event streams are forwarded but not recorded.
+ *
+ * <pre>
+ * --hostFile=hosts.json --archive=traffic.gz --proxyHostFile=hosts-recording.json --port=0
+ * </pre>
+ *
+ * The proxies listen on consecutive ports from the given one, on ephemeral ports by default; the
+ * recording stops, and the archive is closed, when the JVM terminates.
+ */
+public final class TrafficRecorder implements AutoCloseable {
+    private static final int HTTP_BAD_GATEWAY = 502;
+    private static final int HTTP_NO_CONTENT = 204;
+    private static final int HTTP_NOT_MODIFIED = 304;
+    private static final int HTTP_ERROR = 400;
+    private static final int BACKLOG = 128;
+    private static final int BUFFER_SIZE = 8192;
+    private static final String DEFAULT_CADVISOR_PORT = "8080";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final TrafficArchive.Writer archive;
+    private final List<HttpServer> proxies = new ArrayList<HttpServer>();
+    private final ArrayNode proxyDefinitions = MAPPER.createArrayNode();
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    /***
+     * Starts the proxies of the hosts not requiring TLS.
+     *
+     * @param hostFile host file of the adapter
+     * @param archiveFile archive to create
+     * @param firstPort port of the first proxy, 0 for ephemeral ports
+     * @throws IOException if the host file cannot be read, the archive created or a port bound
+     */
+    public TrafficRecorder(final File hostFile, final File archiveFile, final int firstPort) throws IOException {
+        List<JsonNode> hosts = new ArrayList<JsonNode>();
+
+        for (JsonNode host : MAPPER.readTree(hostFile).get("Hosts")) {
+            if (host.get("tlsRequired").asBoolean()) {
+                System.err.println("Not recording " + host + ": TLS is not supported");
+            } else {
+                hosts.add(host);
+            }
+        }
+
+        archive = new TrafficArchive.Writer(archiveFile, hosts);
+
+        int port = firstPort;
+
+        for (int i = 0; i < hosts.size(); i++) {
+            JsonNode host = hosts.get(i);
+            String address = host.get("address").asText();
+            String cAdvisorPort =
+                    host.hasNonNull("cAdvisorPort") ? host.get("cAdvisorPort").asText() : DEFAULT_CADVISOR_PORT;
+
+            HttpServer engine = startProxy(port, i, RecordedExchange.ENGINE,
+                    "http://" + address + ":" + host.get("port").asText());
+            HttpServer cAdvisor = startProxy(firstPort == 0 ? 0 : port + 1, i, RecordedExchange.CADVISOR,
+                    "http://" + address + ":" + cAdvisorPort);
+            port += 2;
+
+            ObjectNode proxied = host.deepCopy();
+            proxied.put("address", engine.getAddress().getHostString());
+            proxied.put("port", Integer.toString(engine.getAddress().getPort()));
+            proxied.put("cAdvisorPort", Integer.toString(cAdvisor.getAddress().getPort()));
+            proxyDefinitions.add(proxied);
+        }
+    }
+
+    /***
+     * Writes the host file pointing to the proxies.
+     *
+     * @param hostFile file to write
+     * @throws IOException if the file cannot be written
+     */
+    public void writeProxyHostFile(final File hostFile) throws IOException {
+        ObjectNode root = MAPPER.createObjectNode();
+
+        root.set("Hosts", proxyDefinitions);
+        root.putArray("PrivateRegistries");
+
+        MAPPER.writerWithDefaultPrettyPrinter().writeValue(hostFile, root);
+    }
+
+    @Override
+    public void close() throws IOException {
+        proxies.forEach((proxy) -> proxy.stop(0));
+        executor.shutdownNow();
+        archive.close();
+    }
+
+    private HttpServer startProxy(final int port, final int hostIndex, final byte channel, final String upstream)
+            throws IOException {
+        HttpServer proxy = HttpServer.create(new InetSocketAddress("localhost", port), BACKLOG);
+
+        proxy.createContext("/", (exchange) -> forward(exchange, hostIndex, channel, upstream));
+        proxy.setExecutor(executor);
+        proxy.start();
+        proxies.add(proxy);
+
+        return proxy;
+    }
+
+    private void forward(final HttpExchange exchange, final int hostIndex, final byte channel, final String upstream)
+            throws IOException {
+        String uri = exchange.getRequestURI().toString();
+        String method = exchange.getRequestMethod();
+
+        try {
+            long start = System.nanoTime();
+            HttpURLConnection connection = (HttpURLConnection) new URL(upstream + uri).openConnection();
+
+            connection.setRequestMethod(method);
+            for (Map.Entry<String, List<String>> header : exchange.getRequestHeaders().entrySet()) {
+                if (isForwarded(header.getKey())) {
+                    header.getValue().forEach((value) -> connection.addRequestProperty(header.getKey(), value));
+                }
+            }
+
+            byte[] requestBody = readAll(exchange.getRequestBody());
+            if (requestBody.length > 0) {
+                connection.setDoOutput(true);
+                try (OutputStream out = connection.getOutputStream()) {
+                    out.write(requestBody);
+                }
+            }
+
+            int status = connection.getResponseCode();
+            String contentType = connection.getContentType() == null ? "" : connection.getContentType();
+            InputStream upstreamBody = status >= HTTP_ERROR ? connection.getErrorStream() : connection.getInputStream();
+
+            if (!contentType.isEmpty()) {
+                exchange.getResponseHeaders().set("Content-Type", contentType);
+            }
+
+            if (channel == RecordedExchange.ENGINE && exchange.getRequestURI().getPath().endsWith("/events")) {
+                relay(upstreamBody, exchange, status);
+                return;
+            }
+
+            byte[] body = upstreamBody == null ? new byte[0] : readAll(upstreamBody);
+            long latencyMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start);
+
+            archive.write(
+                    new RecordedExchange(hostIndex, channel, method, uri, status, contentType, body, latencyMicros));
+
+            if (status == HTTP_NO_CONTENT || status == HTTP_NOT_MODIFIED) {
+                exchange.sendResponseHeaders(status, -1);
+            } else {
+                exchange.sendResponseHeaders(status, body.length);
+                exchange.getResponseBody().write(body);
+            }
+        } catch (IOException e) {
+            System.err.println("Could not forward " + method + " " + uri + " to " + upstream + ": " + e);
+            exchange.sendResponseHeaders(HTTP_BAD_GATEWAY, -1);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static void relay(final InputStream upstreamBody, final HttpExchange exchange, final int status)
+            throws IOException {
+        exchange.sendResponseHeaders(status, 0);
+
+        try (InputStream in = upstreamBody; OutputStream out = exchange.getResponseBody()) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+
+            while ((read = in.read(buffer)) >= 0) {
+                out.write(buffer, 0, read);
+                out.flush();
+            }
+        }
+    }
+
+    /***
+     * The connection headers are set by the HttpURLConnection; compression is not asked for, the
+     * recorded body must be the one the adapter parses.
+     */
+    private static boolean isForwarded(final String header) {
+        return !"Host".equalsIgnoreCase(header) && !"Connection".equalsIgnoreCase(header)
+                && !"Content-Length".equalsIgnoreCase(header) && !"Transfer-Encoding".equalsIgnoreCase(header)
+                && !"Accept-Encoding".equalsIgnoreCase(header);
+    }
+
+    private static byte[] readAll(final InputStream in) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int read;
+
+        while ((read = in.read(buffer)) >= 0) {
+            bytes.write(buffer, 0, read);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    /***
+     * @param args options, see the class documentation
+     * @throws Exception if the recording cannot start
+     */
+    @SuppressWarnings("checkstyle:uncommentedmain")
+    public static void main(final String[] args) throws Exception {
+        String hostFile = "hosts.json";
+        String archiveFile = "traffic.gz";
+        String proxyHostFile = "hosts-recording.json";
+        int port = 0;
+
+        for (String arg : args) {
+            String value = arg.substring(arg.indexOf('=') + 1);
+
+            if (arg.startsWith("--hostFile=")) {
+                hostFile = value;
+            } else if (arg.startsWith("--archive=")) {
+                archiveFile = value;
+            } else if (arg.startsWith("--proxyHostFile=")) {
+                proxyHostFile = value;
+            } else if (arg.startsWith("--port=")) {
+                port = Integer.parseInt(value);
+            } else {
+                throw new IllegalArgumentException("Unknown option '" + arg + "'");
+            }
+        }
+
+        File archive = new File(archiveFile);
+        TrafficRecorder recorder = new TrafficRecorder(new File(hostFile), archive, port);
+
+        recorder.writeProxyHostFile(new File(proxyHostFile));
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                recorder.close();
+            } catch (IOException e) {
+                System.err.println("Could not close " + archive + ": " + e);
+            }
+        }));
+
+        System.out.println("Recording into " + archiveFile + ", point the adapter to " + proxyHostFile);
+        Thread.currentThread().join();
+    }
+}
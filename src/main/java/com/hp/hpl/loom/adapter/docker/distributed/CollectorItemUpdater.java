@@ -0,0 +1,204 @@
+/*******************************************************************************
+ * (c) Copyright 2017 Hewlett Packard Enterprise Development LP Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *******************************************************************************/
+package com.hp.hpl.loom.adapter.docker.distributed;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.hp.hpl.loom.adapter.AggregationUpdater;
+import com.hp.hpl.loom.adapter.BaseAdapter;
+import com.hp.hpl.loom.adapter.ConnectedItem;
+import com.hp.hpl.loom.adapter.docker.distributed.metrics.HostMetrics;
+import com.hp.hpl.loom.adapter.docker.distributed.realworld.Host;
+import com.hp.hpl.loom.adapter.docker.distributed.realworld.HostCollection;
+import com.hp.hpl.loom.adapter.docker.distributed.realworld.HostManager;
+import com.hp.hpl.loom.adapter.docker.items.CollectorItem;
+import com.hp.hpl.loom.adapter.docker.items.CollectorItemAttributes;
+import com.hp.hpl.loom.adapter.docker.items.Relationships;
+import com.hp.hpl.loom.adapter.docker.items.Types;
+import com.hp.hpl.loom.exceptions.NoSuchItemTypeException;
+import com.hp.hpl.loom.exceptions.NoSuchProviderException;
+import com.hp.hpl.loom.model.Aggregation;
+import com.hp.hpl.loom.model.CoreItemAttributes.ChangeStatus;
+
+/***
+ * Collects the health of the collection of every host, from its metrics, so that slow or failing
+ * daemons can be sorted and grouped in Loom. Hosts that could not be reached yet, thus are not on
+ * the host list, are collected from the circuit breaker of their recovery.
+ */
+public class CollectorItemUpdater
+        extends AggregationUpdater<CollectorItem, CollectorItemAttributes, HostCollection> {
+
+    private static final String COLLECTOR_DESCRIPTION = "Collection of a host running a docker daemon";
+    private static final float PERCENT = 100f;
+
+    protected DockerDistributedCollector dockerCollector = null;
+
+    /**
+     * Constructs a CollectorItemUpdater.
+     *
+     * @param aggregation The aggregation this update will update
+     * @param adapter The baseAdapter this updater is part of
+     * @param DockerDistributedCollector The collector it uses
+     *
+     * @throws NoSuchItemTypeException Thrown if the ItemType isn't found
+     * @throws NoSuchProviderException thrown if adapter is not known
+     */
+    public CollectorItemUpdater(final Aggregation aggregation, final BaseAdapter adapter,
+            final DockerDistributedCollector dockerCollector) throws NoSuchItemTypeException, NoSuchProviderException {
+        super(aggregation, adapter, dockerCollector);
+        this.dockerCollector = dockerCollector;
+
+        dockerCollector.getUpdaterGraph().setResourceSource(Types.COLLECTOR_TYPE_ID, this::gatherResources);
+    }
+
+    /**
+     * The collection of a host is identified by the host UID.
+     *
+     * @return the docker address of the host
+     */
+    @Override
+    protected String getItemId(final HostCollection argCollection) {
+        return argCollection.getHostUID();
+    }
+
+    /***
+     * This must return a brand new Iterator every collection cycle giving access to all the
+     * resources that AggregationUpdater is observing.
+     *
+     */
+    @Override
+    protected Iterator<HostCollection> getResourceIterator() {
+        return dockerCollector.getUpdaterGraph().iterateResources(Types.COLLECTOR_TYPE_ID, this::gatherResources);
+    }
+
+    /***
+     * Lists the hosts, once refreshed by the host updater, and the hosts pending recovery.
+     *
+     * @return the resources
+     */
+    protected List<HostCollection> gatherResources() {
+        return HostManager.getInstance(adapter).getHostCollections();
+    }
+
+    @Override
+    protected Iterator<HostCollection> getUserResourceIterator(final Collection<HostCollection> data) {
+        return data.iterator();
+    }
+
+    /**
+     * This method should return an Item only set with its logicalId and ItemType.
+     */
+    @Override
+    protected CollectorItem createEmptyItem(final String logicalId) {
+        CollectorItem item = new CollectorItem(logicalId, itemType);
+        return item;
+    }
+
+    /**
+     * This should return a newly created CoreItemAttributes object based on data observed from the
+     * resource.
+     */
+    @Override
+    protected CollectorItemAttributes createItemAttributes(final HostCollection resource) {
+        CollectorItemAttributes attr = new CollectorItemAttributes();
+
+        attr.setHostUID(resource.getHostUID());
+
+        attr.setItemId(getItemId(resource));
+        attr.setItemName(resource.getHostUID());
+        attr.setItemDescription(COLLECTOR_DESCRIPTION);
+
+        updateMetrics(resource, attr);
+
+        return attr;
+    }
+
+    /***
+     * The metrics change on every cycle, without impact on the aggregations. Only a change of
+     * circuit state or staleness moves the item to another group, thus updates the aggregation.
+     *
+     * @param collectorAttributes The Collector Item Attributes
+     * @param resource The collection of the monitored host
+     * @return
+     */
+    @Override
+    protected ChangeStatus compareItemAttributesToResource(final CollectorItemAttributes collectorAttributes,
+            final HostCollection resource) {
+        String circuitState = collectorAttributes.getCircuitState();
+        String stale = collectorAttributes.getStale();
+
+        updateMetrics(resource, collectorAttributes);
+
+        if (!collectorAttributes.getCircuitState().equals(circuitState)
+                || !collectorAttributes.getStale().equals(stale)) {
+            return ChangeStatus.CHANGED_UPDATE;
+        }
+
+        return ChangeStatus.CHANGED_IGNORE;
+    }
+
+    /***
+     * The collection of a host monitors that host, once it has an item.
+     *
+     * @param collectorItem the collector item that Items will be connected to
+     * @param resource the collection of the monitored host
+     */
+    @Override
+    protected void setRelationships(final ConnectedItem collectorItem, final HostCollection resource) {
+        if (!resource.isPending()) {
+            collectorItem.setRelationshipWithType(adapter.getProvider(), Types.HOST_TYPE_ID, resource.getHostUID(),
+                    Relationships.MONITORS_TYPE);
+        }
+    }
+
+    private void updateMetrics(final HostCollection collection, final CollectorItemAttributes attr) {
+        if (collection.isPending()) {
+            updatePendingMetrics(collection, attr);
+            return;
+        }
+
+        Host host = collection.getHost();
+        HostMetrics metrics = host.getMetrics();
+
+        attr.setLastRefreshDuration(TimeUnit.NANOSECONDS.toMillis(metrics.getLastRefreshNanos()));
+        attr.setApiCallsPerCycle(metrics.getLastCycleCalls());
+        attr.setInspectionCacheSize((long) host.getSnapshot().getInspections().size());
+        attr.setRefreshFailures(metrics.getRefreshFailures().getCount());
+
+        double hitRate = metrics.getLastCycleHitRate();
+        attr.setInspectionHitRate(hitRate < 0 ? null : (float) (hitRate * PERCENT));
+
+        attr.setCircuitState(host.getCircuitBreaker().getState().name());
+        attr.setStale(host.isStale() ? "yes" : "no");
+
+        long lastSuccessfulRefresh = host.getLastSuccessfulRefresh();
+        attr.setStalenessAge(lastSuccessfulRefresh == 0 ? null
+                : TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis() - lastSuccessfulRefresh));
+    }
+
+    /***
+     * A host pending recovery was never refreshed: only its failed attempts are known.
+     */
+    private void updatePendingMetrics(final HostCollection collection, final CollectorItemAttributes attr) {
+        attr.setLastRefreshDuration(null);
+        attr.setApiCallsPerCycle(null);
+        attr.setInspectionCacheSize(null);
+        attr.setInspectionHitRate(null);
+        attr.setRefreshFailures((long) collection.getCircuitBreaker().getConsecutiveFailures());
+
+        attr.setCircuitState(collection.getCircuitBreaker().getState().name());
+        attr.setStale("yes");
+        attr.setStalenessAge(null);
+    }
+}
@@ -0,0 +1,119 @@
+/*******************************************************************************
+ * (c) Copyright 2017 Hewlett Packard Enterprise Development LP Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *******************************************************************************/
+package com.hp.hpl.loom.adapter.docker.distributed;
+
+import java.util.List;
+
+/***
+ * Formats the container attributes derived from the container list: label, name and overall
+ * status. These run for every container on every cycle, thus they allocate nothing but their
+ * result.
+ */
+public final class ContainerFormat {
+    /***
+     * Overall status of running containers.
+     */
+    public static final String STATUS_UP = "Up";
+
+    /***
+     * Overall status of any other container.
+     */
+    public static final String STATUS_STOPPED = "Stopped";
+
+    private static final String UP = "up";
+
+    private ContainerFormat() {}
+
+    /***
+     * @param names container names
+     * @return the names as printed by List.toString(), e.g. "[/web, /proxy/web]"
+     */
+    public static String label(final List<String> names) {
+        StringBuilder label = new StringBuilder(namesLength(names) + 2 * names.size());
+
+        label.append('[');
+        for (int i = 0; i < names.size(); i++) {
+            if (i > 0) {
+                label.append(", ");
+            }
+            label.append(names.get(i));
+        }
+        label.append(']');
+
+        return label.toString();
+    }
+
+    /***
+     * @param names container names
+     * @return the names enclosed in brackets, e.g. "{[/web][/proxy/web]}", or an empty string if
+     *         the container has no names.
+     */
+    public static String name(final List<String> names) {
+        if (names == null || names.isEmpty()) {
+            return "";
+        }
+
+        StringBuilder name = new StringBuilder(namesLength(names) + 2 * names.size() + 2);
+
+        name.append('{');
+        for (int i = 0; i < names.size(); i++) {
+            name.append('[').append(names.get(i)).append(']');
+        }
+        name.append('}');
+
+        return name.toString();
+    }
+
+    /***
+     * @param names container names
+     * @return the first name, e.g. "/web", or null if the container has no names (e.g. while it
+     *         is being removed)
+     */
+    public static String primaryName(final List<String> names) {
+        return names == null || names.isEmpty() ? null : names.get(0);
+    }
+
+    /***
+     * Classifies the status reported by docker (e.g. "Up 5 minutes", "Exited (0) 2 hours ago").
+     *
+     * @param status status reported by docker
+     * @return STATUS_UP if the container is running, STATUS_STOPPED otherwise.
+     */
+    public static String overallStatus(final String status) {
+        return isUp(status) ? STATUS_UP : STATUS_STOPPED;
+    }
+
+    /***
+     * Like the former status.toLowerCase().contains("up"), but without copying the status.
+     *
+     * @param status status reported by docker
+     * @return true if the status mentions "up", in any case.
+     */
+    public static boolean isUp(final String status) {
+        for (int i = 0; i <= status.length() - UP.length(); i++) {
+            if (status.regionMatches(true, i, UP, 0, UP.length())) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static int namesLength(final List<String> names) {
+        int length = 0;
+
+        for (int i = 0; i < names.size(); i++) {
+            length += names.get(i).length();
+        }
+
+        return length;
+    }
+}
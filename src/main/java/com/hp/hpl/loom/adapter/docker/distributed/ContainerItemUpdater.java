@@ -10,29 +10,34 @@
  *******************************************************************************/
 package com.hp.hpl.loom.adapter.docker.distributed;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
-import com.fasterxml.jackson.databind.JsonNode;
 import com.hp.hpl.loom.adapter.AggregationUpdater;
 import com.hp.hpl.loom.adapter.BaseAdapter;
 import com.hp.hpl.loom.adapter.BaseItemCollector;
 import com.hp.hpl.loom.adapter.ConnectedItem;
+import com.hp.hpl.loom.adapter.docker.distributed.realworld.AdapterProperties;
 import com.hp.hpl.loom.adapter.docker.distributed.realworld.Host;
 import com.hp.hpl.loom.adapter.docker.distributed.realworld.HostManager;
+import com.hp.hpl.loom.adapter.docker.distributed.realworld.HostSnapshot;
+import com.hp.hpl.loom.adapter.docker.distributed.realworld.ResourceChangeLog;
+import com.hp.hpl.loom.adapter.docker.distributed.realworld.UsageStatistics;
 import com.hp.hpl.loom.adapter.docker.items.ContainerItem;
 import com.hp.hpl.loom.adapter.docker.items.ContainerItemAttributes;
 import com.hp.hpl.loom.adapter.docker.items.HostItemAttributes;
 import com.hp.hpl.loom.adapter.docker.items.Relationships;
 import com.hp.hpl.loom.adapter.docker.items.Types;
-import com.hp.hpl.loom.adapter.docker.items.Utils;
 import com.hp.hpl.loom.exceptions.NoSuchItemTypeException;
 import com.hp.hpl.loom.exceptions.NoSuchProviderException;
 import com.hp.hpl.loom.model.Aggregation;
@@ -61,6 +66,30 @@ public class ContainerItemUpdater extends AggregationUpdater<ContainerItem, Cont
 
     protected DockerDistributedCollector dockerDistributedCollector = null;
 
+    /*
+     * Delta mode (deltaMode): containers that did not change since the previous cycle are reported
+     * as unchanged, without building their attributes, and their relationships are replayed from the
+     * previous cycle instead of being discovered again. Containers of a host whose digest did not
+     * change are not even looked up in the change log. Running containers of hosts with cAdvisor
+     * are still updated on every cycle, since their statistics always change, and so are containers
+     * whose status text aged ("Up 5 minutes", then "Up 2 hours").
+     */
+    private final boolean deltaMode;
+
+    // Generations of the container changes (see ResourceChangeLog) seen by the previous and the
+    // current cycle.
+    private volatile long previousGeneration = -1;
+    private volatile long currentGeneration = -1;
+
+    // Snapshot of each host seen by the current cycle, and hosts unchanged since the previous cycle
+    // (same digest, no container restarted): their containers are all unchanged.
+    private volatile Map<String, HostSnapshot> hostSnapshots = new HashMap<String, HostSnapshot>();
+    private volatile Set<String> unchangedHosts = new HashSet<String>();
+
+    // container id -> relationships declared on the last cycle it changed
+    private final Map<String, ContainerRelationships> relationshipCache =
+            new ConcurrentHashMap<String, ContainerRelationships>();
+
     /**
      * Constructs a ContainerItemUpdater.
      *
@@ -76,6 +105,9 @@ public class ContainerItemUpdater extends AggregationUpdater<ContainerItem, Cont
             throws NoSuchItemTypeException, NoSuchProviderException {
         super(aggregation, adapter, dockerDistributedCollector);
         this.dockerDistributedCollector = dockerDistributedCollector;
+        this.deltaMode = AdapterProperties.getBoolean(adapter, "deltaMode", false);
+
+        dockerDistributedCollector.getUpdaterGraph().setResourceSource(Types.CONTAINER_TYPE_ID, this::gatherResources);
     }
 
     /**
@@ -98,9 +130,55 @@ public class ContainerItemUpdater extends AggregationUpdater<ContainerItem, Cont
      */
     @Override
     protected Iterator<Container> getResourceIterator() {
-        List<Container> containerList = HostManager.getInstance(adapter).getAllContainers();
+        return dockerDistributedCollector.getUpdaterGraph().iterateResources(Types.CONTAINER_TYPE_ID,
+                this::gatherResources);
+    }
+
+    /***
+     * Lists the containers of all hosts. Gathered in advance, once the hosts are refreshed (see
+     * UpdaterGraph).
+     *
+     * @return the resources
+     */
+    protected List<Container> gatherResources() {
+        if (!deltaMode) {
+            return HostManager.getInstance(adapter).getAllContainers();
+        }
+
+        ResourceChangeLog changes = HostManager.getInstance(adapter).getContainerChanges();
+
+        // Read before the snapshots: changes published meanwhile are then seen on the next cycle.
+        long generation = changes.getGeneration();
+
+        List<Container> containerList = new ArrayList<Container>();
+        Map<String, HostSnapshot> snapshots = new HashMap<String, HostSnapshot>();
+        Set<String> unchanged = new HashSet<String>();
+
+        for (Host host : HostManager.getInstance(adapter).getHostList()) {
+            HostSnapshot snapshot = host.getSnapshot();
+
+            containerList.addAll(snapshot.getContainers());
+            snapshots.put(host.getUID(), snapshot);
+
+            if (snapshot.isUnchangedSince(hostSnapshots.get(host.getUID()))) {
+                unchanged.add(host.getUID());
+            }
+        }
+
+        previousGeneration = currentGeneration;
+        currentGeneration = generation;
+        hostSnapshots = snapshots;
+        unchangedHosts = unchanged;
+
+        List<String> removedContainers = changes.getRemovedSince(previousGeneration);
+
+        if (removedContainers == null) {
+            relationshipCache.clear();
+        } else {
+            removedContainers.forEach(relationshipCache::remove);
+        }
 
-        return containerList.iterator();
+        return containerList;
     }
 
     /**
@@ -120,30 +198,21 @@ public class ContainerItemUpdater extends AggregationUpdater<ContainerItem, Cont
     protected ContainerItemAttributes createItemAttributes(final Container resource) {
 
         ContainerItemAttributes containerAttr = new ContainerItemAttributes();
+        List<String> names = resource.names();
+        String overallStatus = ContainerFormat.overallStatus(resource.status());
 
         containerAttr.setContainerId(resource.id());
 
-        if ((resource.names() != null) && (!resource.names().isEmpty())) {
-            containerAttr.setLabel(resource.names().toString());
+        if ((names != null) && (!names.isEmpty())) {
+            containerAttr.setLabel(ContainerFormat.label(names));
         }
         containerAttr.setCommand(resource.command());
         containerAttr.setCreationdate(resource.created());
-
-        if ((resource.names() != null) && (resource.names().size() != 0)) {
-            String completeName = "{";
-
-            for (String name : resource.names()) {
-                completeName = completeName.concat("[" + name + "]");
-            }
-            completeName = completeName.concat("}");
-            containerAttr.setName(completeName);
-        } else {
-            containerAttr.setName("");
-        }
+        containerAttr.setName(ContainerFormat.name(names));
 
         containerAttr.setStatus(resource.status());
 
-        containerAttr.setOverallStatus(analyseOverallStatus(resource.status()));
+        containerAttr.setOverallStatus(overallStatus);
 
         containerAttr.setBaseImageRepositoryName(resource.image());
 
@@ -153,42 +222,34 @@ public class ContainerItemUpdater extends AggregationUpdater<ContainerItem, Cont
         containerAttr.setItemName(
                 containerAttr.getContainerId().substring(CONTAINER_ID_TRUNCATE_START, CONTAINER_ID_TRUNCATE_END));
 
-
-        // Search for previously declared relationships to this item:
-        // Since the HostItemUpdater runs before the ContainerItemUpdater, the HostItem will declare
-        // a relationship the container before it exists.
-        // This prevents containerID namespace crash between different hosts (this may happen in the
-        // case of large number of containers)
-
-        HashMap<String, String> declaredRelations =
-                ((BaseItemCollector) itemCollector).getRelationshipsDiscoveredOnCurrentUpdateCycle().get(
-                        dockerDistributedCollector.getLogicalId(Types.CONTAINER_TYPE_ID, containerAttr.getItemId()));
-
-        String associatedHost = new String("");
-
-        for (Map.Entry<String, String> entry : declaredRelations.entrySet()) {
-            if (entry.getKey().contains("runs")) { // Host Relationship found. associatedHost =
-                associatedHost = entry.getValue();
-            }
-        }
-
-        Host localHost = HostManager.getInstance(adapter).locateHostByUID(associatedHost);
+        Host localHost = locateLocalHost(resource.id());
 
         /*
-         * update container statistics, if cAdvisor is present on host. Requires to find the local
-         * host, that is the reason why the update on the attributes had to be done here and not in
-         * the proper section.
+         * update container statistics, if cAdvisor is present on host (or the docker stats fallback
+         * is enabled). Requires to find the local host, that is the reason why the update on the
+         * attributes had to be done here and not in the proper section.
          */
-        if (localHost.hasCAdvisorRunning()) {
+        if (localHost.hasContainerStatistics()) {
 
             // If the container is running. Stopped container have no statistics
-            if (containerAttr.getOverallStatus().toLowerCase().equals("up")) {
-                JsonNode containerStats = localHost.getContainerStatisticsMap().get(resource.id());
+            if (ContainerFormat.isUp(resource.status())) {
+                UsageStatistics containerStats = localHost.getContainerStatisticsMap().get(resource.id());
                 // statistics found
                 if (containerStats != null) {
                     HostItemAttributes hostAttributes = (HostItemAttributes) itemCollector
-                            .getAdapterItem(Types.HOST_TYPE_ID, associatedHost).getCore();
-                    populateStatisticsFromRestResponse(hostAttributes, containerAttr, containerStats);
+                            .getAdapterItem(Types.HOST_TYPE_ID,
+                                    dockerDistributedCollector.getLogicalId(Types.HOST_TYPE_ID, localHost.getUID()))
+                            .getCore();
+                    containerAttr.updateStatistics(hostAttributes, containerStats.getDayCpuMax(),
+                            containerStats.getDayCpuMean(), containerStats.getCpuInstant(),
+                            containerStats.getDayMemoryMax(), containerStats.getDayMemoryMean(),
+                            containerStats.getMemoryInstant());
+
+                    if (containerStats.isHourPresent()) {
+                        containerAttr.updateHourStatistics(hostAttributes, containerStats.getHourCpuMean(),
+                                containerStats.getHourCpuPercentile(), containerStats.getHourMemoryMean(),
+                                containerStats.getHourMemoryPercentile());
+                    }
                 }
             }
         }
@@ -198,19 +259,35 @@ public class ContainerItemUpdater extends AggregationUpdater<ContainerItem, Cont
     }
 
     /***
-     * Generates an overall status from a status.
+     * Finds the host running a container, through the container index of the HostManager.
+     * Containers not indexed yet (e.g. created by an action after the last refresh) are found
+     * through the relationship declared by the HostItemUpdater: since it runs before the
+     * ContainerItemUpdater, the HostItem declares a relationship to the container before it exists.
      *
-     * @param status
-     * @return overall status
+     * @param containerId container id, which is also its item id
+     * @return host running the container
      */
-    private String analyseOverallStatus(final String status) {
-        String overallStatus = "";
-        if (status.toLowerCase().contains("up")) {
-            overallStatus = "Up";
-        } else {
-            overallStatus = "Stopped";
+    private Host locateLocalHost(final String containerId) {
+        Host localHost = HostManager.getInstance(adapter).locateHostByContainerId(containerId);
+
+        if (localHost != null) {
+            return localHost;
         }
-        return overallStatus;
+
+        HashMap<String, String> declaredRelations =
+                ((BaseItemCollector) itemCollector).getRelationshipsDiscoveredOnCurrentUpdateCycle()
+                        .get(dockerDistributedCollector.getLogicalId(Types.CONTAINER_TYPE_ID, containerId));
+
+        String associatedHost = "";
+
+        for (Map.Entry<String, String> entry : declaredRelations.entrySet()) {
+            if (entry.getKey().contains("runs")) {
+                // Host Relationship found.
+                associatedHost = entry.getValue();
+            }
+        }
+
+        return HostManager.getInstance(adapter).locateHostByUID(associatedHost);
     }
 
     /***
@@ -242,9 +319,16 @@ public class ContainerItemUpdater extends AggregationUpdater<ContainerItem, Cont
 
         ChangeStatus status;
 
+        // The status text ages while the container stays the same: compared even when the container
+        // did not change.
+        if (deltaMode && !isChangedSinceLastCycle(resource) && !hasLiveStatistics(resource)
+                && Objects.equals(containerAttributes.getStatus(), resource.status())) {
+            return ChangeStatus.UNCHANGED;
+        }
+
         // If the ID or the Status of the container changed, update
         if ((!containerAttributes.getContainerId().equals(resource.id()))
-                || (!containerAttributes.getOverallStatus().equals(analyseOverallStatus(resource.status())))) {
+                || (!containerAttributes.getOverallStatus().equals(ContainerFormat.overallStatus(resource.status())))) {
             status = ChangeStatus.CHANGED_UPDATE;
         } else {
             status = ChangeStatus.CHANGED_IGNORE;
@@ -265,28 +349,42 @@ public class ContainerItemUpdater extends AggregationUpdater<ContainerItem, Cont
      * @param resource the docker-java API item, from where the connections will be extracted.
      */
     @Override
-    @SuppressWarnings("checkstyle:linelength")
     protected void setRelationships(final ConnectedItem containerItem, final Container resource) {
+        ContainerRelationships relationships = null;
 
-        // Search for previously declared relationships to this item:
-        // Since the HostItemUpdater runs before the ContainerItemUpdater, the HostItem will declare
-        // a relationship the container before it exists.
-        // This prevents containerID namespace clash between different hosts (this may happen in the
-        // case of large number of containers)
-
-        HashMap<String, String> declaredRelations = ((BaseItemCollector) itemCollector)
-                .getRelationshipsDiscoveredOnCurrentUpdateCycle().get(containerItem.getLogicalId());
+        if (deltaMode && !isChangedSinceLastCycle(resource)) {
+            relationships = relationshipCache.get(resource.id());
+        }
 
-        String associatedHost = new String("");
+        if (relationships == null) {
+            relationships = discoverRelationships(containerItem, resource);
 
-        for (Map.Entry<String, String> entry : declaredRelations.entrySet()) {
-            if (entry.getKey().contains("runs")) {
-                // Host Relationship found.
-                associatedHost = entry.getValue();
+            if (deltaMode) {
+                relationshipCache.put(resource.id(), relationships);
             }
         }
 
-        Host localHost = HostManager.getInstance(adapter).locateHostByUID(associatedHost);
+        relationships.declare(containerItem, adapter.getProvider());
+
+        if (relationships.ghost) {
+            // Generate an alert. The user should remove that container.
+            ((ContainerItem) containerItem).setAlertLevel(GHOST_CONTAINER_ALERT_LEVEL);
+            ((ContainerItem) containerItem).setAlertDescription(GHOST_CONTAINER_ALERT);
+        }
+    }
+
+    /***
+     * Finds the relationships of a container: its base image and the containers it links to.
+     *
+     * @param containerItem the container item, whose host relationship is already declared
+     * @param resource the docker-java API item, from where the connections will be extracted.
+     * @return the relationships to be declared
+     */
+    @SuppressWarnings("checkstyle:linelength")
+    private ContainerRelationships discoverRelationships(final ConnectedItem containerItem, final Container resource) {
+        ContainerRelationships relationships = new ContainerRelationships();
+
+        Host localHost = locateLocalHost(resource.id());
 
         // Image which that container is based on:
         String baseImageId = resource.imageId();
@@ -299,31 +397,41 @@ public class ContainerItemUpdater extends AggregationUpdater<ContainerItem, Cont
          * the user being able to run, start or stop it. Should this be the case, throw an alert.
          */
         if (localHost.hasImage(baseImageId)) {
-            containerItem.setRelationshipWithType(adapter.getProvider(), Types.IMAGE_TYPE_ID, baseImageId,
-                    Relationships.ISBASEDON_TYPE);
+            relationships.add(Types.IMAGE_TYPE_ID, baseImageId, Relationships.ISBASEDON_TYPE);
         } else {
-            // Generate an alert. The user should remove that container.
-            ((ContainerItem) containerItem).setAlertLevel(GHOST_CONTAINER_ALERT_LEVEL);
-            ((ContainerItem) containerItem).setAlertDescription(GHOST_CONTAINER_ALERT);
+            relationships.ghost = true;
         }
 
-        // Search for the container information on the Map
-        ContainerInfo inspectionResponse = null;
-        inspectionResponse = localHost.inspectContainer(resource);
+        // Links are resolved by name, a container without names has none.
+        String primaryName = ContainerFormat.primaryName(resource.names());
 
-        if (inspectionResponse != null) {
-
-            // Linked containers:
-            List<String> links = inspectionResponse.hostConfig().links();
-            if ((links != null) && (links.size() != 0)) {
-                for (String link : links) {
-                    String targetContainerNameOrID = link;
+        if (primaryName == null) {
+            return relationships;
+        }
 
-                    Container foundContainer =
-                            localHost.getContainerByNameOrId(targetContainerNameOrID, resource.names().get(0));
-                    if (foundContainer != null) {
-                        containerItem.setRelationshipWithType(adapter.getProvider(), Types.CONTAINER_TYPE_ID,
-                                foundContainer.id(), Relationships.LINKS_TYPE);
+        if (localHost.isLazyInspection()) {
+            // Linked containers, taken from the container names to avoid inspecting every container:
+            for (Container linkedContainer : localHost.getSnapshot().getLinkedContainers(primaryName)) {
+                relationships.add(Types.CONTAINER_TYPE_ID, linkedContainer.id(), Relationships.LINKS_TYPE);
+            }
+        } else {
+            // Search for the container information on the Map
+            ContainerInfo inspectionResponse = null;
+            inspectionResponse = localHost.inspectContainer(resource);
+
+            if (inspectionResponse != null) {
+
+                // Linked containers:
+                List<String> links = inspectionResponse.hostConfig().links();
+                if ((links != null) && (links.size() != 0)) {
+                    for (String link : links) {
+                        String targetContainerNameOrID = link;
+
+                        Container foundContainer =
+                                localHost.getContainerByNameOrId(targetContainerNameOrID, primaryName);
+                        if (foundContainer != null) {
+                            relationships.add(Types.CONTAINER_TYPE_ID, foundContainer.id(), Relationships.LINKS_TYPE);
+                        }
                     }
                 }
             }
@@ -337,25 +445,37 @@ public class ContainerItemUpdater extends AggregationUpdater<ContainerItem, Cont
          * Types.REGISTRY_TYPE_ID, entry.getKey().getUID(), Relationships.DOCKER_DEMO_COMES_FROM);
          * // } }
          */
+
+        return relationships;
     }
 
     /***
-     * Given a cAdvisor, retrieves the container usage information from it.
-     *
-     * @param attr
-     * @param response
+     * @return true if the container changed between the previous cycle and this one
+     */
+    private boolean isChangedSinceLastCycle(final Container resource) {
+        Host localHost = HostManager.getInstance(adapter).locateHostByContainerId(resource.id());
+
+        if (localHost != null && unchangedHosts.contains(localHost.getUID())) {
+            return false;
+        }
+
+        return HostManager.getInstance(adapter).getContainerChanges().isChangedSince(resource.id(), previousGeneration);
+    }
+
+    /***
+     * @return true if the container has statistics that must be updated on every cycle
+     */
+    private boolean hasLiveStatistics(final Container resource) {
+        Host localHost = HostManager.getInstance(adapter).locateHostByContainerId(resource.id());
+
+        return localHost == null
+                || (localHost.hasContainerStatistics() && ContainerFormat.isUp(resource.status()));
+    }
+
+    /***
+     * Relationships of a container, and whether it is a ghost container.
      */
-    private void populateStatisticsFromRestResponse(final HostItemAttributes hostAttributes,
-            final ContainerItemAttributes attr, final JsonNode response) {
-        String dayCpuMax = Utils.getCadvisorAttribute(response.get("day_usage").get("cpu"), "max");
-        String dayCpuMean = Utils.getCadvisorAttribute(response.get("day_usage").get("cpu"), "mean");
-        String cpuInstant = Utils.getCadvisorAttribute(response.get("latest_usage"), "cpu");
-
-        String dayMemoryMax = Utils.getCadvisorAttribute(response.get("day_usage").get("memory"), "max");
-        String dayMemoryMean = Utils.getCadvisorAttribute(response.get("day_usage").get("memory"), "mean");
-        String memoryInstant = Utils.getCadvisorAttribute(response.get("latest_usage"), "memory");
-
-        attr.updateStatistics(hostAttributes, dayCpuMax, dayCpuMean, cpuInstant, dayMemoryMax, dayMemoryMean,
-                memoryInstant);
+    private static final class ContainerRelationships extends DeclaredRelationships {
+        private boolean ghost = false;
     }
 }
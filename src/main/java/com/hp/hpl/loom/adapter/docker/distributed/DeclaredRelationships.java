@@ -0,0 +1,46 @@
+/*******************************************************************************
+ * (c) Copyright 2017 Hewlett Packard Enterprise Development LP Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *******************************************************************************/
+package com.hp.hpl.loom.adapter.docker.distributed;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.hp.hpl.loom.adapter.ConnectedItem;
+import com.hp.hpl.loom.model.Provider;
+
+/***
+ * Relationships of an item, kept by the updaters in delta mode so that they can be declared again
+ * on the following cycles without being discovered again.
+ */
+class DeclaredRelationships {
+    private final List<String[]> relationships = new ArrayList<String[]>();
+
+    /***
+     * @param itemTypeId item type of the connected item
+     * @param connectedItemId item id of the connected item
+     * @param type relationship type
+     */
+    void add(final String itemTypeId, final String connectedItemId, final String type) {
+        relationships.add(new String[] {itemTypeId, connectedItemId, type});
+    }
+
+    /***
+     * Declares all the relationships on the item.
+     *
+     * @param item item the relationships start from
+     * @param provider provider of the adapter
+     */
+    void declare(final ConnectedItem item, final Provider provider) {
+        for (String[] relationship : relationships) {
+            item.setRelationshipWithType(provider, relationship[0], relationship[1], relationship[2]);
+        }
+    }
+}
@@ -19,6 +19,7 @@ import java.util.Map;
 
 import com.hp.hpl.loom.adapter.BaseAdapter;
 import com.hp.hpl.loom.adapter.ItemCollector;
+import com.hp.hpl.loom.adapter.docker.items.CollectorItem;
 import com.hp.hpl.loom.adapter.docker.items.ContainerItem;
 import com.hp.hpl.loom.adapter.docker.items.HostItem;
 import com.hp.hpl.loom.adapter.docker.items.ImageItem;
@@ -89,6 +90,11 @@ public class DockerDistributedAdapter extends BaseAdapter {
      */
     public static final String REGISTRY_PATTERN = "Registry";
 
+    /**
+     * Pattern for the CollectorItem type: health of the collection of each host.
+     */
+    public static final String COLLECTOR_PATTERN = "Collector";
+
     /***
      * Maximum number of fibres.
      */
@@ -120,6 +126,7 @@ public class DockerDistributedAdapter extends BaseAdapter {
         types.add(ContainerItem.class);
         types.add(VolumeItem.class);
         types.add(PortItem.class);
+        types.add(CollectorItem.class);
 
         return types;
     }
@@ -196,10 +203,17 @@ public class DockerDistributedAdapter extends BaseAdapter {
         containersFullPatternDef.getThreads().get(0).getQuery()
                 .setOperationPipeline(Arrays.asList(new Operation(DefaultOperations.SORT_BY.toString(), sortParams)));
 
+        // Collector: one item per host, to sort and group by collection health.
+        List<ItemType> collectorItemTypes =
+                getItemTypesFromLocalIds(Arrays.asList(Types.COLLECTOR_TYPE_ID, Types.HOST_TYPE_ID));
+        PatternDefinition collectorPatternDef = createPatternDefinitionWithSingleInputPerThread(COLLECTOR_PATTERN,
+                collectorItemTypes, COLLECTOR_PATTERN, null, false);
+
         Collection<PatternDefinition> list = new ArrayList<PatternDefinition>();
 
         list.add(containersPatternDef);
         list.add(containersFullPatternDef);
+        list.add(collectorPatternDef);
         // list.add(hostPatternDef);
         // list.add(registryPatternDef);
         // list.add(imagePatternDef);
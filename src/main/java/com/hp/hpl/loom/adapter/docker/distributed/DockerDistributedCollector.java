@@ -13,6 +13,8 @@ package com.hp.hpl.loom.adapter.docker.distributed;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import com.hp.hpl.loom.adapter.AggregationUpdater;
 import com.hp.hpl.loom.adapter.AggregationUpdaterBasedItemCollector;
@@ -49,6 +51,17 @@ import com.hp.hpl.loom.model.Session;
  * ItemType specific.
  */
 public class DockerDistributedCollector extends AggregationUpdaterBasedItemCollector {
+    /***
+     * Gathers the resources of the updaters of all collectors.
+     */
+    private static final ExecutorService RESOURCE_GATHERING_POOL = Executors.newCachedThreadPool();
+
+    /***
+     * Node of the updater graph ordering the host relationships after the registry gathering, which
+     * indexes the registries holding each image.
+     */
+    public static final String HOST_RELATIONSHIPS = Types.HOST_TYPE_ID + ".relationships";
+
     private ContainerItemUpdater containerItemUpdater;
 
     private boolean global = false;
@@ -56,6 +69,8 @@ public class DockerDistributedCollector extends AggregationUpdaterBasedItemColle
 
     private RegistryItemUpdater registryItemUpdater;
 
+    private UpdaterGraph updaterGraph = new UpdaterGraph(RESOURCE_GATHERING_POOL);
+
     /**
      * Constructor it takes a client session, adapter and adapter Manager to register back with.
      *
@@ -66,6 +81,17 @@ public class DockerDistributedCollector extends AggregationUpdaterBasedItemColle
     public DockerDistributedCollector(final Session session, final BaseAdapter adapter,
             final AdapterManager adapterManager) {
         super(session, adapter, adapterManager);
+
+        // Only the host updater is a barrier: it refreshes the hosts, and all the other updaters
+        // just read their snapshots.
+        updaterGraph.declare(Types.HOST_TYPE_ID);
+        updaterGraph.declare(Types.REGISTRY_TYPE_ID, Types.HOST_TYPE_ID);
+        updaterGraph.declare(Types.IMAGE_TYPE_ID, Types.HOST_TYPE_ID);
+        updaterGraph.declare(Types.CONTAINER_TYPE_ID, Types.HOST_TYPE_ID);
+        updaterGraph.declare(Types.VOLUME_TYPE_ID, Types.HOST_TYPE_ID);
+        updaterGraph.declare(Types.PORT_TYPE_ID, Types.HOST_TYPE_ID);
+        updaterGraph.declare(Types.COLLECTOR_TYPE_ID, Types.HOST_TYPE_ID);
+        updaterGraph.declare(HOST_RELATIONSHIPS, Types.REGISTRY_TYPE_ID);
     }
 
     /***
@@ -108,6 +134,9 @@ public class DockerDistributedCollector extends AggregationUpdaterBasedItemColle
         if (aggregationMatchesItemType(aggregation, Types.PORT_TYPE_ID)) {
             return new PortItemUpdater(aggregation, adapter, this);
         }
+        if (aggregationMatchesItemType(aggregation, Types.COLLECTOR_TYPE_ID)) {
+            return new CollectorItemUpdater(aggregation, adapter, this);
+        }
 
         throw new NoSuchItemTypeException(aggregation.getTypeId());
     }
@@ -127,6 +156,7 @@ public class DockerDistributedCollector extends AggregationUpdaterBasedItemColle
         list.add(Types.CONTAINER_TYPE_ID);
         list.add(Types.VOLUME_TYPE_ID);
         list.add(Types.PORT_TYPE_ID);
+        list.add(Types.COLLECTOR_TYPE_ID);
 
         return list;
     }
@@ -140,6 +170,10 @@ public class DockerDistributedCollector extends AggregationUpdaterBasedItemColle
      * AggregationUpdater. In some cases data collection order matters, therefore this method should
      * be implemented so that an iterator will be order preserving.
      *
+     * <p>
+     * The order only matters for the declaration of items and relationships. Their resources are
+     * gathered in advance, in parallel, following the dependencies declared on the UpdaterGraph.
+     *
      * @return list of aggregation ItemTypes
      *
      */
@@ -155,6 +189,7 @@ public class DockerDistributedCollector extends AggregationUpdaterBasedItemColle
         list.add(Types.CONTAINER_TYPE_ID);
         list.add(Types.VOLUME_TYPE_ID);
         list.add(Types.PORT_TYPE_ID);
+        list.add(Types.COLLECTOR_TYPE_ID);
 
         return list;
     }
@@ -507,4 +542,11 @@ public class DockerDistributedCollector extends AggregationUpdaterBasedItemColle
     public RegistryItemUpdater getRegistryItemUpdater() {
         return registryItemUpdater;
     }
+
+    /***
+     * @return the dependency graph between the updaters of this collector
+     */
+    public UpdaterGraph getUpdaterGraph() {
+        return updaterGraph;
+    }
 }
@@ -16,22 +16,26 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
-import com.fasterxml.jackson.databind.JsonNode;
 import com.hp.hpl.loom.adapter.AggregationUpdater;
 import com.hp.hpl.loom.adapter.BaseAdapter;
 import com.hp.hpl.loom.adapter.ConnectedItem;
+import com.hp.hpl.loom.adapter.docker.distributed.realworld.AdapterProperties;
 import com.hp.hpl.loom.adapter.docker.distributed.realworld.Host;
+import com.hp.hpl.loom.adapter.docker.distributed.realworld.HostDigest;
 import com.hp.hpl.loom.adapter.docker.distributed.realworld.HostManager;
+import com.hp.hpl.loom.adapter.docker.distributed.realworld.HostMetadata;
+import com.hp.hpl.loom.adapter.docker.distributed.realworld.HostSnapshot;
+import com.hp.hpl.loom.adapter.docker.distributed.realworld.UsageStatistics;
 import com.hp.hpl.loom.adapter.docker.distributed.realworld.Volume;
 import com.hp.hpl.loom.adapter.docker.items.HostItem;
 import com.hp.hpl.loom.adapter.docker.items.HostItemAttributes;
 import com.hp.hpl.loom.adapter.docker.items.Relationships;
 import com.hp.hpl.loom.adapter.docker.items.Types;
-import com.hp.hpl.loom.adapter.docker.items.Utils;
 import com.hp.hpl.loom.adapter.docker.realworld.Registry;
 import com.hp.hpl.loom.exceptions.NoSuchItemTypeException;
 import com.hp.hpl.loom.exceptions.NoSuchProviderException;
@@ -52,6 +56,13 @@ public class HostItemUpdater extends AggregationUpdater<HostItem, HostItemAttrib
 
     private Set<String> compromisedHostsOnLastIteration = new HashSet<String>();
 
+    // Delta mode (deltaMode): the relationships of a host whose digest did not change are declared
+    // again from the previous cycle instead of being discovered again.
+    private final boolean deltaMode;
+
+    // host UID -> relationships declared on the last cycle its digest changed
+    private Map<String, HostRelationships> relationshipCache = new ConcurrentHashMap<String, HostRelationships>();
+
 
     /**
      * Constructs a HostItemUpdater.
@@ -67,6 +78,9 @@ public class HostItemUpdater extends AggregationUpdater<HostItem, HostItemAttrib
             final DockerDistributedCollector dockerCollector) throws NoSuchItemTypeException, NoSuchProviderException {
         super(aggregation, adapter, dockerCollector);
         dockerDistributedCollector = dockerCollector;
+        deltaMode = AdapterProperties.getBoolean(adapter, "deltaMode", false);
+
+        dockerDistributedCollector.getUpdaterGraph().setResourceSource(Types.HOST_TYPE_ID, this::gatherResources);
     }
 
     /**
@@ -89,7 +103,18 @@ public class HostItemUpdater extends AggregationUpdater<HostItem, HostItemAttrib
      */
     @Override
     protected Iterator<Host> getResourceIterator() {
+        dockerDistributedCollector.getUpdaterGraph().startCycle();
 
+        return dockerDistributedCollector.getUpdaterGraph().iterateResources(Types.HOST_TYPE_ID, this::gatherResources);
+    }
+
+    /***
+     * Refreshes the hosts and lists them. This is the barrier of the UpdaterGraph: the resources of
+     * the other updaters are only gathered once it returns.
+     *
+     * @return the resources
+     */
+    protected List<Host> gatherResources() {
         // Retrieve HostManager singleton
         // Make sure that it updates the content every x seconds on the property file.
         HostManager manager = HostManager.getInstance(adapter);
@@ -99,7 +124,13 @@ public class HostItemUpdater extends AggregationUpdater<HostItem, HostItemAttrib
 
         List<Host> hosts = manager.getHostList();
 
-        return hosts.iterator();
+        if (deltaMode) {
+            Set<String> hostUIDs = new HashSet<String>();
+            hosts.forEach((host) -> hostUIDs.add(host.getUID()));
+            relationshipCache.keySet().retainAll(hostUIDs);
+        }
+
+        return hosts;
     }
 
     @Override
@@ -137,6 +168,8 @@ public class HostItemUpdater extends AggregationUpdater<HostItem, HostItemAttrib
             hostAttr.setRunningOS(resource.getOsDistribution());
         }
 
+        retrieveMachineInformation(resource, hostAttr);
+
         // Where there is a cAdvisor running on the host, retrieve the host statistics.
         if (resource.hasCAdvisorRunning()) {
             retrieveCAdvisorHostInformation(resource, hostAttr);
@@ -180,7 +213,8 @@ public class HostItemUpdater extends AggregationUpdater<HostItem, HostItemAttrib
             // it.
             status = ChangeStatus.CHANGED_IGNORE;
 
-            // update just cadvisor
+            // update just the machine information and cadvisor
+            retrieveMachineInformation(resource, hostattributes);
             retrieveCAdvisorHostInformation(resource, hostattributes);
         } else {
             status = ChangeStatus.CHANGED_UPDATE;
@@ -201,49 +235,61 @@ public class HostItemUpdater extends AggregationUpdater<HostItem, HostItemAttrib
      * @param resource the real world host item, from where the connections will be extracted.
      */
     @Override
-    @SuppressWarnings("checkstyle:linelength")
     protected void setRelationships(final ConnectedItem hostItem, final Host resource) {
+        HostSnapshot snapshot = resource.getSnapshot();
+        dockerDistributedCollector.getUpdaterGraph().await(DockerDistributedCollector.HOST_RELATIONSHIPS);
+        Map<String, List<Registry>> imageToRegMap =
+                dockerDistributedCollector.getRegistryItemUpdater().getImageAndRegistriesMap();
 
-        // All images local on the host
-        List<Image> imgList = resource.getLocalImages();
+        HostRelationships relationships = deltaMode ? relationshipCache.get(resource.getUID()) : null;
 
-        if (!imgList.isEmpty()) {
-            for (Image image : imgList) {
-                hostItem.setRelationshipWithType(adapter.getProvider(), Types.IMAGE_TYPE_ID, image.id(),
-                        Relationships.HASLOCAL_TYPE);
+        if (relationships == null || !relationships.digest.equals(snapshot.getDigest())
+                || relationships.imageToRegMap != imageToRegMap) {
+            relationships = new HostRelationships(snapshot.getDigest(), imageToRegMap);
+            discoverRelationships(relationships, snapshot, imageToRegMap);
+
+            if (deltaMode) {
+                relationshipCache.put(resource.getUID(), relationships);
             }
         }
 
+        relationships.declare(hostItem, adapter.getProvider());
+    }
+
+    /***
+     * Finds the relationships of a host: its images, containers and volumes, and the registries it
+     * can fetch images from.
+     *
+     * @param relationships receives the relationships
+     * @param snapshot content of the host
+     * @param imageToRegMap registries holding each image
+     */
+    private void discoverRelationships(final DeclaredRelationships relationships, final HostSnapshot snapshot,
+            final Map<String, List<Registry>> imageToRegMap) {
+
+        // All images local on the host
+        for (Image image : snapshot.getImages()) {
+            relationships.add(Types.IMAGE_TYPE_ID, image.id(), Relationships.HASLOCAL_TYPE);
+        }
+
         // All containers local on the host
-        List<Container> containerList = resource.getLocalContainers();
-        if (!containerList.isEmpty()) {
-            for (Container container : containerList) {
-                hostItem.setRelationshipWithType(adapter.getProvider(), Types.CONTAINER_TYPE_ID, container.id(),
-                        Relationships.RUNS_TYPE);
-            }
+        for (Container container : snapshot.getContainers()) {
+            relationships.add(Types.CONTAINER_TYPE_ID, container.id(), Relationships.RUNS_TYPE);
         }
 
         // All volume contained in the host
-        List<Volume> volumeList = resource.getLocalVolumes();
-        if (!volumeList.isEmpty()) {
-            for (Volume volume : volumeList) {
-                // Every volume is identified by its hash
-                hostItem.setRelationshipWithType(adapter.getProvider(), Types.VOLUME_TYPE_ID,
-                        Integer.toString(volume.hashCode()), Relationships.CONTAINS_TYPE);
-            }
+        for (Volume volume : snapshot.getVolumes()) {
+            // Every volume is identified by its hash
+            relationships.add(Types.VOLUME_TYPE_ID, Integer.toString(volume.hashCode()), Relationships.CONTAINS_TYPE);
         }
 
         // All Registries where this host can fetch images:
         Set<Registry> relatedRegistries = new HashSet<>();
 
         // By default. all hosts can fetch docker hub.
-        hostItem.setRelationshipWithType(adapter.getProvider(), Types.REGISTRY_TYPE_ID,
-                Registry.DOCKER_HUB_REGISTRY_UID, Relationships.AVAILABLE_AT_TYPE);
+        relationships.add(Types.REGISTRY_TYPE_ID, Registry.DOCKER_HUB_REGISTRY_UID, Relationships.AVAILABLE_AT_TYPE);
 
-        Map<String, List<Registry>> imageToRegMap =
-                dockerDistributedCollector.getRegistryItemUpdater().getImageAndRegistriesMap();
-
-        for (Image image : resource.getLocalImages()) {
+        for (Image image : snapshot.getImages()) {
 
             List<Registry> registriesWithImages = imageToRegMap.get(image.id());
 
@@ -257,69 +303,60 @@ public class HostItemUpdater extends AggregationUpdater<HostItem, HostItemAttrib
         }
 
         for (Registry reg : relatedRegistries) {
-            hostItem.setRelationshipWithType(adapter.getProvider(), Types.REGISTRY_TYPE_ID, reg.getUID(),
-                    Relationships.FETCHES_IMAGES_FROM);
+            relationships.add(Types.REGISTRY_TYPE_ID, reg.getUID(), Relationships.FETCHES_IMAGES_FROM);
         }
     }
 
     /***
-     * Uses the cAdvisor RESTful interface to retrieve host information
+     * Copies the machine information cached by the host, known from the docker info even without a
+     * cAdvisor.
      *
      * @param host
      * @param attr
      */
-    public void retrieveCAdvisorHostInformation(final Host host, final HostItemAttributes attr) {
-        JsonNode machineStatisticsResponse = host.getMachineStatistics();
-        JsonNode machinePhysicalInfoRespose = host.getMachinePhysicalInformation();
+    private void retrieveMachineInformation(final Host host, final HostItemAttributes attr) {
+        HostMetadata metadata = host.getMetadata();
 
-        /*
-         * It way take a few refresh cycles for the cAdvisor container start providing responses. In
-         * this meanwhile the response may be null.
-         */
-        if (machinePhysicalInfoRespose != null) {
-            populateMachineInfoFromRestResponse(attr, machinePhysicalInfoRespose);
-        }
-        if (machineStatisticsResponse != null) {
-            populateStatisticsFromRestResponse(attr, machineStatisticsResponse);
-        }
+        attr.updateMachineInfo(metadata.getCpuFrequencyKhz(), metadata.getFileSystemCapacity(),
+                metadata.getMemoryCapacity(), metadata.getNumberOfCores(), metadata.getDockerVersion(),
+                metadata.getKernelVersion());
     }
 
     /***
-     * Given a cAdvisor, retrieves the Host Machine information from it.
+     * Uses the cAdvisor RESTful interface to retrieve host information
      *
+     * @param host
      * @param attr
-     * @param response
      */
-    private void populateMachineInfoFromRestResponse(final HostItemAttributes attr, final JsonNode response) {
-        String cpuFrequency = Utils.getCadvisorAttribute(response, "cpu_frequency_khz");
-
-        String fileSystemCapacity = Utils.getCadvisorAttribute(response.get("filesystems").get(0), "capacity");
-        String memoryCapacity = Utils.getCadvisorAttribute(response, "memory_capacity");
-        String numberOfCores = Utils.getCadvisorAttribute(response, "num_cores");
-        String dockerVersion = Utils.getCadvisorAttribute(response, "docker_version");
-        String kernelVersion = Utils.getCadvisorAttribute(response, "kernel_version");
+    public void retrieveCAdvisorHostInformation(final Host host, final HostItemAttributes attr) {
+        UsageStatistics machineStatistics = host.getMachineStatistics();
 
-        attr.updateMachineInfo(cpuFrequency, fileSystemCapacity, memoryCapacity, numberOfCores, dockerVersion,
-                kernelVersion);
+        /*
+         * It way take a few refresh cycles for the cAdvisor container start providing responses. In
+         * this meanwhile the response may be null.
+         */
+        if (machineStatistics != null) {
+            attr.updateStatistics(machineStatistics.getDayCpuMax(), machineStatistics.getDayCpuMean(),
+                    machineStatistics.getCpuInstant(), machineStatistics.getDayMemoryMax(),
+                    machineStatistics.getDayMemoryMean(), machineStatistics.getMemoryInstant());
+
+            if (machineStatistics.isHourPresent()) {
+                attr.updateHourStatistics(machineStatistics.getHourCpuMean(), machineStatistics.getHourCpuPercentile(),
+                        machineStatistics.getHourMemoryMean(), machineStatistics.getHourMemoryPercentile());
+            }
+        }
     }
 
-
-
     /***
-     * Given a cAdvisor, retrieves the host usage information from it.
-     *
-     * @param attr
-     * @param response
+     * Relationships of a host, valid while its digest and the registry contents stay the same.
      */
-    private void populateStatisticsFromRestResponse(final HostItemAttributes attr, final JsonNode response) {
-        String dayCpuMax = Utils.getCadvisorAttribute(response.get("/").get("day_usage").get("cpu"), "max");
-        String dayCpuMean = Utils.getCadvisorAttribute(response.get("/").get("day_usage").get("cpu"), "mean");
-        String cpuInstant = Utils.getCadvisorAttribute(response.get("/").get("latest_usage"), "cpu");
-
-        String dayMemoryMax = Utils.getCadvisorAttribute(response.get("/").get("day_usage").get("memory"), "max");
-        String dayMemoryMean = Utils.getCadvisorAttribute(response.get("/").get("day_usage").get("memory"), "mean");
-        String memoryInstant = Utils.getCadvisorAttribute(response.get("/").get("latest_usage"), "memory");
+    private static final class HostRelationships extends DeclaredRelationships {
+        private final HostDigest digest;
+        private final Map<String, List<Registry>> imageToRegMap;
 
-        attr.updateStatistics(dayCpuMax, dayCpuMean, cpuInstant, dayMemoryMax, dayMemoryMean, memoryInstant);
+        private HostRelationships(final HostDigest digest, final Map<String, List<Registry>> imageToRegMap) {
+            this.digest = digest;
+            this.imageToRegMap = imageToRegMap;
+        }
     }
 }
@@ -46,6 +46,9 @@ public class ImageItemUpdater extends AggregationUpdater<ImageItem, ImageItemAtt
     private static final Log LOG = LogFactory.getLog(ImageItemUpdater.class);
     private static final String IMAGE_DESCRIPTION = "Represents a container image";
 
+    // Images from a private registry are named [registry address]:[port]/...
+    private static final Pattern PRIVATE_REGISTRY = Pattern.compile("^.+:\\d{2,4}");
+
     protected DockerDistributedCollector dockerCollector = null;
 
     private Set<String> tamperedImagesOnLastIteration = new HashSet<String>();
@@ -64,6 +67,8 @@ public class ImageItemUpdater extends AggregationUpdater<ImageItem, ImageItemAtt
             final DockerDistributedCollector dockerCollector) throws NoSuchItemTypeException, NoSuchProviderException {
         super(aggregation, adapter, dockerCollector);
         this.dockerCollector = dockerCollector;
+
+        dockerCollector.getUpdaterGraph().setResourceSource(Types.IMAGE_TYPE_ID, this::gatherResources);
     }
 
     /**
@@ -86,14 +91,35 @@ public class ImageItemUpdater extends AggregationUpdater<ImageItem, ImageItemAtt
      */
     @Override
     protected Iterator<Image> getResourceIterator() {
-        // Get all docker daemon images:
-        final List<Image> dockerDaemonImageList = HostManager.getInstance(adapter).getAllImages();
+        return dockerCollector.getUpdaterGraph().iterateResources(Types.IMAGE_TYPE_ID, this::gatherResources);
+    }
 
+    /***
+     * Merges the images of all hosts with the images of the private registries. Gathered in advance,
+     * once the hosts are refreshed (see UpdaterGraph).
+     *
+     * @return the resources
+     */
+    protected List<Image> gatherResources() {
+        return mergeImages(HostManager.getInstance(adapter).getAllImages(),
+                HostManager.getInstance().getImageOnEachRegistry().values());
+    }
+
+    /***
+     * Merges the images of the docker daemons with the images of the private registries, each
+     * image once. Registry images take precedence.
+     *
+     * @param dockerDaemonImageList images of all the docker daemons
+     * @param imagesOnEachRegistry images of each private registry
+     * @return every available image
+     */
+    public static List<Image> mergeImages(final List<Image> dockerDaemonImageList,
+            final Collection<List<Image>> imagesOnEachRegistry) {
         // Get all private registry images:
         final List<Image> registryImageList = new ArrayList<Image>();
 
         // Merge all images in the List of Image Lists to a single List (registryImageList)
-        for (List<Image> registryImages : HostManager.getInstance().getImageOnEachRegistry().values()) {
+        for (List<Image> registryImages : imagesOnEachRegistry) {
             registryImageList.addAll(registryImages);
         }
 
@@ -115,8 +141,7 @@ public class ImageItemUpdater extends AggregationUpdater<ImageItem, ImageItemAtt
         // convert map values to List
         allAvailableImages = noDuplicatesMap.values().stream().collect(Collectors.toList());
 
-        return allAvailableImages.iterator();
-
+        return allAvailableImages;
     }
 
     @Override
@@ -234,9 +259,7 @@ public class ImageItemUpdater extends AggregationUpdater<ImageItem, ImageItemAtt
         ImageItem image = (ImageItem) imageItem;
         String registryName = image.getCore().getItemName();
 
-        Pattern privateRegistry = Pattern.compile("^.+:\\d{2,4}");
-
-        if (privateRegistry.matcher(registryName).find()) {
+        if (PRIVATE_REGISTRY.matcher(registryName).find()) {
             Registry registeredRegistry = HostManager.getInstance().registerRegistry(registryName, resource);
             imageItem.setRelationshipWithType(adapter.getProvider(), Types.REGISTRY_TYPE_ID,
                     registeredRegistry.getUID(), Relationships.AVAILABLE_AT_TYPE);
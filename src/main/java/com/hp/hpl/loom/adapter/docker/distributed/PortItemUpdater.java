@@ -17,6 +17,7 @@ import java.util.List;
 import com.hp.hpl.loom.adapter.AggregationUpdater;
 import com.hp.hpl.loom.adapter.BaseAdapter;
 import com.hp.hpl.loom.adapter.ConnectedItem;
+import com.hp.hpl.loom.adapter.docker.distributed.realworld.AdapterProperties;
 import com.hp.hpl.loom.adapter.docker.distributed.realworld.HostManager;
 import com.hp.hpl.loom.adapter.docker.items.PortItem;
 import com.hp.hpl.loom.adapter.docker.items.PortItemAttributes;
@@ -36,6 +37,10 @@ public class PortItemUpdater extends AggregationUpdater<PortItem, PortItemAttrib
 
     protected DockerDistributedCollector dockerCollector = null;
 
+    // Delta mode (deltaMode): the attributes of a port are all part of its id, thus a port whose id did
+    // not change is reported as unchanged instead of having its attributes built again.
+    private final boolean deltaMode;
+
     /**
      * Constructs a PortItemUpdater.
      *
@@ -50,6 +55,9 @@ public class PortItemUpdater extends AggregationUpdater<PortItem, PortItemAttrib
             final DockerDistributedCollector dockerCollector) throws NoSuchItemTypeException, NoSuchProviderException {
         super(aggregation, adapter, dockerCollector);
         this.dockerCollector = dockerCollector;
+        this.deltaMode = AdapterProperties.getBoolean(adapter, "deltaMode", false);
+
+        dockerCollector.getUpdaterGraph().setResourceSource(Types.PORT_TYPE_ID, this::gatherResources);
     }
 
     /**
@@ -73,9 +81,18 @@ public class PortItemUpdater extends AggregationUpdater<PortItem, PortItemAttrib
      */
     @Override
     protected Iterator<ContainerPort> getResourceIterator() {
+        return dockerCollector.getUpdaterGraph().iterateResources(Types.PORT_TYPE_ID, this::gatherResources);
+    }
+
+    /***
+     * Lists the ports of all hosts. Gathered in advance, once the hosts are refreshed.
+     *
+     * @return the resources
+     */
+    protected List<ContainerPort> gatherResources() {
         List<ContainerPort> portList = HostManager.getInstance(adapter).getAllPorts();
 
-        return portList.iterator();
+        return portList;
     }
 
     @Override
@@ -147,6 +164,8 @@ public class PortItemUpdater extends AggregationUpdater<PortItem, PortItemAttrib
 
         if (!volumeAttributes.getItemId().equals(Integer.toString(resource.hashCode()))) {
             status = ChangeStatus.CHANGED_UPDATE;
+        } else if (deltaMode) {
+            status = ChangeStatus.UNCHANGED;
         } else {
             status = ChangeStatus.CHANGED_IGNORE;
         }
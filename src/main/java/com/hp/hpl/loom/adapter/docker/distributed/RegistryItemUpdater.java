@@ -24,6 +24,7 @@ import com.hp.hpl.loom.adapter.ConnectedItem;
 import com.hp.hpl.loom.adapter.docker.distributed.realworld.HostManager;
 import com.hp.hpl.loom.adapter.docker.items.RegistryItem;
 import com.hp.hpl.loom.adapter.docker.items.RegistryItemAttributes;
+import com.hp.hpl.loom.adapter.docker.items.Types;
 import com.hp.hpl.loom.adapter.docker.realworld.Registry;
 import com.hp.hpl.loom.exceptions.NoSuchItemTypeException;
 import com.hp.hpl.loom.exceptions.NoSuchProviderException;
@@ -40,11 +41,11 @@ public class RegistryItemUpdater extends AggregationUpdater<RegistryItem, Regist
 
     protected DockerDistributedCollector dockerCollector = null;
 
-    private Map<Registry, List<Image>> registriesAndImagesMap;
+    private volatile Map<Registry, List<Image>> registriesAndImagesMap;
 
     // The reverse of the above map. Allows images to quickly find the registries that are
     // associated with them.
-    private Map<String, List<Registry>> imageAndRegistriesMap = new HashMap<>();
+    private volatile Map<String, List<Registry>> imageAndRegistriesMap = new HashMap<>();
 
     /**
      * Constructs a registryItemUpdater.
@@ -60,6 +61,8 @@ public class RegistryItemUpdater extends AggregationUpdater<RegistryItem, Regist
             final DockerDistributedCollector dockerCollector) throws NoSuchItemTypeException, NoSuchProviderException {
         super(aggregation, adapter, dockerCollector);
         this.dockerCollector = dockerCollector;
+
+        dockerCollector.getUpdaterGraph().setResourceSource(Types.REGISTRY_TYPE_ID, this::gatherResources);
     }
 
     /**
@@ -82,13 +85,42 @@ public class RegistryItemUpdater extends AggregationUpdater<RegistryItem, Regist
      */
     @Override
     protected Iterator<Registry> getResourceIterator() {
+        return dockerCollector.getUpdaterGraph().iterateResources(Types.REGISTRY_TYPE_ID, this::gatherResources);
+    }
 
+    /***
+     * Lists the registries and indexes, for each image, the registries holding it. Gathered in
+     * advance, once the hosts are refreshed (see UpdaterGraph).
+     *
+     * @return the resources
+     */
+    protected List<Registry> gatherResources() {
         registriesAndImagesMap = HostManager.getInstance().getImageOnEachRegistry();
 
-        // reverse the above map
+        Map<String, List<Registry>> underUpdateImageAndRegistriesMap = indexRegistriesByImage(registriesAndImagesMap);
+
+        // update it. An unchanged map is kept, so that the hosts know their registry relationships
+        // are still valid.
+        if (!underUpdateImageAndRegistriesMap.equals(imageAndRegistriesMap)) {
+            imageAndRegistriesMap = underUpdateImageAndRegistriesMap;
+        }
+
+        List<Registry> registries = registriesAndImagesMap.keySet().stream().collect(Collectors.toList());
+
+        return registries;
+    }
+
+    /***
+     * Reverses the images held by each registry.
+     *
+     * @param imagesOnEachRegistry images held by each registry
+     * @return registries holding each image, indexed by image id
+     */
+    public static Map<String, List<Registry>> indexRegistriesByImage(
+            final Map<Registry, List<Image>> imagesOnEachRegistry) {
         Map<String, List<Registry>> underUpdateImageAndRegistriesMap = new HashMap<>();
 
-        for (Map.Entry<Registry, List<Image>> entry : registriesAndImagesMap.entrySet()) {
+        for (Map.Entry<Registry, List<Image>> entry : imagesOnEachRegistry.entrySet()) {
             // Put each image as key if is does not exist yet
             for (Image image : entry.getValue()) {
                 List<Registry> registryList;
@@ -106,12 +138,7 @@ public class RegistryItemUpdater extends AggregationUpdater<RegistryItem, Regist
             }
         }
 
-        // update it.
-        imageAndRegistriesMap = underUpdateImageAndRegistriesMap;
-
-        List<Registry> registries = registriesAndImagesMap.keySet().stream().collect(Collectors.toList());
-
-        return registries.iterator();
+        return underUpdateImageAndRegistriesMap;
     }
 
     @Override
@@ -0,0 +1,239 @@
+/*******************************************************************************
+ * (c) Copyright 2017 Hewlett Packard Enterprise Development LP Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *******************************************************************************/
+package com.hp.hpl.loom.adapter.docker.distributed;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+import com.hp.hpl.loom.adapter.docker.distributed.metrics.AdapterMetrics;
+import com.hp.hpl.loom.adapter.docker.distributed.metrics.Span;
+import com.hp.hpl.loom.adapter.docker.distributed.metrics.UpdaterStage;
+
+/***
+ * Dependency graph between the updaters of a collector.
+ *
+ * <p>
+ * Loom runs the updaters one after the other on the collector thread, in the order of
+ * getCollectionItemTypeIdList(), since they all declare items and relationships on the same
+ * collector. Most of the work of an updater is however gathering its resources, and that only
+ * depends on the updaters it reads from. At the start of each collection cycle, the graph gathers
+ * the resources of every updater on the given executor, each one as soon as its dependencies are
+ * gathered, so that the updaters find their resources ready when their turn comes. The gathering
+ * time of a cycle is thus the longest path of the graph instead of the sum of all updaters.
+ *
+ * <p>
+ * The gathering, the wait of an updater for its resources and their iteration by Loom are timed as
+ * UpdaterStages (docker.updater.stage and their Flight Recorder events).
+ */
+public class UpdaterGraph {
+    private final Executor executor;
+
+    // item type id -> item type ids it depends on, in declaration order
+    private final Map<String, List<String>> dependencies = new LinkedHashMap<String, List<String>>();
+
+    // item type id -> supplier of its resources
+    private final Map<String, Supplier<? extends List<?>>> sources =
+            new ConcurrentHashMap<String, Supplier<? extends List<?>>>();
+
+    // resources being gathered on the current cycle, removed once taken
+    private final Map<String, CompletableFuture<List<?>>> cycle =
+            new ConcurrentHashMap<String, CompletableFuture<List<?>>>();
+
+    /***
+     * @param executor runs the resource gathering
+     */
+    public UpdaterGraph(final Executor executor) {
+        this.executor = executor;
+    }
+
+    /***
+     * Declares an updater and the updaters it depends on. Dependencies must be declared first,
+     * which keeps the graph acyclic.
+     *
+     * @param itemTypeId item type of the updater
+     * @param dependsOn item types of the updaters whose resources must be gathered before
+     */
+    public synchronized void declare(final String itemTypeId, final String... dependsOn) {
+        for (String dependency : dependsOn) {
+            if (!dependencies.containsKey(dependency)) {
+                throw new IllegalArgumentException(
+                        "Updater '" + itemTypeId + "' depends on undeclared updater '" + dependency + "'");
+            }
+        }
+
+        dependencies.put(itemTypeId, Arrays.asList(dependsOn));
+    }
+
+    /***
+     * Sets how the resources of an updater are gathered.
+     *
+     * @param itemTypeId item type of the updater
+     * @param source gathers the resources, may be called from any thread
+     */
+    public void setResourceSource(final String itemTypeId, final Supplier<? extends List<?>> source) {
+        sources.put(itemTypeId, source);
+    }
+
+    /***
+     * Starts gathering the resources of every declared updater. A failed gathering does not prevent
+     * its dependents from running; only the updater that takes it sees the failure.
+     */
+    public synchronized void startCycle() {
+        Map<String, CompletableFuture<List<?>>> gatherings = new LinkedHashMap<String, CompletableFuture<List<?>>>();
+
+        for (Map.Entry<String, List<String>> node : dependencies.entrySet()) {
+            CompletableFuture<?>[] barrier = new CompletableFuture<?>[node.getValue().size()];
+
+            for (int i = 0; i < barrier.length; i++) {
+                barrier[i] = gatherings.get(node.getValue().get(i));
+            }
+
+            String itemTypeId = node.getKey();
+            Supplier<? extends List<?>> source = sources.get(itemTypeId);
+
+            CompletableFuture<List<?>> gathering = CompletableFuture.allOf(barrier)
+                    .handle((ignored, failure) -> null)
+                    .thenApplyAsync(ignored -> source == null ? null : gather(itemTypeId, source), executor);
+
+            gatherings.put(node.getKey(), gathering);
+        }
+
+        cycle.clear();
+        cycle.putAll(gatherings);
+    }
+
+    /***
+     * Waits until a node of the current cycle, and thus all its dependencies, is gathered, without
+     * taking its resources. Used for the nodes without resources, which only order what an updater
+     * reads after what other updaters gather. Returns at once if the cycle was not started.
+     *
+     * @param nodeId item type of an updater, or name of a node without resources
+     */
+    public void await(final String nodeId) {
+        CompletableFuture<List<?>> gathering = cycle.get(nodeId);
+
+        if (gathering == null || gathering.isDone()) {
+            return;
+        }
+
+        Span wait = AdapterMetrics.getInstance().startStage(nodeId, UpdaterStage.WAIT);
+
+        try {
+            gathering.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // Seen by the updater that takes the resources.
+            return;
+        } finally {
+            wait.end();
+        }
+    }
+
+    /***
+     * Takes the resources gathered for an updater on the current cycle, waiting if they are not
+     * ready yet. They are only taken once: if the cycle was not started, or they were already taken,
+     * they are gathered again on the calling thread.
+     *
+     * @param itemTypeId item type of the updater
+     * @param source gathers the resources when they were not gathered in advance
+     * @param <R> resource type
+     * @return the resources of the updater
+     */
+    @SuppressWarnings("unchecked")
+    public <R> List<R> takeResources(final String itemTypeId, final Supplier<List<R>> source) {
+        CompletableFuture<List<?>> gathering = cycle.remove(itemTypeId);
+        List<?> resources = null;
+
+        if (gathering != null) {
+            Span wait = AdapterMetrics.getInstance().startStage(itemTypeId, UpdaterStage.WAIT);
+
+            try {
+                resources = gathering.get();
+                wait.end();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new IllegalStateException("Could not gather the resources of '" + itemTypeId + "'",
+                        e.getCause());
+            }
+        }
+
+        if (resources == null) {
+            return gather(itemTypeId, source);
+        }
+
+        return (List<R>) resources;
+    }
+
+    /***
+     * Takes the resources of an updater, as takeResources(), and times their iteration.
+     *
+     * @param itemTypeId item type of the updater
+     * @param source gathers the resources when they were not gathered in advance
+     * @param <R> resource type
+     * @return iterator over the resources of the updater
+     */
+    public <R> Iterator<R> iterateResources(final String itemTypeId, final Supplier<List<R>> source) {
+        List<R> resources = takeResources(itemTypeId, source);
+        Span iteration = AdapterMetrics.getInstance().startStage(itemTypeId, UpdaterStage.ITERATE)
+                .setResources(resources.size());
+        Iterator<R> iterator = resources.iterator();
+
+        return new Iterator<R>() {
+            private boolean ended = false;
+
+            @Override
+            public boolean hasNext() {
+                boolean hasNext = iterator.hasNext();
+
+                if (!hasNext && !ended) {
+                    ended = true;
+                    iteration.end();
+                }
+
+                return hasNext;
+            }
+
+            @Override
+            public R next() {
+                return iterator.next();
+            }
+        };
+    }
+
+    private static <L extends List<?>> L gather(final String itemTypeId, final Supplier<L> source) {
+        Span gathering = AdapterMetrics.getInstance().startStage(itemTypeId, UpdaterStage.GATHER);
+
+        try {
+            L resources = source.get();
+
+            if (resources != null) {
+                gathering.setResources(resources.size());
+            }
+
+            return resources;
+        } finally {
+            gathering.end();
+        }
+    }
+}
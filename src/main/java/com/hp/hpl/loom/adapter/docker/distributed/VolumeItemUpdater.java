@@ -18,6 +18,7 @@ import java.util.Map;
 import com.hp.hpl.loom.adapter.AggregationUpdater;
 import com.hp.hpl.loom.adapter.BaseAdapter;
 import com.hp.hpl.loom.adapter.ConnectedItem;
+import com.hp.hpl.loom.adapter.docker.distributed.realworld.AdapterProperties;
 import com.hp.hpl.loom.adapter.docker.distributed.realworld.HostManager;
 import com.hp.hpl.loom.adapter.docker.distributed.realworld.Volume;
 import com.hp.hpl.loom.adapter.docker.items.Relationships;
@@ -38,6 +39,10 @@ public class VolumeItemUpdater extends AggregationUpdater<VolumeItem, VolumeItem
 
     protected DockerDistributedCollector dockerCollector = null;
 
+    // Delta mode (deltaMode): the attributes of a volume are all part of its id, thus a volume whose id did
+    // not change is reported as unchanged instead of having its attributes built again.
+    private final boolean deltaMode;
+
     /**
      * Constructs a VolumeItemUpdater.
      *
@@ -52,6 +57,9 @@ public class VolumeItemUpdater extends AggregationUpdater<VolumeItem, VolumeItem
             final DockerDistributedCollector dockerCollector) throws NoSuchItemTypeException, NoSuchProviderException {
         super(aggregation, adapter, dockerCollector);
         this.dockerCollector = dockerCollector;
+        this.deltaMode = AdapterProperties.getBoolean(adapter, "deltaMode", false);
+
+        dockerCollector.getUpdaterGraph().setResourceSource(Types.VOLUME_TYPE_ID, this::gatherResources);
     }
 
     /**
@@ -75,9 +83,18 @@ public class VolumeItemUpdater extends AggregationUpdater<VolumeItem, VolumeItem
      */
     @Override
     protected Iterator<Volume> getResourceIterator() {
+        return dockerCollector.getUpdaterGraph().iterateResources(Types.VOLUME_TYPE_ID, this::gatherResources);
+    }
+
+    /***
+     * Lists the volumes of all hosts. Gathered in advance, once the hosts are refreshed.
+     *
+     * @return the resources
+     */
+    protected List<Volume> gatherResources() {
         List<Volume> volumeList = HostManager.getInstance(adapter).getAllVolumes();
 
-        return volumeList.iterator();
+        return volumeList;
     }
 
     @Override
@@ -144,6 +161,8 @@ public class VolumeItemUpdater extends AggregationUpdater<VolumeItem, VolumeItem
 
         if (!volumeAttributes.getItemId().equals(Integer.toString(resource.hashCode()))) {
             status = ChangeStatus.CHANGED_UPDATE;
+        } else if (deltaMode) {
+            status = ChangeStatus.UNCHANGED;
         } else {
             status = ChangeStatus.CHANGED_IGNORE;
         }
@@ -0,0 +1,281 @@
+/*******************************************************************************
+ * (c) Copyright 2017 Hewlett Packard Enterprise Development LP Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *******************************************************************************/
+package com.hp.hpl.loom.adapter.docker.distributed.metrics;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Hashtable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.DoubleSupplier;
+import java.util.function.Supplier;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/***
+ * Timers, counters and gauges of the adapter, e.g. the refresh duration of each host and phase, the
+ * calls to the daemons and the cache sizes.
+ *
+ * <p>
+ * A meter is identified by its name and tags (e.g. docker.host.phase with host and phase). Each one
+ * is registered on the platform MBean server, under the domain com.hp.hpl.loom.adapter.docker, and
+ * all of them can be pulled in the Prometheus text format from a MetricsEndpoint. The meters of a
+ * host are created once, by its HostMetrics, and removed with the host.
+ */
+public final class AdapterMetrics {
+    private static final Log LOG = LogFactory.getLog(AdapterMetrics.class);
+
+    /***
+     * Domain of the MBeans.
+     */
+    public static final String JMX_DOMAIN = "com.hp.hpl.loom.adapter.docker";
+
+    private static final AdapterMetrics INSTANCE = new AdapterMetrics();
+
+    // name{tags} -> meter, sorted so that the meters of the same name are exposed together
+    private final Map<String, Meter> meters = new ConcurrentSkipListMap<String, Meter>();
+    private final Map<String, HostMetrics> hosts = new ConcurrentHashMap<String, HostMetrics>();
+    private final MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+
+    private MetricsEndpoint endpoint = null;
+
+    /***
+     * A registered meter.
+     */
+    static final class Meter {
+        private final String name;
+        private final Map<String, String> tags;
+        private final Object value;
+        private final ObjectName objectName;
+
+        private Meter(final String name, final Map<String, String> tags, final Object value,
+                final ObjectName objectName) {
+            this.name = name;
+            this.tags = tags;
+            this.value = value;
+            this.objectName = objectName;
+        }
+
+        String getName() {
+            return name;
+        }
+
+        Map<String, String> getTags() {
+            return tags;
+        }
+
+        Object getValue() {
+            return value;
+        }
+    }
+
+    private AdapterMetrics() {}
+
+    /***
+     * @return the metrics of the adapter
+     */
+    public static AdapterMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    /***
+     * Returns the timer of the given name and tags, created on first use.
+     *
+     * @param name name of the timer
+     * @param tags tag names and values, alternated
+     * @return the timer
+     */
+    public Timer timer(final String name, final String... tags) {
+        return (Timer) register(name, tags, Timer::new);
+    }
+
+    /***
+     * Returns the counter of the given name and tags, created on first use.
+     *
+     * @param name name of the counter
+     * @param tags tag names and values, alternated
+     * @return the counter
+     */
+    public Counter counter(final String name, final String... tags) {
+        return (Counter) register(name, tags, Counter::new);
+    }
+
+    /***
+     * Registers a gauge, unless one of the same name and tags exists already.
+     *
+     * @param name name of the gauge
+     * @param value reads the current value
+     * @param tags tag names and values, alternated
+     * @return the gauge
+     */
+    public Gauge gauge(final String name, final DoubleSupplier value, final String... tags) {
+        return (Gauge) register(name, tags, () -> new Gauge(value));
+    }
+
+    /***
+     * Starts a stage of an updater, timed on docker.updater.stage.
+     *
+     * @param itemTypeId item type of the updater
+     * @param stage stage of the updater
+     * @return the stage, to be ended once done
+     */
+    public Span startStage(final String itemTypeId, final UpdaterStage stage) {
+        return new Span(timer("docker.updater.stage", "itemType", itemTypeId, "stage", stage.getTag()),
+                FlightRecorderSupport.isAvailable() ? UpdaterStageEvent.begin(itemTypeId, stage) : null);
+    }
+
+    /***
+     * Returns the meters of a host, created on first use.
+     *
+     * @param hostUID UID of the host
+     * @return meters of the host
+     */
+    public HostMetrics host(final String hostUID) {
+        return hosts.computeIfAbsent(hostUID, (uid) -> new HostMetrics(this, uid));
+    }
+
+    /***
+     * Returns the meters of a host for a Host instance, which releases them once closed. Several
+     * instances may hold the meters of the same host at once, e.g. a host being initialised again
+     * after its definition changed while the previous initialisation is still running.
+     *
+     * @param hostUID UID of the host
+     * @return meters of the host
+     */
+    public HostMetrics acquireHost(final String hostUID) {
+        return hosts.compute(hostUID, (uid, metrics) -> {
+            HostMetrics held = metrics == null ? new HostMetrics(this, uid) : metrics;
+            held.hold();
+            return held;
+        });
+    }
+
+    /***
+     * Releases the meters of a host acquired by a Host instance. The meters are removed once the
+     * last instance holding them releases them, e.g. once the host is removed from the host file.
+     *
+     * @param hostUID UID of the host
+     * @param released meters returned by acquireHost
+     */
+    public void releaseHost(final String hostUID, final HostMetrics released) {
+        hosts.computeIfPresent(hostUID, (uid, metrics) -> {
+            if (metrics != released || !metrics.release()) {
+                return metrics;
+            }
+
+            // Under the lock of the host, thus an instance acquiring it meanwhile creates new meters.
+            removeMeters(uid);
+            return null;
+        });
+    }
+
+    private void removeMeters(final String hostUID) {
+        meters.values().removeIf((meter) -> {
+            if (hostUID.equals(meter.tags.get(HostMetrics.HOST_TAG))) {
+                unregister(meter);
+                return true;
+            }
+
+            return false;
+        });
+    }
+
+    /***
+     * Starts the pull endpoint, if not started yet.
+     *
+     * @param port port to listen on
+     * @throws IOException if the port cannot be bound
+     */
+    public synchronized void startEndpoint(final int port) throws IOException {
+        if (endpoint == null) {
+            endpoint = new MetricsEndpoint(this, port);
+            LOG.info("Metrics available on port " + port + MetricsEndpoint.PATH);
+        }
+    }
+
+    /***
+     * @return every meter, sorted by name
+     */
+    Iterable<Meter> getMeters() {
+        return meters.values();
+    }
+
+    private Object register(final String name, final String[] tags, final Supplier<Object> factory) {
+        String id = idOf(name, tags);
+        Meter meter = meters.get(id);
+
+        if (meter != null) {
+            return meter.value;
+        }
+
+        synchronized (meters) {
+            return meters.computeIfAbsent(id, (key) -> {
+                Map<String, String> tagMap = new LinkedHashMap<String, String>();
+
+                for (int i = 0; i + 1 < tags.length; i += 2) {
+                    tagMap.put(tags[i], tags[i + 1]);
+                }
+
+                Object value = factory.get();
+                Meter created = new Meter(name, tagMap, value, objectNameOf(name, value, tagMap));
+
+                try {
+                    mbeanServer.registerMBean(value, created.objectName);
+                } catch (JMException e) {
+                    LOG.warn("Could not register '" + key + "' on JMX", e);
+                }
+
+                return created;
+            }).value;
+        }
+    }
+
+    private void unregister(final Meter meter) {
+        try {
+            if (mbeanServer.isRegistered(meter.objectName)) {
+                mbeanServer.unregisterMBean(meter.objectName);
+            }
+        } catch (JMException e) {
+            LOG.warn("Could not unregister '" + meter.objectName + "' from JMX", e);
+        }
+    }
+
+    private static String idOf(final String name, final String[] tags) {
+        StringBuilder id = new StringBuilder(name).append('{');
+
+        for (int i = 0; i + 1 < tags.length; i += 2) {
+            id.append(tags[i]).append('=').append(tags[i + 1]).append(',');
+        }
+
+        return id.append('}').toString();
+    }
+
+    private static ObjectName objectNameOf(final String name, final Object value, final Map<String, String> tags) {
+        Hashtable<String, String> properties = new Hashtable<String, String>();
+
+        properties.put("type", value.getClass().getSimpleName());
+        properties.put("name", ObjectName.quote(name));
+        tags.forEach((tag, tagValue) -> properties.put(tag, ObjectName.quote(tagValue)));
+
+        try {
+            return new ObjectName(JMX_DOMAIN, properties);
+        } catch (JMException e) {
+            throw new IllegalArgumentException("Invalid meter name " + name + tags, e);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/*******************************************************************************
+ * (c) Copyright 2017 Hewlett Packard Enterprise Development LP Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *******************************************************************************/
+package com.hp.hpl.loom.adapter.docker.distributed.metrics;
+
+import jdk.jfr.Event;
+
+import com.spotify.docker.client.exceptions.DockerRequestException;
+
+/***
+ * A call to a docker daemon or a cAdvisor, started by HostMetrics.startCall(). Ending it records the
+ * call on the metrics of the host and, when FlightRecorderSupport is available, commits its Flight
+ * Recorder event.
+ */
+public final class Call {
+    private static final int HTTP_OK = 200;
+    private static final int HTTP_MULTIPLE_CHOICES = 300;
+
+    private final HostMetrics metrics;
+    private final Endpoint endpoint;
+    private final long startNanos;
+
+    // null without Flight Recorder
+    private final Event event;
+
+    Call(final HostMetrics metrics, final Endpoint endpoint) {
+        this.metrics = metrics;
+        this.endpoint = endpoint;
+        event = FlightRecorderSupport.isAvailable() ? CallEvent.begin(metrics.getHostUID(), endpoint) : null;
+        startNanos = System.nanoTime();
+    }
+
+    /***
+     * Ends a successful call whose response size is unknown, e.g. made through the docker client.
+     */
+    public void succeeded() {
+        end(HTTP_OK, 0);
+    }
+
+    /***
+     * Ends a call that failed with an exception.
+     *
+     * @param failure the exception
+     */
+    public void failed(final Throwable failure) {
+        end(failure instanceof DockerRequestException ? ((DockerRequestException) failure).status() : 0, 0);
+    }
+
+    /***
+     * Ends the call. Any status other than 2xx counts as an error.
+     *
+     * @param status HTTP status of the response, 0 if there was none
+     * @param bytes size of the response, 0 if unknown
+     */
+    public void end(final int status, final long bytes) {
+        metrics.recordCall(endpoint, startNanos, status >= HTTP_OK && status < HTTP_MULTIPLE_CHOICES);
+
+        if (bytes > 0) {
+            metrics.recordBytes(endpoint, bytes);
+        }
+
+        if (event != null) {
+            CallEvent.end(event, status, bytes);
+        }
+    }
+}
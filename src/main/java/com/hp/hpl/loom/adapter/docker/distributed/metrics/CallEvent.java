@@ -0,0 +1,84 @@
+/*******************************************************************************
+ * (c) Copyright 2017 Hewlett Packard Enterprise Development LP Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *******************************************************************************/
+package com.hp.hpl.loom.adapter.docker.distributed.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/***
+ * Flight Recorder event of a call to a docker daemon or a cAdvisor. Only created through Call, when
+ * FlightRecorderSupport is available. Without stack trace, to be cheap enough for a continuous
+ * recording.
+ */
+@Name("com.hp.hpl.loom.adapter.docker.Call")
+@Label("Docker Adapter Call")
+@Category({"Loom", "Docker Adapter"})
+@StackTrace(false)
+@Description("Call to a docker daemon or to a cAdvisor")
+final class CallEvent extends Event {
+    @Label("Host")
+    private String host;
+
+    @Label("Endpoint")
+    private String endpoint;
+
+    @Label("Status")
+    @Description("HTTP status of the response, 0 if there was none")
+    private int status;
+
+    @Label("Bytes")
+    @Description("Size of the response, 0 when the client does not expose it")
+    @DataAmount
+    private long bytes;
+
+    private CallEvent(final String host, final String endpoint) {
+        this.host = host;
+        this.endpoint = endpoint;
+    }
+
+    /***
+     * Starts timing a call.
+     *
+     * @param host host UID
+     * @param endpoint called endpoint
+     * @return the event, as an Event so that callers never refer to this class
+     */
+    static Event begin(final String host, final Endpoint endpoint) {
+        CallEvent event = new CallEvent(host, endpoint.getService() + ":" + endpoint.getPath());
+        event.begin();
+
+        return event;
+    }
+
+    /***
+     * Ends and commits the event of a call.
+     *
+     * @param event event returned by begin()
+     * @param status HTTP status of the response, 0 if there was none
+     * @param bytes size of the response
+     */
+    static void end(final Event event, final int status, final long bytes) {
+        CallEvent callEvent = (CallEvent) event;
+
+        callEvent.end();
+
+        if (callEvent.shouldCommit()) {
+            callEvent.status = status;
+            callEvent.bytes = bytes;
+            callEvent.commit();
+        }
+    }
+}
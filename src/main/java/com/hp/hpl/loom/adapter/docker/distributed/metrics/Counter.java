@@ -0,0 +1,39 @@
+/*******************************************************************************
+ * (c) Copyright 2017 Hewlett Packard Enterprise Development LP Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *******************************************************************************/
+package com.hp.hpl.loom.adapter.docker.distributed.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/***
+ * Monotonic count of events, e.g. calls to a daemon or bytes received.
+ */
+public class Counter implements CounterMBean {
+    private final LongAdder count = new LongAdder();
+
+    /***
+     * Counts one event.
+     */
+    public void increment() {
+        count.increment();
+    }
+
+    /***
+     * @param amount events to count
+     */
+    public void increment(final long amount) {
+        count.add(amount);
+    }
+
+    @Override
+    public long getCount() {
+        return count.sum();
+    }
+}
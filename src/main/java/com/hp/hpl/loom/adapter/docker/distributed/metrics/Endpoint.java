@@ -0,0 +1,49 @@
+/*******************************************************************************
+ * (c) Copyright 2017 Hewlett Packard Enterprise Development LP Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *******************************************************************************/
+package com.hp.hpl.loom.adapter.docker.distributed.metrics;
+
+/***
+ * Remote endpoints the adapter calls on every host, as tagged on the metrics.
+ */
+public enum Endpoint {
+    INFO("docker", "info"),
+    CONTAINER_LIST("docker", "containers/json"),
+    CONTAINER_INSPECT("docker", "containers/{id}/json"),
+    CONTAINER_STATS("docker", "containers/{id}/stats"),
+    IMAGE_LIST("docker", "images/json"),
+    EVENTS("docker", "events"),
+    CADVISOR_SUMMARY("cadvisor", "summary"),
+    CADVISOR_MACHINE("cadvisor", "machine"),
+    CADVISOR_CONTAINERS("cadvisor", "summary/docker"),
+    CADVISOR_METRICS("cadvisor", "metrics");
+
+    private final String service;
+    private final String path;
+
+    Endpoint(final String service, final String path) {
+        this.service = service;
+        this.path = path;
+    }
+
+    /***
+     * @return docker or cadvisor
+     */
+    public String getService() {
+        return service;
+    }
+
+    /***
+     * @return path of the endpoint, without API version
+     */
+    public String getPath() {
+        return path;
+    }
+}
@@ -0,0 +1,38 @@
+/*******************************************************************************
+ * (c) Copyright 2017 Hewlett Packard Enterprise Development LP Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *******************************************************************************/
+package com.hp.hpl.loom.adapter.docker.distributed.metrics;
+
+/***
+ * Tells whether the JDK Flight Recorder API (jdk.jfr) is available: JDK 11 and later, and JDK 8
+ * since update 262. The event classes of this package are only loaded when it is, thus the adapter
+ * still runs on older JDK 8 updates, without the events.
+ */
+final class FlightRecorderSupport {
+    private static final boolean AVAILABLE = isEventClassPresent();
+
+    private FlightRecorderSupport() {}
+
+    /***
+     * @return true if the events can be created
+     */
+    static boolean isAvailable() {
+        return AVAILABLE;
+    }
+
+    private static boolean isEventClassPresent() {
+        try {
+            Class.forName("jdk.jfr.Event", false, FlightRecorderSupport.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+}
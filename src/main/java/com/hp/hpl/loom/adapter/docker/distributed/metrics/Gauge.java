@@ -0,0 +1,32 @@
+/*******************************************************************************
+ * (c) Copyright 2017 Hewlett Packard Enterprise Development LP Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *******************************************************************************/
+package com.hp.hpl.loom.adapter.docker.distributed.metrics;
+
+import java.util.function.DoubleSupplier;
+
+/***
+ * Value sampled when read, e.g. the size of a cache.
+ */
+public class Gauge implements GaugeMBean {
+    private final DoubleSupplier value;
+
+    /***
+     * @param value reads the current value, called on every read of the gauge
+     */
+    public Gauge(final DoubleSupplier value) {
+        this.value = value;
+    }
+
+    @Override
+    public double getValue() {
+        return value.getAsDouble();
+    }
+}
@@ -0,0 +1,326 @@
+/*******************************************************************************
+ * (c) Copyright 2017 Hewlett Packard Enterprise Development LP Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *******************************************************************************/
+package com.hp.hpl.loom.adapter.docker.distributed.metrics;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.DoubleSupplier;
+
+/***
+ * Meters of a single host, all tagged with its UID:
+ * <ul>
+ * <li>docker.host.refresh: duration of the whole refresh, and docker.host.refresh.failures</li>
+ * <li>docker.host.phase: duration of each Phase of the refresh</li>
+ * <li>[docker|cadvisor].api.calls, .errors and .latency: calls to each Endpoint, and
+ * cadvisor.api.bytes received (the docker client does not expose its response sizes)</li>
+ * <li>docker.inspection.cache.hits and .misses: listed containers whose inspection was reused or
+ * requested</li>
+ * <li>docker.inspection.batch and docker.inspection.rate: duration and inspections per second of
+ * each batch of inspections, whose tail latency is that of docker.api.latency (containers/{id}/json)</li>
+ * </ul>
+ * The meters are created with the HostMetrics, thus recording never looks them up. Calls and phases
+ * are started with startCall() and startPhase(), which also emit Flight Recorder events.
+ */
+public final class HostMetrics {
+    /***
+     * Tag holding the host UID.
+     */
+    public static final String HOST_TAG = "host";
+
+    private final AdapterMetrics registry;
+    private final String hostUID;
+
+    private final Timer refresh;
+    private final Counter refreshFailures;
+    private final Counter inspectionHits;
+    private final Counter inspectionMisses;
+    private final Timer inspectionBatches;
+    private final Map<Phase, Timer> phases = new EnumMap<Phase, Timer>(Phase.class);
+    private final Map<Endpoint, Counter> calls = new EnumMap<Endpoint, Counter>(Endpoint.class);
+    private final Map<Endpoint, Counter> errors = new EnumMap<Endpoint, Counter>(Endpoint.class);
+    private final Map<Endpoint, Timer> latencies = new EnumMap<Endpoint, Timer>(Endpoint.class);
+    private final Map<Endpoint, Counter> bytes = new EnumMap<Endpoint, Counter>(Endpoint.class);
+
+    // Totals when the previous refresh ended, only updated by the thread refreshing the host.
+    private long callsBefore = 0;
+    private long hitsBefore = 0;
+    private long missesBefore = 0;
+
+    // Last refresh, as exposed by the collector item type.
+    private volatile long lastRefreshNanos = 0;
+    private volatile long lastCycleCalls = 0;
+    private volatile long lastCycleHits = 0;
+    private volatile long lastCycleMisses = 0;
+
+    // Host instances holding these meters, see AdapterMetrics.acquireHost, guarded by the registry.
+    private int holders = 0;
+
+    // name -> current source of each gauge registered with gauge()
+    private final Map<String, DoubleSupplier> gaugeSources = new ConcurrentHashMap<String, DoubleSupplier>();
+
+    // Inspections per second of the last batch, see recordInspectionBatch.
+    private volatile double lastInspectionRate = 0;
+
+    HostMetrics(final AdapterMetrics registry, final String hostUID) {
+        this.registry = registry;
+        this.hostUID = hostUID;
+
+        refresh = registry.timer("docker.host.refresh", HOST_TAG, hostUID);
+        refreshFailures = registry.counter("docker.host.refresh.failures", HOST_TAG, hostUID);
+        inspectionHits = registry.counter("docker.inspection.cache.hits", HOST_TAG, hostUID);
+        inspectionMisses = registry.counter("docker.inspection.cache.misses", HOST_TAG, hostUID);
+        inspectionBatches = registry.timer("docker.inspection.batch", HOST_TAG, hostUID);
+        registry.gauge("docker.inspection.rate", () -> lastInspectionRate, HOST_TAG, hostUID);
+
+        for (Phase phase : Phase.values()) {
+            phases.put(phase, registry.timer("docker.host.phase", HOST_TAG, hostUID, "phase", phase.getTag()));
+        }
+
+        for (Endpoint endpoint : Endpoint.values()) {
+            String prefix = endpoint.getService() + ".api.";
+
+            calls.put(endpoint, registry.counter(prefix + "calls", HOST_TAG, hostUID, "endpoint", endpoint.getPath()));
+            errors.put(endpoint,
+                    registry.counter(prefix + "errors", HOST_TAG, hostUID, "endpoint", endpoint.getPath()));
+            latencies.put(endpoint,
+                    registry.timer(prefix + "latency", HOST_TAG, hostUID, "endpoint", endpoint.getPath()));
+
+            if ("cadvisor".equals(endpoint.getService())) {
+                bytes.put(endpoint,
+                        registry.counter(prefix + "bytes", HOST_TAG, hostUID, "endpoint", endpoint.getPath()));
+            }
+        }
+    }
+
+    /***
+     * Counts a Host instance holding these meters.
+     */
+    void hold() {
+        holders++;
+    }
+
+    /***
+     * Uncounts a Host instance holding these meters.
+     *
+     * @return true if no instance holds them anymore
+     */
+    boolean release() {
+        return --holders <= 0;
+    }
+
+    /***
+     * @return UID of the host
+     */
+    public String getHostUID() {
+        return hostUID;
+    }
+
+    /***
+     * @return duration of the refreshes of the host
+     */
+    public Timer getRefresh() {
+        return refresh;
+    }
+
+    /***
+     * @return failed refreshes of the host
+     */
+    public Counter getRefreshFailures() {
+        return refreshFailures;
+    }
+
+    /***
+     * @param phase phase of the refresh
+     * @return duration of the phase
+     */
+    public Timer getPhase(final Phase phase) {
+        return phases.get(phase);
+    }
+
+    /***
+     * @param endpoint remote endpoint
+     * @return calls to the endpoint
+     */
+    public Counter getCalls(final Endpoint endpoint) {
+        return calls.get(endpoint);
+    }
+
+    /***
+     * @param endpoint remote endpoint
+     * @return failed calls to the endpoint
+     */
+    public Counter getErrors(final Endpoint endpoint) {
+        return errors.get(endpoint);
+    }
+
+    /***
+     * @param endpoint remote endpoint
+     * @return duration of the calls to the endpoint
+     */
+    public Timer getLatency(final Endpoint endpoint) {
+        return latencies.get(endpoint);
+    }
+
+    /***
+     * @return listed containers whose inspection was reused
+     */
+    public Counter getInspectionHits() {
+        return inspectionHits;
+    }
+
+    /***
+     * @return listed containers that were inspected
+     */
+    public Counter getInspectionMisses() {
+        return inspectionMisses;
+    }
+
+    /***
+     * Records a refresh of the host, and the calls and inspections since the previous one.
+     *
+     * @param startNanos start of the refresh, as given by System.nanoTime()
+     * @param success false if the refresh failed
+     */
+    public void recordRefresh(final long startNanos, final boolean success) {
+        lastRefreshNanos = refresh.recordSince(startNanos);
+
+        if (!success) {
+            refreshFailures.increment();
+        }
+
+        long callsNow = 0;
+        for (Counter counter : calls.values()) {
+            callsNow += counter.getCount();
+        }
+        long hitsNow = inspectionHits.getCount();
+        long missesNow = inspectionMisses.getCount();
+
+        lastCycleCalls = callsNow - callsBefore;
+        lastCycleHits = hitsNow - hitsBefore;
+        lastCycleMisses = missesNow - missesBefore;
+
+        callsBefore = callsNow;
+        hitsBefore = hitsNow;
+        missesBefore = missesNow;
+    }
+
+    /***
+     * @return duration of the last refresh, in nanoseconds
+     */
+    public long getLastRefreshNanos() {
+        return lastRefreshNanos;
+    }
+
+    /***
+     * @return calls to the host and its cAdvisor since the previous refresh, up to the end of the
+     *         last one
+     */
+    public long getLastCycleCalls() {
+        return lastCycleCalls;
+    }
+
+    /***
+     * @return share of the listed containers whose inspection was reused on the last refresh, from 0
+     *         to 1, or -1 if no container was listed
+     */
+    public double getLastCycleHitRate() {
+        long hits = lastCycleHits;
+        long total = hits + lastCycleMisses;
+
+        return total == 0 ? -1 : hits / (double) total;
+    }
+
+    /***
+     * Records a batch of inspections of the host (see ContainerInspectionEngine). The latency of
+     * each inspection is recorded by its call.
+     *
+     * @param inspected containers inspected successfully
+     * @param elapsedNanos duration of the whole batch
+     */
+    public void recordInspectionBatch(final int inspected, final long elapsedNanos) {
+        inspectionBatches.record(elapsedNanos);
+        lastInspectionRate =
+                elapsedNanos <= 0 ? 0 : inspected / (elapsedNanos / (double) TimeUnit.SECONDS.toNanos(1));
+    }
+
+    /***
+     * @return inspections per second of the last batch
+     */
+    public double getLastInspectionRate() {
+        return lastInspectionRate;
+    }
+
+    /***
+     * Starts a call to the host.
+     *
+     * @param endpoint remote endpoint
+     * @return the call, to be ended once the response is read or the call failed
+     */
+    public Call startCall(final Endpoint endpoint) {
+        return new Call(this, endpoint);
+    }
+
+    /***
+     * Starts a phase of the refresh of the host.
+     *
+     * @param phase phase of the refresh
+     * @return the phase, to be ended once done
+     */
+    public Span startPhase(final Phase phase) {
+        return new Span(phases.get(phase),
+                FlightRecorderSupport.isAvailable() ? PhaseEvent.begin(hostUID, phase) : null);
+    }
+
+    /***
+     * Records a call to the host.
+     *
+     * @param endpoint remote endpoint
+     * @param startNanos start of the call, as given by System.nanoTime()
+     * @param success false if the call failed
+     */
+    void recordCall(final Endpoint endpoint, final long startNanos, final boolean success) {
+        calls.get(endpoint).increment();
+        latencies.get(endpoint).recordSince(startNanos);
+
+        if (!success) {
+            errors.get(endpoint).increment();
+        }
+    }
+
+    /***
+     * Records the size of a response of the cAdvisor.
+     *
+     * @param endpoint cAdvisor endpoint
+     * @param received bytes received
+     */
+    void recordBytes(final Endpoint endpoint, final long received) {
+        Counter counter = bytes.get(endpoint);
+
+        if (counter != null) {
+            counter.increment(received);
+        }
+    }
+
+    /***
+     * Registers a gauge of the host, e.g. the size of one of its caches. Registering it again
+     * replaces its source, so that the gauge follows the Host instance currently live.
+     *
+     * @param name name of the gauge
+     * @param value reads the current value
+     */
+    public void gauge(final String name, final DoubleSupplier value) {
+        if (gaugeSources.put(name, value) == null) {
+            registry.gauge(name, () -> gaugeSources.get(name).getAsDouble(), HOST_TAG, hostUID);
+        }
+    }
+}
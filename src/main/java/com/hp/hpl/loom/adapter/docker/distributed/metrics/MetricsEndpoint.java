@@ -0,0 +1,204 @@
+/*******************************************************************************
+ * (c) Copyright 2017 Hewlett Packard Enterprise Development LP Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *******************************************************************************/
+package com.hp.hpl.loom.adapter.docker.distributed.metrics;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/***
+ * Serves the AdapterMetrics in the Prometheus text format on http://[adapter host]:[port]/metrics.
+ *
+ * <p>
+ * Timers are exposed as summaries in seconds, with the 0.5, 0.95 and 0.99 quantiles of the recent
+ * window (see Timer), and their maximum as a separate gauge family with a _max suffix; counters with
+ * a _total suffix. The dots of the meter names become underscores, e.g.
+ * docker_host_phase_seconds{host="...",phase="inspection",quantile="0.99"}.
+ *
+ * <p>
+ * Requests are served by a single daemon thread, thus the endpoint never keeps the JVM alive.
+ */
+public class MetricsEndpoint {
+    /***
+     * Path of the metrics.
+     */
+    public static final String PATH = "/metrics";
+
+    private static final int HTTP_OK = 200;
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+    private static final double[] QUANTILES = {0.5, 0.95, 0.99};
+    private static final double MILLIS_PER_SECOND = TimeUnit.SECONDS.toMillis(1);
+
+    private final AdapterMetrics metrics;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    /***
+     * Starts serving the metrics.
+     *
+     * @param metrics metrics to serve
+     * @param port port to listen on
+     * @throws IOException if the port cannot be bound
+     */
+    public MetricsEndpoint(final AdapterMetrics metrics, final int port) throws IOException {
+        this.metrics = metrics;
+
+        server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.createContext(PATH, this::serve);
+        executor = Executors.newSingleThreadExecutor((runnable) -> {
+            Thread thread = new Thread(runnable, "metrics-endpoint");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /***
+     * Stops serving the metrics.
+     */
+    public void stop() {
+        server.stop(0);
+        executor.shutdown();
+    }
+
+    private void serve(final HttpExchange exchange) throws IOException {
+        try {
+            byte[] body = scrape(metrics).getBytes(StandardCharsets.UTF_8);
+
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            exchange.sendResponseHeaders(HTTP_OK, body.length);
+
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /***
+     * Writes every meter in the Prometheus text format.
+     *
+     * @param metrics metrics to write
+     * @return the exposition
+     */
+    public static String scrape(final AdapterMetrics metrics) {
+        StringBuilder out = new StringBuilder();
+        String lastName = null;
+
+        // _max samples of the current timer family, written as a gauge family once it is complete
+        StringBuilder maxima = new StringBuilder();
+
+        for (AdapterMetrics.Meter meter : metrics.getMeters()) {
+            String name = meter.getName().replace('.', '_');
+            Object value = meter.getValue();
+
+            if (value instanceof Timer) {
+                Timer timer = (Timer) value;
+                name += "_seconds";
+
+                if (!name.equals(lastName)) {
+                    appendMaxima(out, lastName, maxima);
+                    out.append("# TYPE ").append(name).append(" summary\n");
+                }
+                for (double quantile : QUANTILES) {
+                    sample(out, name, meter.getTags(), "quantile", Double.toString(quantile),
+                            timer.percentileMillis(quantile) / MILLIS_PER_SECOND);
+                }
+                sample(out, name + "_count", meter.getTags(), null, null, timer.getCount());
+                sample(out, name + "_sum", meter.getTags(), null, null, timer.getTotalTimeMillis() / MILLIS_PER_SECOND);
+                sample(maxima, name + "_max", meter.getTags(), null, null, timer.getMaxMillis() / MILLIS_PER_SECOND);
+            } else if (value instanceof Counter) {
+                name += "_total";
+
+                if (!name.equals(lastName)) {
+                    appendMaxima(out, lastName, maxima);
+                    out.append("# TYPE ").append(name).append(" counter\n");
+                }
+                sample(out, name, meter.getTags(), null, null, ((Counter) value).getCount());
+            } else {
+                if (!name.equals(lastName)) {
+                    appendMaxima(out, lastName, maxima);
+                    out.append("# TYPE ").append(name).append(" gauge\n");
+                }
+                sample(out, name, meter.getTags(), null, null, ((Gauge) value).getValue());
+            }
+
+            lastName = name;
+        }
+
+        appendMaxima(out, lastName, maxima);
+
+        return out.toString();
+    }
+
+    /***
+     * Writes the pending _max samples of a timer family as their own gauge family: samples of a
+     * family must not be interleaved with those of another one.
+     */
+    private static void appendMaxima(final StringBuilder out, final String timerName, final StringBuilder maxima) {
+        if (maxima.length() > 0) {
+            out.append("# TYPE ").append(timerName).append("_max gauge\n").append(maxima);
+            maxima.setLength(0);
+        }
+    }
+
+    private static void sample(final StringBuilder out, final String name, final Map<String, String> tags,
+            final String extraTag, final String extraValue, final double value) {
+        out.append(name);
+
+        if (!tags.isEmpty() || extraTag != null) {
+            char separator = '{';
+
+            for (Map.Entry<String, String> tag : tags.entrySet()) {
+                out.append(separator);
+                label(out, tag.getKey(), tag.getValue());
+                separator = ',';
+            }
+            if (extraTag != null) {
+                out.append(separator);
+                label(out, extraTag, extraValue);
+            }
+            out.append('}');
+        }
+
+        out.append(' ').append(String.format(Locale.ROOT, "%s", value)).append('\n');
+    }
+
+    private static void label(final StringBuilder out, final String name, final String value) {
+        out.append(name).append("=\"");
+
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+
+            if (c == '\\' || c == '"') {
+                out.append('\\').append(c);
+            } else if (c == '\n') {
+                out.append("\\n");
+            } else {
+                out.append(c);
+            }
+        }
+
+        out.append('"');
+    }
+}
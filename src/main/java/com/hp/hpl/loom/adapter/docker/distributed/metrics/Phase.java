@@ -0,0 +1,34 @@
+/*******************************************************************************
+ * (c) Copyright 2017 Hewlett Packard Enterprise Development LP Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *******************************************************************************/
+package com.hp.hpl.loom.adapter.docker.distributed.metrics;
+
+/***
+ * Phases of the refresh of a host.
+ */
+public enum Phase {
+    CONTAINER_LIST("containerList"),
+    INSPECTION("inspection"),
+    IMAGE_LIST("imageList"),
+    CADVISOR("cAdvisor");
+
+    private final String tag;
+
+    Phase(final String tag) {
+        this.tag = tag;
+    }
+
+    /***
+     * @return name of the phase, as tagged on the metrics
+     */
+    public String getTag() {
+        return tag;
+    }
+}
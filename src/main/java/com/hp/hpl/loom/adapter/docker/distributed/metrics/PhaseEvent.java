@@ -0,0 +1,54 @@
+/*******************************************************************************
+ * (c) Copyright 2017 Hewlett Packard Enterprise Development LP Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *******************************************************************************/
+package com.hp.hpl.loom.adapter.docker.distributed.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/***
+ * Flight Recorder event of a Phase of the refresh of a host. Only created through Span, when
+ * FlightRecorderSupport is available.
+ */
+@Name("com.hp.hpl.loom.adapter.docker.HostPhase")
+@Label("Docker Host Refresh Phase")
+@Category({"Loom", "Docker Adapter"})
+@StackTrace(false)
+@Description("Phase of the refresh of a docker host")
+final class PhaseEvent extends Event {
+    @Label("Host")
+    private String host;
+
+    @Label("Phase")
+    private String phase;
+
+    private PhaseEvent(final String host, final String phase) {
+        this.host = host;
+        this.phase = phase;
+    }
+
+    /***
+     * Starts timing a phase.
+     *
+     * @param host host UID
+     * @param phase phase of the refresh
+     * @return the event, as an Event so that callers never refer to this class
+     */
+    static Event begin(final String host, final Phase phase) {
+        PhaseEvent event = new PhaseEvent(host, phase.getTag());
+        event.begin();
+
+        return event;
+    }
+}
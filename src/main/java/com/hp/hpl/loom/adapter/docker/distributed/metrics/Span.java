@@ -0,0 +1,59 @@
+/*******************************************************************************
+ * (c) Copyright 2017 Hewlett Packard Enterprise Development LP Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *******************************************************************************/
+package com.hp.hpl.loom.adapter.docker.distributed.metrics;
+
+import jdk.jfr.Event;
+
+/***
+ * A timed section of the adapter, e.g. a Phase of a host refresh or an UpdaterStage. Ending it
+ * records its duration on a Timer and, when FlightRecorderSupport is available, commits its Flight
+ * Recorder event.
+ */
+public final class Span {
+    private final Timer timer;
+    private final long startNanos;
+
+    // null without Flight Recorder
+    private final Event event;
+
+    Span(final Timer timer, final Event event) {
+        this.timer = timer;
+        this.event = event;
+        startNanos = System.nanoTime();
+    }
+
+    /***
+     * Sets the resources handled by an UpdaterStage.
+     *
+     * @param resources number of resources
+     * @return this span
+     */
+    public Span setResources(final int resources) {
+        if (event != null) {
+            UpdaterStageEvent.setResources(event, resources);
+        }
+
+        return this;
+    }
+
+    /***
+     * Ends the span.
+     *
+     * @return its duration, in nanoseconds
+     */
+    public long end() {
+        if (event != null) {
+            event.commit();
+        }
+
+        return timer.recordSince(startNanos);
+    }
+}
@@ -0,0 +1,267 @@
+/*******************************************************************************
+ * (c) Copyright 2017 Hewlett Packard Enterprise Development LP Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *******************************************************************************/
+package com.hp.hpl.loom.adapter.docker.distributed.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/***
+ * Durations of an operation, e.g. the refresh of a host: cumulative count and total, and a
+ * histogram of the recent durations for the percentiles.
+ *
+ * <p>
+ * The histogram has 8 buckets per power of two of microseconds, hence a percentile is at most 12.5%
+ * above the actual value. It covers the last one to two rotation periods (one minute by default):
+ * a percentile reflects the current behaviour, not the whole life of the adapter. Recording does
+ * not allocate and does not lock, except on the first record of each period.
+ */
+public class Timer implements TimerMBean {
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // 2^40 microseconds is over 12 days, longer durations share the last bucket.
+    private static final int MAX_EXPONENT = 40;
+    private static final int BUCKETS = SUB_BUCKETS + (MAX_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private static final long DEFAULT_ROTATION_MS = TimeUnit.MINUTES.toMillis(1);
+    private static final double P50 = 0.5;
+    private static final double P95 = 0.95;
+    private static final double P99 = 0.99;
+    private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private volatile long lastNanos = 0;
+
+    private final long rotationNanos;
+    private final Object rotationLock = new Object();
+    private volatile Window current = new Window(System.nanoTime());
+    private volatile Window previous = new Window(System.nanoTime());
+
+    /***
+     * Durations recorded during one rotation period.
+     */
+    private static final class Window {
+        private final long start;
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        private Window(final long start) {
+            this.start = start;
+        }
+    }
+
+    /***
+     * Timer whose percentiles cover the last one to two minutes.
+     */
+    public Timer() {
+        this(DEFAULT_ROTATION_MS);
+    }
+
+    /***
+     * @param rotationMillis rotation period of the histogram, in milliseconds
+     */
+    public Timer(final long rotationMillis) {
+        this.rotationNanos = TimeUnit.MILLISECONDS.toNanos(rotationMillis);
+    }
+
+    /***
+     * @param nanos duration to record, in nanoseconds
+     */
+    public void record(final long nanos) {
+        if (nanos < 0) {
+            return;
+        }
+
+        count.increment();
+        totalNanos.add(nanos);
+        lastNanos = nanos;
+
+        Window window = currentWindow();
+
+        window.buckets.incrementAndGet(bucketOf(TimeUnit.NANOSECONDS.toMicros(nanos)));
+        window.maxNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    /***
+     * Records the time elapsed since the given start.
+     *
+     * @param startNanos start, as given by System.nanoTime()
+     * @return the recorded duration, in nanoseconds
+     */
+    public long recordSince(final long startNanos) {
+        long nanos = System.nanoTime() - startNanos;
+
+        record(nanos);
+
+        return nanos;
+    }
+
+    @Override
+    public long getCount() {
+        return count.sum();
+    }
+
+    @Override
+    public double getTotalTimeMillis() {
+        return totalNanos.sum() / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getLastMillis() {
+        return lastNanos / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getMeanMillis() {
+        long[] merged = mergedBuckets();
+        long recent = 0;
+        double sumMicros = 0;
+
+        for (int i = 0; i < BUCKETS; i++) {
+            recent += merged[i];
+            sumMicros += merged[i] * (double) (lowerBoundMicros(i) + upperBoundMicros(i)) / 2;
+        }
+
+        return recent == 0 ? 0 : sumMicros / recent / TimeUnit.MILLISECONDS.toMicros(1);
+    }
+
+    @Override
+    public double getMaxMillis() {
+        currentWindow();
+
+        return Math.max(current.maxNanos.get(), previous.maxNanos.get()) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double get50thPercentileMillis() {
+        return percentileMillis(P50);
+    }
+
+    @Override
+    public double get95thPercentileMillis() {
+        return percentileMillis(P95);
+    }
+
+    @Override
+    public double get99thPercentileMillis() {
+        return percentileMillis(P99);
+    }
+
+    /***
+     * @param quantile between 0 and 1
+     * @return the quantile of the recent durations, in milliseconds, 0 if none was recorded
+     */
+    public double percentileMillis(final double quantile) {
+        long[] merged = mergedBuckets();
+        long recent = 0;
+
+        for (long bucket : merged) {
+            recent += bucket;
+        }
+
+        if (recent == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(quantile * recent));
+        long seen = 0;
+        double maxMillis = getMaxMillis();
+
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += merged[i];
+
+            if (seen >= rank) {
+                double upperMillis = upperBoundMicros(i) / (double) TimeUnit.MILLISECONDS.toMicros(1);
+
+                return Math.min(upperMillis, maxMillis);
+            }
+        }
+
+        return maxMillis;
+    }
+
+    private long[] mergedBuckets() {
+        currentWindow();
+
+        Window latest = current;
+        Window older = previous;
+        long[] merged = new long[BUCKETS];
+
+        for (int i = 0; i < BUCKETS; i++) {
+            merged[i] = latest.buckets.get(i) + older.buckets.get(i);
+        }
+
+        return merged;
+    }
+
+    /***
+     * Rotates the windows when the current one is over.
+     */
+    private Window currentWindow() {
+        long now = System.nanoTime();
+        Window window = current;
+
+        if (now - window.start < rotationNanos) {
+            return window;
+        }
+
+        synchronized (rotationLock) {
+            window = current;
+
+            if (now - window.start >= rotationNanos) {
+                // After a whole period without records, the previous window is empty as well.
+                previous = now - window.start < 2 * rotationNanos ? window : new Window(now);
+                current = new Window(now);
+            }
+
+            return current;
+        }
+    }
+
+    static int bucketOf(final long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;
+        }
+
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(micros);
+
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+
+        int subBucket = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+
+        return SUB_BUCKETS + (exponent - SUB_BUCKET_BITS) * SUB_BUCKETS + subBucket;
+    }
+
+    static long lowerBoundMicros(final int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+
+        int shift = (bucket - SUB_BUCKETS) / SUB_BUCKETS;
+        int subBucket = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+
+        return (long) (SUB_BUCKETS + subBucket) << shift;
+    }
+
+    static long upperBoundMicros(final int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+
+        int shift = (bucket - SUB_BUCKETS) / SUB_BUCKETS;
+
+        return lowerBoundMicros(bucket) + (1L << shift) - 1;
+    }
+}
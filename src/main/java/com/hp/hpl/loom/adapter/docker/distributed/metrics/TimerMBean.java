@@ -0,0 +1,56 @@
+/*******************************************************************************
+ * (c) Copyright 2017 Hewlett Packard Enterprise Development LP Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *******************************************************************************/
+package com.hp.hpl.loom.adapter.docker.distributed.metrics;
+
+/***
+ * JMX view of a Timer. Count and total are cumulative, the other values cover the recent window.
+ */
+public interface TimerMBean {
+    /***
+     * @return number of recorded durations
+     */
+    long getCount();
+
+    /***
+     * @return sum of the recorded durations, in milliseconds
+     */
+    double getTotalTimeMillis();
+
+    /***
+     * @return last recorded duration, in milliseconds
+     */
+    double getLastMillis();
+
+    /***
+     * @return mean of the durations of the recent window, in milliseconds
+     */
+    double getMeanMillis();
+
+    /***
+     * @return longest duration of the recent window, in milliseconds
+     */
+    double getMaxMillis();
+
+    /***
+     * @return median of the recent window, in milliseconds
+     */
+    double get50thPercentileMillis();
+
+    /***
+     * @return 95th percentile of the recent window, in milliseconds
+     */
+    double get95thPercentileMillis();
+
+    /***
+     * @return 99th percentile of the recent window, in milliseconds
+     */
+    double get99thPercentileMillis();
+}
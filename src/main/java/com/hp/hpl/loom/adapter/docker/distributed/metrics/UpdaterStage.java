@@ -0,0 +1,42 @@
+/*******************************************************************************
+ * (c) Copyright 2017 Hewlett Packard Enterprise Development LP Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *******************************************************************************/
+package com.hp.hpl.loom.adapter.docker.distributed.metrics;
+
+/***
+ * Stages of an AggregationUpdater, as seen by the adapter.
+ */
+public enum UpdaterStage {
+    /***
+     * Gathering the resources, in advance on the UpdaterGraph or on the updater thread.
+     */
+    GATHER("gather"),
+    /***
+     * Waiting on the updater thread for resources still being gathered.
+     */
+    WAIT("wait"),
+    /***
+     * Loom iterating the resources: creating, comparing and relating their items.
+     */
+    ITERATE("iterate");
+
+    private final String tag;
+
+    UpdaterStage(final String tag) {
+        this.tag = tag;
+    }
+
+    /***
+     * @return name of the stage, as tagged on the metrics and events
+     */
+    public String getTag() {
+        return tag;
+    }
+}
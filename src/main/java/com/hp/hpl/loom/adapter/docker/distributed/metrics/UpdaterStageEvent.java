@@ -0,0 +1,65 @@
+/*******************************************************************************
+ * (c) Copyright 2017 Hewlett Packard Enterprise Development LP Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *******************************************************************************/
+package com.hp.hpl.loom.adapter.docker.distributed.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/***
+ * Flight Recorder event of a stage of an AggregationUpdater. Only created through Span, when
+ * FlightRecorderSupport is available.
+ */
+@Name("com.hp.hpl.loom.adapter.docker.UpdaterStage")
+@Label("Docker Updater Stage")
+@Category({"Loom", "Docker Adapter"})
+@StackTrace(false)
+@Description("Stage of the update of an item type: gathering, waiting for or iterating its resources")
+final class UpdaterStageEvent extends Event {
+    @Label("Item Type")
+    private String itemType;
+
+    @Label("Stage")
+    private String stage;
+
+    @Label("Resources")
+    private int resources;
+
+    private UpdaterStageEvent(final String itemType, final String stage) {
+        this.itemType = itemType;
+        this.stage = stage;
+    }
+
+    /***
+     * Starts timing a stage.
+     *
+     * @param itemType item type id of the updater
+     * @param stage stage of the updater
+     * @return the event, as an Event so that callers never refer to this class
+     */
+    static Event begin(final String itemType, final UpdaterStage stage) {
+        UpdaterStageEvent event = new UpdaterStageEvent(itemType, stage.getTag());
+        event.begin();
+
+        return event;
+    }
+
+    /***
+     * @param event event returned by begin()
+     * @param resources resources handled by the stage
+     */
+    static void setResources(final Event event, final int resources) {
+        ((UpdaterStageEvent) event).resources = resources;
+    }
+}
@@ -0,0 +1,116 @@
+/*******************************************************************************
+ * (c) Copyright 2017 Hewlett Packard Enterprise Development LP Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *******************************************************************************/
+package com.hp.hpl.loom.adapter.docker.distributed.realworld;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.util.StringUtils;
+
+import com.hp.hpl.loom.adapter.BaseAdapter;
+
+/***
+ * Typed access to the optional properties defined on the docker.properties file. Missing or
+ * malformed values fall back to the given default.
+ *
+ * <p>
+ * Without adapter, e.g. when the HostManager runs outside Loom in a load test, the properties are
+ * read from the system properties instead.
+ */
+public final class AdapterProperties {
+    private static final Log LOG = LogFactory.getLog(AdapterProperties.class);
+
+    private AdapterProperties() {}
+
+    /***
+     * Returns the raw value of a property, null if it is not defined.
+     *
+     * @param adapter the adapter holding the configuration, null to use the system properties
+     * @param key property name
+     * @return property value or null
+     */
+    public static String getString(final BaseAdapter adapter, final String key) {
+        Object value;
+
+        if (adapter == null) {
+            value = System.getProperty(key);
+        } else {
+            value = adapter.getAdapterConfig().getPropertiesConfiguration().getProperty(key);
+        }
+
+        if (StringUtils.isEmpty(value)) {
+            return null;
+        }
+
+        return value.toString().trim();
+    }
+
+    /***
+     * Returns a property as an int.
+     *
+     * @param adapter the adapter holding the configuration
+     * @param key property name
+     * @param defaultValue value used if the property is missing or is not a number
+     * @return property value
+     */
+    public static int getInt(final BaseAdapter adapter, final String key, final int defaultValue) {
+        String value = getString(adapter, key);
+
+        if (value != null) {
+            try {
+                return Integer.parseInt(value);
+            } catch (NumberFormatException e) {
+                LOG.warn("Property '" + key + "' is not a number: '" + value + "', using " + defaultValue);
+            }
+        }
+
+        return defaultValue;
+    }
+
+    /***
+     * Returns a property as a long.
+     *
+     * @param adapter the adapter holding the configuration
+     * @param key property name
+     * @param defaultValue value used if the property is missing or is not a number
+     * @return property value
+     */
+    public static long getLong(final BaseAdapter adapter, final String key, final long defaultValue) {
+        String value = getString(adapter, key);
+
+        if (value != null) {
+            try {
+                return Long.parseLong(value);
+            } catch (NumberFormatException e) {
+                LOG.warn("Property '" + key + "' is not a number: '" + value + "', using " + defaultValue);
+            }
+        }
+
+        return defaultValue;
+    }
+
+    /***
+     * Returns a property as a boolean.
+     *
+     * @param adapter the adapter holding the configuration
+     * @param key property name
+     * @param defaultValue value used if the property is missing
+     * @return property value
+     */
+    public static boolean getBoolean(final BaseAdapter adapter, final String key, final boolean defaultValue) {
+        String value = getString(adapter, key);
+
+        if (value != null) {
+            return Boolean.parseBoolean(value);
+        }
+
+        return defaultValue;
+    }
+}
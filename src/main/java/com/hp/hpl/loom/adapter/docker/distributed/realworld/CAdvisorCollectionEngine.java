@@ -0,0 +1,500 @@
+/*******************************************************************************
+ * (c) Copyright 2017 Hewlett Packard Enterprise Development LP Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *******************************************************************************/
+package com.hp.hpl.loom.adapter.docker.distributed.realworld;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hp.hpl.loom.adapter.BaseAdapter;
+import com.hp.hpl.loom.adapter.docker.distributed.metrics.Call;
+import com.hp.hpl.loom.adapter.docker.distributed.metrics.Endpoint;
+import com.hp.hpl.loom.adapter.docker.distributed.metrics.HostMetrics;
+
+/***
+ * Collects the statistics of the cAdvisors. The summary, container and (when the host asks for it)
+ * machine requests of a host run in parallel, limited across all the hosts (cAdvisorThreads), and
+ * share a single HTTP client, whose connections and reads are bounded by cAdvisorConnectTimeout and
+ * cAdvisorReadTimeout (in milliseconds) so that a hung cAdvisor does not hold a request forever.
+ *
+ * <p>
+ * The summaries are streamed through a JsonParser: only latest_usage and day_usage are read, into
+ * UsageStatistics, and the rest of the response (minute and hour usage, percentiles) is skipped
+ * without being materialised. The recursive container summary of a busy host is several megabytes,
+ * which used to be held as a String and then as a JsonNode tree on every refresh.
+ *
+ * <p>
+ * With cAdvisorMode=prometheus, the usage is rather read from the Prometheus exposition of the
+ * cAdvisor (/metrics) in a single request, by a CAdvisorMetricsParser, and derived from the raw
+ * counters by the UsageHistory of the host. The day usage is then computed by its UsageStore.
+ */
+public final class CAdvisorCollectionEngine {
+    private static final Log LOG = LogFactory.getLog(CAdvisorCollectionEngine.class);
+
+    private static final int DEFAULT_THREADS = 32;
+    private static final long DEFAULT_CONNECT_TIMEOUT_MS = TimeUnit.SECONDS.toMillis(5);
+    private static final long DEFAULT_READ_TIMEOUT_MS = TimeUnit.SECONDS.toMillis(30);
+
+    // Jersey client properties (ClientProperties), set by name since JAX-RS 2.0 has no timeouts.
+    private static final String CONNECT_TIMEOUT_PROPERTY = "jersey.config.client.connectTimeout";
+    private static final String READ_TIMEOUT_PROPERTY = "jersey.config.client.readTimeout";
+
+    private static final String SUMMARY_PATH = "/api/v2.0/summary";
+    private static final String MACHINE_PATH = "/api/v2.0/machine";
+    private static final String CONTAINERS_PATH = "/api/v2.0/summary/docker/?recursive=true";
+    private static final String METRICS_PATH = "/metrics";
+
+    private static final String SUMMARY_MODE = "summary";
+    private static final String PROMETHEUS_MODE = "prometheus";
+
+    // Name of the summary of the whole machine, and of the summaries of docker itself.
+    private static final String ROOT = CAdvisorMetricsParser.ROOT;
+    private static final String DOCKER_DAEMON = "/docker-daemon/docker";
+    private static final String DOCKER = "/docker";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static CAdvisorCollectionEngine instance = null;
+
+    private final ExecutorService collectionPool = Executors.newCachedThreadPool();
+    private final Semaphore permits;
+    private final boolean prometheusMode;
+    private final Client client;
+
+    /***
+     * Statistics collected from the cAdvisor of a host. A part whose request failed is null.
+     */
+    public static final class Statistics {
+        private UsageStatistics machineStatistics;
+        private JsonNode machinePhysicalInformation;
+        private Map<String, UsageStatistics> containerStatistics;
+
+        /***
+         * @return usage of the whole machine, or null
+         */
+        public UsageStatistics getMachineStatistics() {
+            return machineStatistics;
+        }
+
+        /***
+         * @return the /machine response, or null if not requested
+         */
+        public JsonNode getMachinePhysicalInformation() {
+            return machinePhysicalInformation;
+        }
+
+        /***
+         * @return usage of the containers indexed by container id, or null
+         */
+        public Map<String, UsageStatistics> getContainerStatistics() {
+            return containerStatistics;
+        }
+    }
+
+    /***
+     * Reads the body of a response.
+     */
+    @FunctionalInterface
+    private interface BodyReader<T> {
+        T read(InputStream body) throws IOException;
+    }
+
+    private CAdvisorCollectionEngine(final BaseAdapter adapter) {
+        permits = new Semaphore(Math.max(1, AdapterProperties.getInt(adapter, "cAdvisorThreads", DEFAULT_THREADS)));
+
+        String mode = AdapterProperties.getString(adapter, "cAdvisorMode");
+        prometheusMode = PROMETHEUS_MODE.equalsIgnoreCase(mode);
+
+        if (mode != null && !prometheusMode && !SUMMARY_MODE.equalsIgnoreCase(mode)) {
+            LOG.warn("Unknown cAdvisorMode '" + mode + "', using " + SUMMARY_MODE);
+        }
+
+        client = ClientBuilder.newClient()
+                .property(CONNECT_TIMEOUT_PROPERTY,
+                        (int) AdapterProperties.getLong(adapter, "cAdvisorConnectTimeout", DEFAULT_CONNECT_TIMEOUT_MS))
+                .property(READ_TIMEOUT_PROPERTY,
+                        (int) AdapterProperties.getLong(adapter, "cAdvisorReadTimeout", DEFAULT_READ_TIMEOUT_MS));
+    }
+
+    /***
+     * @param adapter the adapter holding the configuration
+     * @return the engine shared by all the hosts
+     */
+    public static synchronized CAdvisorCollectionEngine getInstance(final BaseAdapter adapter) {
+        if (instance == null) {
+            instance = new CAdvisorCollectionEngine(adapter);
+        }
+
+        return instance;
+    }
+
+    /***
+     * Requests the usage of a host and its containers and, if asked for, the machine information of
+     * a cAdvisor, in parallel. Each request is recorded on the metrics of the host; a failed one is
+     * logged and left null in the result.
+     *
+     * @param metrics metrics of the host
+     * @param cAdvisorAddress http://[host]:[port] of the cAdvisor
+     * @param includeMachine true to request the machine information too
+     * @param history previous samples of the host, from which the usage is derived in prometheus
+     *        mode
+     * @return the statistics collected
+     * @throws InterruptedException if interrupted while waiting for the responses
+     */
+    public Statistics collect(final HostMetrics metrics, final String cAdvisorAddress, final boolean includeMachine,
+            final UsageHistory history) throws InterruptedException {
+        Future<JsonNode> machine = includeMachine
+                ? submit(metrics, Endpoint.CADVISOR_MACHINE, cAdvisorAddress + MACHINE_PATH, MAPPER::readTree)
+                : null;
+
+        Statistics statistics = new Statistics();
+
+        if (prometheusMode) {
+            Future<Map<String, CAdvisorMetricsParser.Sample>> exposition = submit(metrics, Endpoint.CADVISOR_METRICS,
+                    cAdvisorAddress + METRICS_PATH, CAdvisorMetricsParser::parse);
+
+            Map<String, CAdvisorMetricsParser.Sample> samples = await(exposition, cAdvisorAddress + METRICS_PATH);
+            if (samples != null) {
+                deriveUsage(samples, history, statistics);
+            }
+        } else {
+            Future<UsageStatistics> summary = submit(metrics, Endpoint.CADVISOR_SUMMARY,
+                    cAdvisorAddress + SUMMARY_PATH,
+                    (body) -> parseSummaries(body, CAdvisorCollectionEngine::machineKey).get(ROOT));
+            Future<Map<String, UsageStatistics>> containers =
+                    submit(metrics, Endpoint.CADVISOR_CONTAINERS, cAdvisorAddress + CONTAINERS_PATH,
+                            (body) -> parseSummaries(body, CAdvisorCollectionEngine::containerKey));
+
+            statistics.machineStatistics = await(summary, cAdvisorAddress + SUMMARY_PATH);
+            statistics.containerStatistics = await(containers, cAdvisorAddress + CONTAINERS_PATH);
+        }
+
+        if (machine != null) {
+            statistics.machinePhysicalInformation = await(machine, cAdvisorAddress + MACHINE_PATH);
+        }
+
+        return statistics;
+    }
+
+    /***
+     * Turns the counters of an exposition into usage, through the previous samples of the host.
+     */
+    private static void deriveUsage(final Map<String, CAdvisorMetricsParser.Sample> samples,
+            final UsageHistory history, final Statistics statistics) {
+        long timestamp = System.currentTimeMillis();
+        Map<String, UsageStatistics> containers = new HashMap<String, UsageStatistics>();
+
+        for (Map.Entry<String, CAdvisorMetricsParser.Sample> entry : samples.entrySet()) {
+            CAdvisorMetricsParser.Sample sample = entry.getValue();
+
+            if (!sample.isComplete()) {
+                continue;
+            }
+
+            UsageStatistics usage =
+                    history.record(entry.getKey(), sample.getCpuSeconds(), sample.getMemoryBytes(), timestamp);
+
+            if (usage == null) {
+                continue;
+            }
+
+            if (ROOT.equals(entry.getKey())) {
+                statistics.machineStatistics = usage;
+            } else {
+                containers.put(entry.getKey(), usage);
+            }
+        }
+
+        history.retain(samples.keySet());
+        statistics.containerStatistics = containers;
+    }
+
+    private <T> Future<T> submit(final HostMetrics metrics, final Endpoint endpoint, final String uri,
+            final BodyReader<T> reader) throws InterruptedException {
+        // The submitting thread waits for the permit, thus the pool never holds more threads than
+        // the limit.
+        permits.acquire();
+
+        try {
+            return collectionPool.submit(() -> {
+                try {
+                    return request(metrics, endpoint, uri, reader);
+                } finally {
+                    permits.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private <T> T await(final Future<T> pending, final String uri) throws InterruptedException {
+        try {
+            return pending.get();
+        } catch (ExecutionException e) {
+            /*
+             * Note: Sometimes a ConnectionRefused exception is thrown here. This is possibly because
+             * the cAdvisor container is not ready yet to get connection here. On the next iteration
+             * cycle it will behave as intended.
+             */
+            if (e.getCause() instanceof JsonProcessingException) {
+                LOG.error("Failed to process response to " + uri, e.getCause());
+            } else {
+                LOG.warn("cAdvisor connection to " + uri + " refused - has it just been launched?");
+            }
+
+            return null;
+        }
+    }
+
+    /***
+     * GETs a cAdvisor endpoint and reads the body as it is received.
+     *
+     * @return what the reader made of the body, or null if the status is not 200
+     */
+    private <T> T request(final HostMetrics metrics, final Endpoint endpoint, final String uri,
+            final BodyReader<T> reader) throws IOException {
+        Call call = metrics.startCall(endpoint);
+        Response response = null;
+
+        try {
+            response = client.target(uri).request(MediaType.APPLICATION_JSON).get();
+
+            if (response.getStatus() != Response.Status.OK.getStatusCode()) {
+                call.end(response.getStatus(), 0);
+                return null;
+            }
+
+            T result;
+            long received;
+
+            try (CountingInputStream body = new CountingInputStream(response.readEntity(InputStream.class))) {
+                result = reader.read(body);
+                received = body.getCount();
+            }
+
+            call.end(response.getStatus(), received);
+
+            return result;
+        } catch (IOException | RuntimeException e) {
+            call.failed(e);
+            throw e;
+        } finally {
+            if (response != null) {
+                response.close();
+            }
+        }
+    }
+
+    /***
+     * Counts the bytes read from a response body.
+     */
+    private static final class CountingInputStream extends FilterInputStream {
+        private long count = 0;
+
+        private CountingInputStream(final InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int read = super.read();
+
+            if (read != -1) {
+                count++;
+            }
+
+            return read;
+        }
+
+        @Override
+        public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+
+            if (read > 0) {
+                count += read;
+            }
+
+            return read;
+        }
+
+        @Override
+        public long skip(final long length) throws IOException {
+            long skipped = super.skip(length);
+            count += skipped;
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        private long getCount() {
+            return count;
+        }
+    }
+
+    private static String machineKey(final String name) {
+        return ROOT.equals(name) ? ROOT : null;
+    }
+
+    /***
+     * Keeps the containers only, not the daemon or docker as a whole, indexed by the last segment of
+     * their name (/docker/[id]).
+     */
+    private static String containerKey(final String name) {
+        if (DOCKER_DAEMON.equals(name) || DOCKER.equals(name)) {
+            return null;
+        }
+
+        return name.substring(name.lastIndexOf('/') + 1);
+    }
+
+    /***
+     * Reads a cAdvisor summary response: an object of container name to summary. The summaries
+     * whose name is mapped to null, or which lack the latest usage, are skipped. The latest usage is
+     * timestamped with the time of the response.
+     *
+     * @param body the response
+     * @param keyOf maps a container name to its key in the result, or to null to skip it
+     * @return usages by key, without the day usage if the cAdvisor has not computed it yet
+     * @throws IOException if the body cannot be read or is not a summary
+     */
+    static Map<String, UsageStatistics> parseSummaries(final InputStream body, final Function<String, String> keyOf)
+            throws IOException {
+        Map<String, UsageStatistics> usages = new HashMap<String, UsageStatistics>();
+        long timestamp = System.currentTimeMillis();
+
+        try (JsonParser parser = MAPPER.getFactory().createParser(body)) {
+            expect(parser, parser.nextToken(), JsonToken.START_OBJECT);
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String key = keyOf.apply(parser.getCurrentName());
+
+                if (parser.nextToken() != JsonToken.START_OBJECT || key == null) {
+                    parser.skipChildren();
+                    continue;
+                }
+
+                UsageStatistics usage = new UsageStatistics();
+                readSummary(parser, usage, timestamp);
+
+                if (usage.isLatestPresent()) {
+                    usages.put(key, usage);
+                }
+            }
+        }
+
+        return usages;
+    }
+
+    private static void readSummary(final JsonParser parser, final UsageStatistics usage, final long timestamp)
+            throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+
+            if (value == JsonToken.START_OBJECT && "latest_usage".equals(field)) {
+                readLatestUsage(parser, usage, timestamp);
+            } else if (value == JsonToken.START_OBJECT && "day_usage".equals(field)) {
+                readDayUsage(parser, usage);
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    private static void readLatestUsage(final JsonParser parser, final UsageStatistics usage, final long timestamp)
+            throws IOException {
+        long cpu = 0;
+        long memory = 0;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+
+            if ("cpu".equals(field)) {
+                cpu = parser.getValueAsLong();
+            } else if ("memory".equals(field)) {
+                memory = parser.getValueAsLong();
+            } else {
+                parser.skipChildren();
+            }
+        }
+
+        usage.setLatest(cpu, memory, timestamp);
+    }
+
+    private static void readDayUsage(final JsonParser parser, final UsageStatistics usage) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+
+            if (value == JsonToken.START_OBJECT && ("cpu".equals(field) || "memory".equals(field))) {
+                long mean = 0;
+                long max = 0;
+
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String percentile = parser.getCurrentName();
+                    parser.nextToken();
+
+                    if ("mean".equals(percentile)) {
+                        mean = parser.getValueAsLong();
+                    } else if ("max".equals(percentile)) {
+                        max = parser.getValueAsLong();
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+
+                if ("cpu".equals(field)) {
+                    usage.setDayCpu(mean, max);
+                } else {
+                    usage.setDayMemory(mean, max);
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    private static void expect(final JsonParser parser, final JsonToken actual, final JsonToken expected)
+            throws JsonParseException {
+        if (actual != expected) {
+            throw new JsonParseException(parser, "Expected " + expected + " but found " + actual);
+        }
+    }
+}
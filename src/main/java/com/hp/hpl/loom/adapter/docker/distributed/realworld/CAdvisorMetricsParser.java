@@ -0,0 +1,392 @@
+/*******************************************************************************
+ * (c) Copyright 2017 Hewlett Packard Enterprise Development LP Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *******************************************************************************/
+package com.hp.hpl.loom.adapter.docker.distributed.realworld;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/***
+ * Reads the Prometheus text exposition of a cAdvisor (/metrics), keeping only the CPU and memory
+ * usage of the whole machine and of the docker containers.
+ *
+ * <p>
+ * The body is read byte by byte into a reusable line buffer. A line is dropped as soon as its
+ * metric name is known not to be container_cpu_usage_seconds_total or container_memory_usage_bytes,
+ * and a String is only created for the id of a kept series, thus the hundreds of other series of
+ * the exposition (network, file systems, other cgroups) cost no allocation.
+ */
+final class CAdvisorMetricsParser {
+    private static final byte[] CPU_METRIC = ascii("container_cpu_usage_seconds_total");
+    private static final byte[] MEMORY_METRIC = ascii("container_memory_usage_bytes");
+    private static final byte[] ID_LABEL = ascii("id");
+    private static final byte[] CPU_LABEL = ascii("cpu");
+    private static final byte[] TOTAL = ascii("total");
+    private static final byte[] DOCKER_PREFIX = ascii("/docker/");
+
+    /***
+     * Key of the usage of the whole machine, whose cgroup id is /.
+     */
+    static final String ROOT = "/";
+
+    private static final int BUFFER_SIZE = 8192;
+    private static final int INITIAL_LINE_LENGTH = 512;
+    private static final int MAX_SIGNIFICANT_DIGITS = 18;
+    private static final int RADIX = 10;
+
+    private static final int NO_METRIC = 0;
+    private static final int CPU = 1;
+    private static final int MEMORY = 2;
+
+    /***
+     * Usage of a cgroup, as exposed: cumulated CPU time and current memory.
+     */
+    static final class Sample {
+        private double cpuTotalSeconds = 0;
+        private double cpuPerCoreSeconds = 0;
+        private boolean cpuTotal = false;
+        private boolean cpu = false;
+        private long memoryBytes = 0;
+        private boolean memory = false;
+
+        /***
+         * Older cAdvisors only expose one series per core, newer ones a single cpu="total" series.
+         *
+         * @return CPU time used so far, in seconds
+         */
+        double getCpuSeconds() {
+            return cpuTotal ? cpuTotalSeconds : cpuPerCoreSeconds;
+        }
+
+        /***
+         * @return memory used, in bytes
+         */
+        long getMemoryBytes() {
+            return memoryBytes;
+        }
+
+        /***
+         * @return true if both the CPU and the memory were exposed
+         */
+        boolean isComplete() {
+            return cpu && memory;
+        }
+    }
+
+    private final Map<String, Sample> samples = new HashMap<String, Sample>();
+
+    private byte[] line = new byte[INITIAL_LINE_LENGTH];
+    private int length = 0;
+    private int metric = NO_METRIC;
+    private int nameEnd = -1;
+    private boolean skipping = false;
+
+    // Bounds of the last label value found by findLabel
+    private int valueStart;
+    private int valueEnd;
+
+    private CAdvisorMetricsParser() {}
+
+    /***
+     * Reads an exposition.
+     *
+     * @param body the /metrics response
+     * @return usages keyed by container id, and by ROOT for the whole machine
+     * @throws IOException if the body cannot be read
+     */
+    static Map<String, Sample> parse(final InputStream body) throws IOException {
+        CAdvisorMetricsParser parser = new CAdvisorMetricsParser();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int read;
+
+        while ((read = body.read(buffer)) != -1) {
+            for (int i = 0; i < read; i++) {
+                parser.accept(buffer[i]);
+            }
+        }
+        parser.endLine();
+
+        return parser.samples;
+    }
+
+    private void accept(final byte b) {
+        if (b == '\n') {
+            endLine();
+            return;
+        }
+
+        if (skipping) {
+            return;
+        }
+
+        if (length == line.length) {
+            line = Arrays.copyOf(line, length * 2);
+        }
+        line[length++] = b;
+
+        if (nameEnd < 0) {
+            if (length == 1 && b == '#') {
+                skipping = true;
+            } else if (b == '{' || b == ' ') {
+                nameEnd = length - 1;
+                metric = metricOf(nameEnd);
+                skipping = metric == NO_METRIC;
+            }
+        }
+    }
+
+    private int metricOf(final int end) {
+        if (regionEquals(0, end, CPU_METRIC)) {
+            return CPU;
+        }
+        if (regionEquals(0, end, MEMORY_METRIC)) {
+            return MEMORY;
+        }
+
+        return NO_METRIC;
+    }
+
+    private void endLine() {
+        if (!skipping && metric != NO_METRIC) {
+            readSeries();
+        }
+
+        length = 0;
+        metric = NO_METRIC;
+        nameEnd = -1;
+        skipping = false;
+    }
+
+    private void readSeries() {
+        int labelsEnd = nameEnd;
+
+        if (line[nameEnd] == '{') {
+            labelsEnd = labelsEnd(nameEnd + 1);
+            if (labelsEnd < 0) {
+                return;
+            }
+        }
+
+        if (!findLabel(nameEnd + 1, labelsEnd, ID_LABEL)) {
+            return;
+        }
+
+        String key = keyOf(valueStart, valueEnd);
+        if (key == null) {
+            return;
+        }
+
+        boolean total = metric == CPU && findLabel(nameEnd + 1, labelsEnd, CPU_LABEL)
+                && regionEquals(valueStart, valueEnd, TOTAL);
+
+        double value = parseValue(labelsEnd + 1);
+        if (Double.isNaN(value)) {
+            return;
+        }
+
+        Sample sample = samples.get(key);
+        if (sample == null) {
+            sample = new Sample();
+            samples.put(key, sample);
+        }
+
+        if (metric == MEMORY) {
+            sample.memoryBytes = (long) value;
+            sample.memory = true;
+        } else if (total) {
+            sample.cpuTotalSeconds = value;
+            sample.cpuTotal = true;
+            sample.cpu = true;
+        } else {
+            sample.cpuPerCoreSeconds += value;
+            sample.cpu = true;
+        }
+    }
+
+    /***
+     * @return index of the closing brace of the labels starting at the given index, -1 if none
+     */
+    private int labelsEnd(final int start) {
+        boolean quoted = false;
+
+        for (int i = start; i < length; i++) {
+            byte b = line[i];
+
+            if (quoted && b == '\\') {
+                i++;
+            } else if (b == '"') {
+                quoted = !quoted;
+            } else if (!quoted && b == '}') {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /***
+     * Looks for a label among name="value" pairs, and sets valueStart and valueEnd to the bounds of
+     * its value, without the quotes.
+     */
+    private boolean findLabel(final int start, final int end, final byte[] name) {
+        int i = start;
+
+        while (i < end) {
+            int nameStart = i;
+
+            while (i < end && line[i] != '=') {
+                i++;
+            }
+            int labelNameEnd = i;
+
+            // skip =" then read up to the closing quote
+            i += 2;
+            int quotedStart = i;
+            while (i < end && line[i] != '"') {
+                if (line[i] == '\\') {
+                    i++;
+                }
+                i++;
+            }
+
+            if (regionEquals(nameStart, labelNameEnd, name)) {
+                valueStart = quotedStart;
+                valueEnd = Math.min(i, end);
+                return true;
+            }
+
+            // skip the closing quote and the comma
+            i += 2;
+        }
+
+        return false;
+    }
+
+    /***
+     * The machine is the cgroup /, a container /docker/[id].
+     */
+    private String keyOf(final int start, final int end) {
+        if (end - start == 1 && line[start] == '/') {
+            return ROOT;
+        }
+
+        if (end - start > DOCKER_PREFIX.length && regionEquals(start, start + DOCKER_PREFIX.length, DOCKER_PREFIX)) {
+            int idStart = start + DOCKER_PREFIX.length;
+
+            for (int i = idStart; i < end; i++) {
+                if (line[i] == '/') {
+                    return null;
+                }
+            }
+
+            return new String(line, idStart, end - idStart, StandardCharsets.US_ASCII);
+        }
+
+        return null;
+    }
+
+    /***
+     * Parses the sample value following the labels, ignoring the optional timestamp. NaN and
+     * infinite values are returned as NaN.
+     */
+    private double parseValue(final int start) {
+        int i = start;
+
+        while (i < length && line[i] == ' ') {
+            i++;
+        }
+
+        boolean negative = false;
+        if (i < length && (line[i] == '-' || line[i] == '+')) {
+            negative = line[i] == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int significantDigits = 0;
+        int exponent = 0;
+        boolean digits = false;
+        boolean fraction = false;
+
+        for (; i < length; i++) {
+            byte b = line[i];
+
+            if (b >= '0' && b <= '9') {
+                digits = true;
+
+                if (significantDigits < MAX_SIGNIFICANT_DIGITS) {
+                    mantissa = mantissa * RADIX + (b - '0');
+                    if (mantissa != 0) {
+                        significantDigits++;
+                    }
+                    if (fraction) {
+                        exponent--;
+                    }
+                } else if (!fraction) {
+                    exponent++;
+                }
+            } else if (b == '.' && !fraction) {
+                fraction = true;
+            } else {
+                break;
+            }
+        }
+
+        if (!digits) {
+            return Double.NaN;
+        }
+
+        if (i < length && (line[i] == 'e' || line[i] == 'E')) {
+            i++;
+
+            boolean negativeExponent = false;
+            if (i < length && (line[i] == '-' || line[i] == '+')) {
+                negativeExponent = line[i] == '-';
+                i++;
+            }
+
+            int explicitExponent = 0;
+            for (; i < length && line[i] >= '0' && line[i] <= '9'; i++) {
+                explicitExponent = explicitExponent * RADIX + (line[i] - '0');
+            }
+            exponent += negativeExponent ? -explicitExponent : explicitExponent;
+        }
+
+        if (i < length && line[i] != ' ' && line[i] != '\r') {
+            return Double.NaN;
+        }
+
+        double value = exponent == 0 ? mantissa : mantissa * Math.pow(RADIX, exponent);
+
+        return negative ? -value : value;
+    }
+
+    private boolean regionEquals(final int start, final int end, final byte[] expected) {
+        if (end - start != expected.length) {
+            return false;
+        }
+
+        for (int i = 0; i < expected.length; i++) {
+            if (line[start + i] != expected[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static byte[] ascii(final String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+}
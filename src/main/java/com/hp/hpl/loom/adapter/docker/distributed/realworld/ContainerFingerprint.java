@@ -0,0 +1,173 @@
+/*******************************************************************************
+ * (c) Copyright 2017 Hewlett Packard Enterprise Development LP Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *******************************************************************************/
+package com.hp.hpl.loom.adapter.docker.distributed.realworld;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+import com.spotify.docker.client.messages.Container;
+
+/***
+ * Cheap summary of a container, computed from the container list payload. When the fingerprint of
+ * a container changes between two listings, its inspection is outdated.
+ *
+ * <p>
+ * The fingerprint covers the state, the status, the creation time, and the mounts and ports of
+ * the container. The elapsed time that docker appends to the status ("Up 5 minutes", "Exited (0) 2
+ * hours ago") is left out, otherwise every running container would change on every listing.
+ *
+ * <p>
+ * A container restarted between two listings thus keeps its fingerprint; the restart shows as a
+ * decrease of its uptime instead, see isRestarted.
+ */
+public final class ContainerFingerprint {
+    private static final int PRIME = 31;
+    private static final String UP = "Up ";
+    private static final int RADIX = 10;
+
+    private static final long MINUTE = TimeUnit.MINUTES.toSeconds(1);
+    private static final long HOUR = TimeUnit.HOURS.toSeconds(1);
+    private static final long DAY = TimeUnit.DAYS.toSeconds(1);
+    private static final long WEEK = 7 * DAY;
+    private static final long MONTH = 30 * DAY;
+    private static final long YEAR = 365 * DAY;
+
+    private ContainerFingerprint() {}
+
+    /***
+     * @param container as returned by the container list
+     * @return the container fingerprint
+     */
+    public static long of(final Container container) {
+        long fingerprint = Objects.hashCode(container.state());
+        fingerprint = PRIME * fingerprint + statusHash(container.status());
+        fingerprint = PRIME * fingerprint + Objects.hashCode(container.created());
+        fingerprint = PRIME * fingerprint + unorderedHash(container.mounts());
+        fingerprint = PRIME * fingerprint + unorderedHash(container.ports());
+
+        return fingerprint;
+    }
+
+    /***
+     * @param previous container as previously listed
+     * @param current same container as listed now
+     * @return true if the container is up on both listings, with a shorter uptime now
+     */
+    public static boolean isRestarted(final Container previous, final Container current) {
+        long previousUptime = uptimeSeconds(previous.status());
+        long currentUptime = uptimeSeconds(current.status());
+
+        return previousUptime >= 0 && currentUptime >= 0 && currentUptime < previousUptime;
+    }
+
+    /***
+     * Reads the uptime of a running container from its status, as formatted by docker ("Up Less
+     * than a second", "Up 5 seconds", "Up About a minute", "Up 3 hours (healthy)", "Up 2 weeks"...).
+     * The result is the lower bound of the unit, thus it never decreases while the container runs.
+     *
+     * @param status status of the container
+     * @return uptime in seconds, -1 if the container is not up or the status cannot be read
+     */
+    static long uptimeSeconds(final String status) {
+        if (status == null || !status.startsWith(UP)) {
+            return -1;
+        }
+
+        int i = UP.length();
+
+        if (status.startsWith("Less than a second", i)) {
+            return 0;
+        }
+        if (status.startsWith("About a minute", i)) {
+            return MINUTE;
+        }
+        if (status.startsWith("About an hour", i)) {
+            return HOUR;
+        }
+
+        long count = 0;
+        int digits = 0;
+        for (; i < status.length() && Character.isDigit(status.charAt(i)); i++, digits++) {
+            count = count * RADIX + (status.charAt(i) - '0');
+        }
+
+        if (digits == 0 || i >= status.length() || status.charAt(i) != ' ') {
+            return -1;
+        }
+        i++;
+
+        if (status.startsWith("second", i)) {
+            return count;
+        } else if (status.startsWith("minute", i)) {
+            return count * MINUTE;
+        } else if (status.startsWith("hour", i)) {
+            return count * HOUR;
+        } else if (status.startsWith("day", i)) {
+            return count * DAY;
+        } else if (status.startsWith("week", i)) {
+            return count * WEEK;
+        } else if (status.startsWith("month", i)) {
+            return count * MONTH;
+        } else if (status.startsWith("year", i)) {
+            return count * YEAR;
+        }
+
+        return -1;
+    }
+
+    /***
+     * Docker does not keep the order of mounts and ports between listings, hence the sum.
+     */
+    private static long unorderedHash(final List<?> elements) {
+        long hash = 0;
+
+        if (elements != null) {
+            for (Object element : elements) {
+                hash += element.hashCode();
+            }
+        }
+
+        return hash;
+    }
+
+    /***
+     * Hash of the first word of the status and of every parenthesised part, e.g. "Up (healthy)" for
+     * "Up 5 minutes (healthy)" and "Exited (0)" for "Exited (0) 2 hours ago".
+     */
+    private static long statusHash(final String status) {
+        if (status == null) {
+            return 0;
+        }
+
+        long hash = 0;
+        boolean firstWord = true;
+        boolean parenthesised = false;
+
+        for (int i = 0; i < status.length(); i++) {
+            char character = status.charAt(i);
+
+            if (character == ' ') {
+                firstWord = false;
+            } else if (character == '(') {
+                parenthesised = true;
+            } else if (character == ')') {
+                parenthesised = false;
+            }
+
+            if (firstWord || parenthesised) {
+                hash = PRIME * hash + character;
+            }
+        }
+
+        return hash;
+    }
+}
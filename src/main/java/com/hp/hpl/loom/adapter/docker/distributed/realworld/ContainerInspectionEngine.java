@@ -0,0 +1,156 @@
+/*******************************************************************************
+ * (c) Copyright 2017 Hewlett Packard Enterprise Development LP Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *******************************************************************************/
+package com.hp.hpl.loom.adapter.docker.distributed.realworld;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.hp.hpl.loom.adapter.BaseAdapter;
+import com.hp.hpl.loom.adapter.docker.distributed.metrics.AdapterMetrics;
+import com.hp.hpl.loom.adapter.docker.distributed.metrics.Call;
+import com.hp.hpl.loom.adapter.docker.distributed.metrics.Endpoint;
+import com.hp.hpl.loom.adapter.docker.distributed.metrics.HostMetrics;
+import com.spotify.docker.client.DockerClient;
+import com.spotify.docker.client.messages.ContainerInfo;
+
+/***
+ * Inspects many containers at once. Inspections run in parallel, limited per host
+ * (inspectionThreadsPerHost) and across all the hosts (inspectionThreads), and the results are
+ * returned together so that the host publishes them in a single update.
+ */
+public final class ContainerInspectionEngine {
+    private static final Log LOG = LogFactory.getLog(ContainerInspectionEngine.class);
+
+    private static final int DEFAULT_THREADS = 64;
+    private static final int DEFAULT_THREADS_PER_HOST = 8;
+
+    private static ContainerInspectionEngine instance = null;
+
+    private final ExecutorService inspectionPool = Executors.newCachedThreadPool();
+
+    private final Semaphore globalPermits;
+    private final int threadsPerHost;
+    private final Map<String, Semaphore> hostPermits = new ConcurrentHashMap<String, Semaphore>();
+
+    private ContainerInspectionEngine(final BaseAdapter adapter) {
+        globalPermits = new Semaphore(Math.max(1, AdapterProperties.getInt(adapter, "inspectionThreads",
+                DEFAULT_THREADS)));
+        threadsPerHost = Math.max(1, AdapterProperties.getInt(adapter, "inspectionThreadsPerHost",
+                DEFAULT_THREADS_PER_HOST));
+    }
+
+    /***
+     * @param adapter the adapter holding the configuration
+     * @return the engine shared by all the hosts
+     */
+    public static synchronized ContainerInspectionEngine getInstance(final BaseAdapter adapter) {
+        if (instance == null) {
+            instance = new ContainerInspectionEngine(adapter);
+        }
+
+        return instance;
+    }
+
+    /***
+     * Inspects the given containers in parallel. Containers that could not be inspected are logged
+     * and left out of the result. Each inspection is recorded on the metrics of the host.
+     *
+     * @param hostUID UID of the host the client connects to
+     * @param dockerClient client of the host
+     * @param containerIds containers to be inspected
+     * @return inspections indexed by container id
+     */
+    public Map<String, ContainerInfo> inspectAll(final String hostUID, final DockerClient dockerClient,
+            final Collection<String> containerIds) {
+        Map<String, ContainerInfo> inspections = new HashMap<String, ContainerInfo>();
+
+        if (containerIds.isEmpty()) {
+            return inspections;
+        }
+
+        Semaphore perHostPermits = hostPermits.computeIfAbsent(hostUID, (key) -> new Semaphore(threadsPerHost));
+        HostMetrics metrics = AdapterMetrics.getInstance().host(hostUID);
+        List<Future<ContainerInfo>> pending = new ArrayList<Future<ContainerInfo>>(containerIds.size());
+        List<String> pendingIds = new ArrayList<String>(containerIds.size());
+
+        long start = System.nanoTime();
+
+        try {
+            for (String containerId : containerIds) {
+                // The submitting thread waits for the permits, thus the pool never holds more
+                // threads than the global limit.
+                perHostPermits.acquire();
+
+                try {
+                    globalPermits.acquire();
+                } catch (InterruptedException e) {
+                    perHostPermits.release();
+                    throw e;
+                }
+
+                pending.add(inspectionPool.submit(() -> {
+                    Call call = metrics.startCall(Endpoint.CONTAINER_INSPECT);
+
+                    try {
+                        ContainerInfo inspection = dockerClient.inspectContainer(containerId);
+                        call.succeeded();
+
+                        return inspection;
+                    } catch (Exception e) {
+                        call.failed(e);
+                        throw e;
+                    } finally {
+                        globalPermits.release();
+                        perHostPermits.release();
+                    }
+                }));
+                pendingIds.add(containerId);
+            }
+
+            for (int i = 0; i < pending.size(); i++) {
+                try {
+                    inspections.put(pendingIds.get(i), pending.get(i).get());
+                } catch (ExecutionException e) {
+                    LOG.error("Could not inpect the container " + pendingIds.get(i), e.getCause());
+                }
+            }
+        } catch (InterruptedException e) {
+            LOG.warn("Interrupted while inspecting the containers of host '" + hostUID + "'");
+            pending.forEach((future) -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            return inspections;
+        }
+
+        long elapsed = System.nanoTime() - start;
+        metrics.recordInspectionBatch(inspections.size(), elapsed);
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug(String.format("Inspected %d/%d containers of host '%s' in %d ms (%.1f inspections/s)",
+                    inspections.size(), pending.size(), hostUID, TimeUnit.NANOSECONDS.toMillis(elapsed),
+                    metrics.getLastInspectionRate()));
+        }
+
+        return inspections;
+    }
+}
@@ -0,0 +1,164 @@
+/*******************************************************************************
+ * (c) Copyright 2017 Hewlett Packard Enterprise Development LP Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *******************************************************************************/
+package com.hp.hpl.loom.adapter.docker.distributed.realworld;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.hp.hpl.loom.adapter.BaseAdapter;
+import com.hp.hpl.loom.adapter.docker.distributed.metrics.Call;
+import com.hp.hpl.loom.adapter.docker.distributed.metrics.Endpoint;
+import com.hp.hpl.loom.adapter.docker.distributed.metrics.HostMetrics;
+import com.spotify.docker.client.DockerClient;
+import com.spotify.docker.client.messages.ContainerStats;
+
+/***
+ * Samples containers through the docker stats API (/containers/{id}/stats?stream=false), for the
+ * hosts without a cAdvisor. Samples are requested in parallel, limited per host
+ * (statsThreadsPerHost) and across all the hosts (statsThreads).
+ *
+ * <p>
+ * A stats request blocks on the daemon for about a second, thus sampling runs apart from the
+ * refresh of the hosts: each host samples one of its running containers every schedulingInterval /
+ * statsSamplesPerRefresh, taking them in turn (see ContainerStatsSampler), so that its
+ * statsSamplesPerRefresh samples are spread over the interval. A refresh only reads the latest
+ * usage of the containers.
+ */
+public final class ContainerStatsEngine {
+    private static final Log LOG = LogFactory.getLog(ContainerStatsEngine.class);
+
+    private static final int DEFAULT_THREADS = 32;
+    private static final int DEFAULT_THREADS_PER_HOST = 4;
+    private static final int DEFAULT_SAMPLES_PER_REFRESH = 20;
+
+    /***
+     * Loom default of schedulingInterval, in milliseconds.
+     */
+    private static final long DEFAULT_SCHEDULING_INTERVAL_MS = TimeUnit.SECONDS.toMillis(10);
+
+    private static ContainerStatsEngine instance = null;
+
+    private final ExecutorService statsPool = Executors.newCachedThreadPool();
+
+    // Only triggers the samples, which are requested on the statsPool.
+    private final ScheduledExecutorService samplingScheduler = Executors.newSingleThreadScheduledExecutor();
+
+    private final Semaphore globalPermits;
+    private final int threadsPerHost;
+    private final long samplingPeriod;
+    private final Map<String, Semaphore> hostPermits = new ConcurrentHashMap<String, Semaphore>();
+
+    private ContainerStatsEngine(final BaseAdapter adapter) {
+        globalPermits = new Semaphore(Math.max(1, AdapterProperties.getInt(adapter, "statsThreads",
+                DEFAULT_THREADS)));
+        threadsPerHost = Math.max(1, AdapterProperties.getInt(adapter, "statsThreadsPerHost",
+                DEFAULT_THREADS_PER_HOST));
+
+        int samplesPerRefresh = Math.max(1, AdapterProperties.getInt(adapter, "statsSamplesPerRefresh",
+                DEFAULT_SAMPLES_PER_REFRESH));
+        long schedulingInterval =
+                AdapterProperties.getLong(adapter, "schedulingInterval", DEFAULT_SCHEDULING_INTERVAL_MS);
+        samplingPeriod = Math.max(1, schedulingInterval / samplesPerRefresh);
+    }
+
+    /***
+     * @param adapter the adapter holding the configuration
+     * @return the engine shared by all the hosts
+     */
+    public static synchronized ContainerStatsEngine getInstance(final BaseAdapter adapter) {
+        if (instance == null) {
+            instance = new ContainerStatsEngine(adapter);
+        }
+
+        return instance;
+    }
+
+    /***
+     * Runs the given sampling step every schedulingInterval / statsSamplesPerRefresh. The first step
+     * is delayed at random within that period, so that the hosts do not sample all at once.
+     *
+     * @param step sampling step of a host, which must not block
+     * @return the schedule, to be cancelled once the host no longer needs sampling
+     */
+    ScheduledFuture<?> schedule(final Runnable step) {
+        long initialDelay = ThreadLocalRandom.current().nextLong(samplingPeriod);
+
+        return samplingScheduler.scheduleAtFixedRate(() -> {
+            try {
+                step.run();
+            } catch (RuntimeException e) {
+                // An exception would cancel the schedule
+                LOG.warn("Could not sample the containers", e);
+            }
+        }, initialDelay, samplingPeriod, TimeUnit.MILLISECONDS);
+    }
+
+    /***
+     * Requests the stats of a container in the background, unless the host or the engine already
+     * has as many requests in progress as it is allowed to. Containers that could not be sampled,
+     * e.g. stopped meanwhile, are left out. Each request is recorded on the metrics of the host.
+     *
+     * @param hostUID UID of the host the client connects to
+     * @param dockerClient client of the host
+     * @param metrics metrics of the host
+     * @param containerId container to be sampled
+     * @param onSample receives the stats of the container, from the thread of the request
+     * @return true if the request was started, false if it has to be tried again later
+     */
+    public boolean trySample(final String hostUID, final DockerClient dockerClient, final HostMetrics metrics,
+            final String containerId, final Consumer<ContainerStats> onSample) {
+        Semaphore perHostPermits = hostPermits.computeIfAbsent(hostUID, (key) -> new Semaphore(threadsPerHost));
+
+        if (!perHostPermits.tryAcquire()) {
+            return false;
+        }
+
+        if (!globalPermits.tryAcquire()) {
+            perHostPermits.release();
+            return false;
+        }
+
+        statsPool.execute(() -> {
+            Call call = metrics.startCall(Endpoint.CONTAINER_STATS);
+            ContainerStats stats;
+
+            try {
+                stats = dockerClient.stats(containerId);
+                call.succeeded();
+            } catch (Exception e) {
+                call.failed(e);
+
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Could not sample the container " + containerId, e);
+                }
+                return;
+            } finally {
+                globalPermits.release();
+                perHostPermits.release();
+            }
+
+            onSample.accept(stats);
+        });
+
+        return true;
+    }
+}
@@ -0,0 +1,170 @@
+/*******************************************************************************
+ * (c) Copyright 2017 Hewlett Packard Enterprise Development LP Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *******************************************************************************/
+package com.hp.hpl.loom.adapter.docker.distributed.realworld;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import com.hp.hpl.loom.adapter.docker.distributed.ContainerFormat;
+import com.hp.hpl.loom.adapter.docker.distributed.metrics.HostMetrics;
+import com.spotify.docker.client.DockerClient;
+import com.spotify.docker.client.messages.Container;
+import com.spotify.docker.client.messages.ContainerStats;
+
+/***
+ * Usage of the containers of a host without cAdvisor, sampled through the ContainerStatsEngine.
+ *
+ * <p>
+ * While active, the sampler requests the stats of one running container on every step scheduled by
+ * the engine, taking the containers in turn, in the order of their ids. The usage of a container is
+ * the one of its last sample, and its CPU usage the rate between its last two samples (see
+ * UsageHistory), thus on a host running more containers than the samples per refresh, it covers
+ * several refresh intervals.
+ */
+final class ContainerStatsSampler {
+    private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final ContainerStatsEngine engine;
+    private final String hostUID;
+    private final DockerClient dockerClient;
+    private final HostMetrics metrics;
+    private final Supplier<List<Container>> containers;
+    private final UsageHistory history;
+
+    // Latest usage of the running containers, indexed by container id
+    private final Map<String, UsageStatistics> usages = new HashMap<String, UsageStatistics>();
+
+    // Id of the last container sampled, only used by the sampling steps
+    private String lastSampled = null;
+
+    private ScheduledFuture<?> schedule = null;
+    private boolean closed = false;
+
+    /***
+     * @param engine engine requesting the samples
+     * @param hostUID UID of the host
+     * @param dockerClient client of the host
+     * @param metrics metrics of the host
+     * @param containers current containers of the host
+     * @param history previous samples of the containers
+     */
+    ContainerStatsSampler(final ContainerStatsEngine engine, final String hostUID, final DockerClient dockerClient,
+            final HostMetrics metrics, final Supplier<List<Container>> containers, final UsageHistory history) {
+        this.engine = engine;
+        this.hostUID = hostUID;
+        this.dockerClient = dockerClient;
+        this.metrics = metrics;
+        this.containers = containers;
+        this.history = history;
+    }
+
+    /***
+     * Starts or stops sampling, e.g. when a cAdvisor appears on the host or goes away.
+     *
+     * @param active true if the containers must be sampled
+     */
+    synchronized void setActive(final boolean active) {
+        if (active && schedule == null && !closed) {
+            schedule = engine.schedule(this::sampleNext);
+        } else if (!active && schedule != null) {
+            schedule.cancel(false);
+            schedule = null;
+        }
+    }
+
+    /***
+     * Stops sampling for good.
+     */
+    synchronized void close() {
+        setActive(false);
+        closed = true;
+    }
+
+    /***
+     * @return latest usage of the running containers sampled so far, indexed by container id
+     */
+    synchronized Map<String, UsageStatistics> getUsages() {
+        return new HashMap<String, UsageStatistics>(usages);
+    }
+
+    /***
+     * Requests the stats of the running container following the last one sampled, wrapping around.
+     * When the engine has no request to spare, the same container is tried on the next step.
+     */
+    private void sampleNext() {
+        List<String> running = new ArrayList<String>();
+
+        for (Container container : containers.get()) {
+            if (ContainerFormat.isUp(container.status())) {
+                running.add(container.id());
+            }
+        }
+
+        Set<String> runningIds = new HashSet<String>(running);
+        synchronized (this) {
+            usages.keySet().retainAll(runningIds);
+        }
+        history.retain(runningIds);
+
+        if (running.isEmpty()) {
+            return;
+        }
+
+        Collections.sort(running);
+
+        // first id after the last one sampled, which may be gone meanwhile
+        int next = 0;
+        if (lastSampled != null) {
+            int found = Collections.binarySearch(running, lastSampled);
+            next = found >= 0 ? found + 1 : -found - 1;
+        }
+
+        String containerId = running.get(next % running.size());
+
+        if (engine.trySample(hostUID, dockerClient, metrics, containerId, (stats) -> record(containerId, stats))) {
+            lastSampled = containerId;
+        }
+    }
+
+    /***
+     * Records a sample, unless the daemon left out the CPU or memory usage, e.g. for a container
+     * stopped meanwhile.
+     */
+    private void record(final String containerId, final ContainerStats stats) {
+        if (stats.read() == null || stats.cpuStats() == null || stats.cpuStats().cpuUsage() == null
+                || stats.memoryStats() == null) {
+            return;
+        }
+
+        Long cpu = stats.cpuStats().cpuUsage().totalUsage();
+        Long memory = stats.memoryStats().usage();
+
+        if (cpu == null || memory == null) {
+            return;
+        }
+
+        UsageStatistics usage = history.record(containerId, cpu / NANOS_PER_SECOND, memory, stats.read().getTime());
+
+        if (usage != null) {
+            synchronized (this) {
+                usages.put(containerId, usage);
+            }
+        }
+    }
+}
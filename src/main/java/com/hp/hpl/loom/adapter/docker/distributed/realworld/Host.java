@@ -12,27 +12,25 @@ package com.hp.hpl.loom.adapter.docker.distributed.realworld;
 
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Iterator;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 
-import javax.ws.rs.client.Client;
-import javax.ws.rs.client.ClientBuilder;
-import javax.ws.rs.client.WebTarget;
-import javax.ws.rs.core.MediaType;
-import javax.ws.rs.core.Response;
-
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.springframework.util.StopWatch;
 
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.hp.hpl.loom.adapter.BaseAdapter;
+import com.hp.hpl.loom.adapter.docker.distributed.metrics.AdapterMetrics;
+import com.hp.hpl.loom.adapter.docker.distributed.metrics.Call;
+import com.hp.hpl.loom.adapter.docker.distributed.metrics.Endpoint;
+import com.hp.hpl.loom.adapter.docker.distributed.metrics.HostMetrics;
+import com.hp.hpl.loom.adapter.docker.distributed.metrics.Phase;
+import com.hp.hpl.loom.adapter.docker.distributed.metrics.Span;
 import com.hp.hpl.loom.adapter.docker.realworld.ContainerPort;
 import com.jcraft.jsch.JSchException;
 import com.spotify.docker.client.DefaultDockerClient;
@@ -41,10 +39,8 @@ import com.spotify.docker.client.DockerClient.ListContainersParam;
 import com.spotify.docker.client.exceptions.DockerException;
 import com.spotify.docker.client.messages.Container;
 import com.spotify.docker.client.messages.ContainerInfo;
-import com.spotify.docker.client.messages.ContainerMount;
 import com.spotify.docker.client.messages.Image;
 import com.spotify.docker.client.messages.Info;
-import com.spotify.docker.client.messages.PortBinding;
 
 /***
  * Represents a Host. In the distributed docker application, there are multiple hosts.
@@ -53,6 +49,10 @@ public class Host {
     private static final Log LOG = LogFactory.getLog(Host.class);
     private static final int DOCKER_CONNECTION_POOL_SIZE = 1000;
     private static final long DEFAULT_READ_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(30);
+    private static final long DEFAULT_RECONCILIATION_INTERVAL_MS = TimeUnit.MINUTES.toMillis(10);
+    private static final long DEFAULT_METADATA_TTL_MS = TimeUnit.HOURS.toMillis(1);
+    // Ids per filtered listing of the containers changed by events, keeps the request line short
+    private static final int EVENT_LISTING_BATCH = 100;
 
 
     /***
@@ -72,99 +72,126 @@ public class Host {
      */
     private String dockerAddress;
 
+    /***
+     * Address of the cAdvisor of the host: http://[host with docker daemon]:[cAdvisorPort], where
+     * cAdvisorPort is optional on the hosts.json file and defaults to 8080.
+     */
+    private String cAdvisorAddress;
+
     private DockerClient dockerClient;
 
     /* OS Distribution, used when SSH is enabled. */
     private String osDistribution;
     private boolean osInformationAvailable = false;
 
-    // Client used to retrieve cAdvisor information
-    private Client jerseyClient = null;
+    // Collects the cAdvisor information of all the hosts
+    private CAdvisorCollectionEngine cAdvisorEngine;
+
+    // Machine information, read again every metadataTtl or when the daemon may have restarted
+    private volatile HostMetadata metadata = HostMetadata.empty();
+    private long metadataTtl;
+    private volatile boolean metadataInvalidated = false;
+    // cAdvisor container the /machine information was read from
+    private String machineSource = null;
+
+    // Samples the containers through the docker stats API when there is no cAdvisor, null if disabled
+    private ContainerStatsSampler statsSampler = null;
 
     // Information updated on every single update cycle
-    private JsonNode machinePhysicalInformation;
-    private JsonNode machineStatistics;
-    private Map<String, JsonNode> containerStatisticsMap;
+    private final UsageHistory usageHistory = new UsageHistory();
+    private final UsageStore usageStore = new UsageStore();
+    private UsageStatistics machineStatistics;
+    private Map<String, UsageStatistics> containerStatisticsMap = new HashMap<String, UsageStatistics>();
 
     // cAvisor that monitors that host
     private Container cAdvisorContainer = null;
 
-    // Lists contained by the host and refreshed on every hostUpdater iteration
-    private List<Container> containerList;
-
-    // Map to verify quickly if a given image is local on the host
-    private Map<String, Image> imageMap;
-
-    // Both volume and port are hash maps in order allow quick updates on it, should a container get
-    // removed preventing iterating on the whole list.
-
-    // The key for the portMap is the containerId, since no port exists with a container.
-    private Map<String, List<ContainerPort>> portMap;
-
     /*
+     * Containers, images, inspections, ports and volumes contained by the host, refreshed on every
+     * hostUpdater iteration. Each change publishes a new immutable snapshot, thus readers never see
+     * a partially updated host.
+     *
      * The representation of volumes is a bit tricky. Because on docker model, volumes are
      * independent entities. This means that they do not require containers to exist. In the current
      * docker API, however, one can only detect a volume by inspecting Containers and noticing that
-     * they are mounting certain volumes. Volumes have a n to n relationship with containers, thus a
-     * map would not be a good solution for it. In the HashMap, the key is the Volume and the value
-     * is a list of containers that mount that volume.
+     * they are mounting certain volumes. Thus, ports and volumes are derived from the inspections.
      */
-    private Map<Volume, List<String>> volumeMap;
+    private final AtomicReference<HostSnapshot> snapshot = new AtomicReference<HostSnapshot>();
 
-    // HashMap to reduce container inspection requests. Works as a cache.
-    // The developer must take care to update this cache on every container addition or deletion.
-    private Map<String, ContainerInfo> inspectionMap;
+    private ContainerInspectionEngine inspectionEngine;
 
-    // Container OS, due to the NFS system, has some delay to provide container information. This
-    // would cause container inspection to no be able to correctly update, since the containercreate
-    // would not have returned yet. This variable prevents any containerList update if a create
-    // container action happened and did not finish yet.
-    private Lock updateListOrCreateContainerLock = new ReentrantLock();
+    // When enabled, containers are only inspected on first use: ports, volumes and links are taken
+    // from the container list.
+    private boolean lazyInspection;
 
-    @SuppressWarnings("checkstyle:redundantthrows")
-    protected Host(final JsonNode hostInfo, final BaseAdapter adapter) throws Exception {
-        daemonIp = retrieveDaemonIp(hostInfo);
-        daemonListeningPort = retrieveDaemonListeningPort(hostInfo);
-        dockerAddress = setDockerAddress(hostInfo);
-
-        // If enabled, retrieves Host OS information through SSH.
-        retrieveIntraInformation(hostInfo);
+    // Set when the last refresh of this host failed or missed its deadline. The host keeps serving
+    // the information of its last successful refresh.
+    private volatile boolean stale = false;
 
-        // Generate a docker daemon and get info.
-        dockerClient = DefaultDockerClient.builder().connectionPoolSize(DOCKER_CONNECTION_POOL_SIZE).uri(dockerAddress)
-                .build();
+    // Set once the connections are closed and the meters released.
+    private boolean closed = false;
 
-        StopWatch stopWatch = null;
+    private volatile long lastSuccessfulRefresh = 0;
 
-        if (LOG.isTraceEnabled()) {
-            stopWatch = new StopWatch("Initial Refresh");
-        }
+    private HostCircuitBreaker circuitBreaker;
 
-        try {
-            // Note: Optimisation - find a way to solve conflict that makes two requests on the
-            // first cycle
-            refreshHostContent(stopWatch);
+    // Only set when eventMode is enabled. Containers and images are then updated from the daemon
+    // events, and the complete listing only happens every reconciliationInterval or after the event
+    // stream reconnects.
+    private HostEventListener eventListener = null;
+    private long reconciliationInterval;
+    private long lastReconciliation = 0;
+    private boolean reconciliationPending = false;
+    private boolean imageRefreshPending = false;
 
-            /*
-             * Generates a cache of containers inspection on the local host, this reduces the number
-             * of Get requests of the docker API.
-             */
+    // Refresh phases, calls to the daemon and cAdvisor, and cache sizes of this host.
+    private HostMetrics metrics;
 
-            if (LOG.isTraceEnabled()) {
-                stopWatch.start("Initial Update Container Inspection Cache");
+    @SuppressWarnings("checkstyle:redundantthrows")
+    protected Host(final JsonNode hostInfo, final BaseAdapter adapter) throws Exception {
+        daemonIp = retrieveDaemonIp(hostInfo);
+        daemonListeningPort = retrieveDaemonListeningPort(hostInfo);
+        dockerAddress = dockerAddressOf(hostInfo);
+        cAdvisorAddress = "http://" + daemonIp + ":" + retrieveCAdvisorPort(hostInfo);
+        snapshot.set(HostSnapshot.empty(dockerAddress));
+        metrics = AdapterMetrics.getInstance().acquireHost(dockerAddress);
+        // A host that cannot be reached is retried with a new Host (see HostManager), hence nothing
+        // may be left open here on failure.
+        try {
+            inspectionEngine = ContainerInspectionEngine.getInstance(adapter);
+            cAdvisorEngine = CAdvisorCollectionEngine.getInstance(adapter);
+            circuitBreaker = HostCircuitBreaker.create(adapter);
+            lazyInspection = AdapterProperties.getBoolean(adapter, "lazyInspection", false);
+            metadataTtl = AdapterProperties.getLong(adapter, "metadataTtl", DEFAULT_METADATA_TTL_MS);
+
+            // If enabled, retrieves Host OS information through SSH.
+            retrieveIntraInformation(hostInfo);
+
+            // Generate a docker daemon and get info.
+            // A hung daemon must not hold a refresh thread forever: the events have their own client.
+            dockerClient = DefaultDockerClient.builder().connectionPoolSize(DOCKER_CONNECTION_POOL_SIZE)
+                    .readTimeoutMillis(DEFAULT_READ_TIMEOUT_MILLIS).uri(dockerAddress).build();
+
+            if (AdapterProperties.getBoolean(adapter, "statsFallback", false)) {
+                statsSampler = new ContainerStatsSampler(ContainerStatsEngine.getInstance(adapter), dockerAddress,
+                        dockerClient, metrics, this::getLocalContainers, usageHistory);
             }
 
-            updateAllContainerInspectionCache();
+            // The first refresh also generates the cache of containers inspection on the local
+            // host, this reduces the number of Get requests of the docker API.
+            refreshHostContent();
 
-            if (LOG.isTraceEnabled()) {
-                stopWatch.stop();
+            if (AdapterProperties.getBoolean(adapter, "eventMode", false)) {
+                reconciliationInterval = AdapterProperties.getLong(adapter, "reconciliationInterval",
+                        DEFAULT_RECONCILIATION_INTERVAL_MS);
+                lastReconciliation = System.currentTimeMillis();
+
+                eventListener = new HostEventListener(dockerAddress);
+                eventListener.start();
             }
         } catch (Exception e) {
+            close();
             throw e;
-        } finally {
-            if (LOG.isTraceEnabled()) {
-                LOG.trace(stopWatch.prettyPrint());
-            }
         }
     }
 
@@ -176,18 +203,34 @@ public class Host {
      */
     private void retrieveIntraInformation(final JsonNode hostInfo) throws JSchException {
         DockerClient disposableDockerClient =
-                DefaultDockerClient.builder().connectionPoolSize(DOCKER_CONNECTION_POOL_SIZE)
-                        .readTimeoutMillis(DEFAULT_READ_TIMEOUT_MILLIS).uri(dockerAddress).build();
+                DefaultDockerClient.builder().readTimeoutMillis(DEFAULT_READ_TIMEOUT_MILLIS).uri(dockerAddress).build();
 
+        try {
+            retrieveDockerInformation(disposableDockerClient);
+        } finally {
+            disposableDockerClient.close();
+        }
+    }
+
+    /***
+     * Reads the docker info of the daemon into the host metadata.
+     *
+     * @param client client of the daemon
+     */
+    private void retrieveDockerInformation(final DockerClient client) {
         Info clientInformation = null;
+        Call call = metrics.startCall(Endpoint.INFO);
         try {
-            clientInformation = disposableDockerClient.info();
+            clientInformation = client.info();
+            call.succeeded();
         } catch (DockerException | InterruptedException e) {
-            LOG.warn("Could not retrieve docker daemon information from host '" + disposableDockerClient.getHost()
-                    + "'");
+            call.failed(e);
+            LOG.warn("Could not retrieve docker daemon information from host '" + client.getHost() + "'");
         }
 
         if (clientInformation != null) {
+            metadata = metadata.withInfo(clientInformation, System.currentTimeMillis());
+
             String operatingSystemInfo = clientInformation.operatingSystem();
 
             osDistribution = operatingSystemInfo.split(" ")[0];
@@ -196,36 +239,134 @@ public class Host {
     }
 
     /***
-     * Updates the host containers, images and cAvisors databases.
+     * The metadata is read again once older than metadataTtl, or when the daemon may have been
+     * restarted: after the host recovered from a failed refresh, or the event stream reconnected.
+     *
+     * @param timestamp time of the last reading of the metadata
+     * @return true if the metadata has to be read again
+     */
+    private boolean isMetadataExpired(final long timestamp) {
+        return metadataInvalidated || System.currentTimeMillis() - timestamp >= metadataTtl;
+    }
+
+    /***
+     * Updates the host containers, images and cAvisors databases. The duration of each phase is
+     * recorded on the docker.host.phase timers of the host.
      *
      * @throws Exception
      */
-    public void refreshHostContent(final StopWatch stopWatch) throws Exception {
-        if (LOG.isTraceEnabled()) {
-            stopWatch.start("Refresh Container Database");
+    public void refreshHostContent() throws Exception {
+        boolean fullListing = isFullListingRequired();
+
+        if (fullListing) {
+            refreshContainerDatabase();
+        } else {
+            applyContainerEvents();
         }
 
-        verifyLockAndRefreshContainerDatabase();
+        // The flag is drained even on a full listing, which already covers the image changes.
+        boolean imageRefresh = isImageRefreshRequired();
 
-        if (LOG.isTraceEnabled()) {
-            stopWatch.stop();
+        if (fullListing || imageRefresh) {
+            Span phase = metrics.startPhase(Phase.IMAGE_LIST);
 
-            stopWatch.start("Refresh Image Database");
-        }
+            refreshImageDatabase();
+            imageRefreshPending = false;
 
-        refreshImageDatabase();
+            phase.end();
+        }
 
-        if (LOG.isTraceEnabled()) {
-            stopWatch.stop();
+        if (fullListing) {
+            reconciliationPending = false;
+            lastReconciliation = System.currentTimeMillis();
+        }
 
-            stopWatch.start("Refresh CAdvisors");
+        if (isMetadataExpired(metadata.getInfoTimestamp())) {
+            retrieveDockerInformation(dockerClient);
         }
 
+        Span phase = metrics.startPhase(Phase.CADVISOR);
+
         refreshCAdvisors();
+        metadataInvalidated = false;
+
+        phase.end();
+
+        if (statsSampler != null) {
+            // The containers are sampled in the background, the refresh only takes the latest usage.
+            statsSampler.setActive(cAdvisorContainer == null);
+
+            if (cAdvisorContainer == null) {
+                Map<String, UsageStatistics> sampled = statsSampler.getUsages();
+
+                recordUsage(null, sampled);
+                containerStatisticsMap = sampled;
+            }
+        }
+    }
+
+    /***
+     * Without an event stream, the containers and images are completely listed on every refresh.
+     * Otherwise, only when the reconciliation interval expired or the stream reconnected.
+     *
+     * @return true if containers and images have to be completely listed
+     */
+    private boolean isFullListingRequired() {
+        if (eventListener == null) {
+            return true;
+        }
+
+        if (eventListener.drainReconciliationRequested()) {
+            reconciliationPending = true;
+            metadataInvalidated = true;
+        }
+
+        return reconciliationPending || System.currentTimeMillis() - lastReconciliation >= reconciliationInterval;
+    }
+
+    private boolean isImageRefreshRequired() {
+        if (eventListener != null && eventListener.drainImagesChanged()) {
+            imageRefreshPending = true;
+        }
+
+        return imageRefreshPending;
+    }
+
+    /***
+     * Registers the gauges of the host, once it joined the host map: until then, another instance
+     * of the same host may still be the one collected.
+     */
+    void registerGauges() {
+        metrics.gauge("docker.host.containers", () -> snapshot.get().getContainers().size());
+        metrics.gauge("docker.host.images", () -> snapshot.get().getImages().size());
+        metrics.gauge("docker.host.inspections", () -> snapshot.get().getInspections().size());
+        metrics.gauge("docker.host.stale", () -> stale ? 1 : 0);
+    }
+
+    /***
+     * Stops listening to the daemon events, if enabled, and closes the connections to the host. Used
+     * when the host is removed from the host file, or could not be created. Its meters are released,
+     * and removed unless another instance of the same host holds them.
+     */
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        if (eventListener != null) {
+            eventListener.close();
+        }
+
+        if (statsSampler != null) {
+            statsSampler.close();
+        }
 
-        if (LOG.isTraceEnabled()) {
-            stopWatch.stop();
+        if (dockerClient != null) {
+            dockerClient.close();
         }
+
+        AdapterMetrics.getInstance().releaseHost(getUID(), metrics);
     }
 
     /***
@@ -236,20 +377,16 @@ public class Host {
         // look for a new one every single iteration.
         cAdvisorContainer = null;
 
-        for (Container container : containerList) {
+        for (Container container : getLocalContainers()) {
             if (container.image().toLowerCase().contains("cadvisor")) {
                 // cAdvisor container found.
                 if (container.status().toLowerCase().contains("up")) {
                     // and the container is currently monitoring the host.
                     cAdvisorContainer = container;
 
-                    // initialises the jerseyClient on the first call:
-                    if (jerseyClient == null) {
-                        jerseyClient = ClientBuilder.newClient();
-                    }
-
-                    updateCAdvisorHostInformations();
-                    updateCAdvisorContainersInformation();
+                    // a cAdvisor that was just deployed has never been asked for /machine
+                    updateCAdvisorInformation(isMetadataExpired(metadata.getMachineTimestamp())
+                            || !container.id().equals(machineSource));
                     break;
                 }
             }
@@ -257,101 +394,60 @@ public class Host {
     }
 
     /***
-     * Retrieves all the Host information from cAdvisor
+     * Retrieves the host and containers usage from the cAdvisor, and its machine information if
+     * required. The information of all containers is updated on every single adaptor update cycle,
+     * in just one GET request.
+     *
+     * @param includeMachine true to read the machine information into the host metadata
      */
-    private void updateCAdvisorHostInformations() {
-        String uri = "http://" + getDaemonIp() + ":8080/api/v2.0/summary";
+    private void updateCAdvisorInformation(final boolean includeMachine) {
+        CAdvisorCollectionEngine.Statistics statistics;
 
         try {
-            // Retrieve cAdvisor Statistics information through REST API
-            WebTarget resource = jerseyClient.target(uri);
-            Response statisticsResponse = resource.request(MediaType.APPLICATION_JSON).get();
-
-            // Retrieve cAdvisor machine information through REST API
-            resource = jerseyClient.target("http://" + getDaemonIp() + ":8080/api/v2.0/machine");
-            Response machineInfoResponse = resource.request(MediaType.APPLICATION_JSON).get();
-
-            if (statisticsResponse.getStatus() == Response.Status.OK.getStatusCode()
-                    && machineInfoResponse.getStatus() == Response.Status.OK.getStatusCode()) {
-
-                String statResponse = statisticsResponse.readEntity(String.class);
-                String machResponse = machineInfoResponse.readEntity(String.class);
-
-                ObjectMapper mapper = new ObjectMapper();
-                try {
-                    machineStatistics = mapper.readTree(statResponse);
-                    machinePhysicalInformation = mapper.readTree(machResponse);
-                } catch (Exception e) {
-                    LOG.error("Failed to process information from " + uri, e);
-                }
-            }
-        } catch (Exception e) {
-            /*
-             * Note: Sometimes a runtime ConnectionRefused Exception can be thrown here. This is
-             * possibly because the cAdvisor container is not ready yet to get connection here. On
-             * the next iteration cycle it will behave as intended.
-             */
-            LOG.warn("cAdvisor connection to " + uri + " refused - has it just been launched?");
+            statistics = cAdvisorEngine.collect(metrics, cAdvisorAddress, includeMachine, usageHistory);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
         }
-    }
 
-    /***
-     * Updates all containers usage information available. The containers retrieve this from a
-     * cache. The information of all containers is updated on every single adaptor update cycle, in
-     * just one GET request.
-     */
-    private void updateCAdvisorContainersInformation() {
-        String uri = "http://" + getDaemonIp() + ":8080/api/v2.0/summary/docker/?recursive=true";
-
-        containerStatisticsMap = new HashMap<String, JsonNode>();
-
-        try {
-            WebTarget resource = jerseyClient.target(uri);
-            Response containerStatistics = resource.request(MediaType.APPLICATION_JSON).get();
-
-            if (containerStatistics.getStatus() == Response.Status.OK.getStatusCode()) {
-                String containerStat = containerStatistics.readEntity(String.class);
-                ObjectMapper mapper = new ObjectMapper();
-
-                try {
-                    JsonNode root = mapper.readTree(containerStat);
-
-                    // The return is not an Iterable:
-                    Iterator<Map.Entry<String, JsonNode>> itr = root.fields();
-
-                    while (itr.hasNext()) {
+        if (statistics.getMachinePhysicalInformation() != null) {
+            metadata = metadata.withMachine(statistics.getMachinePhysicalInformation(), System.currentTimeMillis());
+            machineSource = cAdvisorContainer.id();
+        }
 
-                        Map.Entry<String, JsonNode> child = itr.next();
+        recordUsage(statistics.getMachineStatistics(), statistics.getContainerStatistics());
 
-                        /*
-                         * The first element is an overall usage of docker. Thus there is no
-                         * interest on it.
-                         */
+        if (statistics.getMachineStatistics() != null) {
+            machineStatistics = statistics.getMachineStatistics();
+        }
 
-                        // Select only containers, not the daemon or the application.
-                        if (!child.getKey().equals("/docker-daemon/docker") && !child.getKey().equals("/docker")) {
+        if (statistics.getContainerStatistics() != null) {
+            containerStatisticsMap = statistics.getContainerStatistics();
+        } else {
+            containerStatisticsMap = new HashMap<String, UsageStatistics>();
+        }
+    }
 
-                            // get container name:
-                            String[] subStrings = child.getKey().split("/");
-                            String containerUID = subStrings[subStrings.length - 1];
+    /***
+     * Appends the usage collected to the usage store, which completes it with the windowed usage
+     * before the updaters see it. The containers left out of a successful collection are forgotten.
+     *
+     * @param machine usage of the host, null if not collected
+     * @param containers usage of the containers by id, null if not collected
+     */
+    private void recordUsage(final UsageStatistics machine, final Map<String, UsageStatistics> containers) {
+        if (containers != null) {
+            for (Map.Entry<String, UsageStatistics> entry : containers.entrySet()) {
+                usageStore.record(entry.getKey(), entry.getValue());
+            }
 
-                            // get Container statistics:
-                            JsonNode containerStats = child.getValue();
+            Set<String> keys = new HashSet<String>(containers.keySet());
+            keys.add(CAdvisorMetricsParser.ROOT);
+            usageStore.retain(keys);
+        }
 
-                            containerStatisticsMap.put(containerUID, containerStats);
-                        }
-                    }
-                } catch (Exception e) {
-                    LOG.error("Failed to process response to " + uri, e);
-                }
-            }
-        } catch (Exception e1) {
-            /*
-             * Note: Sometimes a runtime ConnectionRefused Exception can be thrown here. This is
-             * possibly because the cAdvisor container is not ready yet to get connection here. On
-             * the next iteration cycle it will behave as intended.
-             */
-            LOG.warn("cAdvisor connection to " + uri + " refused - has is just been launched?");
+        if (machine != null) {
+            usageStore.record(CAdvisorMetricsParser.ROOT, machine);
         }
     }
 
@@ -368,6 +464,16 @@ public class Host {
         return false;
     }
 
+    /***
+     * The usage of the containers comes from the cAdvisor of the host or, without one, from the
+     * docker stats API if statsFallback is enabled.
+     *
+     * @return true if the containers of the host have usage statistics
+     */
+    public boolean hasContainerStatistics() {
+        return hasCAdvisorRunning() || statsSampler != null;
+    }
+
     /**
      * @return the dockerAddress
      */
@@ -406,7 +512,7 @@ public class Host {
      * @param adapter
      * @return listening host with a docker daemon
      */
-    private String retrieveDaemonIp(final JsonNode hostInfo) {
+    private static String retrieveDaemonIp(final JsonNode hostInfo) {
 
         String retrievedDaemonIp = hostInfo.get("address").textValue();
 
@@ -423,7 +529,7 @@ public class Host {
      * @param adapter
      * @return listening port
      */
-    private String retrieveDaemonListeningPort(final JsonNode hostInfo) {
+    private static String retrieveDaemonListeningPort(final JsonNode hostInfo) {
         String retrivedDaemonListeningPort = hostInfo.get("port").textValue();
 
         if (retrivedDaemonListeningPort == null || retrivedDaemonListeningPort.isEmpty()) {
@@ -433,13 +539,32 @@ public class Host {
         return retrivedDaemonListeningPort;
     }
 
+    /***
+     * Retrieves the port of the cAdvisor of the host (from the key cAdvisorPort), 8080 if absent.
+     *
+     * @param hostInfo host definition from the host file
+     * @return cAdvisor port
+     */
+    private static String retrieveCAdvisorPort(final JsonNode hostInfo) {
+        JsonNode cAdvisorPort = hostInfo.get("cAdvisorPort");
+
+        if (cAdvisorPort == null || cAdvisorPort.asText().isEmpty()) {
+            return "8080";
+        }
+
+        return cAdvisorPort.asText();
+    }
+
     /***
      * The docker address is composed as: "http[s]://[host with docker daemon]:[daemon listening
-     * port]
+     * port]. It is also the UID of the host.
      *
+     * @param hostInfo host definition from the host file
      * @return docker address
      */
-    private String setDockerAddress(final JsonNode hostInfo) {
+    public static String dockerAddressOf(final JsonNode hostInfo) {
+        String daemonIp = retrieveDaemonIp(hostInfo);
+        String daemonListeningPort = retrieveDaemonListeningPort(hostInfo);
 
         // Note: in order configure correctly docker on TLS, use the following guide:
         // - https://docs.docker.com/articles/https/
@@ -454,49 +579,41 @@ public class Host {
         }
     }
 
+    /***
+     * Returns the current content of the host. The snapshot does not change, a refresh publishes a
+     * new one.
+     *
+     * @return current snapshot
+     */
+    public HostSnapshot getSnapshot() {
+        return snapshot.get();
+    }
+
     /***
      * Retrieves a list of local images. The list is updated every single HostItemUpdater cycle.
      *
      * @return List of local images
      */
     public List<Image> getLocalImages() {
-
-        if (imageMap == null) {
-            imageMap = new HashMap<String, Image>();
-
-            // Request to the daemon a new image list
-            try {
-                refreshImageDatabase();
-            } catch (Exception e) {
-                LOG.error("Image refresh failed", e);
-            }
-        }
-
-        // convert the map to list:
-        List<Image> imageList = imageMap.values().stream().collect(Collectors.toList());
-        return imageList;
+        return snapshot.get().getImages();
     }
 
     /***
-     * Retrieves the image list from the docker daemon
+     * Retrieves the image list from the docker daemon. A failed refresh keeps the last known images.
      *
      * @throws Exception
      */
     public void refreshImageDatabase() throws Exception {
-
-        if (imageMap != null) {
-            // Clears any value that was before in the map:
-            imageMap.clear();
-        } else {
-            imageMap = new HashMap<String, Image>();
-        }
+        Call call = metrics.startCall(Endpoint.IMAGE_LIST);
 
         try {
             List<Image> imageList = dockerClient.listImages();
+            call.succeeded();
 
-            // Puts the list in the map.
-            imageList.forEach((image) -> imageMap.put(image.id(), image));
+            snapshot.updateAndGet((current) -> current.withImages(imageList));
         } catch (DockerException | InterruptedException e) {
+            call.failed(e);
+
             if (LOG.isDebugEnabled()) {
                 LOG.debug("Could not list images");
             }
@@ -506,107 +623,124 @@ public class Host {
     }
 
     /***
-     * Connects to the docker daemon and retrieves a list of local containers, including stopped
-     * ones. Due to the adapter update cycle, there may be a race condition caused by a
-     * createContainer command (e.g. create container action).
+     * Returns the local containers, including stopped ones, as retrieved on the last refresh.
      *
      * @return List of local containers
      */
     public List<Container> getLocalContainers() {
-        if (containerList == null) {
-            containerList = new ArrayList<Container>();
-
-            // Request to the daemon a new Container list
-            try {
-                verifyLockAndRefreshContainerDatabase();
-            } catch (Exception e) {
-                LOG.error("Failed to retrieve list of containers", e);
-            }
-        }
-
-        return containerList;
+        return snapshot.get().getContainers();
     }
 
     /***
-     * If an update happens while the createContainer method was called (by an action on the host),
-     * it causes an exception to be thrown, since no containerinspection information will be
-     * retrieved during container update cycle, although the container existence is detected. The
-     * method makes sure that the old container list will be returned if a createmethod has not
-     * returned yet. When the create method returns, it will then update the container list.
+     * Requests to the daemon only the containers that changed since the last refresh, and publishes
+     * them with their inspections. The changed containers are listed at once, through an id filter
+     * of up to EVENT_LISTING_BATCH ids per request.
      *
      * @throws Exception
      */
-    public void verifyLockAndRefreshContainerDatabase() throws Exception {
-        if (updateListOrCreateContainerLock.tryLock()) {
-            // Lock is not being used.
-            try {
-                refreshContainerDatabase();
-            } catch (Exception e) {
-                LOG.error("Failed to update the container database", e);
-            } finally {
-                updateListOrCreateContainerLock.unlock();
-            }
+    private void applyContainerEvents() throws Exception {
+        Set<String> changedContainers = eventListener.drainChangedContainers();
+
+        if (changedContainers.isEmpty()) {
+            return;
         }
-    }
 
-    /***
-     * Retrieves the container List from the Docker Daemon.
-     *
-     * @throws Exception
-     */
-    public void refreshContainerDatabase() throws Exception {
+        List<Container> updatedContainers = new ArrayList<Container>();
+        List<String> removedContainers = new ArrayList<String>();
+        Span phase = metrics.startPhase(Phase.CONTAINER_LIST);
+        Call call = null;
+
         try {
-            final HashMap<String, Container> containerListBeforeUpdate = new HashMap<String, Container>();
+            List<String> ids = new ArrayList<String>(changedContainers);
+
+            for (int start = 0; start < ids.size(); start += EVENT_LISTING_BATCH) {
+                List<String> batch = ids.subList(start, Math.min(ids.size(), start + EVENT_LISTING_BATCH));
+                ListContainersParam[] params = new ListContainersParam[batch.size() + 1];
 
-            // Compare deltas for inspection cache
-            boolean compareDeltas = false;
+                params[0] = ListContainersParam.allContainers(true);
+                for (int i = 0; i < batch.size(); i++) {
+                    params[i + 1] = ListContainersParam.filter("id", batch.get(i));
+                }
 
-            if (containerList != null) {
+                call = metrics.startCall(Endpoint.CONTAINER_LIST);
+                List<Container> listed = dockerClient.listContainers(params);
+                call.succeeded();
 
-                // On the first iteration of the updater, there is no delta do be compared.
-                compareDeltas = true;
+                // the id filter matches prefixes, hence the exact comparison.
+                Map<String, Container> listedById = new HashMap<String, Container>();
+                listed.forEach((container) -> listedById.put(container.id(), container));
 
-                /*
-                 * Generates a Hash Map with keys being the containerId strings. This makes the
-                 * comparison less expensive than comparing Containers instances.
-                 */
-                containerList.forEach((container) -> containerListBeforeUpdate.put(container.id(), container));
+                for (String containerId : batch) {
+                    Container changedContainer = listedById.get(containerId);
+
+                    if (changedContainer != null) {
+                        updatedContainers.add(changedContainer);
+                    } else {
+                        removedContainers.add(containerId);
+                    }
+                }
             }
+        } catch (DockerException | InterruptedException e) {
+            call.failed(e);
+            phase.end();
 
-            containerList = dockerClient.listContainers(ListContainersParam.allContainers(true));
+            // Some events may have been lost, the next refresh lists everything.
+            reconciliationPending = true;
+            throw e;
+        }
 
-            if (compareDeltas) {
-                HashMap<String, Container> containerListAfterUpdate = new HashMap<String, Container>();
-                containerList.forEach((container) -> containerListAfterUpdate.put(container.id(), container));
+        phase.end();
 
-                /*
-                 * One needs to find containers that were added and deleted between updates, in
-                 * order to keep the cache coherent. They can be removed by command line. Thus, no
-                 * cache coherence call would have been made. Indexing the container data structure
-                 * per container id makes the search more light weight.
-                 */
+        Map<String, ContainerInfo> inspections = new HashMap<String, ContainerInfo>();
 
-                // Clone containerListBeforeUpdate and containerListAfterUpdate
-                HashMap<String, Container> removedContainers =
-                        new HashMap<String, Container>(containerListBeforeUpdate);
+        if (!lazyInspection) {
+            phase = metrics.startPhase(Phase.INSPECTION);
+            inspections = inspectionEngine.inspectAll(getUID(), dockerClient,
+                    updatedContainers.stream().map(Container::id).collect(Collectors.toList()));
+            metrics.getInspectionMisses().increment(updatedContainers.size());
+            phase.end();
+        }
 
-                HashMap<String, Container> addedContainers = new HashMap<String, Container>(containerListAfterUpdate);
+        Map<String, ContainerInfo> newInspections = inspections;
+        snapshot.updateAndGet(
+                (current) -> current.withContainerChanges(updatedContainers, removedContainers, newInspections));
+    }
 
-                // Get Containers that were deleted:
-                containerListAfterUpdate.forEach((containerId, container) -> removedContainers.remove(containerId));
+    /***
+     * Retrieves the container List from the Docker Daemon. Only the containers without inspection
+     * (e.g. new ones) or whose fingerprint changed since they were inspected (e.g. restarted, new
+     * port bindings or mounts) are inspected.
+     *
+     * @throws Exception
+     */
+    public void refreshContainerDatabase() throws Exception {
+        Span phase = metrics.startPhase(Phase.CONTAINER_LIST);
+        Call call = metrics.startCall(Endpoint.CONTAINER_LIST);
 
-                // Get Containers that were added:
-                containerListBeforeUpdate.forEach((containerId, container) -> addedContainers.remove(containerId));
+        try {
+            List<Container> containerList = dockerClient.listContainers(ListContainersParam.allContainers(true));
+            call.succeeded();
+            phase.end();
 
-                // Remove deleted from the inspectionMap cache
-                removedContainers.forEach((containerId, container) -> removeContainerInspectionFromCache(containerId));
+            Map<String, ContainerInfo> inspections = new HashMap<String, ContainerInfo>();
 
-                // Add new containers to inspectionMap cache
-                addedContainers.forEach((containerId, container) -> updateContainerInspectionCache(containerId));
+            if (!lazyInspection) {
+                Span inspectionPhase = metrics.startPhase(Phase.INSPECTION);
+                List<String> outdated = snapshot.get().getOutdatedInspections(containerList);
 
+                inspections = inspectionEngine.inspectAll(getUID(), dockerClient, outdated);
+                metrics.getInspectionHits().increment(containerList.size() - outdated.size());
+                metrics.getInspectionMisses().increment(outdated.size());
+                inspectionPhase.end();
             }
 
+            Map<String, ContainerInfo> newInspections = inspections;
+
+            snapshot.updateAndGet((latest) -> latest.withContainers(containerList, newInspections));
         } catch (DockerException | InterruptedException e) {
+            call.failed(e);
+            phase.end();
+
             if (LOG.isDebugEnabled()) {
                 LOG.debug("Could not list containers.");
             }
@@ -622,7 +756,11 @@ public class Host {
      * @return json information
      */
     public ContainerInfo inspectContainer(final Container container) {
-        return inspectionMap.get(container.id());
+        if (lazyInspection && snapshot.get().isInspectionOutdated(container)) {
+            updateContainerInspectionCache(container);
+        }
+
+        return snapshot.get().getInspection(container.id());
     }
 
     /***
@@ -632,7 +770,11 @@ public class Host {
      * @return json information
      */
     public ContainerInfo inspectContainer(final String containerId) {
-        return inspectionMap.get(containerId);
+        if (lazyInspection && snapshot.get().getInspection(containerId) == null) {
+            updateContainerInspectionCache(containerId);
+        }
+
+        return snapshot.get().getInspection(containerId);
     }
 
     /***
@@ -641,16 +783,16 @@ public class Host {
      *
      * Due to Docker API limitations, the Host actually holds all the inspection on a memory cache.
      * Refreshing this cache is really expensive, because every single container inspection is a
-     * separate GET request - as defined on docker API.
+     * separate GET request - as defined on docker API. The requests run in parallel on the
+     * ContainerInspectionEngine, and the cache is updated once all of them returned.
      *
      * @param container
      */
     public void updateAllContainerInspectionCache() {
-        if (containerList != null) {
-            for (Container container : containerList) {
-                updateContainerInspectionCache(container);
-            }
-        }
+        Map<String, ContainerInfo> inspections = inspectionEngine.inspectAll(getUID(), dockerClient,
+                getLocalContainers().stream().map(Container::id).collect(Collectors.toList()));
+
+        snapshot.updateAndGet((current) -> current.withInspections(inspections));
     }
 
     /***
@@ -680,21 +822,26 @@ public class Host {
      * @param container id
      */
     public void updateContainerInspectionCache(final String containerId) {
-        if (inspectionMap == null) {
-            inspectionMap = new HashMap<String, ContainerInfo>();
+        ContainerInfo contentOnUpdate = requestInspection(containerId);
+
+        if (contentOnUpdate != null) {
+            // The Volumes and Ports are derived from the new inspection.
+            snapshot.updateAndGet((current) -> current.withInspection(containerId, contentOnUpdate));
         }
+    }
 
-        // Update the container information
-        try {
-            ContainerInfo contentOnUpdate = dockerClient.inspectContainer(containerId);
-            inspectionMap.put(containerId, contentOnUpdate);
+    private ContainerInfo requestInspection(final String containerId) {
+        Call call = metrics.startCall(Endpoint.CONTAINER_INSPECT);
 
-            // The Volumes and Ports may have changed, update
-            updateVolumeInformationFromContainer(containerId);
-            updatePortsFromContainer(containerId);
+        try {
+            ContainerInfo inspection = dockerClient.inspectContainer(containerId);
+            call.succeeded();
 
+            return inspection;
         } catch (DockerException | InterruptedException e) {
+            call.failed(e);
             LOG.error("Could not inpect the container " + containerId, e);
+            return null;
         }
     }
 
@@ -709,17 +856,8 @@ public class Host {
      * @param container id
      */
     public void removeContainerInspectionFromCache(final String containerId) {
-
-        if (inspectionMap == null) {
-            inspectionMap = new HashMap<String, ContainerInfo>();
-        } else {
-            // removes the inspection from the cache.
-            inspectionMap.remove(containerId);
-        }
-
-        // The Volumes and Ports may have changed, update
-        updatePortsFromContainer(containerId);
-        updateVolumeInformationFromContainer(containerId);
+        // removes the inspection from the cache, the Volumes and Ports are updated accordingly.
+        snapshot.updateAndGet((current) -> current.withInspection(containerId, null));
     }
 
     /***
@@ -729,81 +867,7 @@ public class Host {
      * @return @return list of volumes on the local host
      */
     public List<Volume> getLocalVolumes() {
-        if (volumeMap == null) {
-            refreshVolumesList();
-        }
-
-        // return the map as a List
-        List<Volume> listOfVolumes = new ArrayList<Volume>(volumeMap.keySet());
-        return listOfVolumes;
-    }
-
-    private void refreshVolumesList() {
-        volumeMap = new HashMap<Volume, List<String>>();
-
-        if (containerList != null) {
-            for (Container container : containerList) {
-                updateVolumeInformationFromContainer(container.id());
-            }
-        }
-    }
-
-    private void updateVolumeInformationFromContainer(final String containerId) {
-        if (volumeMap == null) {
-            volumeMap = new HashMap<Volume, List<String>>();
-        }
-
-        ContainerInfo information = null;
-        boolean removedContainer = false;
-
-        // get all volumes on a given container
-
-        /*
-         * if the container information was removed from the inpectionMap, than the container was
-         * removed.
-         */
-
-        information = inspectionMap.get(containerId);
-        if (information == null) {
-            // remove all references of that container from volume map.
-            // Note: This may be slow if there are several volumes.
-            removedContainer = true;
-
-            for (Map.Entry<Volume, List<String>> entry : volumeMap.entrySet()) {
-                List<String> listOfContainersWithVolume = entry.getValue();
-
-                if (listOfContainersWithVolume.contains(containerId)) {
-                    listOfContainersWithVolume.remove(containerId);
-                }
-            }
-        }
-
-        // If the container was not removed, update information
-        if (!removedContainer) {
-
-            List<ContainerMount> mountList = information.mounts();
-
-            // Verifies is the container mounts any volume
-            if (mountList != null && !mountList.isEmpty()) {
-                for (ContainerMount mount : mountList) {
-                    String pathOnHost = mount.source();
-
-                    Volume volume = new Volume(pathOnHost, dockerAddress);
-
-                    List<String> containersThatMountThisVolume = null;
-                    containersThatMountThisVolume = volumeMap.get(volume);
-
-                    if (containersThatMountThisVolume == null) {
-                        // First time a container references that volume
-                        containersThatMountThisVolume = new ArrayList<String>();
-                    }
-
-                    // Add container that mounts volume to list.
-                    containersThatMountThisVolume.add(containerId);
-                    volumeMap.put(volume, containersThatMountThisVolume);
-                }
-            }
-        }
+        return snapshot.get().getVolumes();
     }
 
     /***
@@ -813,93 +877,7 @@ public class Host {
      * @return list containing all containers exposed ports.
      */
     public List<ContainerPort> getAllPorts() {
-        if (portMap == null) {
-            refreshPortList();
-        }
-
-        // returns the map as a list:
-        List<ContainerPort> retPortList = new ArrayList<ContainerPort>();
-        for (List<ContainerPort> listPortsOnContainer : portMap.values()) {
-            retPortList.addAll(listPortsOnContainer);
-        }
-
-        return retPortList;
-    }
-
-    private void refreshPortList() {
-        if (portMap == null) {
-            portMap = new HashMap<String, List<ContainerPort>>();
-        }
-
-        for (Container container : containerList) {
-            updatePortsFromContainer(container.id());
-        }
-    }
-
-    private void updatePortsFromContainer(final String containerId) {
-        if (portMap == null) {
-            portMap = new HashMap<String, List<ContainerPort>>();
-        }
-
-        ContainerInfo inspection = null;
-        inspection = inspectionMap.get(containerId);
-
-        if (inspection == null) {
-            /*
-             * If the container that had the port does not exist anymore, remove all ports that he
-             * exposed
-             */
-            portMap.remove(containerId);
-        } else {
-            /*
-             * In the case inspection is null, the container got removed from the host. In this
-             * scenario, Loom will compare the iterators and remove it.
-             */
-
-            Map<String, List<PortBinding>> ports = inspection.networkSettings().ports();
-
-            if (ports != null) {
-
-                for (Map.Entry<String, List<PortBinding>> exposedPort : ports.entrySet()) {
-                    ContainerPort containerPort = new ContainerPort();
-
-                    String containerPortInfo = exposedPort.getKey();
-                    String[] containerParts = containerPortInfo.split("/");
-
-                    String containerPortNumber = containerParts[0];
-                    String containerPortProtocol = containerParts[1];
-
-                    containerPort.setContainerID(inspection.id());
-                    containerPort.setContainerPortNumber(Integer.parseInt(containerPortNumber));
-                    containerPort.setPortProtocol(containerPortProtocol);
-
-                    if (exposedPort.getValue() != null) {
-                        List<PortBinding> portBindingList = exposedPort.getValue();
-                        String interfaceIP = portBindingList.get(0).hostIp();
-                        String hostPort = portBindingList.get(0).hostPort();
-
-                        containerPort.setHostInterfaceIp(interfaceIP);
-                        containerPort.setHostPortNumber(Integer.parseInt(hostPort));
-                        containerPort.setHostID(this.getUID());
-                    }
-
-                    // Check if there is any other port associated to that container before.
-                    List<ContainerPort> portsOnGivenContainer = null;
-                    portsOnGivenContainer = portMap.get(containerId);
-
-                    if (portsOnGivenContainer == null) {
-                        portsOnGivenContainer = new ArrayList<ContainerPort>();
-                    }
-
-                    // Adds only that port once in a container
-                    if (!portsOnGivenContainer.contains(containerPort)) {
-                        portsOnGivenContainer.add(containerPort);
-                    }
-
-                    portMap.put(containerId, portsOnGivenContainer);
-                }
-            }
-        }
+        return snapshot.get().getPorts();
     }
 
     /***
@@ -916,7 +894,7 @@ public class Host {
 
         String targetContainerName = targetContainerIdentifier.split(":")[0];
 
-        search: for (Container container : containerList) {
+        search: for (Container container : getLocalContainers()) {
 
             // Check if the ID Match:
             if (container.id().equals(targetContainerName)) {
@@ -955,31 +933,24 @@ public class Host {
         return cAdvisorContainer;
     }
 
-    /**
-     * @return the jerseyClient
-     */
-    public Client getJerseyClient() {
-        return jerseyClient;
-    }
-
-    /**
-     * @return the machinePhysicialInformation
+    /***
+     * @return machine information of the host, from the docker info and the cAdvisor
      */
-    public JsonNode getMachinePhysicalInformation() {
-        return machinePhysicalInformation;
+    public HostMetadata getMetadata() {
+        return metadata;
     }
 
     /**
      * @return the machineStatistics
      */
-    public JsonNode getMachineStatistics() {
+    public UsageStatistics getMachineStatistics() {
         return machineStatistics;
     }
 
     /**
      * @return the containerStatisticsMap
      */
-    public Map<String, JsonNode> getContainerStatisticsMap() {
+    public Map<String, UsageStatistics> getContainerStatisticsMap() {
         return containerStatisticsMap;
     }
 
@@ -993,7 +964,7 @@ public class Host {
      */
     public boolean hasImage(final String baseImageId) {
         boolean hasLocal = false;
-        if (imageMap.get(baseImageId) != null) {
+        if (snapshot.get().getImage(baseImageId) != null) {
             hasLocal = true;
         }
         return hasLocal;
@@ -1013,11 +984,11 @@ public class Host {
         return osDistribution;
     }
 
-    /**
-     * @return the updateListOrCreateContainerLock
+    /***
+     * @return true if containers are only inspected on first use.
      */
-    public Lock getUpdateListOrCreateContainerLock() {
-        return updateListOrCreateContainerLock;
+    public boolean isLazyInspection() {
+        return lazyInspection;
     }
 
     /***
@@ -1027,6 +998,51 @@ public class Host {
      * @return the volumeMap
      */
     public Map<Volume, List<String>> getVolumeMap() {
-        return volumeMap;
+        return snapshot.get().getVolumeMap();
+    }
+
+    /***
+     * A host is stale when its last refresh failed or did not finish in time. Its containers,
+     * images and statistics are the ones of the last successful refresh.
+     *
+     * @return true if the host information may be outdated
+     */
+    public boolean isStale() {
+        return stale;
+    }
+
+    /***
+     * @return time (in milliseconds) of the last successful refresh, 0 if none happened yet.
+     */
+    public long getLastSuccessfulRefresh() {
+        return lastSuccessfulRefresh;
+    }
+
+    /***
+     * @return refresh timers, call counters and cache gauges of the host
+     */
+    public HostMetrics getMetrics() {
+        return metrics;
+    }
+
+    /***
+     * @return health of the connection to the docker daemon
+     */
+    public HostCircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    void markStale() {
+        stale = true;
+    }
+
+    void markRefreshed() {
+        if (stale) {
+            // the daemon may have been restarted meanwhile
+            metadataInvalidated = true;
+        }
+
+        stale = false;
+        lastSuccessfulRefresh = System.currentTimeMillis();
     }
 }
@@ -0,0 +1,160 @@
+/*******************************************************************************
+ * (c) Copyright 2017 Hewlett Packard Enterprise Development LP Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *******************************************************************************/
+package com.hp.hpl.loom.adapter.docker.distributed.realworld;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import com.hp.hpl.loom.adapter.BaseAdapter;
+
+/***
+ * Health of the connection to a docker daemon.
+ *
+ * <p>
+ * The circuit is <i>closed</i> while the daemon answers. After circuitFailureThreshold consecutive
+ * failures it <i>opens</i>: requests fail fast, without contacting the daemon, for a backoff that
+ * starts at circuitBaseBackoff milliseconds and doubles (with jitter) up to circuitMaxBackoff on
+ * every new opening. Once the backoff expires the circuit is <i>half-open</i>: a single trial
+ * request is allowed, which closes the circuit on success or opens it again on failure.
+ */
+public class HostCircuitBreaker {
+    private static final int DEFAULT_FAILURE_THRESHOLD = 3;
+    private static final long DEFAULT_BASE_BACKOFF_MS = TimeUnit.SECONDS.toMillis(30);
+    private static final long DEFAULT_MAX_BACKOFF_MS = TimeUnit.MINUTES.toMillis(10);
+
+    // Backoffs vary randomly by up to 20%, so hosts that failed together do not retry together.
+    private static final double JITTER = 0.2;
+
+    /***
+     * States of the circuit.
+     */
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final int failureThreshold;
+    private final long baseBackoff;
+    private final long maxBackoff;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures = 0;
+    private long nextBackoff;
+    private long openUntil = 0;
+
+    /***
+     * @param failureThreshold consecutive failures that open the circuit
+     * @param baseBackoff first backoff, in milliseconds
+     * @param maxBackoff longest backoff, in milliseconds
+     */
+    public HostCircuitBreaker(final int failureThreshold, final long baseBackoff, final long maxBackoff) {
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.baseBackoff = baseBackoff;
+        this.maxBackoff = Math.max(baseBackoff, maxBackoff);
+        this.nextBackoff = baseBackoff;
+    }
+
+    /***
+     * Creates a circuit breaker configured by the adapter properties.
+     *
+     * @param adapter the adapter holding the configuration
+     * @param failureThreshold consecutive failures that open the circuit
+     * @return the circuit breaker
+     */
+    public static HostCircuitBreaker create(final BaseAdapter adapter, final int failureThreshold) {
+        return new HostCircuitBreaker(failureThreshold,
+                AdapterProperties.getLong(adapter, "circuitBaseBackoff", DEFAULT_BASE_BACKOFF_MS),
+                AdapterProperties.getLong(adapter, "circuitMaxBackoff", DEFAULT_MAX_BACKOFF_MS));
+    }
+
+    /***
+     * Creates a circuit breaker configured by the adapter properties, including the failure
+     * threshold.
+     *
+     * @param adapter the adapter holding the configuration
+     * @return the circuit breaker
+     */
+    public static HostCircuitBreaker create(final BaseAdapter adapter) {
+        return create(adapter,
+                AdapterProperties.getInt(adapter, "circuitFailureThreshold", DEFAULT_FAILURE_THRESHOLD));
+    }
+
+    /***
+     * Verifies if the daemon may be contacted. An open circuit whose backoff expired becomes
+     * half-open and allows this single request.
+     *
+     * @return true if the request may proceed, false if it must fail fast.
+     */
+    public synchronized boolean allowRequest() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (System.currentTimeMillis() >= openUntil) {
+                    state = State.HALF_OPEN;
+                    return true;
+                }
+                return false;
+            default:
+                // A trial request is already running.
+                return false;
+        }
+    }
+
+    /***
+     * Closes the circuit.
+     */
+    public synchronized void recordSuccess() {
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+        nextBackoff = baseBackoff;
+    }
+
+    /***
+     * Counts a failure, opening the circuit if the threshold is reached or the trial request of a
+     * half-open circuit failed.
+     */
+    public synchronized void recordFailure() {
+        consecutiveFailures++;
+
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            long jitter = (long) (nextBackoff * JITTER * (2 * ThreadLocalRandom.current().nextDouble() - 1));
+
+            state = State.OPEN;
+            openUntil = System.currentTimeMillis() + nextBackoff + jitter;
+            nextBackoff = Math.min(nextBackoff * 2, maxBackoff);
+        }
+    }
+
+    /***
+     * @return current state of the circuit
+     */
+    public synchronized State getState() {
+        return state;
+    }
+
+    /***
+     * @return failures since the last success
+     */
+    public synchronized int getConsecutiveFailures() {
+        return consecutiveFailures;
+    }
+
+    /***
+     * @return milliseconds until an open circuit allows a trial request, 0 if not open.
+     */
+    public synchronized long getRemainingOpenTime() {
+        if (state != State.OPEN) {
+            return 0;
+        }
+
+        return Math.max(0, openUntil - System.currentTimeMillis());
+    }
+}
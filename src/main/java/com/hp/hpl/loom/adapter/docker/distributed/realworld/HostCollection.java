@@ -0,0 +1,72 @@
+/*******************************************************************************
+ * (c) Copyright 2017 Hewlett Packard Enterprise Development LP Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *******************************************************************************/
+package com.hp.hpl.loom.adapter.docker.distributed.realworld;
+
+/***
+ * Collection of a host defined on the host file: the host once it could be reached, or the circuit
+ * breaker of its recovery while it cannot (see HostManager).
+ */
+public final class HostCollection {
+    private final String hostUID;
+    private final Host host;
+    private final HostCircuitBreaker circuitBreaker;
+
+    private HostCollection(final String hostUID, final Host host, final HostCircuitBreaker circuitBreaker) {
+        this.hostUID = hostUID;
+        this.host = host;
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    /***
+     * @param host host being collected
+     * @return collection of the host
+     */
+    public static HostCollection of(final Host host) {
+        return new HostCollection(host.getUID(), host, host.getCircuitBreaker());
+    }
+
+    /***
+     * @param hostUID UID of the host, from its definition
+     * @param circuitBreaker tracks the failed attempts to reach the host
+     * @return collection of a host pending recovery
+     */
+    public static HostCollection pending(final String hostUID, final HostCircuitBreaker circuitBreaker) {
+        return new HostCollection(hostUID, null, circuitBreaker);
+    }
+
+    /***
+     * @return UID of the host
+     */
+    public String getHostUID() {
+        return hostUID;
+    }
+
+    /***
+     * @return the host, null while it is pending recovery
+     */
+    public Host getHost() {
+        return host;
+    }
+
+    /***
+     * @return circuit breaker of the host, or of its recovery
+     */
+    public HostCircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    /***
+     * @return true if the host could not be reached yet
+     */
+    public boolean isPending() {
+        return host == null;
+    }
+}
@@ -0,0 +1,165 @@
+/*******************************************************************************
+ * (c) Copyright 2017 Hewlett Packard Enterprise Development LP Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *******************************************************************************/
+package com.hp.hpl.loom.adapter.docker.distributed.realworld;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import com.hp.hpl.loom.adapter.docker.realworld.ContainerPort;
+import com.spotify.docker.client.messages.Container;
+import com.spotify.docker.client.messages.ContainerInfo;
+import com.spotify.docker.client.messages.Image;
+
+/***
+ * Structural digest of the content of a host, in the manner of a Merkle tree: one digest per kind
+ * of resource (containers, images, volumes and ports), each one combining a digest per resource,
+ * and a root digest combining the four of them. Two snapshots with the same root have the same
+ * items and relationships, thus the indices and the relationships of the host need not be rebuilt.
+ *
+ * <p>
+ * The digest is structural only: attributes that change over time, such as the status text of a
+ * container ("Up 5 minutes", then "Up 2 hours") and the uptime it carries, are left out. An equal
+ * digest must thus not be used to skip the update of those attributes, and a restart, which only
+ * shows as a shorter uptime, is checked separately (see HostSnapshot.isUnchangedSince).
+ *
+ * <p>
+ * A container contributes its id, names, fingerprint (which covers its state, see
+ * ContainerFingerprint) and the identity of its inspection, which only changes when the container
+ * is inspected again; images contribute their id; volumes and ports contribute their own hash,
+ * which is also their item id. Resource digests are added up, since docker does not keep the order
+ * of its lists.
+ */
+public final class HostDigest {
+    private static final long PRIME = 31;
+
+    private final long containers;
+    private final long images;
+    private final long volumes;
+    private final long ports;
+    private final long root;
+
+    private HostDigest(final long containers, final long images, final long volumes, final long ports) {
+        this.containers = containers;
+        this.images = images;
+        this.volumes = volumes;
+        this.ports = ports;
+        this.root = mix(mix(mix(mix(containers) + images) + volumes) + ports);
+    }
+
+    /***
+     * @param containers containers of the host
+     * @param inspections inspections of the containers, by container id
+     * @param images images local to the host
+     * @param volumes volumes of the host
+     * @param ports ports exposed by the containers of the host
+     * @return digest of the host content
+     */
+    public static HostDigest of(final List<Container> containers, final Map<String, ContainerInfo> inspections,
+            final List<Image> images, final List<Volume> volumes, final List<ContainerPort> ports) {
+        long containerDigest = 0;
+        for (Container container : containers) {
+            long leaf = container.id().hashCode();
+            leaf = PRIME * leaf + Objects.hashCode(container.names());
+            leaf = PRIME * leaf + ContainerFingerprint.of(container);
+            leaf = PRIME * leaf + System.identityHashCode(inspections.get(container.id()));
+
+            containerDigest += mix(leaf);
+        }
+
+        long imageDigest = 0;
+        for (Image image : images) {
+            imageDigest += mix(image.id().hashCode());
+        }
+
+        long volumeDigest = 0;
+        for (Volume volume : volumes) {
+            volumeDigest += mix(volume.hashCode());
+        }
+
+        long portDigest = 0;
+        for (ContainerPort port : ports) {
+            portDigest += mix(port.hashCode());
+        }
+
+        return new HostDigest(containerDigest, imageDigest, volumeDigest, portDigest);
+    }
+
+    /***
+     * Spreads the bits of a value over the 64 bits (finaliser of SplitMix64), so that sums of
+     * digests seldom collide.
+     */
+    @SuppressWarnings("checkstyle:magicnumber")
+    private static long mix(final long value) {
+        long mixed = (value ^ (value >>> 30)) * 0xbf58476d1ce4e5b9L;
+        mixed = (mixed ^ (mixed >>> 27)) * 0x94d049bb133111ebL;
+        return mixed ^ (mixed >>> 31);
+    }
+
+    /***
+     * @return digest of the containers
+     */
+    public long getContainers() {
+        return containers;
+    }
+
+    /***
+     * @return digest of the images
+     */
+    public long getImages() {
+        return images;
+    }
+
+    /***
+     * @return digest of the volumes
+     */
+    public long getVolumes() {
+        return volumes;
+    }
+
+    /***
+     * @return digest of the ports
+     */
+    public long getPorts() {
+        return ports;
+    }
+
+    /***
+     * @return digest of the whole host
+     */
+    public long getRoot() {
+        return root;
+    }
+
+    @Override
+    public boolean equals(final Object object) {
+        if (this == object) {
+            return true;
+        }
+        if (!(object instanceof HostDigest)) {
+            return false;
+        }
+
+        HostDigest other = (HostDigest) object;
+        return root == other.root && containers == other.containers && images == other.images
+                && volumes == other.volumes && ports == other.ports;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(root);
+    }
+
+    @Override
+    public String toString() {
+        return Long.toHexString(root);
+    }
+}
@@ -0,0 +1,218 @@
+/*******************************************************************************
+ * (c) Copyright 2017 Hewlett Packard Enterprise Development LP Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *******************************************************************************/
+package com.hp.hpl.loom.adapter.docker.distributed.realworld;
+
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.hp.hpl.loom.adapter.docker.distributed.metrics.AdapterMetrics;
+import com.hp.hpl.loom.adapter.docker.distributed.metrics.Call;
+import com.hp.hpl.loom.adapter.docker.distributed.metrics.Endpoint;
+import com.hp.hpl.loom.adapter.docker.distributed.metrics.HostMetrics;
+import com.spotify.docker.client.DefaultDockerClient;
+import com.spotify.docker.client.DockerClient;
+import com.spotify.docker.client.EventStream;
+import com.spotify.docker.client.messages.Event;
+
+/***
+ * Keeps a long lived subscription to the /events stream of a docker daemon. Events are not applied
+ * directly: the ids of the containers they touch are collected, and the host applies them on its
+ * next refresh. Every time the subscription is (re)established, a full reconciliation is requested,
+ * since events may have been lost while disconnected. Each subscription is counted as a call to
+ * the events endpoint, and each lost stream as an error.
+ */
+public class HostEventListener implements Runnable {
+    private static final Log LOG = LogFactory.getLog(HostEventListener.class);
+
+    private static final long MIN_RECONNECT_DELAY_MS = TimeUnit.SECONDS.toMillis(1);
+    private static final long MAX_RECONNECT_DELAY_MS = TimeUnit.MINUTES.toMillis(1);
+
+    private final String dockerAddress;
+    private final HostMetrics metrics;
+
+    // Separate client: the stream is idle most of the time, so it must not have a read timeout.
+    private final DockerClient eventClient;
+
+    private final ExecutorService listenerThread = Executors.newSingleThreadExecutor();
+
+    private volatile boolean running = false;
+    private volatile EventStream eventStream = null;
+
+    // Containers touched by an event since the last drain.
+    private final Set<String> changedContainers = ConcurrentHashMap.newKeySet();
+
+    private final AtomicBoolean imagesChanged = new AtomicBoolean(false);
+    private final AtomicBoolean reconciliationRequested = new AtomicBoolean(true);
+
+    /***
+     * @param dockerAddress address of the docker daemon
+     */
+    public HostEventListener(final String dockerAddress) {
+        this.dockerAddress = dockerAddress;
+        metrics = AdapterMetrics.getInstance().host(dockerAddress);
+        eventClient = DefaultDockerClient.builder().uri(dockerAddress).readTimeoutMillis(0).build();
+    }
+
+    /***
+     * Starts listening to the daemon events on a dedicated thread.
+     */
+    public void start() {
+        running = true;
+        listenerThread.execute(this);
+    }
+
+    /***
+     * Stops listening and releases the connection to the daemon.
+     */
+    public void close() {
+        running = false;
+        closeStream();
+        listenerThread.shutdownNow();
+        eventClient.close();
+    }
+
+    @Override
+    public void run() {
+        long reconnectDelay = MIN_RECONNECT_DELAY_MS;
+
+        while (running) {
+            Call call = metrics.startCall(Endpoint.EVENTS);
+            boolean subscribed = false;
+
+            try {
+                eventStream = eventClient.events();
+                subscribed = true;
+                call.succeeded();
+
+                // Anything may have happened while there was no subscription.
+                reconciliationRequested.set(true);
+                reconnectDelay = MIN_RECONNECT_DELAY_MS;
+
+                while (running && eventStream.hasNext()) {
+                    handleEvent(eventStream.next());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            } catch (Exception e) {
+                if (running) {
+                    if (subscribed) {
+                        metrics.getErrors(Endpoint.EVENTS).increment();
+                    } else {
+                        call.failed(e);
+                    }
+
+                    LOG.warn("Lost the event stream of host '" + dockerAddress + "', reconnecting in " + reconnectDelay
+                            + " ms", e);
+                }
+            } finally {
+                closeStream();
+            }
+
+            if (running) {
+                try {
+                    Thread.sleep(reconnectDelay);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    running = false;
+                }
+
+                reconnectDelay = Math.min(reconnectDelay * 2, MAX_RECONNECT_DELAY_MS);
+            }
+        }
+    }
+
+    private void handleEvent(final Event event) {
+        if (event.type() == null || event.actor() == null) {
+            return;
+        }
+
+        String action = event.action();
+
+        switch (event.type()) {
+            case CONTAINER:
+                // exec events do not change the container, its ports or its volumes.
+                if (action == null || !action.startsWith("exec_")) {
+                    changedContainers.add(event.actor().id());
+                }
+                break;
+            case IMAGE:
+                imagesChanged.set(true);
+                break;
+            case VOLUME:
+            case NETWORK:
+                // mount/unmount and connect/disconnect refer to the affected container.
+                String containerId = event.actor().attributes().get("container");
+
+                if (containerId != null) {
+                    changedContainers.add(containerId);
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void closeStream() {
+        EventStream stream = eventStream;
+        eventStream = null;
+
+        if (stream != null) {
+            try {
+                stream.close();
+            } catch (Exception e) {
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Could not close the event stream of host '" + dockerAddress + "'", e);
+                }
+            }
+        }
+    }
+
+    /***
+     * Returns and forgets the containers touched by an event since the last call.
+     *
+     * @return ids of the changed containers
+     */
+    public Set<String> drainChangedContainers() {
+        Set<String> drained = ConcurrentHashMap.newKeySet();
+        Iterator<String> iterator = changedContainers.iterator();
+
+        while (iterator.hasNext()) {
+            drained.add(iterator.next());
+            iterator.remove();
+        }
+
+        return drained;
+    }
+
+    /***
+     * @return true if an image event happened since the last call.
+     */
+    public boolean drainImagesChanged() {
+        return imagesChanged.getAndSet(false);
+    }
+
+    /***
+     * @return true if the stream was (re)connected since the last call, and a full listing is
+     *         therefore required.
+     */
+    public boolean drainReconciliationRequested() {
+        return reconciliationRequested.getAndSet(false);
+    }
+}
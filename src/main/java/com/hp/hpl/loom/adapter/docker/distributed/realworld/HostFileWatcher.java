@@ -0,0 +1,132 @@
+/*******************************************************************************
+ * (c) Copyright 2017 Hewlett Packard Enterprise Development LP Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *******************************************************************************/
+package com.hp.hpl.loom.adapter.docker.distributed.realworld;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/***
+ * Watches the host file and notifies every change. Editors usually write a file in several steps,
+ * thus changes are only notified once the file stays untouched for a short while.
+ */
+public class HostFileWatcher implements Runnable {
+    private static final Log LOG = LogFactory.getLog(HostFileWatcher.class);
+
+    private static final long SETTLE_TIME_MS = 500;
+
+    private final Path hostFile;
+    private final Runnable onChange;
+
+    private final ExecutorService watcherThread = Executors.newSingleThreadExecutor();
+    private WatchService watchService;
+
+    /***
+     * @param hostFile file to be watched
+     * @param onChange called, on the watcher thread, after each change of the file
+     */
+    public HostFileWatcher(final Path hostFile, final Runnable onChange) {
+        this.hostFile = hostFile.toAbsolutePath();
+        this.onChange = onChange;
+    }
+
+    /***
+     * Starts watching the file.
+     *
+     * @throws IOException if the directory of the file cannot be watched
+     */
+    public void start() throws IOException {
+        watchService = FileSystems.getDefault().newWatchService();
+
+        // Only directories can be watched, events are then filtered by file name.
+        hostFile.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY);
+
+        watcherThread.execute(this);
+    }
+
+    /***
+     * Stops watching the file.
+     */
+    public void close() {
+        watcherThread.shutdownNow();
+
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            LOG.warn("Could not close the watcher of '" + hostFile + "'", e);
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                if (consumeEvents(watchService.take())) {
+                    // Waits until the file stops changing.
+                    WatchKey key = watchService.poll(SETTLE_TIME_MS, TimeUnit.MILLISECONDS);
+
+                    while (key != null) {
+                        consumeEvents(key);
+                        key = watchService.poll(SETTLE_TIME_MS, TimeUnit.MILLISECONDS);
+                    }
+
+                    LOG.info("Host file '" + hostFile + "' changed - reloading");
+
+                    try {
+                        onChange.run();
+                    } catch (RuntimeException e) {
+                        LOG.error("Could not reload host file '" + hostFile + "'", e);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            // The watch service was closed.
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Stopped watching '" + hostFile + "'", e);
+            }
+        }
+    }
+
+    /***
+     * Consumes the events of a key.
+     *
+     * @return true if any event refers to the host file
+     */
+    private boolean consumeEvents(final WatchKey key) {
+        boolean changed = false;
+
+        for (WatchEvent<?> event : key.pollEvents()) {
+            Object context = event.context();
+
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW
+                    || (context instanceof Path && hostFile.getFileName().equals(context))) {
+                changed = true;
+            }
+        }
+
+        key.reset();
+
+        return changed;
+    }
+}
@@ -12,29 +12,38 @@ package com.hp.hpl.loom.adapter.docker.distributed.realworld;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.NoSuchElementException;
-import java.util.Optional;
+import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.log4j.LogManager;
-import org.springframework.util.StopWatch;
 import org.springframework.util.StringUtils;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.hp.hpl.loom.adapter.BaseAdapter;
+import com.hp.hpl.loom.adapter.docker.distributed.metrics.AdapterMetrics;
+import com.hp.hpl.loom.adapter.docker.distributed.metrics.Timer;
 import com.hp.hpl.loom.adapter.docker.items.ContainerItem;
 import com.hp.hpl.loom.adapter.docker.items.ImageItem;
 import com.hp.hpl.loom.adapter.docker.items.PortItem;
@@ -44,6 +53,7 @@ import com.hp.hpl.loom.adapter.docker.realworld.ContainerPort;
 import com.hp.hpl.loom.adapter.docker.realworld.Registry;
 import com.hp.hpl.loom.model.Item;
 import com.spotify.docker.client.messages.Container;
+import com.spotify.docker.client.messages.ContainerInfo;
 import com.spotify.docker.client.messages.Image;
 
 /***
@@ -53,6 +63,32 @@ import com.spotify.docker.client.messages.Image;
 public final class HostManager {
     private static final Log LOG = LogFactory.getLog(HostManager.class);
 
+    /***
+     * Default number of hosts refreshed at the same time, configurable with refreshThreads.
+     */
+    private static final int DEFAULT_REFRESH_THREADS = 20;
+
+    /***
+     * Default time the hosts have to finish their refresh, configurable with hostRefreshTimeout
+     * (in milliseconds).
+     */
+    private static final long DEFAULT_HOST_REFRESH_TIMEOUT_MS = TimeUnit.SECONDS.toMillis(30);
+
+    /***
+     * Loom default of schedulingInterval, in milliseconds.
+     */
+    private static final long DEFAULT_SCHEDULING_INTERVAL_MS = TimeUnit.SECONDS.toMillis(10);
+
+    /***
+     * By default the minimum time between two refreshes, configurable with minRefreshInterval (in
+     * milliseconds), is the scheduling interval minus this slack, at most half of the interval: the
+     * collectors of a scheduling round share one refresh, and the next round, however late the
+     * previous one finished, triggers a new one.
+     */
+    private static final long MIN_REFRESH_INTERVAL_SLACK_MS = TimeUnit.SECONDS.toMillis(5);
+
+    private static final int HOST_RECOVERY_THREADS = 4;
+
     // since there is only one HostManager, the objects of this class should be a singleton.
     private static HostManager instance = null;
 
@@ -60,18 +96,111 @@ public final class HostManager {
     // initialised.
     private Map<String, Host> hostMap = new ConcurrentHashMap<String, Host>();
 
-    // Image Private registries
+    // Image Private registries. The image lists are appended to by the image updaters while the
+    // registry updaters iterate them, hence copy-on-write.
     private ConcurrentMap<Registry, List<Image>> imageOnEachRegistry = new ConcurrentHashMap<Registry, List<Image>>();
 
+    // Ids of the images on each list of imageOnEachRegistry, so that an image reported again on
+    // every collection cycle is only added once.
+    private ConcurrentMap<Registry, Set<String>> imageIdsOnEachRegistry = new ConcurrentHashMap<Registry, Set<String>>();
+
     /***
      * Thread pool used for Registry retrieves.
      */
     private ExecutorService registryExtractPool;
 
+    /***
+     * Bounded thread pool used to refresh all the hosts in parallel.
+     */
+    private ExecutorService hostRefreshPool;
+
+    /***
+     * Time the refresh barrier waits for the hosts, counted from the moment it starts waiting.
+     */
+    private long hostRefreshTimeoutNanos;
+
+    /***
+     * Shares the refreshes between the collectors of all sessions.
+     */
+    private RefreshCoordinator refreshCoordinator;
+
+    /***
+     * Last refresh submitted for each host, indexed by host UID. A host whose refresh is still
+     * running (e.g. missed its deadline on the previous cycle) is not submitted again.
+     */
+    private Map<String, HostRefreshTask> lastRefreshTasks = new ConcurrentHashMap<String, HostRefreshTask>();
+
+    /***
+     * Retries, in background and with backoff, the initialisation of hosts that could not be
+     * reached.
+     */
+    private ScheduledExecutorService hostRecoveryPool = Executors.newScheduledThreadPool(HOST_RECOVERY_THREADS);
+
+    /***
+     * Hosts and private registries currently defined on the host file, indexed by UID. A host may
+     * be defined but not on the hostMap yet, if it is still initialising or unreachable.
+     */
+    private Map<String, JsonNode> hostDefinitions = new ConcurrentHashMap<String, JsonNode>();
+
+    // host UID -> circuit breaker of the recovery of a defined host that could not be reached yet
+    private Map<String, HostCircuitBreaker> recoveringHosts = new ConcurrentHashMap<String, HostCircuitBreaker>();
+    private Map<String, Registry> configuredRegistries = new ConcurrentHashMap<String, Registry>();
+
+    /***
+     * Initialises the hosts added to the host file while the adapter runs.
+     */
+    private ExecutorService hostInitializationPool = Executors.newCachedThreadPool();
+
+    private HostFileWatcher hostFileWatcher = null;
+
+    /*
+     * Lookup indices, so that actions and updaters never scan the hosts, their containers or the
+     * registries. They are updated when hosts are added or removed and, from the host snapshots,
+     * after every refresh.
+     */
+
+    // lowercase host UID -> host
+    private Map<String, Host> hostNameIndex = new ConcurrentHashMap<String, Host>();
+    // container id -> host running it
+    private Map<String, Host> containerIndex = new ConcurrentHashMap<String, Host>();
+    // image id -> hosts that have it locally
+    private Map<String, Set<Host>> imageIndex = new ConcurrentHashMap<String, Set<Host>>();
+    // registry UID -> registry
+    private Map<String, Registry> registryIndex = new ConcurrentHashMap<String, Registry>();
+    // last snapshot of each host reflected on the container and image indices
+    private Map<String, HostSnapshot> indexedSnapshots = new ConcurrentHashMap<String, HostSnapshot>();
+
+    /***
+     * Containers added, modified or removed on each refresh, taken from the same snapshot deltas as
+     * the indices. A container is modified when its list fingerprint, names or inspection changed,
+     * when its image appeared or disappeared on the host, or when it links to containers of a host
+     * whose container set changed.
+     */
+    private ResourceChangeLog containerChanges = new ResourceChangeLog();
+
+    /***
+     * Duration of the refresh of all the hosts (docker.refresh), and of their initialisation.
+     */
+    private Timer refreshTimer = AdapterMetrics.getInstance().timer("docker.refresh");
+    private Timer initializationTimer = AdapterMetrics.getInstance().timer("docker.hosts.initialisation");
+
     private HostManager(final BaseAdapter adapter) {
 
         registryExtractPool = Executors.newCachedThreadPool();
 
+        int refreshThreads = AdapterProperties.getInt(adapter, "refreshThreads", DEFAULT_REFRESH_THREADS);
+        hostRefreshPool = Executors.newFixedThreadPool(Math.max(1, refreshThreads));
+        hostRefreshTimeoutNanos = TimeUnit.MILLISECONDS
+                .toNanos(AdapterProperties.getLong(adapter, "hostRefreshTimeout", DEFAULT_HOST_REFRESH_TIMEOUT_MS));
+        long schedulingInterval =
+                AdapterProperties.getLong(adapter, "schedulingInterval", DEFAULT_SCHEDULING_INTERVAL_MS);
+        long defaultMinRefreshInterval =
+                schedulingInterval - Math.min(MIN_REFRESH_INTERVAL_SLACK_MS, schedulingInterval / 2);
+        refreshCoordinator = new RefreshCoordinator(this::refreshAllHosts,
+                AdapterProperties.getLong(adapter, "minRefreshInterval", defaultMinRefreshInterval));
+
+        registerMetrics(adapter);
+
         ExecutorService startManagerThread = Executors.newSingleThreadExecutor();
 
         /*
@@ -83,11 +212,40 @@ public final class HostManager {
             hostMap = retrieveAndInitializeHostList(adapter);
             // Locate registries
             locateAndAddPrivateRegistries(adapter);
+
+            if (AdapterProperties.getBoolean(adapter, "watchHostFile", true)) {
+                watchHostFile(adapter);
+            }
         });
     }
 
     private HostManager() {}
 
+    /***
+     * Registers the gauges of the host manager and, if metricsPort is set, starts serving all the
+     * metrics in the Prometheus text format.
+     *
+     * @param adapter the adapter holding the configuration
+     */
+    private void registerMetrics(final BaseAdapter adapter) {
+        AdapterMetrics metrics = AdapterMetrics.getInstance();
+
+        metrics.gauge("docker.hosts", () -> hostMap.size());
+        metrics.gauge("docker.hosts.stale", () -> hostMap.values().stream().filter(Host::isStale).count());
+        metrics.gauge("docker.index.containers", () -> containerIndex.size());
+        metrics.gauge("docker.index.images", () -> imageIndex.size());
+
+        int metricsPort = AdapterProperties.getInt(adapter, "metricsPort", 0);
+
+        if (metricsPort > 0) {
+            try {
+                metrics.startEndpoint(metricsPort);
+            } catch (IOException e) {
+                LOG.error("Could not serve the metrics on port " + metricsPort, e);
+            }
+        }
+    }
+
     /***
      * Returns an instance of the HostManager Class.
      *
@@ -126,7 +284,7 @@ public final class HostManager {
     private Map<String, Host> retrieveAndInitializeHostList(final BaseAdapter adapter) {
         Map<String, Host> hosts = new ConcurrentHashMap<String, Host>();
 
-        Object hostFileName = adapter.getAdapterConfig().getPropertiesConfiguration().getProperty("hostFile");
+        Object hostFileName = AdapterProperties.getString(adapter, "hostFile");
 
         if (!StringUtils.isEmpty(hostFileName)) {
             String fileName = (String) hostFileName;
@@ -141,30 +299,13 @@ public final class HostManager {
 
                 ExecutorService es = Executors.newCachedThreadPool();
 
-                StopWatch stopWatch = new StopWatch("Initialize Host List");
-
-                stopWatch.start("Initialize Host List");
+                long start = System.nanoTime();
 
                 for (JsonNode jsonHost : jsonHosts) {
+                    hostDefinitions.put(Host.dockerAddressOf(jsonHost), jsonHost);
 
                     // Initialise Host on a thread
-                    es.execute(() -> {
-                        try {
-                            if (LOG.isDebugEnabled()) {
-                                LOG.debug("Attempting connection to host '" + jsonHost + "'");
-                            }
-
-                            Host extractedHost = new Host(jsonHost, adapter);
-
-                            hosts.put(extractedHost.getUID(), extractedHost);
-                        } catch (Exception e) {
-                            LOG.error("Error connecting to host '" + jsonHost.toString() + "'", e);
-
-                            if (LOG.isDebugEnabled()) {
-                                LOG.debug("Removing host '" + jsonHost.toString() + "' from Host Pool");
-                            }
-                        }
-                    });
+                    es.execute(() -> initializeHost(jsonHost, adapter, hosts));
                 }
 
                 es.shutdown();
@@ -174,13 +315,13 @@ public final class HostManager {
                     es.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
                 }
 
-                stopWatch.stop();
+                long elapsed = initializationTimer.recordSince(start);
 
                 if (LogManager.getRootLogger().isDebugEnabled()) {
                     LogManager.getRootLogger().debug("Docker adaptor: Hosts initialisation sucessfull!");
                 }
 
-                LOG.info(stopWatch.prettyPrint());
+                LOG.info("Initialised the host list in " + TimeUnit.NANOSECONDS.toMillis(elapsed) + " ms");
             } catch (JsonProcessingException e) {
                 // JSON structure error.
                 LOG.error("Couldn't process JSON response", e);
@@ -196,6 +337,334 @@ public final class HostManager {
         return hosts;
     }
 
+    /***
+     * Connects to a host defined on the host file and adds it to the given map. An unreachable host
+     * is retried in background.
+     *
+     * @param jsonHost host definition from the host file
+     * @param adapter
+     * @param hosts map the host is added to
+     */
+    private void initializeHost(final JsonNode jsonHost, final BaseAdapter adapter, final Map<String, Host> hosts) {
+        try {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Attempting connection to host '" + jsonHost + "'");
+            }
+
+            addDefinedHost(jsonHost, new Host(jsonHost, adapter), hosts);
+        } catch (Exception e) {
+            LOG.error("Error connecting to host '" + jsonHost.toString() + "'", e);
+
+            scheduleHostRecovery(jsonHost, adapter, hosts, HostCircuitBreaker.create(adapter, 1));
+        }
+    }
+
+    /***
+     * Adds an initialised host to the map, unless its definition was removed from the host file (or
+     * replaced) while it was initialising.
+     */
+    private boolean addDefinedHost(final JsonNode jsonHost, final Host host, final Map<String, Host> hosts) {
+        if (!jsonHost.equals(hostDefinitions.get(host.getUID()))) {
+            host.close();
+            return false;
+        }
+
+        hosts.put(host.getUID(), host);
+        host.registerGauges();
+        indexHost(host);
+        return true;
+    }
+
+    /***
+     * Updates the indices with the current snapshot of the host. Only the containers and images
+     * that changed since the host was last indexed are touched. Hosts are indexed from the refresh
+     * barrier, the initialisation and the recovery pools: the indices, the indexed snapshots and the
+     * container changes are updated under the lock of the HostManager, so that two calls never diff
+     * against the same indexed snapshot.
+     *
+     * @param host
+     */
+    private synchronized void indexHost(final Host host) {
+        hostNameIndex.put(host.getUID().toLowerCase(), host);
+
+        HostSnapshot previous = indexedSnapshots.get(host.getUID());
+        HostSnapshot current = host.getSnapshot();
+
+        if (previous == current) {
+            return;
+        }
+
+        if (current.isUnchangedSince(previous)) {
+            // Same containers, inspections, images, volumes and ports, and no container restarted:
+            // nothing to re-index, nothing changed.
+            indexedSnapshots.put(host.getUID(), current);
+            return;
+        }
+
+        Set<String> changedImages = new HashSet<String>();
+        boolean containerSetChanged = false;
+
+        if (previous != null) {
+            for (Container container : previous.getContainers()) {
+                if (current.getContainer(container.id()) == null) {
+                    containerIndex.remove(container.id(), host);
+                    containerChanges.recordRemoved(container.id());
+                    containerSetChanged = true;
+                }
+            }
+
+            for (Image image : previous.getImages()) {
+                if (current.getImage(image.id()) == null) {
+                    unindexImage(image.id(), host);
+                    changedImages.add(image.id());
+                }
+            }
+        }
+
+        for (Image image : current.getImages()) {
+            if (previous == null || previous.getImage(image.id()) == null) {
+                imageIndex.computeIfAbsent(image.id(), (key) -> ConcurrentHashMap.newKeySet()).add(host);
+                changedImages.add(image.id());
+            }
+        }
+
+        for (Container container : current.getContainers()) {
+            if (previous == null || previous.getContainer(container.id()) == null) {
+                containerIndex.put(container.id(), host);
+                containerChanges.recordAdded(container.id());
+                containerSetChanged = true;
+            }
+        }
+
+        if (previous != null) {
+            for (Container container : current.getContainers()) {
+                Container previousContainer = previous.getContainer(container.id());
+
+                if (previousContainer == null) {
+                    continue;
+                }
+
+                boolean linksChanged = containerSetChanged
+                        && (hasLinks(previous, previousContainer) || hasLinks(current, container));
+
+                if (linksChanged || changedImages.contains(container.imageId())
+                        || isContainerModified(previous, previousContainer, current, container)) {
+                    containerChanges.recordModified(container.id());
+                }
+            }
+        }
+
+        indexedSnapshots.put(host.getUID(), current);
+    }
+
+    /***
+     * Compares what the container items are made of: the list payload, summarised by its
+     * fingerprint and uptime, the names and the inspection.
+     */
+    private static boolean isContainerModified(final HostSnapshot previous, final Container previousContainer,
+            final HostSnapshot current, final Container container) {
+        return ContainerFingerprint.of(previousContainer) != ContainerFingerprint.of(container)
+                || ContainerFingerprint.isRestarted(previousContainer, container)
+                || !Objects.equals(previousContainer.names(), container.names())
+                || previous.getInspection(container.id()) != current.getInspection(container.id());
+    }
+
+    /***
+     * @return true if the container links to other containers, thus its relationships depend on the
+     *         other containers of the host.
+     */
+    private static boolean hasLinks(final HostSnapshot snapshot, final Container container) {
+        ContainerInfo inspection = snapshot.getInspection(container.id());
+
+        if (inspection != null && inspection.hostConfig() != null && inspection.hostConfig().links() != null
+                && !inspection.hostConfig().links().isEmpty()) {
+            return true;
+        }
+
+        return container.names() != null && !container.names().isEmpty()
+                && !snapshot.getLinkedContainers(container.names().get(0)).isEmpty();
+    }
+
+    /***
+     * Removes a host from all the indices.
+     *
+     * @param host
+     */
+    private synchronized void unindexHost(final Host host) {
+        hostNameIndex.remove(host.getUID().toLowerCase(), host);
+
+        HostSnapshot previous = indexedSnapshots.remove(host.getUID());
+
+        if (previous != null) {
+            previous.getContainers().forEach((container) -> {
+                containerIndex.remove(container.id(), host);
+                containerChanges.recordRemoved(container.id());
+            });
+            previous.getImages().forEach((image) -> unindexImage(image.id(), host));
+        }
+    }
+
+    private void unindexImage(final String imageId, final Host host) {
+        imageIndex.computeIfPresent(imageId, (key, hosts) -> {
+            hosts.remove(host);
+            return hosts.isEmpty() ? null : hosts;
+        });
+    }
+
+    /***
+     * Schedules a new initialisation attempt of a host that could not be reached, once the backoff
+     * of its circuit expires. The host joins the host map as soon as an attempt succeeds. The backoff
+     * doubles up to circuitMaxBackoff, and a failed attempt closes whatever it opened, thus a host
+     * that never comes back costs one connection attempt per circuitMaxBackoff.
+     *
+     * @param jsonHost host definition from the host file
+     * @param adapter
+     * @param hosts map the host is added to
+     * @param circuitBreaker tracks the failed attempts of the host
+     */
+    private void scheduleHostRecovery(final JsonNode jsonHost, final BaseAdapter adapter, final Map<String, Host> hosts,
+            final HostCircuitBreaker circuitBreaker) {
+        String hostUID = Host.dockerAddressOf(jsonHost);
+
+        circuitBreaker.recordFailure();
+        recoveringHosts.put(hostUID, circuitBreaker);
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Retrying host '" + jsonHost.toString() + "' in " + circuitBreaker.getRemainingOpenTime() + " ms");
+        }
+
+        hostRecoveryPool.schedule(() -> {
+            if (!jsonHost.equals(hostDefinitions.get(hostUID))) {
+                // Removed from the host file meanwhile.
+                recoveringHosts.remove(hostUID, circuitBreaker);
+                return;
+            }
+
+            circuitBreaker.allowRequest();
+
+            try {
+                Host recoveredHost = new Host(jsonHost, adapter);
+                circuitBreaker.recordSuccess();
+
+                if (addDefinedHost(jsonHost, recoveredHost, hosts)) {
+                    LOG.info("Host '" + recoveredHost.getUID() + "' is reachable again - added to the Host Pool");
+                }
+
+                recoveringHosts.remove(hostUID, circuitBreaker);
+            } catch (Exception e) {
+                LOG.warn("Host '" + jsonHost.toString() + "' is still unreachable");
+
+                scheduleHostRecovery(jsonHost, adapter, hosts, circuitBreaker);
+            }
+        }, circuitBreaker.getRemainingOpenTime(), TimeUnit.MILLISECONDS);
+    }
+
+    /***
+     * Starts watching the host file, every change is applied with reloadHostFile().
+     *
+     * @param adapter
+     */
+    private void watchHostFile(final BaseAdapter adapter) {
+        String fileName = AdapterProperties.getString(adapter, "hostFile");
+
+        if (fileName == null) {
+            return;
+        }
+
+        hostFileWatcher = new HostFileWatcher(Paths.get(fileName), () -> reloadHostFile(adapter));
+
+        try {
+            hostFileWatcher.start();
+        } catch (IOException e) {
+            LOG.error("Couldn't watch host file '" + fileName + "' - changes require a restart", e);
+        }
+    }
+
+    /***
+     * Applies the changes of the host file. Removed hosts are closed and removed from the host map,
+     * added hosts are initialised in background, and hosts that did not change keep their caches.
+     * Private registries are added or removed in the same way.
+     *
+     * @param adapter
+     */
+    public void reloadHostFile(final BaseAdapter adapter) {
+        String fileName = AdapterProperties.getString(adapter, "hostFile");
+
+        if (fileName == null) {
+            return;
+        }
+
+        JsonNode rootNode;
+
+        try {
+            rootNode = new ObjectMapper().readTree(new File(fileName));
+        } catch (IOException e) {
+            // Possibly being written, the next change reloads it again.
+            LOG.error("Couldn't process host file '" + fileName + "' - keeping the current hosts", e);
+            return;
+        }
+
+        Map<String, JsonNode> newDefinitions = new HashMap<String, JsonNode>();
+        JsonNode jsonHosts = rootNode.get("Hosts");
+
+        if (jsonHosts != null) {
+            jsonHosts.forEach((jsonHost) -> newDefinitions.put(Host.dockerAddressOf(jsonHost), jsonHost));
+        }
+
+        // Removed or modified hosts
+        for (String hostUID : new HashSet<String>(hostDefinitions.keySet())) {
+            if (!hostDefinitions.get(hostUID).equals(newDefinitions.get(hostUID))) {
+                hostDefinitions.remove(hostUID);
+                lastRefreshTasks.remove(hostUID);
+                recoveringHosts.remove(hostUID);
+
+                Host removedHost = hostMap.remove(hostUID);
+
+                if (removedHost != null) {
+                    unindexHost(removedHost);
+                    removedHost.close();
+                    LOG.info("Host '" + hostUID + "' removed from the Host Pool");
+                }
+            }
+        }
+
+        // Added or modified hosts
+        newDefinitions.forEach((hostUID, jsonHost) -> {
+            if (hostDefinitions.putIfAbsent(hostUID, jsonHost) == null) {
+                LOG.info("Host '" + hostUID + "' added to the host file - initialising");
+                hostInitializationPool.execute(() -> initializeHost(jsonHost, adapter, hostMap));
+            }
+        });
+
+        reloadPrivateRegistries(rootNode.get("PrivateRegistries"));
+    }
+
+    private void reloadPrivateRegistries(final JsonNode jsonRegistries) {
+        Map<String, JsonNode> newRegistries = new HashMap<String, JsonNode>();
+
+        if (jsonRegistries != null) {
+            for (JsonNode jsonRepos : jsonRegistries) {
+                String uid = jsonRepos.path("address").asText() + ":" + jsonRepos.path("port").asText();
+                newRegistries.put(uid, jsonRepos);
+            }
+        }
+
+        for (Registry registry : new ArrayList<Registry>(configuredRegistries.values())) {
+            if (!newRegistries.containsKey(registry.getUID())) {
+                configuredRegistries.remove(registry.getUID());
+                registryIndex.remove(registry.getUID(), registry);
+                imageOnEachRegistry.remove(registry);
+                imageIdsOnEachRegistry.remove(registry);
+            }
+        }
+
+        newRegistries.forEach((uid, jsonRepos) -> {
+            if (!configuredRegistries.containsKey(uid)) {
+                registryExtractPool.execute(() -> this.extractRegistryInformation(jsonRepos));
+            }
+        });
+    }
+
     /***
      * Using the hostLocalId, search in the host map for the given host
      *
@@ -203,12 +672,23 @@ public final class HostManager {
      * @return host, null if the host was not found.
      */
     public Host locateHostByUID(final String hostLocalId) {
-        // Extract host UID from Host LocalID
-        String[] parts = hostLocalId.split("http");
-        // http was removed in the previous split.
-        String hostUID = new String("http") + parts[parts.length - 1];
+        return hostMap.get(extractHostUID(hostLocalId));
+    }
+
+    /***
+     * The host UID is the docker address, at the end of the host local id.
+     *
+     * @param hostLocalId
+     * @return host UID
+     */
+    private static String extractHostUID(final String hostLocalId) {
+        int addressStart = hostLocalId.lastIndexOf("http");
+
+        if (addressStart <= 0) {
+            return hostLocalId;
+        }
 
-        return hostMap.get(hostUID);
+        return hostLocalId.substring(addressStart);
     }
 
     /***
@@ -218,20 +698,36 @@ public final class HostManager {
      * @return host, null if the host was not found.
      */
     public Host locateHostByNameSimilarity(final String hostName) {
-        String locatedHost = null;
+        String lowerCaseName = hostName.toLowerCase();
+        Host locatedHost = hostNameIndex.get(lowerCaseName);
+
+        if (locatedHost == null) {
+            // Partial name: the index keys are already lowercase.
+            for (Map.Entry<String, Host> entry : hostNameIndex.entrySet()) {
+                if (entry.getKey().contains(lowerCaseName)) {
+                    return entry.getValue();
+                }
+            }
 
-        try {
-            locatedHost = hostMap.keySet().stream()
-                    .filter(iterHost -> iterHost.toLowerCase().contains(hostName.toLowerCase())).findFirst().get();
-        } catch (NoSuchElementException e) {
-            LOG.error("Couldn't find host similar to '" + hostName + "' in set of " + hostMap.size() + " hosts", e);
+            LOG.error("Couldn't find host similar to '" + hostName + "' in set of " + hostMap.size() + " hosts");
         }
 
-        if (locatedHost != null) {
-            return hostMap.get(locatedHost);
-        } else {
-            return null;
-        }
+        return locatedHost;
+    }
+
+    /***
+     * @param containerId container id
+     * @return host running the container, null if not indexed.
+     */
+    public Host locateHostByContainerId(final String containerId) {
+        return containerIndex.get(containerId);
+    }
+
+    /***
+     * @return containers added, modified or removed on each refresh.
+     */
+    public ResourceChangeLog getContainerChanges() {
+        return containerChanges;
     }
 
     /***
@@ -241,9 +737,14 @@ public final class HostManager {
      * @return host, null if the host was not found.
      */
     public Host locateHost(final ContainerItem container) {
-        List<Item> connectedItems = new ArrayList<Item>(container.getAllConnectedItems());
+        Host indexedHost = containerIndex.get(container.getCore().getContainerId());
 
-        for (Item item : connectedItems) {
+        if (indexedHost != null) {
+            return indexedHost;
+        }
+
+        // Not indexed yet, e.g. created by an action after the last refresh.
+        for (Item item : container.getAllConnectedItems()) {
             if (item.getItemType().getLocalId().equals(Types.HOST_TYPE_ID)) {
                 return hostMap.get(item.getName());
             }
@@ -261,11 +762,15 @@ public final class HostManager {
      * @return host, null if the host was not found.
      */
     public List<Host> locateHosts(final ImageItem image) {
-        List<Item> connectedItems = new ArrayList<Item>(image.getAllConnectedItems());
+        Set<Host> indexedHosts = imageIndex.get(image.getCore().getImageid());
+
+        if (indexedHosts != null) {
+            return new ArrayList<Host>(indexedHosts);
+        }
 
         List<Host> localHostList = new ArrayList<Host>();
 
-        for (Item item : connectedItems) {
+        for (Item item : image.getAllConnectedItems()) {
             if (item.getItemType().getLocalId().equals(Types.HOST_TYPE_ID)) {
                 localHostList.add(hostMap.get(item.getName()));
             }
@@ -310,20 +815,32 @@ public final class HostManager {
         return hostList;
     }
 
+    /***
+     * Lists the collection of every host defined on the host file: the hosts of the host map, and
+     * the hosts still pending recovery with the circuit breaker of their recovery.
+     *
+     * @return collection of each defined host
+     */
+    public List<HostCollection> getHostCollections() {
+        List<HostCollection> collections = new ArrayList<HostCollection>(hostMap.size() + recoveringHosts.size());
+
+        hostMap.values().forEach((host) -> collections.add(HostCollection.of(host)));
+        recoveringHosts.forEach((hostUID, circuitBreaker) -> {
+            if (!hostMap.containsKey(hostUID)) {
+                collections.add(HostCollection.pending(hostUID, circuitBreaker));
+            }
+        });
+
+        return collections;
+    }
+
     /***
      * Generates a List of containers available in all hosts
      *
      * @return Container List
      */
     public List<Container> getAllContainers() {
-        List<Container> containerList = new ArrayList<Container>();
-        if (hostMap != null && !hostMap.isEmpty()) {
-            for (Host host : hostMap.values()) {
-                containerList.addAll(host.getLocalContainers());
-            }
-        }
-
-        return containerList;
+        return collectContainers(getSnapshots());
     }
 
     /***
@@ -332,49 +849,89 @@ public final class HostManager {
      * @return list of images
      */
     public List<Image> getAllImages() {
+        return collectImages(getSnapshots());
+    }
+
+    /***
+     * Generates a list of ports available in all hosts
+     *
+     * @return list of ports
+     */
+    public List<ContainerPort> getAllPorts() {
+        return collectPorts(getSnapshots());
+    }
+
+    /***
+     * List of volumes available in all host
+     *
+     * @return list of volumes
+     */
+    public List<Volume> getAllVolumes() {
+        return collectVolumes(getSnapshots());
+    }
+
+    private List<HostSnapshot> getSnapshots() {
+        return hostMap.values().stream().map(Host::getSnapshot).collect(Collectors.toList());
+    }
+
+    /***
+     * @param snapshots snapshots of the hosts
+     * @return the containers of all the snapshots
+     */
+    public static List<Container> collectContainers(final Collection<HostSnapshot> snapshots) {
+        List<Container> containerList = new ArrayList<Container>();
+
+        for (HostSnapshot snapshot : snapshots) {
+            containerList.addAll(snapshot.getContainers());
+        }
+
+        return containerList;
+    }
+
+    /***
+     * @param snapshots snapshots of the hosts
+     * @return the images of all the snapshots, each image once
+     */
+    public static List<Image> collectImages(final Collection<HostSnapshot> snapshots) {
         // Map is used in order to make sure that the images will only be referenced once.
         HashMap<String, Image> imageMap = new HashMap<String, Image>();
 
-        if (hostMap != null && !hostMap.isEmpty()) {
-            for (Host host : hostMap.values()) {
-                host.getLocalImages().forEach(image -> {
-                    if (imageMap.get(image.id()) == null) {
-                        imageMap.put(image.id(), image);
-                    }
-                });
-            }
+        for (HostSnapshot snapshot : snapshots) {
+            snapshot.getImages().forEach(image -> {
+                if (imageMap.get(image.id()) == null) {
+                    imageMap.put(image.id(), image);
+                }
+            });
         }
 
         return imageMap.values().stream().collect(Collectors.toList());
     }
 
     /***
-     * Generates a list of ports available in all hosts
-     *
-     * @return list of ports
+     * @param snapshots snapshots of the hosts
+     * @return the ports of all the snapshots
      */
-    public List<ContainerPort> getAllPorts() {
+    public static List<ContainerPort> collectPorts(final Collection<HostSnapshot> snapshots) {
         List<ContainerPort> portList = new ArrayList<ContainerPort>();
-        if (hostMap != null && !hostMap.isEmpty()) {
-            for (Host host : hostMap.values()) {
-                portList.addAll(host.getAllPorts());
-            }
+
+        for (HostSnapshot snapshot : snapshots) {
+            portList.addAll(snapshot.getPorts());
         }
+
         return portList;
     }
 
     /***
-     * List of volumes available in all host
-     *
-     * @return list of volumes
+     * @param snapshots snapshots of the hosts
+     * @return the volumes of all the snapshots
      */
-    public List<Volume> getAllVolumes() {
+    public static List<Volume> collectVolumes(final Collection<HostSnapshot> snapshots) {
         List<Volume> volumeList = new ArrayList<Volume>();
-        if (hostMap != null && !hostMap.isEmpty()) {
-            for (Host host : hostMap.values()) {
-                volumeList.addAll(host.getLocalVolumes());
-            }
+
+        for (HostSnapshot snapshot : snapshots) {
+            volumeList.addAll(snapshot.getVolumes());
         }
+
         return volumeList;
     }
 
@@ -387,23 +944,99 @@ public final class HostManager {
      * other words, acts as a synchronous barrier.
      *
      * <p>
+     * The hosts are refreshed in parallel on a bounded pool (refreshThreads). The barrier waits for
+     * them until a single deadline (hostRefreshTimeout) counted from the moment it starts waiting: a
+     * host that misses it, even while still queued behind hung ones, or fails is marked stale and
+     * keeps serving the information of its last successful refresh. A host whose previous refresh
+     * is still running is not refreshed again until that refresh returns, neither is a host whose
+     * circuit is open (see HostCircuitBreaker).
+     *
+     * <p>
+     * Every session has its own collector, yet all of them share the same refresh (see
+     * RefreshCoordinator): a collector that calls while a refresh is running waits for it, and a
+     * collector that calls less than minRefreshInterval milliseconds after the last refresh started
+     * reuses its result. All collectors thus read the same host snapshots.
+     *
+     * <p>
      * Calls <strong>refreshContainerDatabase()</strong> and <strong>refreshImageDatabase()</strong>
      * on each host
      */
     public void refreshHostsInformation() {
-        StopWatch stopWatch = new StopWatch("Refresh");
-        stopWatch.start("Refresh Host Content");
+        refreshCoordinator.refresh();
+    }
 
-        getHostList().forEach(host -> {
-            try {
-                host.refreshHostContent(stopWatch);
-            } catch (Exception e) {
-                LOG.error("Could not refresh host '" + host.getUID() + "'", e);
+    /***
+     * Refreshes every host, unconditionally.
+     */
+    private void refreshAllHosts() {
+        long start = System.nanoTime();
+
+        List<HostRefreshTask> submittedTasks = new ArrayList<HostRefreshTask>();
+
+        for (Host host : getHostList()) {
+            HostRefreshTask previousTask = lastRefreshTasks.get(host.getUID());
+
+            if (previousTask != null && !previousTask.isDone()) {
+                host.markStale();
+                LOG.warn("Host '" + host.getUID() + "' is still refreshing from a previous cycle - serving stale data");
+            } else if (!host.getCircuitBreaker().allowRequest()) {
+                // Fails fast: the daemon is not contacted until its backoff expires.
+                host.markStale();
+
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Circuit of host '" + host.getUID() + "' is open - serving stale data");
+                }
+            } else {
+                HostRefreshTask task = new HostRefreshTask(host);
+                lastRefreshTasks.put(host.getUID(), task);
+                hostRefreshPool.execute(task);
+                submittedTasks.add(task);
             }
-        });
+        }
+
+        long deadline = System.nanoTime() + hostRefreshTimeoutNanos;
+
+        for (HostRefreshTask task : submittedTasks) {
+            awaitHostRefresh(task, deadline);
+        }
+
+        // Only hosts whose snapshot changed are re-indexed.
+        getHostList().forEach(this::indexHost);
+        containerChanges.publish();
 
-        stopWatch.stop();
-        LOG.info(stopWatch.prettyPrint());
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Container changes - " + containerChanges);
+        }
+
+        long elapsed = refreshTimer.recordSince(start);
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Refreshed " + submittedTasks.size() + " hosts in " + TimeUnit.NANOSECONDS.toMillis(elapsed)
+                    + " ms");
+        }
+    }
+
+    /***
+     * Waits until the given host refresh finishes or the deadline of the barrier passes. A task
+     * still queued at the deadline is left to run, and the host is not refreshed again until it
+     * returns.
+     *
+     * @param task host refresh
+     * @param deadline System.nanoTime() at which the barrier stops waiting
+     */
+    private void awaitHostRefresh(final HostRefreshTask task, final long deadline) {
+        try {
+            task.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            task.getHost().markStale();
+            LOG.warn("Host '" + task.getHost().getUID() + "' missed its refresh deadline - serving stale data");
+        } catch (InterruptedException e) {
+            LOG.error("Interrupted while waiting the refresh of host '" + task.getHost().getUID() + "'", e);
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // The task handles its own failures, this is not expected.
+            LOG.error("Could not refresh host '" + task.getHost().getUID() + "'", e);
+        }
     }
 
     /***
@@ -415,15 +1048,7 @@ public final class HostManager {
      * @return if the initialisation of all hosts should be waited or not.
      */
     private boolean waitAllHostInitializations(final BaseAdapter adapter) {
-        Object waitHosts =
-                adapter.getAdapterConfig().getPropertiesConfiguration().getProperty("waitAllHostInitializations");
-
-        boolean waitEnabled = false;
-
-        if (!StringUtils.isEmpty(waitHosts)) {
-            waitEnabled = Boolean.parseBoolean((String) waitHosts);
-        }
-        return waitEnabled;
+        return AdapterProperties.getBoolean(adapter, "waitAllHostInitializations", false);
     }
 
     private void locateAndAddPrivateRegistries(final BaseAdapter adapter) {
@@ -432,11 +1057,12 @@ public final class HostManager {
         Registry dockerRepo = new Registry(Registry.DOCKER_HUB_REGISTRY_NAME, Registry.DOCKER_HUB_REGISTRY_ADDRESS,
                 Registry.DOCKER_HUB_REGISTRY_PORT);
 
-        imageOnEachRegistry.put(dockerRepo, new ArrayList<Image>());
+        imageOnEachRegistry.put(dockerRepo, new CopyOnWriteArrayList<Image>());
+        registryIndex.put(dockerRepo.getUID(), dockerRepo);
 
         // extract other registries from the inputfile.
         // Load hostFile
-        Object hostFileName = adapter.getAdapterConfig().getPropertiesConfiguration().getProperty("hostFile");
+        Object hostFileName = AdapterProperties.getString(adapter, "hostFile");
 
         if (!StringUtils.isEmpty(hostFileName)) {
             String fileName = (String) hostFileName;
@@ -488,49 +1114,56 @@ public final class HostManager {
 
             Registry extractedRegistry = new Registry(repoName, repoAddress, repoPort);
 
+            if (configuredRegistries.putIfAbsent(extractedRegistry.getUID(), extractedRegistry) != null) {
+                // Already configured.
+                return;
+            }
+
             List<Image> imageList = extractRegistryImages(jsonRepos);
 
-            // Append to extracted registries List:
-            imageOnEachRegistry.putIfAbsent(extractedRegistry, imageList);
+            // Append to extracted registries List, unless an image already reported it:
+            Registry indexedRegistry = registryIndex.putIfAbsent(extractedRegistry.getUID(), extractedRegistry);
+
+            if (indexedRegistry == null) {
+                Set<String> imageIds = ConcurrentHashMap.newKeySet();
+                imageList.forEach((image) -> imageIds.add(image.id()));
+                imageIdsOnEachRegistry.putIfAbsent(extractedRegistry, imageIds);
+                imageOnEachRegistry.putIfAbsent(extractedRegistry, imageList);
+            } else {
+                configuredRegistries.put(extractedRegistry.getUID(), indexedRegistry);
+            }
         }
     }
 
 
     /***
-     * Register new registry based on image information
+     * Register new registry based on image information. An image already listed on the registry
+     * is not added again.
      *
      * @param registryInfo the registry that the image belongs to
      * @param regImage the image that reported the registry
      * @return the registry it just registered.
      */
     public Registry registerRegistry(final String registryInfo, final Image regImage) {
-        List<Image> imageList = null;
-        Registry returnedRegistry;
-
         final Registry reportedRegistry = new Registry(registryInfo);
 
         // Search if a registry with the same name has already been reported.
-        Optional<Registry> registry = imageOnEachRegistry.keySet().stream()
-                .filter(reg -> reg.getUID().equals(reportedRegistry.getUID())).findFirst();
-
-        if (registry.isPresent()) {
-            returnedRegistry = registry.get();
-            imageList = imageOnEachRegistry.get(returnedRegistry);
-        } else {
-            returnedRegistry = reportedRegistry;
-            imageList = new ArrayList<>();
-        }
+        Registry returnedRegistry = registryIndex.computeIfAbsent(reportedRegistry.getUID(), (uid) -> reportedRegistry);
 
-        imageList.add(regImage);
+        Set<String> imageIds =
+                imageIdsOnEachRegistry.computeIfAbsent(returnedRegistry, (registry) -> ConcurrentHashMap.newKeySet());
 
-        imageOnEachRegistry.put(returnedRegistry, imageList);
+        if (imageIds.add(regImage.id())) {
+            imageOnEachRegistry.computeIfAbsent(returnedRegistry, (registry) -> new CopyOnWriteArrayList<Image>())
+                    .add(regImage);
+        }
 
         return returnedRegistry;
     }
 
     @SuppressWarnings("checkstyle:todocomment")
     private List<Image> extractRegistryImages(final JsonNode jsonRepos) {
-        List<Image> imageList = new ArrayList<Image>();
+        List<Image> imageList = new CopyOnWriteArrayList<Image>();
 
         // TODO: fetch image list from private registry
 
@@ -543,4 +1176,36 @@ public final class HostManager {
     public ConcurrentMap<Registry, List<Image>> getImageOnEachRegistry() {
         return imageOnEachRegistry;
     }
+
+    /***
+     * Refresh of a single host.
+     */
+    private static final class HostRefreshTask extends FutureTask<Void> {
+        private final Host host;
+
+        HostRefreshTask(final Host host) {
+            super(() -> {
+                long start = System.nanoTime();
+                boolean success = false;
+
+                try {
+                    host.refreshHostContent();
+                    host.markRefreshed();
+                    host.getCircuitBreaker().recordSuccess();
+                    success = true;
+                } catch (Exception e) {
+                    host.markStale();
+                    host.getCircuitBreaker().recordFailure();
+                    LOG.error("Could not refresh host '" + host.getUID() + "'", e);
+                }
+
+                host.getMetrics().recordRefresh(start, success);
+            }, null);
+            this.host = host;
+        }
+
+        Host getHost() {
+            return host;
+        }
+    }
 }
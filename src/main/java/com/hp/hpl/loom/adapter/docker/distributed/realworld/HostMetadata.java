@@ -0,0 +1,184 @@
+/*******************************************************************************
+ * (c) Copyright 2017 Hewlett Packard Enterprise Development LP Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *******************************************************************************/
+package com.hp.hpl.loom.adapter.docker.distributed.realworld;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.spotify.docker.client.messages.Info;
+
+/***
+ * Machine information of a host, which hardly ever changes: number of cores, memory and file
+ * system capacity, CPU frequency, kernel and docker versions. It is seeded from the docker info of
+ * the daemon, then completed by the /machine information of the cAdvisor, if any.
+ *
+ * <p>
+ * Immutable: the host replaces its metadata whenever one of the two sources is read again. Unknown
+ * values are null.
+ */
+public final class HostMetadata {
+    private static final HostMetadata EMPTY = new HostMetadata();
+
+    private Long cpuFrequencyKhz = null;
+    private Long fileSystemCapacity = null;
+    private Long memoryCapacity = null;
+    private Integer numberOfCores = null;
+    private String dockerVersion = null;
+    private String kernelVersion = null;
+    private String operatingSystem = null;
+
+    // When each source was last read, 0 if never
+    private long infoTimestamp = 0;
+    private long machineTimestamp = 0;
+
+    private HostMetadata() {}
+
+    private HostMetadata copy() {
+        HostMetadata copy = new HostMetadata();
+
+        copy.cpuFrequencyKhz = cpuFrequencyKhz;
+        copy.fileSystemCapacity = fileSystemCapacity;
+        copy.memoryCapacity = memoryCapacity;
+        copy.numberOfCores = numberOfCores;
+        copy.dockerVersion = dockerVersion;
+        copy.kernelVersion = kernelVersion;
+        copy.operatingSystem = operatingSystem;
+        copy.infoTimestamp = infoTimestamp;
+        copy.machineTimestamp = machineTimestamp;
+
+        return copy;
+    }
+
+    /***
+     * @return metadata of a host that was never read
+     */
+    public static HostMetadata empty() {
+        return EMPTY;
+    }
+
+    /***
+     * Returns this metadata updated with the docker info of the daemon.
+     *
+     * @param info docker info
+     * @param timestamp time of the call
+     * @return the updated metadata
+     */
+    public HostMetadata withInfo(final Info info, final long timestamp) {
+        HostMetadata updated = copy();
+
+        updated.numberOfCores = valueOr(info.cpus(), numberOfCores);
+        updated.memoryCapacity = valueOr(info.memTotal(), memoryCapacity);
+        updated.dockerVersion = valueOr(info.serverVersion(), dockerVersion);
+        updated.kernelVersion = valueOr(info.kernelVersion(), kernelVersion);
+        updated.operatingSystem = valueOr(info.operatingSystem(), operatingSystem);
+        updated.infoTimestamp = timestamp;
+
+        return updated;
+    }
+
+    /***
+     * Returns this metadata updated with the /machine information of the cAdvisor, which is the only
+     * source of the CPU frequency and the file system capacity.
+     *
+     * @param machine response to /api/v2.0/machine
+     * @param timestamp time of the call
+     * @return the updated metadata
+     */
+    public HostMetadata withMachine(final JsonNode machine, final long timestamp) {
+        HostMetadata updated = copy();
+
+        updated.cpuFrequencyKhz = longOr(machine.get("cpu_frequency_khz"), cpuFrequencyKhz);
+        updated.fileSystemCapacity = longOr(machine.path("filesystems").path(0).get("capacity"), fileSystemCapacity);
+        updated.memoryCapacity = longOr(machine.get("memory_capacity"), memoryCapacity);
+
+        Long cores = longOr(machine.get("num_cores"), null);
+        updated.numberOfCores = cores == null ? numberOfCores : Integer.valueOf(cores.intValue());
+
+        updated.dockerVersion = textOr(machine.get("docker_version"), dockerVersion);
+        updated.kernelVersion = textOr(machine.get("kernel_version"), kernelVersion);
+        updated.machineTimestamp = timestamp;
+
+        return updated;
+    }
+
+    private static <T> T valueOr(final T value, final T previous) {
+        return value == null ? previous : value;
+    }
+
+    private static Long longOr(final JsonNode node, final Long previous) {
+        return node == null || !node.isNumber() ? previous : Long.valueOf(node.asLong());
+    }
+
+    private static String textOr(final JsonNode node, final String previous) {
+        return node == null || node.isNull() || node.asText().isEmpty() ? previous : node.asText();
+    }
+
+    /***
+     * @return CPU frequency in kHz, only known through a cAdvisor
+     */
+    public Long getCpuFrequencyKhz() {
+        return cpuFrequencyKhz;
+    }
+
+    /***
+     * @return capacity of the first file system in bytes, only known through a cAdvisor
+     */
+    public Long getFileSystemCapacity() {
+        return fileSystemCapacity;
+    }
+
+    /***
+     * @return memory capacity in bytes
+     */
+    public Long getMemoryCapacity() {
+        return memoryCapacity;
+    }
+
+    /***
+     * @return number of cores
+     */
+    public Integer getNumberOfCores() {
+        return numberOfCores;
+    }
+
+    /***
+     * @return version of the docker daemon
+     */
+    public String getDockerVersion() {
+        return dockerVersion;
+    }
+
+    /***
+     * @return version of the kernel
+     */
+    public String getKernelVersion() {
+        return kernelVersion;
+    }
+
+    /***
+     * @return operating system of the host, as reported by the daemon
+     */
+    public String getOperatingSystem() {
+        return operatingSystem;
+    }
+
+    /***
+     * @return when the docker info was last read, 0 if never
+     */
+    public long getInfoTimestamp() {
+        return infoTimestamp;
+    }
+
+    /***
+     * @return when the /machine information was last read, 0 if never
+     */
+    public long getMachineTimestamp() {
+        return machineTimestamp;
+    }
+}
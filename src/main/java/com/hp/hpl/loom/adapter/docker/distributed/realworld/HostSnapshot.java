@@ -0,0 +1,526 @@
+/*******************************************************************************
+ * (c) Copyright 2017 Hewlett Packard Enterprise Development LP Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *******************************************************************************/
+package com.hp.hpl.loom.adapter.docker.distributed.realworld;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.hp.hpl.loom.adapter.docker.realworld.ContainerPort;
+import com.spotify.docker.client.messages.Container;
+import com.spotify.docker.client.messages.ContainerInfo;
+import com.spotify.docker.client.messages.ContainerMount;
+import com.spotify.docker.client.messages.Image;
+import com.spotify.docker.client.messages.PortBinding;
+
+/***
+ * Immutable view of the content of a docker daemon host: containers, images, container
+ * inspections, and the ports and volumes derived from the inspections. A Host publishes a new
+ * snapshot on every change, thus readers always get a consistent view without locking.
+ */
+public final class HostSnapshot {
+    private final String hostUID;
+
+    private final List<Container> containers;
+    private final Map<String, Container> containerIndex;
+
+    private final List<Image> images;
+    private final Map<String, Image> imageIndex;
+
+    private final Map<String, ContainerInfo> inspections;
+
+    // Fingerprint of each container when it was inspected, see ContainerFingerprint.
+    private final Map<String, Long> fingerprints;
+
+    private final Map<String, List<ContainerPort>> portMap;
+    private final List<ContainerPort> ports;
+
+    private final Map<Volume, List<String>> volumeMap;
+    private final List<Volume> volumes;
+
+    // Containers linked by each container, indexed by the name of the linking container.
+    private final Map<String, List<Container>> linkIndex;
+
+    private final HostDigest digest;
+
+    private HostSnapshot(final String hostUID, final Collection<Container> containers, final Collection<Image> images,
+            final Map<String, ContainerInfo> inspections, final Map<String, Long> fingerprints) {
+        this.hostUID = hostUID;
+
+        Map<String, Container> containersById = new LinkedHashMap<String, Container>();
+        containers.forEach((container) -> containersById.put(container.id(), container));
+        this.containerIndex = Collections.unmodifiableMap(containersById);
+        this.containers = Collections.unmodifiableList(new ArrayList<Container>(containersById.values()));
+
+        Map<String, Image> imagesById = new LinkedHashMap<String, Image>();
+        images.forEach((image) -> imagesById.put(image.id(), image));
+        this.imageIndex = Collections.unmodifiableMap(imagesById);
+        this.images = Collections.unmodifiableList(new ArrayList<Image>(imagesById.values()));
+
+        this.inspections = Collections.unmodifiableMap(new HashMap<String, ContainerInfo>(inspections));
+        this.fingerprints = Collections.unmodifiableMap(new HashMap<String, Long>(fingerprints));
+
+        Map<String, List<ContainerPort>> containerPorts = new HashMap<String, List<ContainerPort>>();
+        Map<Volume, List<String>> containersByVolume = new HashMap<Volume, List<String>>();
+        List<ContainerPort> allPorts = new ArrayList<ContainerPort>();
+
+        for (Map.Entry<String, ContainerInfo> inspection : inspections.entrySet()) {
+            List<ContainerPort> portsOnContainer = buildPorts(inspection.getValue());
+
+            if (!portsOnContainer.isEmpty()) {
+                containerPorts.put(inspection.getKey(), Collections.unmodifiableList(portsOnContainer));
+                allPorts.addAll(portsOnContainer);
+            }
+
+            addVolumes(inspection.getKey(), inspection.getValue().mounts(), containersByVolume);
+        }
+
+        // Containers not inspected: the list payload already carries their ports and mounts.
+        Map<String, List<Container>> linkedContainers = new HashMap<String, List<Container>>();
+
+        for (Container container : this.containers) {
+            if (!inspections.containsKey(container.id())) {
+                List<ContainerPort> portsOnContainer = buildPorts(container);
+
+                if (!portsOnContainer.isEmpty()) {
+                    containerPorts.put(container.id(), Collections.unmodifiableList(portsOnContainer));
+                    allPorts.addAll(portsOnContainer);
+                }
+
+                addVolumes(container.id(), container.mounts(), containersByVolume);
+            }
+
+            addLinks(container, linkedContainers);
+        }
+
+        containersByVolume.replaceAll((volume, containerIds) -> Collections.unmodifiableList(containerIds));
+        linkedContainers.replaceAll((linkingName, linked) -> Collections.unmodifiableList(linked));
+
+        this.portMap = Collections.unmodifiableMap(containerPorts);
+        this.ports = Collections.unmodifiableList(allPorts);
+        this.volumeMap = Collections.unmodifiableMap(containersByVolume);
+        this.volumes = Collections.unmodifiableList(new ArrayList<Volume>(containersByVolume.keySet()));
+        this.linkIndex = Collections.unmodifiableMap(linkedContainers);
+
+        this.digest = HostDigest.of(this.containers, this.inspections, this.images, this.volumes, this.ports);
+    }
+
+    /***
+     * @param hostUID UID of the host this snapshot describes
+     * @return a snapshot without containers nor images
+     */
+    public static HostSnapshot empty(final String hostUID) {
+        return new HostSnapshot(hostUID, Collections.<Container>emptyList(), Collections.<Image>emptyList(),
+                Collections.<String, ContainerInfo>emptyMap(), Collections.<String, Long>emptyMap());
+    }
+
+    /***
+     * Replaces the complete container list. Inspections are taken from the given map, or kept from
+     * this snapshot; inspections of containers not on the list are dropped.
+     *
+     * <p>
+     * A kept inspection taken with a different fingerprint is outdated and dropped: the ports and
+     * volumes of that container come from the list until it is inspected again. An inspection
+     * without fingerprint (e.g. made right after an action) takes the fingerprint of the listed
+     * container.
+     *
+     * @param newContainers complete container list
+     * @param newInspections inspections retrieved for this update
+     * @return the new snapshot
+     */
+    public HostSnapshot withContainers(final List<Container> newContainers,
+            final Map<String, ContainerInfo> newInspections) {
+        Map<String, ContainerInfo> mergedInspections = new HashMap<String, ContainerInfo>();
+        Map<String, Long> mergedFingerprints = new HashMap<String, Long>();
+
+        for (Container container : newContainers) {
+            ContainerInfo inspection = newInspections.get(container.id());
+
+            if (inspection == null && isInspectionCurrent(container)) {
+                inspection = inspections.get(container.id());
+            }
+
+            if (inspection != null) {
+                mergedInspections.put(container.id(), inspection);
+                mergedFingerprints.put(container.id(), ContainerFingerprint.of(container));
+            }
+        }
+
+        return new HostSnapshot(hostUID, newContainers, images, mergedInspections, mergedFingerprints);
+    }
+
+    /***
+     * @param container as listed
+     * @return true if the inspection of the container, if any, was taken with the same fingerprint
+     *         and the container was not restarted since the previous listing
+     */
+    public boolean isInspectionCurrent(final Container container) {
+        Long fingerprint = fingerprints.get(container.id());
+
+        if (fingerprint == null) {
+            return true;
+        }
+
+        Container listed = containerIndex.get(container.id());
+
+        return fingerprint == ContainerFingerprint.of(container)
+                && (listed == null || !ContainerFingerprint.isRestarted(listed, container));
+    }
+
+    /***
+     * @param container as listed
+     * @return true if the container has no inspection, or its inspection was taken with a different
+     *         fingerprint
+     */
+    public boolean isInspectionOutdated(final Container container) {
+        return inspections.get(container.id()) == null || !isInspectionCurrent(container);
+    }
+
+    /***
+     * @param listedContainers complete container list
+     * @return ids of the listed containers to be inspected, see isInspectionOutdated
+     */
+    public List<String> getOutdatedInspections(final Collection<Container> listedContainers) {
+        List<String> outdated = new ArrayList<String>();
+
+        for (Container container : listedContainers) {
+            if (isInspectionOutdated(container)) {
+                outdated.add(container.id());
+            }
+        }
+
+        return outdated;
+    }
+
+    /***
+     * Applies changes to only some containers.
+     *
+     * @param updatedContainers containers added or modified
+     * @param removedContainerIds containers that no longer exist
+     * @param newInspections inspections of the updated containers
+     * @return the new snapshot
+     */
+    public HostSnapshot withContainerChanges(final Collection<Container> updatedContainers,
+            final Collection<String> removedContainerIds, final Map<String, ContainerInfo> newInspections) {
+        Map<String, Container> mergedContainers = new LinkedHashMap<String, Container>(containerIndex);
+        Map<String, ContainerInfo> mergedInspections = new HashMap<String, ContainerInfo>(inspections);
+        Map<String, Long> mergedFingerprints = new HashMap<String, Long>(fingerprints);
+
+        removedContainerIds.forEach((containerId) -> {
+            mergedContainers.remove(containerId);
+            mergedInspections.remove(containerId);
+            mergedFingerprints.remove(containerId);
+        });
+
+        for (Container container : updatedContainers) {
+            mergedContainers.put(container.id(), container);
+
+            ContainerInfo inspection = newInspections.get(container.id());
+
+            if (inspection != null) {
+                mergedInspections.put(container.id(), inspection);
+                mergedFingerprints.put(container.id(), ContainerFingerprint.of(container));
+            } else if (!isInspectionCurrent(container)) {
+                mergedInspections.remove(container.id());
+                mergedFingerprints.remove(container.id());
+            }
+        }
+
+        return new HostSnapshot(hostUID, mergedContainers.values(), images, mergedInspections, mergedFingerprints);
+    }
+
+    /***
+     * Adds or replaces the inspection of a single container, e.g. right after it was created.
+     *
+     * @param containerId container id
+     * @param inspection inspection of the container, null if the container was removed.
+     * @return the new snapshot
+     */
+    public HostSnapshot withInspection(final String containerId, final ContainerInfo inspection) {
+        Map<String, ContainerInfo> mergedInspections = new HashMap<String, ContainerInfo>(inspections);
+        Map<String, Long> mergedFingerprints = new HashMap<String, Long>(fingerprints);
+
+        if (inspection == null) {
+            mergedInspections.remove(containerId);
+        } else {
+            mergedInspections.put(containerId, inspection);
+        }
+
+        // the fingerprint is taken on the next listing.
+        mergedFingerprints.remove(containerId);
+
+        return new HostSnapshot(hostUID, containers, images, mergedInspections, mergedFingerprints);
+    }
+
+    /***
+     * Adds or replaces the inspections of several containers at once.
+     *
+     * @param newInspections inspections indexed by container id
+     * @return the new snapshot
+     */
+    public HostSnapshot withInspections(final Map<String, ContainerInfo> newInspections) {
+        Map<String, ContainerInfo> mergedInspections = new HashMap<String, ContainerInfo>(inspections);
+        Map<String, Long> mergedFingerprints = new HashMap<String, Long>(fingerprints);
+
+        mergedInspections.putAll(newInspections);
+        newInspections.keySet().forEach((containerId) -> mergedFingerprints.remove(containerId));
+
+        return new HostSnapshot(hostUID, containers, images, mergedInspections, mergedFingerprints);
+    }
+
+    /***
+     * Replaces the complete image list.
+     *
+     * @param newImages complete image list
+     * @return the new snapshot
+     */
+    public HostSnapshot withImages(final List<Image> newImages) {
+        return new HostSnapshot(hostUID, containers, newImages, inspections, fingerprints);
+    }
+
+    private List<ContainerPort> buildPorts(final ContainerInfo inspection) {
+        List<ContainerPort> portsOnContainer = new ArrayList<ContainerPort>();
+
+        if (inspection.networkSettings() == null) {
+            return portsOnContainer;
+        }
+
+        Map<String, List<PortBinding>> exposedPorts = inspection.networkSettings().ports();
+
+        if (exposedPorts != null) {
+            for (Map.Entry<String, List<PortBinding>> exposedPort : exposedPorts.entrySet()) {
+                ContainerPort containerPort = new ContainerPort();
+
+                String containerPortInfo = exposedPort.getKey();
+                String[] containerParts = containerPortInfo.split("/");
+
+                String containerPortNumber = containerParts[0];
+                String containerPortProtocol = containerParts[1];
+
+                containerPort.setContainerID(inspection.id());
+                containerPort.setContainerPortNumber(Integer.parseInt(containerPortNumber));
+                containerPort.setPortProtocol(containerPortProtocol);
+
+                if (exposedPort.getValue() != null) {
+                    List<PortBinding> portBindingList = exposedPort.getValue();
+                    String interfaceIP = portBindingList.get(0).hostIp();
+                    String hostPort = portBindingList.get(0).hostPort();
+
+                    containerPort.setHostInterfaceIp(interfaceIP);
+                    containerPort.setHostPortNumber(Integer.parseInt(hostPort));
+                    containerPort.setHostID(hostUID);
+                }
+
+                // Adds only that port once in a container
+                if (!portsOnContainer.contains(containerPort)) {
+                    portsOnContainer.add(containerPort);
+                }
+            }
+        }
+
+        return portsOnContainer;
+    }
+
+    /***
+     * Builds the ports from the list payload, keeping one entry per exposed port and the first
+     * binding of it, as done for an inspection.
+     */
+    private List<ContainerPort> buildPorts(final Container container) {
+        List<ContainerPort> portsOnContainer = new ArrayList<ContainerPort>();
+
+        if (container.ports() == null) {
+            return portsOnContainer;
+        }
+
+        Set<String> exposedPorts = new HashSet<String>();
+
+        for (Container.PortMapping mapping : container.ports()) {
+            if (mapping.privatePort() == null || !exposedPorts.add(mapping.privatePort() + "/" + mapping.type())) {
+                continue;
+            }
+
+            ContainerPort containerPort = new ContainerPort();
+
+            containerPort.setContainerID(container.id());
+            containerPort.setContainerPortNumber(mapping.privatePort());
+            containerPort.setPortProtocol(mapping.type());
+
+            if (mapping.publicPort() != null && mapping.publicPort() != 0) {
+                containerPort.setHostInterfaceIp(mapping.ip());
+                containerPort.setHostPortNumber(mapping.publicPort());
+                containerPort.setHostID(hostUID);
+            }
+
+            portsOnContainer.add(containerPort);
+        }
+
+        return portsOnContainer;
+    }
+
+    /***
+     * A legacy link shows up on the list as an extra name of the linked container, in the format
+     * /[Container that created the link]/[alias].
+     */
+    private void addLinks(final Container container, final Map<String, List<Container>> linkedContainers) {
+        List<String> names = container.names();
+
+        if (names != null) {
+            for (String name : names) {
+                int separator = name.indexOf('/', 1);
+
+                if (name.startsWith("/") && separator > 0 && name.indexOf('/', separator + 1) < 0) {
+                    linkedContainers.computeIfAbsent(name.substring(0, separator), (key) -> new ArrayList<Container>())
+                            .add(container);
+                }
+            }
+        }
+    }
+
+    private void addVolumes(final String containerId, final List<ContainerMount> mountList,
+            final Map<Volume, List<String>> containersByVolume) {
+        // Verifies is the container mounts any volume
+        if (mountList != null) {
+            for (ContainerMount mount : mountList) {
+                Volume volume = new Volume(mount.source(), hostUID);
+
+                containersByVolume.computeIfAbsent(volume, (key) -> new ArrayList<String>()).add(containerId);
+            }
+        }
+    }
+
+    /***
+     * @return all the containers, including stopped ones.
+     */
+    public List<Container> getContainers() {
+        return containers;
+    }
+
+    /***
+     * @param containerId container id
+     * @return the container, null if not on this host.
+     */
+    public Container getContainer(final String containerId) {
+        return containerIndex.get(containerId);
+    }
+
+    /***
+     * @param containerName name of the linking container, e.g. "/web"
+     * @return the containers it links to, taken from the container names.
+     */
+    public List<Container> getLinkedContainers(final String containerName) {
+        return linkIndex.getOrDefault(containerName, Collections.<Container>emptyList());
+    }
+
+    /***
+     * @return structural digest of this snapshot.
+     */
+    public HostDigest getDigest() {
+        return digest;
+    }
+
+    /***
+     * The digest is structural: it leaves out the time that docker appends to the status of a
+     * container, thus a container restarted since the previous snapshot keeps its digest. Such a
+     * restart shows as a shorter uptime (see ContainerFingerprint.isRestarted), which is checked
+     * container by container.
+     *
+     * @param previous previous snapshot of the same host, may be null
+     * @return true if this snapshot has the same digest as the previous one and no container was
+     *         restarted in between
+     */
+    public boolean isUnchangedSince(final HostSnapshot previous) {
+        if (previous == null || !digest.equals(previous.digest)) {
+            return false;
+        }
+
+        for (Container container : containers) {
+            Container listed = previous.getContainer(container.id());
+
+            if (listed != null && ContainerFingerprint.isRestarted(listed, container)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /***
+     * @return all the local images.
+     */
+    public List<Image> getImages() {
+        return images;
+    }
+
+    /***
+     * @param imageId image id
+     * @return the image, null if not local on this host.
+     */
+    public Image getImage(final String imageId) {
+        return imageIndex.get(imageId);
+    }
+
+    /***
+     * @param containerId container id
+     * @return the inspection of the container, null if not available.
+     */
+    public ContainerInfo getInspection(final String containerId) {
+        return inspections.get(containerId);
+    }
+
+    /***
+     * @param containerId container id
+     * @return fingerprint of the container when it was inspected, null if not known yet.
+     */
+    public Long getFingerprint(final String containerId) {
+        return fingerprints.get(containerId);
+    }
+
+    /***
+     * @return the container inspections, indexed by container id.
+     */
+    public Map<String, ContainerInfo> getInspections() {
+        return inspections;
+    }
+
+    /***
+     * @return the ports exposed by each container, indexed by container id.
+     */
+    public Map<String, List<ContainerPort>> getPortMap() {
+        return portMap;
+    }
+
+    /***
+     * @return all the ports exposed by the containers.
+     */
+    public List<ContainerPort> getPorts() {
+        return ports;
+    }
+
+    /***
+     * @return the ids of the containers that mount each volume.
+     */
+    public Map<Volume, List<String>> getVolumeMap() {
+        return volumeMap;
+    }
+
+    /***
+     * @return all the volumes mounted by the containers.
+     */
+    public List<Volume> getVolumes() {
+        return volumes;
+    }
+}
@@ -0,0 +1,100 @@
+/*******************************************************************************
+ * (c) Copyright 2017 Hewlett Packard Enterprise Development LP Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *******************************************************************************/
+package com.hp.hpl.loom.adapter.docker.distributed.realworld;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/***
+ * Shares a refresh between all its callers (single-flight). Every session has its own collector,
+ * and each one asks for a refresh on every update cycle: a caller that arrives while a refresh is
+ * running waits for that refresh instead of starting a new one, and a caller that arrives less than
+ * minRefreshInterval milliseconds after the last refresh started uses its result directly. The
+ * load on the daemons therefore does not depend on the number of sessions.
+ */
+public class RefreshCoordinator {
+    private static final Log LOG = LogFactory.getLog(RefreshCoordinator.class);
+
+    private final Runnable refresh;
+    private final long minRefreshInterval;
+
+    private final Object lock = new Object();
+    private CompletableFuture<Void> inFlight = null;
+    private long lastRefreshStart = 0;
+
+    /***
+     * @param refresh the refresh to be shared
+     * @param minRefreshInterval minimum time, in milliseconds, between the start of two refreshes
+     */
+    public RefreshCoordinator(final Runnable refresh, final long minRefreshInterval) {
+        this.refresh = refresh;
+        this.minRefreshInterval = minRefreshInterval;
+    }
+
+    /***
+     * Runs the refresh, joins the one in flight, or returns straight away if the last refresh is
+     * recent enough. Returns once the information is refreshed.
+     */
+    public void refresh() {
+        CompletableFuture<Void> flight;
+        boolean leader = false;
+
+        synchronized (lock) {
+            long sinceLastRefresh = System.currentTimeMillis() - lastRefreshStart;
+
+            if (inFlight != null) {
+                flight = inFlight;
+            } else if (sinceLastRefresh < minRefreshInterval) {
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Hosts refreshed " + sinceLastRefresh + " ms ago - reusing their content");
+                }
+                return;
+            } else {
+                inFlight = new CompletableFuture<Void>();
+                lastRefreshStart = System.currentTimeMillis();
+
+                flight = inFlight;
+                leader = true;
+            }
+        }
+
+        if (leader) {
+            lead(flight);
+        } else {
+            join(flight);
+        }
+    }
+
+    private void lead(final CompletableFuture<Void> flight) {
+        try {
+            refresh.run();
+        } finally {
+            synchronized (lock) {
+                inFlight = null;
+            }
+
+            flight.complete(null);
+        }
+    }
+
+    private void join(final CompletableFuture<Void> flight) {
+        try {
+            flight.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            LOG.error("Shared refresh failed", e);
+        }
+    }
+}
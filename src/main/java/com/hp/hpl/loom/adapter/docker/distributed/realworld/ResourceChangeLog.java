@@ -0,0 +1,135 @@
+/*******************************************************************************
+ * (c) Copyright 2017 Hewlett Packard Enterprise Development LP Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *******************************************************************************/
+package com.hp.hpl.loom.adapter.docker.distributed.realworld;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/***
+ * Records which resources were added, modified or removed on each refresh.
+ *
+ * <p>
+ * Every refresh publishes a new generation, and each resource remembers the generation of its last
+ * change. A reader keeps the generation it last saw and asks, resource by resource, whether it
+ * changed since then. Since readers (the updaters of every session) do not follow the refreshes one
+ * to one, there is no per-cycle list to consume: a reader that skipped a few refreshes still sees
+ * every change. Changes are recorded on the generation that is about to be published, so a reader
+ * never misses a change recorded while it reads. Removals are kept for REMOVAL_HISTORY generations
+ * only, a reader that lags further behind must assume any resource may have been removed.
+ */
+public class ResourceChangeLog {
+    private static final int REMOVAL_HISTORY = 64;
+
+    private volatile long generation = 0;
+
+    // resource id -> generation of its last addition or modification
+    private final Map<String, Long> changes = new ConcurrentHashMap<String, Long>();
+
+    // resource id -> generation of its removal
+    private final Map<String, Long> removals = new ConcurrentHashMap<String, Long>();
+
+    private int added = 0;
+    private int modified = 0;
+    private int removed = 0;
+    private String lastPublished = "generation 0";
+
+    /***
+     * Publishes the changes recorded since the last call as a new generation.
+     */
+    public synchronized void publish() {
+        generation++;
+
+        lastPublished = "generation " + generation + ": " + added + " added, " + modified + " modified, " + removed
+                + " removed";
+        added = 0;
+        modified = 0;
+        removed = 0;
+
+        long oldestKept = generation - REMOVAL_HISTORY;
+        removals.values().removeIf(removal -> removal < oldestKept);
+    }
+
+    /***
+     * @param id resource seen for the first time
+     */
+    public synchronized void recordAdded(final String id) {
+        changes.put(id, generation + 1);
+        removals.remove(id);
+        added++;
+    }
+
+    /***
+     * @param id resource whose content changed
+     */
+    public synchronized void recordModified(final String id) {
+        changes.put(id, generation + 1);
+        modified++;
+    }
+
+    /***
+     * @param id resource that disappeared
+     */
+    public synchronized void recordRemoved(final String id) {
+        if (changes.remove(id) != null) {
+            removals.put(id, generation + 1);
+            removed++;
+        }
+    }
+
+    /***
+     * @return the current generation
+     */
+    public long getGeneration() {
+        return generation;
+    }
+
+    /***
+     * @param id resource id
+     * @param since generation last seen by the reader
+     * @return true if the resource is unknown or was added or modified after the given generation
+     */
+    public boolean isChangedSince(final String id, final long since) {
+        Long lastChange = changes.get(id);
+
+        return lastChange == null || lastChange > since;
+    }
+
+    /***
+     * @param since generation last seen by the reader
+     * @return the resources removed after the given generation, or null if the history does not
+     *         reach back that far
+     */
+    public List<String> getRemovedSince(final long since) {
+        if (since < generation - REMOVAL_HISTORY) {
+            return null;
+        }
+
+        List<String> removedIds = new ArrayList<String>();
+
+        removals.forEach((id, removal) -> {
+            if (removal > since) {
+                removedIds.add(id);
+            }
+        });
+
+        return removedIds;
+    }
+
+    /***
+     * @return summary of the changes of the last published generation
+     */
+    @Override
+    public synchronized String toString() {
+        return lastPublished;
+    }
+}
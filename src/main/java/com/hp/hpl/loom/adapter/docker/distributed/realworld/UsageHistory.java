@@ -0,0 +1,89 @@
+/*******************************************************************************
+ * (c) Copyright 2017 Hewlett Packard Enterprise Development LP Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *******************************************************************************/
+package com.hp.hpl.loom.adapter.docker.distributed.realworld;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/***
+ * Last counters of a host and its containers, for the sources that only expose raw counters (the
+ * Prometheus /metrics endpoint of cAdvisor, the docker stats API), from which the adapter derives
+ * the latest usage the v2.0 summaries would have given. The day and hour usage are then computed by
+ * the UsageStore of the host.
+ *
+ * <p>
+ * The CPU usage is the rate of the cumulated CPU time between two samples, thus a series needs two
+ * samples before it has a usage.
+ */
+public final class UsageHistory {
+    private static final double MILLICORES_PER_CORE = 1000;
+
+    private final Map<String, Series> series = new HashMap<String, Series>();
+
+    /***
+     * Last sample of a host or a container.
+     */
+    private static final class Series {
+        private double lastCpuSeconds;
+        private long lastTimestamp;
+    }
+
+    /***
+     * Records a sample of a host or a container.
+     *
+     * @param key container id, or / for the host
+     * @param cpuSeconds CPU time used so far, in seconds
+     * @param memoryBytes memory used, in bytes
+     * @param timestamp time of the sample, in milliseconds
+     * @return latest usage of the host or container, null for its first sample or after a restart
+     */
+    public synchronized UsageStatistics record(final String key, final double cpuSeconds, final long memoryBytes,
+            final long timestamp) {
+        Series samples = series.get(key);
+
+        if (samples == null) {
+            samples = new Series();
+            samples.lastCpuSeconds = cpuSeconds;
+            samples.lastTimestamp = timestamp;
+            series.put(key, samples);
+
+            return null;
+        }
+
+        long elapsed = timestamp - samples.lastTimestamp;
+        double used = cpuSeconds - samples.lastCpuSeconds;
+
+        samples.lastCpuSeconds = cpuSeconds;
+        samples.lastTimestamp = timestamp;
+
+        // The counter restarts with the container
+        if (elapsed <= 0 || used < 0) {
+            return null;
+        }
+
+        UsageStatistics usage = new UsageStatistics();
+        usage.setLatest(Math.round(used * MILLICORES_PER_CORE * TimeUnit.SECONDS.toMillis(1) / elapsed), memoryBytes,
+                timestamp);
+
+        return usage;
+    }
+
+    /***
+     * Forgets the containers that are gone.
+     *
+     * @param keys keys sampled on the last collection
+     */
+    public synchronized void retain(final Set<String> keys) {
+        series.keySet().retainAll(keys);
+    }
+}
@@ -0,0 +1,253 @@
+/*******************************************************************************
+ * (c) Copyright 2017 Hewlett Packard Enterprise Development LP Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *******************************************************************************/
+package com.hp.hpl.loom.adapter.docker.distributed.realworld;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/***
+ * Usage samples of a host or a container, kept in fixed-size primitive ring buffers: the last
+ * RAW_CAPACITY raw samples, and per minute (last hour), per 5 minutes (last 6 hours) and per hour
+ * (last day) rollups of their count, sum and maximum. Appending a sample allocates nothing.
+ *
+ * <p>
+ * A rollup slot is chosen by the start of the bucket a sample falls in, and reset when it still
+ * holds an older bucket, thus gaps between samples need no bookkeeping. Windows are answered from
+ * the finest rollup covering them, at the granularity of its buckets.
+ *
+ * <p>
+ * Not thread safe, see UsageStore.
+ */
+final class UsageSeries {
+    /***
+     * CPU usage, in millicores.
+     */
+    static final int CPU = 0;
+
+    /***
+     * Memory usage, in bytes.
+     */
+    static final int MEMORY = 1;
+
+    static final int RAW_CAPACITY = 256;
+
+    private static final long MINUTE_MS = TimeUnit.MINUTES.toMillis(1);
+    private static final int MINUTES_KEPT = 60;
+    private static final long FIVE_MINUTES_MS = TimeUnit.MINUTES.toMillis(5);
+    private static final int FIVE_MINUTES_KEPT = 72;
+    private static final long HOUR_MS = TimeUnit.HOURS.toMillis(1);
+    private static final int HOURS_KEPT = 24;
+
+    // Raw samples, next is the slot of the next one
+    private final long[] timestamps = new long[RAW_CAPACITY];
+    private final float[] cpu = new float[RAW_CAPACITY];
+    private final float[] memory = new float[RAW_CAPACITY];
+    private int next = 0;
+    private int size = 0;
+
+    // From the finest to the coarsest
+    private final Rollup[] rollups = {new Rollup(MINUTE_MS, MINUTES_KEPT),
+        new Rollup(FIVE_MINUTES_MS, FIVE_MINUTES_KEPT), new Rollup(HOUR_MS, HOURS_KEPT)};
+
+    /***
+     * Count, sum and maximum of the samples of consecutive buckets of the same duration.
+     */
+    private static final class Rollup {
+        private static final long EMPTY = -1;
+
+        private final long resolution;
+        private final long[] starts;
+        private final int[] counts;
+        private final float[][] sums = new float[2][];
+        private final float[][] maxima = new float[2][];
+
+        private Rollup(final long resolution, final int capacity) {
+            this.resolution = resolution;
+            starts = new long[capacity];
+            counts = new int[capacity];
+            Arrays.fill(starts, EMPTY);
+
+            for (int metric = CPU; metric <= MEMORY; metric++) {
+                sums[metric] = new float[capacity];
+                maxima[metric] = new float[capacity];
+            }
+        }
+
+        private long span() {
+            return resolution * starts.length;
+        }
+
+        private void add(final long timestamp, final float cpuValue, final float memoryValue) {
+            long start = timestamp - timestamp % resolution;
+            int slot = (int) (start / resolution % starts.length);
+
+            if (starts[slot] != start) {
+                starts[slot] = start;
+                counts[slot] = 0;
+                sums[CPU][slot] = 0;
+                sums[MEMORY][slot] = 0;
+                maxima[CPU][slot] = 0;
+                maxima[MEMORY][slot] = 0;
+            }
+
+            counts[slot]++;
+            sums[CPU][slot] += cpuValue;
+            sums[MEMORY][slot] += memoryValue;
+            maxima[CPU][slot] = Math.max(maxima[CPU][slot], cpuValue);
+            maxima[MEMORY][slot] = Math.max(maxima[MEMORY][slot], memoryValue);
+        }
+
+        /***
+         * @return true if the slot holds a bucket overlapping the window (now - duration, now]
+         */
+        private boolean inWindow(final int slot, final long now, final long duration) {
+            return starts[slot] != EMPTY && starts[slot] <= now && starts[slot] + resolution > now - duration;
+        }
+    }
+
+    /***
+     * Appends a sample, unless it is not more recent than the last one.
+     *
+     * @param timestamp time of the sample, in milliseconds
+     * @param cpuValue CPU usage, in millicores
+     * @param memoryValue memory usage, in bytes
+     * @return true if the sample was appended
+     */
+    boolean append(final long timestamp, final float cpuValue, final float memoryValue) {
+        if (size > 0 && timestamp <= lastTimestamp()) {
+            return false;
+        }
+
+        timestamps[next] = timestamp;
+        cpu[next] = cpuValue;
+        memory[next] = memoryValue;
+        next = (next + 1) % RAW_CAPACITY;
+        size = Math.min(size + 1, RAW_CAPACITY);
+
+        for (Rollup rollup : rollups) {
+            rollup.add(timestamp, cpuValue, memoryValue);
+        }
+
+        return true;
+    }
+
+    /***
+     * @return time of the last sample, in milliseconds
+     */
+    long lastTimestamp() {
+        return timestamps[(next + RAW_CAPACITY - 1) % RAW_CAPACITY];
+    }
+
+    /***
+     * @param metric CPU or MEMORY
+     * @param now end of the window, in milliseconds
+     * @param duration duration of the window, in milliseconds
+     * @return mean of the samples in the window, NaN if none
+     */
+    float mean(final int metric, final long now, final long duration) {
+        Rollup rollup = rollupFor(duration);
+        double sum = 0;
+        long count = 0;
+
+        for (int slot = 0; slot < rollup.starts.length; slot++) {
+            if (rollup.inWindow(slot, now, duration)) {
+                sum += rollup.sums[metric][slot];
+                count += rollup.counts[slot];
+            }
+        }
+
+        return count == 0 ? Float.NaN : (float) (sum / count);
+    }
+
+    /***
+     * @param metric CPU or MEMORY
+     * @param now end of the window, in milliseconds
+     * @param duration duration of the window, in milliseconds
+     * @return maximum of the samples in the window, NaN if none
+     */
+    float max(final int metric, final long now, final long duration) {
+        Rollup rollup = rollupFor(duration);
+        float max = Float.NaN;
+
+        for (int slot = 0; slot < rollup.starts.length; slot++) {
+            if (rollup.inWindow(slot, now, duration) && !(rollup.maxima[metric][slot] <= max)) {
+                max = rollup.maxima[metric][slot];
+            }
+        }
+
+        return max;
+    }
+
+    /***
+     * Nearest-rank percentile over the window. The raw samples are used while they cover the whole
+     * window, otherwise the bucket means of the finest rollup covering it.
+     *
+     * @param metric CPU or MEMORY
+     * @param now end of the window, in milliseconds
+     * @param duration duration of the window, in milliseconds
+     * @param fraction percentile, between 0 and 1
+     * @param scratch array of at least scratchLength() values, overwritten
+     * @return percentile of the window, NaN if no sample
+     */
+    float percentile(final int metric, final long now, final long duration, final double fraction,
+            final float[] scratch) {
+        int count = 0;
+        int oldest = (next + RAW_CAPACITY - size) % RAW_CAPACITY;
+
+        if (size < RAW_CAPACITY || timestamps[oldest] <= now - duration) {
+            float[] values = metric == CPU ? cpu : memory;
+
+            for (int i = 0; i < size; i++) {
+                int slot = (oldest + i) % RAW_CAPACITY;
+                if (timestamps[slot] > now - duration && timestamps[slot] <= now) {
+                    scratch[count++] = values[slot];
+                }
+            }
+        } else {
+            Rollup rollup = rollupFor(duration);
+
+            for (int slot = 0; slot < rollup.starts.length; slot++) {
+                if (rollup.inWindow(slot, now, duration) && rollup.counts[slot] > 0) {
+                    scratch[count++] = rollup.sums[metric][slot] / rollup.counts[slot];
+                }
+            }
+        }
+
+        if (count == 0) {
+            return Float.NaN;
+        }
+
+        Arrays.sort(scratch, 0, count);
+        int rank = (int) Math.ceil(fraction * count);
+
+        return scratch[Math.max(0, Math.min(count, rank) - 1)];
+    }
+
+    /***
+     * @return length of the scratch array required by percentile
+     */
+    static int scratchLength() {
+        return Math.max(RAW_CAPACITY, Math.max(MINUTES_KEPT, Math.max(FIVE_MINUTES_KEPT, HOURS_KEPT)));
+    }
+
+    /***
+     * @return the finest rollup spanning the duration, or the coarsest one
+     */
+    private Rollup rollupFor(final long duration) {
+        for (Rollup rollup : rollups) {
+            if (rollup.span() >= duration) {
+                return rollup;
+            }
+        }
+
+        return rollups[rollups.length - 1];
+    }
+}
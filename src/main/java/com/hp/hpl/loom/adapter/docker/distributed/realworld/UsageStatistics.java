@@ -0,0 +1,170 @@
+/*******************************************************************************
+ * (c) Copyright 2017 Hewlett Packard Enterprise Development LP Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *******************************************************************************/
+package com.hp.hpl.loom.adapter.docker.distributed.realworld;
+
+/***
+ * CPU and memory usage of a host or a container: the latest usage, the mean and maximum over the
+ * last day, as reported by its cAdvisor or computed by the UsageStore of the host, and the mean and
+ * 95th percentile over the last hour, computed by the UsageStore. CPU is in millicores, memory in
+ * bytes.
+ */
+public final class UsageStatistics {
+    private long cpuInstant;
+    private long memoryInstant;
+    private long timestamp;
+    private boolean latestPresent = false;
+
+    private long dayCpuMean;
+    private long dayCpuMax;
+    private long dayMemoryMean;
+    private long dayMemoryMax;
+    private boolean dayPresent = false;
+
+    private long hourCpuMean;
+    private long hourCpuPercentile;
+    private long hourMemoryMean;
+    private long hourMemoryPercentile;
+    private boolean hourPresent = false;
+
+    void setLatest(final long cpu, final long memory, final long time) {
+        cpuInstant = cpu;
+        memoryInstant = memory;
+        timestamp = time;
+        latestPresent = true;
+    }
+
+    void setDayCpu(final long mean, final long max) {
+        dayCpuMean = mean;
+        dayCpuMax = max;
+        dayPresent = true;
+    }
+
+    void setDayMemory(final long mean, final long max) {
+        dayMemoryMean = mean;
+        dayMemoryMax = max;
+        dayPresent = true;
+    }
+
+    void setHour(final long cpuMean, final long cpuPercentile, final long memoryMean, final long memoryPercentile) {
+        hourCpuMean = cpuMean;
+        hourCpuPercentile = cpuPercentile;
+        hourMemoryMean = memoryMean;
+        hourMemoryPercentile = memoryPercentile;
+        hourPresent = true;
+    }
+
+    /***
+     * A cAdvisor that has just been started may answer without the latest or the day usage.
+     *
+     * @return true if both the latest and the day usage were reported
+     */
+    public boolean isComplete() {
+        return latestPresent && dayPresent;
+    }
+
+    /***
+     * @return true if the latest usage was reported
+     */
+    public boolean isLatestPresent() {
+        return latestPresent;
+    }
+
+    /***
+     * @return true if the day usage was reported or could be computed
+     */
+    public boolean isDayPresent() {
+        return dayPresent;
+    }
+
+    /***
+     * @return true if the hour usage was computed
+     */
+    public boolean isHourPresent() {
+        return hourPresent;
+    }
+
+    /***
+     * @return time of the latest usage, in milliseconds
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /***
+     * @return latest CPU usage, in millicores
+     */
+    public long getCpuInstant() {
+        return cpuInstant;
+    }
+
+    /***
+     * @return latest memory usage, in bytes
+     */
+    public long getMemoryInstant() {
+        return memoryInstant;
+    }
+
+    /***
+     * @return mean CPU usage over the last day, in millicores
+     */
+    public long getDayCpuMean() {
+        return dayCpuMean;
+    }
+
+    /***
+     * @return maximum CPU usage over the last day, in millicores
+     */
+    public long getDayCpuMax() {
+        return dayCpuMax;
+    }
+
+    /***
+     * @return mean memory usage over the last day, in bytes
+     */
+    public long getDayMemoryMean() {
+        return dayMemoryMean;
+    }
+
+    /***
+     * @return maximum memory usage over the last day, in bytes
+     */
+    public long getDayMemoryMax() {
+        return dayMemoryMax;
+    }
+
+    /***
+     * @return mean CPU usage over the last hour, in millicores
+     */
+    public long getHourCpuMean() {
+        return hourCpuMean;
+    }
+
+    /***
+     * @return 95th percentile of the CPU usage over the last hour, in millicores
+     */
+    public long getHourCpuPercentile() {
+        return hourCpuPercentile;
+    }
+
+    /***
+     * @return mean memory usage over the last hour, in bytes
+     */
+    public long getHourMemoryMean() {
+        return hourMemoryMean;
+    }
+
+    /***
+     * @return 95th percentile of the memory usage over the last hour, in bytes
+     */
+    public long getHourMemoryPercentile() {
+        return hourMemoryPercentile;
+    }
+}
@@ -0,0 +1,84 @@
+/*******************************************************************************
+ * (c) Copyright 2017 Hewlett Packard Enterprise Development LP Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *******************************************************************************/
+package com.hp.hpl.loom.adapter.docker.distributed.realworld;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/***
+ * Usage history of a host and its containers, whatever the source of their usage (cAdvisor
+ * summaries or Prometheus metrics, docker stats). Each latest usage collected is appended to the
+ * UsageSeries of its host or container, from which the windowed usage is computed locally: the mean
+ * and 95th percentile over the last hour, and the day mean and maximum when the source does not
+ * report them.
+ *
+ * <p>
+ * A series costs about 8 kB, allocated with the first sample of its host or container.
+ */
+public final class UsageStore {
+    private static final long HOUR_MS = TimeUnit.HOURS.toMillis(1);
+    private static final long DAY_MS = TimeUnit.DAYS.toMillis(1);
+    private static final double PERCENTILE = 0.95;
+
+    private final Map<String, UsageSeries> series = new HashMap<String, UsageSeries>();
+    private final float[] scratch = new float[UsageSeries.scratchLength()];
+
+    /***
+     * Appends the latest usage of a host or a container, unless it was already appended, then sets
+     * its hour usage, and its day usage if missing.
+     *
+     * @param key container id, or / for the host
+     * @param usage usage collected
+     */
+    public synchronized void record(final String key, final UsageStatistics usage) {
+        if (!usage.isLatestPresent()) {
+            return;
+        }
+
+        UsageSeries samples = series.get(key);
+        if (samples == null) {
+            samples = new UsageSeries();
+            series.put(key, samples);
+        }
+
+        long now = usage.getTimestamp();
+        if (!samples.append(now, usage.getCpuInstant(), usage.getMemoryInstant())) {
+            return;
+        }
+
+        usage.setHour(round(samples.mean(UsageSeries.CPU, now, HOUR_MS)),
+                round(samples.percentile(UsageSeries.CPU, now, HOUR_MS, PERCENTILE, scratch)),
+                round(samples.mean(UsageSeries.MEMORY, now, HOUR_MS)),
+                round(samples.percentile(UsageSeries.MEMORY, now, HOUR_MS, PERCENTILE, scratch)));
+
+        if (!usage.isDayPresent()) {
+            usage.setDayCpu(round(samples.mean(UsageSeries.CPU, now, DAY_MS)),
+                    round(samples.max(UsageSeries.CPU, now, DAY_MS)));
+            usage.setDayMemory(round(samples.mean(UsageSeries.MEMORY, now, DAY_MS)),
+                    round(samples.max(UsageSeries.MEMORY, now, DAY_MS)));
+        }
+    }
+
+    private static long round(final float value) {
+        return Math.round((double) value);
+    }
+
+    /***
+     * Forgets the containers that are gone.
+     *
+     * @param keys keys still collected
+     */
+    public synchronized void retain(final Set<String> keys) {
+        series.keySet().retainAll(keys);
+    }
+}
@@ -0,0 +1,59 @@
+/*******************************************************************************
+ * (c) Copyright 2017 Hewlett Packard Enterprise Development LP Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *******************************************************************************/
+package com.hp.hpl.loom.adapter.docker.items;
+
+import com.hp.hpl.loom.adapter.annotations.ConnectedTo;
+import com.hp.hpl.loom.adapter.annotations.ItemTypeInfo;
+import com.hp.hpl.loom.adapter.annotations.LoomAttribute;
+import com.hp.hpl.loom.adapter.annotations.Sort;
+import com.hp.hpl.loom.manager.query.DefaultOperations;
+import com.hp.hpl.loom.model.ItemType;
+
+@ItemTypeInfo(value = Types.COLLECTOR_TYPE_ID, layers = {Types.DOCKER_LAYER}, sorting = {
+        // Slowest daemons first, if the user does not specify another visualisation method:
+        @Sort(operation = DefaultOperations.SORT_BY,
+                fieldOrder = {CollectorItemAttributes.LABEL_LAST_REFRESH_DURATION,
+                        CollectorItemAttributes.LABEL_API_CALLS_PER_CYCLE, CollectorItemAttributes.LABEL_STALENESS_AGE}),
+
+        @Sort(operation = DefaultOperations.GROUP_BY, fieldOrder = {CollectorItemAttributes.LABEL_CIRCUIT_STATE,
+                CollectorItemAttributes.LABEL_STALE, CollectorItem.LABEL_RELATIONSHIP_HOST})})
+
+// Relationships definitions
+@ConnectedTo(toClass = HostItem.class, type = Relationships.MONITORS_TYPE, typeName = Relationships.MONITORS_TYPE_NAME,
+        relationshipDetails = @LoomAttribute(key = CollectorItem.LABEL_RELATIONSHIP_HOST,
+                supportedOperations = {DefaultOperations.SORT_BY, DefaultOperations.GROUP_BY}))
+
+/**
+ * Health of the collection of a host by the adapter: how long its refresh takes, how many calls it
+ * needs, how well its inspection cache works and whether it is served stale.
+ */
+public class CollectorItem extends BaseItem<CollectorItemAttributes> {
+    static final String LABEL_RELATIONSHIP_HOST = "Host";
+
+    /**
+     * Default constructor.
+     *
+     * @param itemType The item type
+     */
+    public CollectorItem(final ItemType itemType) {
+        super(null, itemType);
+    }
+
+    /**
+     * Constructs a CollectorItem using the provided logicalId and itemType.
+     *
+     * @param logicalId The logical id
+     * @param itemType The itemType
+     */
+    public CollectorItem(final String logicalId, final ItemType itemType) {
+        super(logicalId, itemType);
+    }
+}
@@ -0,0 +1,209 @@
+/*******************************************************************************
+ * (c) Copyright 2017 Hewlett Packard Enterprise Development LP Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *******************************************************************************/
+package com.hp.hpl.loom.adapter.docker.items;
+
+import com.hp.hpl.loom.adapter.NumericAttribute;
+import com.hp.hpl.loom.adapter.annotations.LoomAttribute;
+import com.hp.hpl.loom.manager.query.DefaultOperations;
+import com.hp.hpl.loom.model.CoreItemAttributes;
+
+/***
+ * Attributes of the CollectorItem, taken from the metrics of the host (see HostMetrics).
+ */
+public class CollectorItemAttributes extends CoreItemAttributes {
+    public static final String LABEL_HOST_UID = "Docker daemon address";
+    public static final String LABEL_LAST_REFRESH_DURATION = "Last refresh duration";
+    public static final String LABEL_API_CALLS_PER_CYCLE = "API calls per cycle";
+    public static final String LABEL_INSPECTION_CACHE_SIZE = "Inspection cache size";
+    public static final String LABEL_INSPECTION_HIT_RATE = "Inspection cache hit rate";
+    public static final String LABEL_CIRCUIT_STATE = "Circuit state";
+    public static final String LABEL_STALE = "Stale";
+    public static final String LABEL_STALENESS_AGE = "Staleness age";
+    public static final String LABEL_REFRESH_FAILURES = "Refresh failures";
+
+    /***
+     * UID of the monitored host.
+     */
+    @LoomAttribute(key = LABEL_HOST_UID, supportedOperations = {DefaultOperations.SORT_BY})
+    private String hostUID;
+
+    @LoomAttribute(key = LABEL_LAST_REFRESH_DURATION, supportedOperations = {DefaultOperations.SORT_BY},
+            plottable = true, type = NumericAttribute.class, min = "0", max = "3600000", unit = "ms",
+            ignoreUpdate = true)
+    private Long lastRefreshDuration = null;
+
+    @LoomAttribute(key = LABEL_API_CALLS_PER_CYCLE, supportedOperations = {DefaultOperations.SORT_BY},
+            plottable = true, type = NumericAttribute.class, min = "0", max = "1000000", unit = "calls",
+            ignoreUpdate = true)
+    private Long apiCallsPerCycle = null;
+
+    @LoomAttribute(key = LABEL_INSPECTION_CACHE_SIZE, supportedOperations = {DefaultOperations.SORT_BY},
+            plottable = true, type = NumericAttribute.class, min = "0", max = "1000000", unit = "inspections",
+            ignoreUpdate = true)
+    private Long inspectionCacheSize = null;
+
+    // Null while no container was listed.
+    @LoomAttribute(key = LABEL_INSPECTION_HIT_RATE, supportedOperations = {DefaultOperations.SORT_BY},
+            plottable = true, type = NumericAttribute.class, min = "0", max = "100", unit = "%",
+            ignoreUpdate = true)
+    private Float inspectionHitRate = null;
+
+    /***
+     * State of the circuit breaker of the host: CLOSED, OPEN or HALF_OPEN.
+     */
+    @LoomAttribute(key = LABEL_CIRCUIT_STATE,
+            supportedOperations = {DefaultOperations.SORT_BY, DefaultOperations.GROUP_BY})
+    private String circuitState;
+
+    @LoomAttribute(key = LABEL_STALE, supportedOperations = {DefaultOperations.SORT_BY, DefaultOperations.GROUP_BY})
+    private String stale;
+
+    // Null until the first successful refresh.
+    @LoomAttribute(key = LABEL_STALENESS_AGE, supportedOperations = {DefaultOperations.SORT_BY}, plottable = true,
+            type = NumericAttribute.class, min = "0", max = "31536000", unit = "s", ignoreUpdate = true)
+    private Long stalenessAge = null;
+
+    @LoomAttribute(key = LABEL_REFRESH_FAILURES, supportedOperations = {DefaultOperations.SORT_BY},
+            plottable = false, type = NumericAttribute.class, min = "0", max = "1000000000", unit = "failures",
+            ignoreUpdate = true)
+    private Long refreshFailures = null;
+
+    /**
+     * Default constructor.
+     */
+    public CollectorItemAttributes() {}
+
+    /**
+     * @return the hostUID
+     */
+    public String getHostUID() {
+        return hostUID;
+    }
+
+    /**
+     * @param hostUID the hostUID to set
+     */
+    public void setHostUID(final String hostUID) {
+        this.hostUID = hostUID;
+    }
+
+    /**
+     * @return duration of the last refresh, in milliseconds
+     */
+    public Long getLastRefreshDuration() {
+        return lastRefreshDuration;
+    }
+
+    /**
+     * @param lastRefreshDuration the lastRefreshDuration to set
+     */
+    public void setLastRefreshDuration(final Long lastRefreshDuration) {
+        this.lastRefreshDuration = lastRefreshDuration;
+    }
+
+    /**
+     * @return calls to the daemon and its cAdvisor on the last refresh
+     */
+    public Long getApiCallsPerCycle() {
+        return apiCallsPerCycle;
+    }
+
+    /**
+     * @param apiCallsPerCycle the apiCallsPerCycle to set
+     */
+    public void setApiCallsPerCycle(final Long apiCallsPerCycle) {
+        this.apiCallsPerCycle = apiCallsPerCycle;
+    }
+
+    /**
+     * @return the inspectionCacheSize
+     */
+    public Long getInspectionCacheSize() {
+        return inspectionCacheSize;
+    }
+
+    /**
+     * @param inspectionCacheSize the inspectionCacheSize to set
+     */
+    public void setInspectionCacheSize(final Long inspectionCacheSize) {
+        this.inspectionCacheSize = inspectionCacheSize;
+    }
+
+    /**
+     * @return share of the inspections reused on the last refresh, in %
+     */
+    public Float getInspectionHitRate() {
+        return inspectionHitRate;
+    }
+
+    /**
+     * @param inspectionHitRate the inspectionHitRate to set
+     */
+    public void setInspectionHitRate(final Float inspectionHitRate) {
+        this.inspectionHitRate = inspectionHitRate;
+    }
+
+    /**
+     * @return the circuitState
+     */
+    public String getCircuitState() {
+        return circuitState;
+    }
+
+    /**
+     * @param circuitState the circuitState to set
+     */
+    public void setCircuitState(final String circuitState) {
+        this.circuitState = circuitState;
+    }
+
+    /**
+     * @return "yes" if the host is served from its last successful refresh, otherwise "no"
+     */
+    public String getStale() {
+        return stale;
+    }
+
+    /**
+     * @param stale the stale to set
+     */
+    public void setStale(final String stale) {
+        this.stale = stale;
+    }
+
+    /**
+     * @return seconds since the last successful refresh
+     */
+    public Long getStalenessAge() {
+        return stalenessAge;
+    }
+
+    /**
+     * @param stalenessAge the stalenessAge to set
+     */
+    public void setStalenessAge(final Long stalenessAge) {
+        this.stalenessAge = stalenessAge;
+    }
+
+    /**
+     * @return the refreshFailures
+     */
+    public Long getRefreshFailures() {
+        return refreshFailures;
+    }
+
+    /**
+     * @param refreshFailures the refreshFailures to set
+     */
+    public void setRefreshFailures(final Long refreshFailures) {
+        this.refreshFailures = refreshFailures;
+    }
+}
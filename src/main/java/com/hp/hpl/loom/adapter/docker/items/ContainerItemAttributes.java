@@ -45,6 +45,11 @@ public class ContainerItemAttributes extends CoreItemAttributes {
     public static final String LABEL_DAY_MEMORY_MEAN = "Day Memory Mean";
     public static final String LABEL_MEMORY_PRESENT_USAGE = "Present Memory Usage";
 
+    public static final String LABEL_HOUR_CPU_MEAN = "Hour CPU Mean";
+    public static final String LABEL_HOUR_CPU_PERCENTILE = "Hour CPU 95th Percentile";
+    public static final String LABEL_HOUR_MEMORY_MEAN = "Hour Memory Mean";
+    public static final String LABEL_HOUR_MEMORY_PERCENTILE = "Hour Memory 95th Percentile";
+
     public static final String LABEL_CPU_FREQUENCY = "CPU Frequency";
     public static final String LABEL_TOTAL_FS_CAPACITY = "Total Filesystem Capacity";
     public static final String LABEL_TOTAL_MEM_CAPACITY = "Memory Capacity";
@@ -128,6 +133,23 @@ public class ContainerItemAttributes extends CoreItemAttributes {
             type = NumericAttribute.class, min = "0", max = "100", unit = "%", ignoreUpdate = true)
     private Float dayMemoryMean = null;
 
+    // Computed locally from the usage collected on each refresh
+    @LoomAttribute(key = LABEL_HOUR_CPU_MEAN, supportedOperations = {DefaultOperations.SORT_BY}, plottable = true,
+            type = NumericAttribute.class, min = "0", max = "100", unit = "%", ignoreUpdate = true)
+    private Float hourCpuMean = null;
+
+    @LoomAttribute(key = LABEL_HOUR_CPU_PERCENTILE, supportedOperations = {DefaultOperations.SORT_BY},
+            plottable = true, type = NumericAttribute.class, min = "0", max = "100", unit = "%", ignoreUpdate = true)
+    private Float hourCpuPercentile = null;
+
+    @LoomAttribute(key = LABEL_HOUR_MEMORY_MEAN, supportedOperations = {DefaultOperations.SORT_BY}, plottable = true,
+            type = NumericAttribute.class, min = "0", max = "100", unit = "%", ignoreUpdate = true)
+    private Float hourMemoryMean = null;
+
+    @LoomAttribute(key = LABEL_HOUR_MEMORY_PERCENTILE, supportedOperations = {DefaultOperations.SORT_BY},
+            plottable = true, type = NumericAttribute.class, min = "0", max = "100", unit = "%", ignoreUpdate = true)
+    private Float hourMemoryPercentile = null;
+
     // Used in order to search the host database for the correct one, in order to reduce search
     // time.
     private String containingHostUID = null;
@@ -313,6 +335,34 @@ public class ContainerItemAttributes extends CoreItemAttributes {
         return dayMemoryMean;
     }
 
+    /**
+     * @return the hourCpuMean
+     */
+    public Float getHourCpuMean() {
+        return hourCpuMean;
+    }
+
+    /**
+     * @return the hourCpuPercentile
+     */
+    public Float getHourCpuPercentile() {
+        return hourCpuPercentile;
+    }
+
+    /**
+     * @return the hourMemoryMean
+     */
+    public Float getHourMemoryMean() {
+        return hourMemoryMean;
+    }
+
+    /**
+     * @return the hourMemoryPercentile
+     */
+    public Float getHourMemoryPercentile() {
+        return hourMemoryPercentile;
+    }
+
     /**
      * @return the memoryInstant
      */
@@ -330,17 +380,16 @@ public class ContainerItemAttributes extends CoreItemAttributes {
      * @param argDayMemoryMean
      * @param argMemoryInstant
      */
-    public void updateStatistics(final HostItemAttributes hostAttributes, final String argDayCpuMax,
-            final String argDayCpuMean, final String argCpuInstant, final String argDayMemoryMax,
-            final String argDayMemoryMean, final String argMemoryInstant) {
-        dayCpuMax = Utils.calculateCpuUsage(new Float(argDayCpuMax), hostAttributes.getNumberOfCores());
-        dayCpuMean = Utils.calculateCpuUsage(new Float(argDayCpuMean), hostAttributes.getNumberOfCores());
-        cpuInstant = Utils.calculateCpuUsage(new Float(argCpuInstant), hostAttributes.getNumberOfCores());
-        dayMemoryMax = Utils.calculateMemoryPercentage(new Float(argDayMemoryMax), hostAttributes.getMemoryCapacity());
-        dayMemoryMean =
-                Utils.calculateMemoryPercentage(new Float(argDayMemoryMean), hostAttributes.getMemoryCapacity());
+    public void updateStatistics(final HostItemAttributes hostAttributes, final long argDayCpuMax,
+            final long argDayCpuMean, final long argCpuInstant, final long argDayMemoryMax,
+            final long argDayMemoryMean, final long argMemoryInstant) {
+        dayCpuMax = Utils.calculateCpuUsage((float) argDayCpuMax, hostAttributes.getNumberOfCores());
+        dayCpuMean = Utils.calculateCpuUsage((float) argDayCpuMean, hostAttributes.getNumberOfCores());
+        cpuInstant = Utils.calculateCpuUsage((float) argCpuInstant, hostAttributes.getNumberOfCores());
+        dayMemoryMax = Utils.calculateMemoryPercentage((float) argDayMemoryMax, hostAttributes.getMemoryCapacity());
+        dayMemoryMean = Utils.calculateMemoryPercentage((float) argDayMemoryMean, hostAttributes.getMemoryCapacity());
         memoryInstant =
-                Utils.calculateMemoryPercentage(new Float(argMemoryInstant), hostAttributes.getMemoryCapacity());
+                Utils.calculateMemoryPercentage((float) argMemoryInstant, hostAttributes.getMemoryCapacity());
         // dayCpuMax = new Float(argDayCpuMax);
         // dayCpuMean = new Float(argDayCpuMean);
         // cpuInstant = new Float(argCpuInstant);
@@ -348,4 +397,22 @@ public class ContainerItemAttributes extends CoreItemAttributes {
         // dayMemoryMean = new Float(argDayMemoryMean) / Utils.BYTE_TO_MEGABYTE;
         // memoryInstant = new Float(argMemoryInstant) / Utils.BYTE_TO_MEGABYTE;
     }
+
+    /***
+     * Updates the usage of the container over the last hour, relative to its host.
+     *
+     * @param hostAttributes attributes of the host running the container
+     * @param argHourCpuMean mean CPU usage, in millicores
+     * @param argHourCpuPercentile 95th percentile of the CPU usage, in millicores
+     * @param argHourMemoryMean mean memory usage, in bytes
+     * @param argHourMemoryPercentile 95th percentile of the memory usage, in bytes
+     */
+    public void updateHourStatistics(final HostItemAttributes hostAttributes, final long argHourCpuMean,
+            final long argHourCpuPercentile, final long argHourMemoryMean, final long argHourMemoryPercentile) {
+        hourCpuMean = Utils.calculateCpuUsage((float) argHourCpuMean, hostAttributes.getNumberOfCores());
+        hourCpuPercentile = Utils.calculateCpuUsage((float) argHourCpuPercentile, hostAttributes.getNumberOfCores());
+        hourMemoryMean = Utils.calculateMemoryPercentage((float) argHourMemoryMean, hostAttributes.getMemoryCapacity());
+        hourMemoryPercentile =
+                Utils.calculateMemoryPercentage((float) argHourMemoryPercentile, hostAttributes.getMemoryCapacity());
+    }
 }
@@ -36,6 +36,8 @@ import com.hp.hpl.loom.model.ItemType;
 @ConnectedTo(toClass = PortItem.class, type = Relationships.MAPS_TYPE, typeName = Relationships.MAPS_TYPE_NAME)
 @ConnectedTo(toClass = RegistryItem.class, type = Relationships.FETCHES_IMAGES_FROM,
         typeName = Relationships.FETCHES_IMAGES_FROM_NAME)
+@ConnectedTo(toClass = CollectorItem.class, type = Relationships.MONITORS_TYPE,
+        typeName = Relationships.MONITORS_TYPE_NAME)
 
 // Host actions:
 @ActionDefinition(id = "createcontainer", name = "Create container", type = ActionTypes.Item, icon = "fa-plus",
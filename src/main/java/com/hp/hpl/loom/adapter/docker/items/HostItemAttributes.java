@@ -35,6 +35,11 @@ public class HostItemAttributes extends CoreItemAttributes {
     public static final String LABEL_DAY_MEMORY_MEAN = "Day Memory Mean";
     public static final String LABEL_MEMORY_PRESENT_USAGE = "Present Memory Usage";
 
+    public static final String LABEL_HOUR_CPU_MEAN = "Hour CPU Mean";
+    public static final String LABEL_HOUR_CPU_PERCENTILE = "Hour CPU 95th Percentile";
+    public static final String LABEL_HOUR_MEMORY_MEAN = "Hour Memory Mean";
+    public static final String LABEL_HOUR_MEMORY_PERCENTILE = "Hour Memory 95th Percentile";
+
     public static final String LABEL_CPU_FREQUENCY = "CPU Frequency";
     public static final String LABEL_TOTAL_FS_CAPACITY = "Total Filesystem Capacity";
     public static final String LABEL_TOTAL_MEM_CAPACITY = "Memory Capacity";
@@ -107,6 +112,23 @@ public class HostItemAttributes extends CoreItemAttributes {
             type = NumericAttribute.class, min = "0", max = "100", unit = "%", ignoreUpdate = true)
     private Float dayMemoryMean = null;
 
+    // Computed locally from the usage collected on each refresh
+    @LoomAttribute(key = LABEL_HOUR_CPU_MEAN, supportedOperations = {DefaultOperations.SORT_BY}, plottable = true,
+            type = NumericAttribute.class, min = "0", max = "100", unit = "%", ignoreUpdate = true)
+    private Float hourCpuMean = null;
+
+    @LoomAttribute(key = LABEL_HOUR_CPU_PERCENTILE, supportedOperations = {DefaultOperations.SORT_BY},
+            plottable = true, type = NumericAttribute.class, min = "0", max = "100", unit = "%", ignoreUpdate = true)
+    private Float hourCpuPercentile = null;
+
+    @LoomAttribute(key = LABEL_HOUR_MEMORY_MEAN, supportedOperations = {DefaultOperations.SORT_BY}, plottable = true,
+            type = NumericAttribute.class, min = "0", max = "100", unit = "%", ignoreUpdate = true)
+    private Float hourMemoryMean = null;
+
+    @LoomAttribute(key = LABEL_HOUR_MEMORY_PERCENTILE, supportedOperations = {DefaultOperations.SORT_BY},
+            plottable = true, type = NumericAttribute.class, min = "0", max = "100", unit = "%", ignoreUpdate = true)
+    private Float hourMemoryPercentile = null;
+
     @LoomAttribute(key = LABEL_CPU_FREQUENCY,
             supportedOperations = {DefaultOperations.SORT_BY, DefaultOperations.GROUP_BY}, plottable = false,
             type = NumericAttribute.class, min = "0", max = "10737418240", unit = "GHz", ignoreUpdate = true)
@@ -204,6 +226,34 @@ public class HostItemAttributes extends CoreItemAttributes {
         return dayMemoryMean;
     }
 
+    /**
+     * @return the hourCpuMean
+     */
+    public Float getHourCpuMean() {
+        return hourCpuMean;
+    }
+
+    /**
+     * @return the hourCpuPercentile
+     */
+    public Float getHourCpuPercentile() {
+        return hourCpuPercentile;
+    }
+
+    /**
+     * @return the hourMemoryMean
+     */
+    public Float getHourMemoryMean() {
+        return hourMemoryMean;
+    }
+
+    /**
+     * @return the hourMemoryPercentile
+     */
+    public Float getHourMemoryPercentile() {
+        return hourMemoryPercentile;
+    }
+
     /**
      * @return the memoryInstant
      */
@@ -259,37 +309,66 @@ public class HostItemAttributes extends CoreItemAttributes {
      * @param argDayMemoryMean
      * @param argMemoryInstant
      */
-    public void updateStatistics(final String argDayCpuMax, final String argDayCpuMean, final String argCpuInstant,
-            final String argDayMemoryMax, final String argDayMemoryMean, final String argMemoryInstant) {
-        dayCpuMax = Utils.calculateCpuUsage(new Float(argDayCpuMax), numberOfCores);
-        dayCpuMean = Utils.calculateCpuUsage(new Float(argDayCpuMean), numberOfCores);
-        cpuInstant = Utils.calculateCpuUsage(new Float(argCpuInstant), numberOfCores);
-        dayMemoryMax = Utils.calculateMemoryPercentage(new Float(argDayMemoryMax), memoryCapacity);
-        dayMemoryMean = Utils.calculateMemoryPercentage(new Float(argDayMemoryMean), memoryCapacity);
-        memoryInstant = Utils.calculateMemoryPercentage(new Float(argMemoryInstant), memoryCapacity);
+    public void updateStatistics(final long argDayCpuMax, final long argDayCpuMean, final long argCpuInstant,
+            final long argDayMemoryMax, final long argDayMemoryMean, final long argMemoryInstant) {
+        dayCpuMax = Utils.calculateCpuUsage((float) argDayCpuMax, numberOfCores);
+        dayCpuMean = Utils.calculateCpuUsage((float) argDayCpuMean, numberOfCores);
+        cpuInstant = Utils.calculateCpuUsage((float) argCpuInstant, numberOfCores);
+        dayMemoryMax = Utils.calculateMemoryPercentage((float) argDayMemoryMax, memoryCapacity);
+        dayMemoryMean = Utils.calculateMemoryPercentage((float) argDayMemoryMean, memoryCapacity);
+        memoryInstant = Utils.calculateMemoryPercentage((float) argMemoryInstant, memoryCapacity);
 
     }
 
     /***
-     * Updates the information about the machine running the host. Requires cAdvisor container
-     * running on that host.
+     * Updates the usage of the host over the last hour.
      *
-     * @param argCpuFrequency
-     * @param argFileSystemCapacity
-     * @param argMemoryCapacity
+     * @param argHourCpuMean mean CPU usage, in millicores
+     * @param argHourCpuPercentile 95th percentile of the CPU usage, in millicores
+     * @param argHourMemoryMean mean memory usage, in bytes
+     * @param argHourMemoryPercentile 95th percentile of the memory usage, in bytes
+     */
+    public void updateHourStatistics(final long argHourCpuMean, final long argHourCpuPercentile,
+            final long argHourMemoryMean, final long argHourMemoryPercentile) {
+        hourCpuMean = Utils.calculateCpuUsage((float) argHourCpuMean, numberOfCores);
+        hourCpuPercentile = Utils.calculateCpuUsage((float) argHourCpuPercentile, numberOfCores);
+        hourMemoryMean = Utils.calculateMemoryPercentage((float) argHourMemoryMean, memoryCapacity);
+        hourMemoryPercentile = Utils.calculateMemoryPercentage((float) argHourMemoryPercentile, memoryCapacity);
+    }
+
+    /***
+     * Updates the information about the machine running the host. The CPU frequency and the file
+     * system capacity are only known when a cAdvisor container runs on that host. Unknown values are
+     * null and left unchanged.
+     *
+     * @param argCpuFrequency CPU frequency in kHz
+     * @param argFileSystemCapacity file system capacity in bytes
+     * @param argMemoryCapacity memory capacity in bytes
      * @param argNumberOfCores
      * @param argDockerVersion
      * @param argKernelVersion
      */
-    public void updateMachineInfo(final String argCpuFrequency, final String argFileSystemCapacity,
-            final String argMemoryCapacity, final String argNumberOfCores, final String argDockerVersion,
+    public void updateMachineInfo(final Long argCpuFrequency, final Long argFileSystemCapacity,
+            final Long argMemoryCapacity, final Integer argNumberOfCores, final String argDockerVersion,
             final String argKernelVersion) {
-        cpuFrequency = new Float(argCpuFrequency) / Utils.KHERTZ_TO_GIGAHERTZ;
-        fileSystemCapacity = new Float(argFileSystemCapacity) / Utils.BYTE_TO_GIGABYTE;
-        memoryCapacity = new Float(argMemoryCapacity) / Utils.BYTE_TO_GIGABYTE;
-        numberOfCores = new Long(argNumberOfCores);
-        dockerVersion = argDockerVersion;
-        kernelVersion = argKernelVersion;
+        if (argCpuFrequency != null) {
+            cpuFrequency = argCpuFrequency.floatValue() / Utils.KHERTZ_TO_GIGAHERTZ;
+        }
+        if (argFileSystemCapacity != null) {
+            fileSystemCapacity = argFileSystemCapacity.floatValue() / Utils.BYTE_TO_GIGABYTE;
+        }
+        if (argMemoryCapacity != null) {
+            memoryCapacity = argMemoryCapacity.floatValue() / Utils.BYTE_TO_GIGABYTE;
+        }
+        if (argNumberOfCores != null) {
+            numberOfCores = argNumberOfCores.longValue();
+        }
+        if (argDockerVersion != null) {
+            dockerVersion = argDockerVersion;
+        }
+        if (argKernelVersion != null) {
+            kernelVersion = argKernelVersion;
+        }
     }
 
     /**
@@ -305,4 +384,5 @@ public class HostItemAttributes extends CoreItemAttributes {
     public void setRunningOS(final String runningOS) {
         this.runningOS = runningOS;
     }
+
 }
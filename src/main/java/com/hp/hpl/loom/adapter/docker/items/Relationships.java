@@ -42,6 +42,9 @@ public final class Relationships {
     public static final String FETCHES_IMAGES_FROM = "fetchesimagesfrom";
     public static final String FETCHES_IMAGES_FROM_NAME = "fetches images from";
 
+    public static final String MONITORS_TYPE = "monitors";
+    public static final String MONITORS_TYPE_NAME = "monitors";
+
     private Relationships() {
         // prevents calls from subclass
         throw new UnsupportedOperationException();
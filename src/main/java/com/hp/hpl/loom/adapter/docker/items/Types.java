@@ -45,6 +45,11 @@ public final class Types {
      */
     public static final String REGISTRY_TYPE_ID = "registry";
 
+    /***
+     * Collector Type ID: health of the collection of each host.
+     */
+    public static final String COLLECTOR_TYPE_ID = "collector";
+
     /***
      * Docker layer ID
      */
@@ -10,8 +10,6 @@
  *******************************************************************************/
 package com.hp.hpl.loom.adapter.docker.items;
 
-import com.fasterxml.jackson.databind.JsonNode;
-
 /***
  * Conversions and definitions
  */
@@ -34,17 +32,6 @@ public final class Utils {
         throw new UnsupportedOperationException();
     }
 
-    public static String getCadvisorAttribute(final JsonNode source, final String name) {
-        JsonNode node = source.get(name);
-        String response = null;
-
-        if (node != null && !node.isNull()) {
-            response = node.toString();
-        }
-
-        return response;
-    }
-
     /**
      * @return the cpuInstant
      */
@@ -55,7 +55,6 @@ import com.spotify.docker.client.messages.ProgressMessage;
 public final class HostActions {
     private static final int ACTION_MAX_THREADS = 50;
     private static final String IMAGE_GOOGLE_CADVISOR_LATEST = "google/cadvisor:latest";
-    private static final int WAIT_LOCK_TIME_MS = 1000;
     private static final Log LOG = LogFactory.getLog(HostActions.class);
 
     private HostActions() {}
@@ -355,17 +354,6 @@ public final class HostActions {
         ContainerCreation container;
         boolean success = false;
 
-        while (!executedHost.getUpdateListOrCreateContainerLock().tryLock()) {
-            // wait until the lock is released
-            try {
-                Thread.sleep(WAIT_LOCK_TIME_MS);
-                // executedHost.getUpdateListOrCreateContainerLock().wait(WAIT_LOCK_TIME_MS);
-            } catch (InterruptedException e) {
-                LOG.warn("Couldn't obtain lock - retrying");
-            }
-        }
-
-        // Lock acquired
         try {
             LOG.info("Creating container on host '" + dClient.getHost() + "' using image " + imageUsed);
 
@@ -376,8 +364,6 @@ public final class HostActions {
         } catch (DockerException | InterruptedException e) {
             LOG.error("Could not launch container on host '" + dClient.getHost() + "' using command: " + execCommand,
                     e);
-        } finally {
-            executedHost.getUpdateListOrCreateContainerLock().unlock();
         }
 
         return success;